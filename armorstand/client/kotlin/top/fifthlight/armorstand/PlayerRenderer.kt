@@ -14,6 +14,8 @@ import top.fifthlight.armorstand.state.ModelInstanceManager
 import top.fifthlight.armorstand.util.RendererManager
 import top.fifthlight.blazerod.api.render.ScheduledRenderer
 import top.fifthlight.blazerod.api.resource.CameraTransform
+import top.fifthlight.blazerod.api.resource.ModelInstance
+import top.fifthlight.blazerod.api.resource.SceneUpdateSchedulerFactory
 import top.fifthlight.blazerod.model.Camera
 import java.lang.ref.WeakReference
 import java.util.*
@@ -59,6 +61,33 @@ object PlayerRenderer {
 
     private val matrix = Matrix4f()
 
+    private class PendingTask(
+        val instance: ModelInstance,
+        val modelMatrix: Matrix4f,
+        val light: Int,
+        val overlay: Int,
+    )
+
+    // Players rendered into the world are updated together in executeDraw, so their updates can run in parallel
+    private val pendingTasks = mutableListOf<PendingTask>()
+    private val pendingInstances = mutableListOf<ModelInstance>()
+    private val sceneUpdateScheduler = SceneUpdateSchedulerFactory.of()
+
+    private fun flushPendingTasks(renderer: ScheduledRenderer<*, *>?) {
+        if (pendingTasks.isEmpty()) {
+            return
+        }
+        if (renderer != null) {
+            sceneUpdateScheduler.updateRenderData(pendingInstances)
+        }
+        for (pending in pendingTasks) {
+            renderer?.schedule(pending.instance.createRenderTask(pending.modelMatrix, pending.light, pending.overlay))
+            pending.instance.decreaseReferenceCount()
+        }
+        pendingTasks.clear()
+        pendingInstances.clear()
+    }
+
     @JvmStatic
     fun updatePlayer(
         player: AbstractClientPlayer,
@@ -91,8 +120,18 @@ object PlayerRenderer {
         val controller = entry.controller
         val instance = entry.instance
 
+        val currentRenderer = RendererManager.currentRenderer
+        val scheduledRenderer = (currentRenderer as? ScheduledRenderer<*, *>)
+            ?.takeIf { renderingWorld && !ArmorStandClient.instance.debugBone }
+        if (scheduledRenderer != null && pendingInstances.any { it === instance }) {
+            // Same instance rendered twice in one frame, its first transform must be taken before applying again
+            flushPendingTasks(scheduledRenderer)
+        }
+
         controller.apply(uuid, instance, vanillaState)
-        instance.updateRenderData()
+        if (scheduledRenderer == null) {
+            instance.updateRenderData()
+        }
 
         val backupItem = matrixStack.last().copy()
         matrixStack.popPose()
@@ -103,11 +142,12 @@ object PlayerRenderer {
         } else {
             matrix.set(matrixStack.last().pose())
             matrix.scale(ConfigHolder.config.value.modelScale)
-            val currentRenderer = RendererManager.currentRenderer
-            val task = instance.createRenderTask(matrix, light, overlay)
-            if (currentRenderer is ScheduledRenderer<*, *> && renderingWorld) {
-                currentRenderer.schedule(task)
+            if (scheduledRenderer != null) {
+                instance.increaseReferenceCount()
+                pendingTasks.add(PendingTask(instance, Matrix4f(matrix), light, overlay))
+                pendingInstances.add(instance)
             } else {
+                val task = instance.createRenderTask(matrix, light, overlay)
                 val mainTarget = Minecraft.getInstance().mainRenderTarget
                 val colorFrameBuffer = RenderSystem.outputColorTextureOverride ?: mainTarget.colorTextureView!!
                 val depthFrameBuffer = RenderSystem.outputDepthTextureOverride ?: mainTarget.depthTextureView
@@ -133,7 +173,9 @@ object PlayerRenderer {
     fun executeDraw() {
         renderingWorld = false
         val mainTarget = Minecraft.getInstance().mainRenderTarget
-        RendererManager.currentRendererScheduled?.let { renderer ->
+        val scheduledRenderer = RendererManager.currentRendererScheduled
+        flushPendingTasks(scheduledRenderer)
+        scheduledRenderer?.let { renderer ->
             val colorFrameBuffer = RenderSystem.outputColorTextureOverride ?: mainTarget.colorTextureView!!
             val depthFrameBuffer = RenderSystem.outputDepthTextureOverride ?: mainTarget.depthTextureView
             renderer.executeTasks(colorFrameBuffer, depthFrameBuffer)
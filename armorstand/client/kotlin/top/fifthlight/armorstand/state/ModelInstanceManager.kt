@@ -6,6 +6,8 @@ import net.minecraft.client.Minecraft
 import top.fifthlight.armorstand.ArmorStand
 import top.fifthlight.armorstand.config.ConfigHolder
 import top.fifthlight.armorstand.manage.ModelManagerHolder
+import top.fifthlight.armorstand.util.GameDirectoryGetter
+import top.fifthlight.armorstand.util.ModelHash
 import top.fifthlight.armorstand.vmc.VmcMarionetteManager
 import top.fifthlight.blazerod.api.animation.AnimationContextsFactory
 import top.fifthlight.blazerod.api.animation.AnimationItem
@@ -18,9 +20,12 @@ import top.fifthlight.blazerod.api.resource.ModelInstanceFactory
 import top.fifthlight.blazerod.api.resource.RenderScene
 import top.fifthlight.blazerod.model.Metadata
 import top.fifthlight.blazerod.model.formats.ModelFileLoaders
+import java.io.IOException
 import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Instant
 import java.util.*
-import kotlin.io.path.nameWithoutExtension
+import kotlin.io.path.*
 import kotlin.time.measureTimedValue
 
 object ModelInstanceManager {
@@ -34,6 +39,8 @@ object ModelInstanceManager {
     private val modelDir
         get() = ModelManagerHolder.modelDir
     val defaultAnimationDir: Path = modelDir.resolve("animations")
+    private val compiledModelDir: Path = GameDirectoryGetter.gameDirectory.resolve("armorstand").resolve("compiled")
+    private const val MAX_COMPILED_MODEL_FILES = 16
     private val scope
         get() = ArmorStand.instance.scope
 
@@ -78,6 +85,36 @@ object ModelInstanceManager {
         ) : RefCount by instance, ModelInstanceItem
     }
 
+    // The hash found by the model scanner can only be trusted when the file is not changed since the scan
+    private suspend fun findModelHash(path: Path, modelPath: Path): ModelHash? = try {
+        ModelManagerHolder.instance.getModelByPath(path)?.takeIf { item ->
+            item.lastChanged == withContext(Dispatchers.IO) { modelPath.getLastModifiedTime().toMillis() }
+        }?.hash
+    } catch (ex: Exception) {
+        LOGGER.warn("Failed to find hash of model $path", ex)
+        null
+    }
+
+    private fun pruneCompiledModels() {
+        if (compiledModelDir.notExists()) {
+            return
+        }
+        val files = try {
+            compiledModelDir.listDirectoryEntries("*.bin").sortedByDescending { it.getLastModifiedTime() }
+        } catch (ex: IOException) {
+            LOGGER.warn("Failed to list compiled models", ex)
+            return
+        }
+        for (file in files.drop(MAX_COMPILED_MODEL_FILES)) {
+            try {
+                file.deleteIfExists()
+            } catch (ex: IOException) {
+                // Files still mapped by loaded models can't be deleted on some platforms
+                LOGGER.debug("Failed to delete compiled model {}", file, ex)
+            }
+        }
+    }
+
     private suspend fun loadModel(path: Path): ModelCache = withContext(Dispatchers.Default) {
         val (result, duration) = measureTimedValue {
             val modelPath = modelDir.resolve(path).toAbsolutePath()
@@ -91,9 +128,23 @@ object ModelInstanceManager {
             val model = result.model ?: return@withContext ModelCache.Failed
             LOGGER.info("Model metadata: ${result.metadata}")
 
+            val hash = findModelHash(path, modelPath)
             val scene = try {
                 val loader = ModelLoaderFactory.create()
-                loader.loadModel(model) ?: run {
+                if (hash != null) {
+                    val cacheFile = compiledModelDir.resolve("$hash.bin")
+                    withContext(Dispatchers.IO) {
+                        // Mark the file as recently used, so it is kept when pruning
+                        if (cacheFile.exists()) {
+                            cacheFile.setLastModifiedTime(FileTime.from(Instant.now()))
+                        }
+                    }
+                    loader.loadModel(model, cacheFile, hash.hash).also {
+                        withContext(Dispatchers.IO) { pruneCompiledModels() }
+                    }
+                } else {
+                    loader.loadModel(model)
+                } ?: run {
                     LOGGER.warn("Model contains no scene")
                     return@withContext ModelCache.Failed
                 }
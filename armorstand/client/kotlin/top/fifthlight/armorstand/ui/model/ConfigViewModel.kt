@@ -1,23 +1,43 @@
 package top.fifthlight.armorstand.ui.model
 
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.*
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import net.minecraft.Util
 import net.minecraft.client.Minecraft
+import org.slf4j.LoggerFactory
 import top.fifthlight.armorstand.config.ConfigHolder
 import top.fifthlight.armorstand.manage.ModelManager
 import top.fifthlight.armorstand.manage.ModelManagerHolder
 import top.fifthlight.armorstand.state.ModelInstanceManager
 import top.fifthlight.armorstand.ui.state.ConfigScreenState
+import top.fifthlight.blazerod.model.Metadata
+import top.fifthlight.blazerod.model.formats.ModelFileLoaders
+import top.fifthlight.blazerod.model.loader.MetadataResult
 import java.nio.file.Path
 
 class ConfigViewModel(scope: CoroutineScope) : ViewModel(scope) {
+    companion object {
+        private val logger = LoggerFactory.getLogger(ConfigViewModel::class.java)
+    }
+
     private val _uiState = MutableStateFlow(ConfigScreenState())
     val uiState = _uiState.asStateFlow()
 
     private fun findLargestMultiple(base: Int, maximum: Int) = maximum / base * base
 
+    private suspend fun readMetadata(path: Path): Metadata? = withContext(Dispatchers.IO) {
+        try {
+            val modelPath = ModelManagerHolder.modelDir.resolve(path).toAbsolutePath()
+            (ModelFileLoaders.getMetadata(modelPath) as? MetadataResult.Success)?.metadata
+        } catch (ex: Exception) {
+            logger.warn("Failed to read metadata of model $path", ex)
+            null
+        }
+    }
+
     private data class SearchParam(
         val offset: Int,
         val pageSize: Int?,
@@ -78,6 +98,15 @@ class ConfigViewModel(scope: CoroutineScope) : ViewModel(scope) {
                     }
                 }
             }
+            launch {
+                // Show metadata read from the model header until the model is loaded, tick() replaces it then
+                ConfigHolder.config.map { it.modelPath }.distinctUntilChanged().collectLatest { path ->
+                    val metadata = path?.let { readMetadata(it) }
+                    _uiState.getAndUpdate { state ->
+                        state.copy(currentMetadata = metadata)
+                    }
+                }
+            }
             launch {
                 ConfigHolder.config.collect { config ->
                     _uiState.getAndUpdate {
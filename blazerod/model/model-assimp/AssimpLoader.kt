@@ -667,6 +667,7 @@ class AssimpLoader : ModelFileLoader {
                     SimpleAnimation(
                         name = animationName.takeIf { it.isNotEmpty() },
                         channels = channels,
+                        timeDependentOnly = true,
                     )
                 }
             } else {
@@ -721,6 +722,7 @@ class AssimpLoader : ModelFileLoader {
                     SimpleAnimation(
                         name = animation.mName().dataString().takeIf { it.isNotEmpty() },
                         channels = channels,
+                        timeDependentOnly = true,
                     )
                 }
             }
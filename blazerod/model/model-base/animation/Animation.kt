@@ -7,5 +7,12 @@ interface Animation {
     val duration: Float?
         get() = null
 
+    /**
+     * Whether channels read nothing but the time of the state, so instances playing the animation at the same time get
+     * the same values. Animations reading the context or their own state type must keep it false.
+     */
+    val timeDependentOnly: Boolean
+        get() = false
+
     fun createState(context: AnimationContext): AnimationState
 }
@@ -0,0 +1,188 @@
+package top.fifthlight.blazerod.model.animation
+
+import org.joml.Quaternionf
+import org.joml.Vector3f
+import top.fifthlight.blazerod.model.util.MutableFloat
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Values of keyframe channels resampled at a fixed rate, so sampling is a multiply and a lerp between two samples,
+ * instead of a keyframe search and a call to the interpolation.
+ *
+ * Channels baked together share one array in frame-major order, so evaluating all channels of an animation at the
+ * same time reads two adjacent rows of it.
+ */
+class BakedAnimationTracks private constructor(
+    val sampleRate: Float,
+    val frames: Int,
+    private val stride: Int,
+    private val samples: FloatArray,
+) {
+    sealed class ValueType<T>(val components: Int) {
+        abstract fun write(value: T, samples: FloatArray, offset: Int)
+        abstract fun read(samples: FloatArray, start: Int, end: Int, delta: Float, result: T)
+
+        data object Vector3Value : ValueType<Vector3f>(3) {
+            override fun write(value: Vector3f, samples: FloatArray, offset: Int) {
+                samples[offset] = value.x
+                samples[offset + 1] = value.y
+                samples[offset + 2] = value.z
+            }
+
+            override fun read(samples: FloatArray, start: Int, end: Int, delta: Float, result: Vector3f) {
+                result.set(
+                    Math.fma(samples[end] - samples[start], delta, samples[start]),
+                    Math.fma(samples[end + 1] - samples[start + 1], delta, samples[start + 1]),
+                    Math.fma(samples[end + 2] - samples[start + 2], delta, samples[start + 2]),
+                )
+            }
+        }
+
+        data object QuaternionValue : ValueType<Quaternionf>(4) {
+            override fun write(value: Quaternionf, samples: FloatArray, offset: Int) {
+                samples[offset] = value.x
+                samples[offset + 1] = value.y
+                samples[offset + 2] = value.z
+                samples[offset + 3] = value.w
+            }
+
+            // Samples are close to each other, so normalized lerp is close enough to slerp
+            override fun read(samples: FloatArray, start: Int, end: Int, delta: Float, result: Quaternionf) {
+                val dot = samples[start] * samples[end] + samples[start + 1] * samples[end + 1] +
+                        samples[start + 2] * samples[end + 2] + samples[start + 3] * samples[end + 3]
+                val endWeight = if (dot < 0f) -delta else delta
+                val startWeight = 1f - delta
+                result.set(
+                    samples[start] * startWeight + samples[end] * endWeight,
+                    samples[start + 1] * startWeight + samples[end + 1] * endWeight,
+                    samples[start + 2] * startWeight + samples[end + 2] * endWeight,
+                    samples[start + 3] * startWeight + samples[end + 3] * endWeight,
+                ).normalize()
+            }
+        }
+
+        data object FloatValue : ValueType<MutableFloat>(1) {
+            override fun write(value: MutableFloat, samples: FloatArray, offset: Int) {
+                samples[offset] = value.value
+            }
+
+            override fun read(samples: FloatArray, start: Int, end: Int, delta: Float, result: MutableFloat) {
+                result.value = Math.fma(samples[end] - samples[start], delta, samples[start])
+            }
+        }
+    }
+
+    class Track<T> internal constructor(
+        private val tracks: BakedAnimationTracks,
+        private val offset: Int,
+        private val valueType: ValueType<T>,
+    ) {
+        fun get(time: Float, result: T) = with(tracks) {
+            val position = (time * sampleRate).coerceIn(0f, (frames - 1).toFloat())
+            val frame = min(position.toInt(), max(frames - 2, 0))
+            val start = frame * stride + offset
+            val end = if (frames > 1) start + stride else start
+            valueType.read(samples, start, end, position - frame, result)
+        }
+    }
+
+    // Only time is read by channels which can be baked, so context and state are placeholders
+    private object BakeContext : AnimationContext {
+        override fun getGameTick() = 0L
+        override fun getDeltaTick() = 0f
+        override fun <T> getProperty(type: AnimationContext.Property<T>): T? = null
+        override fun getPropertyTypes() = emptySet<AnimationContext.Property<*>>()
+    }
+
+    private class BakeState(override val duration: Float) : AnimationState {
+        var sampleTime = 0f
+
+        override val playing: Boolean
+            get() = true
+
+        override fun updateTime(context: AnimationContext) = Unit
+
+        override fun getTime() = sampleTime
+    }
+
+    companion object {
+        @Suppress("UNCHECKED_CAST")
+        private fun <T : Any> KeyFrameAnimationChannel<T, Any?>.valueType(): ValueType<T>? = when (defaultValue()) {
+            is Vector3f -> ValueType.Vector3Value
+            is Quaternionf -> ValueType.QuaternionValue
+            is MutableFloat -> ValueType.FloatValue
+            else -> null
+        } as ValueType<T>?
+
+        private fun <T : Any> KeyFrameAnimationChannel<T, Any?>.sample(
+            valueType: ValueType<T>,
+            sampleRate: Float,
+            frames: Int,
+            stride: Int,
+            offset: Int,
+            samples: FloatArray,
+        ) {
+            val state = BakeState(duration)
+            val value = defaultValue()
+            for (frame in 0 until frames) {
+                state.sampleTime = frame / sampleRate
+                getData(BakeContext, state, value)
+                valueType.write(value, samples, frame * stride + offset)
+            }
+        }
+
+        /**
+         * Bake channels with enough keyframes into one shared array. Channels with fewer keyframes than
+         * [minKeyFrameDensity] of the sample count keep searching keyframes, as baking them costs more memory than it
+         * saves.
+         *
+         * Only channels whose values depend on time alone can be baked, as they are sampled without a real context.
+         */
+        fun bake(
+            channels: List<KeyFrameAnimationChannel<*, *>>,
+            sampleRate: Float,
+            minKeyFrameDensity: Float = 0.25f,
+        ): List<KeyFrameAnimationChannel<*, *>> {
+            val duration = channels.maxOfOrNull { it.duration } ?: return channels
+            val frames = ceil(duration * sampleRate).toInt() + 1
+
+            @Suppress("UNCHECKED_CAST")
+            val bakeChannels = channels.map { channel ->
+                (channel as KeyFrameAnimationChannel<Any, Any?>).takeIf {
+                    val keyFrames = channel.indexer.indices
+                    keyFrames >= 2 && keyFrames >= frames * minKeyFrameDensity
+                }?.valueType()
+            }
+
+            val offsets = IntArray(channels.size)
+            var stride = 0
+            for ((index, valueType) in bakeChannels.withIndex()) {
+                valueType ?: continue
+                offsets[index] = stride
+                stride += valueType.components
+            }
+            if (stride == 0) {
+                return channels
+            }
+
+            val samples = FloatArray(frames * stride)
+            val tracks = BakedAnimationTracks(sampleRate, frames, stride, samples)
+            return channels.mapIndexed { index, channel ->
+                val valueType = bakeChannels[index] ?: return@mapIndexed channel
+                @Suppress("UNCHECKED_CAST")
+                val channel = channel as KeyFrameAnimationChannel<Any, Any?>
+                channel.sample(
+                    valueType = valueType,
+                    sampleRate = sampleRate,
+                    frames = frames,
+                    stride = stride,
+                    offset = offsets[index],
+                    samples = samples,
+                )
+                channel.copy(bakedTrack = Track(tracks, offsets[index], valueType))
+            }
+        }
+    }
+}
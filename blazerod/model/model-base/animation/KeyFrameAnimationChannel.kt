@@ -14,6 +14,8 @@ data class KeyFrameAnimationChannel<T : Any, D>(
     val interpolation: AnimationInterpolation,
     val valueSetter: (List<T>, T) -> Unit,
     val defaultValue: () -> T,
+    // Set by BakedAnimationTracks, replacing keyframe search and interpolation when present
+    val bakedTrack: BakedAnimationTracks.Track<T>? = null,
 ) : AnimationChannel<T, D> {
     init {
         require(interpolation.elements == keyframeData.elements) { "Bad elements of keyframe data: ${keyframeData.elements}" }
@@ -40,6 +42,10 @@ data class KeyFrameAnimationChannel<T : Any, D>(
 
     override fun getData(context: AnimationContext, state: AnimationState, result: T) {
         val time = state.getTime()
+        if (bakedTrack != null) {
+            bakedTrack.get(time, result)
+            return
+        }
         indexer.findKeyFrames(time, indexResult)
         if (indexResult.startFrame == indexResult.endFrame || time < indexResult.startTime) {
             keyframeData.get(context, state, indexResult.startFrame, startValues, post = false)
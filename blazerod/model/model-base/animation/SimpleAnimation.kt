@@ -3,6 +3,7 @@ package top.fifthlight.blazerod.model.animation
 data class SimpleAnimation(
     override val name: String? = null,
     override val channels: List<KeyFrameAnimationChannel<*, *>>,
+    override val timeDependentOnly: Boolean = false,
 ) : Animation {
     override val duration = channels.maxOfOrNull { it.duration } ?: 0f
 
@@ -0,0 +1,147 @@
+package top.fifthlight.blazerod.model.test
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList
+import org.joml.Quaternionf
+import org.joml.Vector3f
+import top.fifthlight.blazerod.model.TransformId
+import top.fifthlight.blazerod.model.animation.*
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.test.Test
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class BakedAnimationTracksTest {
+    // Same rate as VMD, so keyframes land on samples
+    private val sampleRate = 30f
+
+    private object TestContext : AnimationContext {
+        override fun getGameTick() = 0L
+        override fun getDeltaTick() = 0f
+        override fun <T> getProperty(type: AnimationContext.Property<T>): T? = null
+        override fun getPropertyTypes() = emptySet<AnimationContext.Property<*>>()
+    }
+
+    private class TestState(override val duration: Float?) : AnimationState {
+        var time = 0f
+
+        override val playing: Boolean
+            get() = true
+
+        override fun updateTime(context: AnimationContext) = Unit
+
+        override fun getTime() = time
+    }
+
+    private val transformData = AnimationChannel.Type.TransformData(
+        node = AnimationChannel.Type.NodeData(
+            targetNode = null,
+            targetNodeName = "bone",
+            targetHumanoidTag = null,
+        ),
+        transformId = TransformId.RELATIVE_ANIMATION,
+    )
+
+    private fun translationChannel(times: List<Float>, value: (Float) -> Vector3f) = KeyFrameAnimationChannel(
+        type = AnimationChannel.Type.Translation,
+        typeData = transformData,
+        indexer = ListAnimationKeyFrameIndexer(FloatArrayList(times)),
+        keyframeData = AnimationKeyFrameData.ofVector3f(
+            values = FloatArrayList(times.flatMap { time -> value(time).let { listOf(it.x, it.y, it.z) } }),
+            elements = 1,
+        ),
+        interpolation = AnimationInterpolation.linear,
+    )
+
+    private fun rotationChannel(times: List<Float>, value: (Float) -> Quaternionf) = KeyFrameAnimationChannel(
+        type = AnimationChannel.Type.Rotation,
+        typeData = transformData,
+        indexer = ListAnimationKeyFrameIndexer(FloatArrayList(times)),
+        keyframeData = AnimationKeyFrameData.ofQuaternionf(
+            values = FloatArrayList(times.flatMap { time -> value(time).let { listOf(it.x, it.y, it.z, it.w) } }),
+            elements = 1,
+        ),
+        interpolation = AnimationInterpolation.linear,
+    )
+
+    // At every sample, a quarter and half way between samples, and out of range on both ends
+    private fun sampleTimes(frames: Int) = buildList {
+        add(-0.5f)
+        for (frame in 0 until frames) {
+            add(frame / sampleRate)
+            add((frame + 0.25f) / sampleRate)
+            add((frame + 0.5f) / sampleRate)
+        }
+        add(frames / sampleRate + 0.5f)
+    }
+
+    private fun <T : Any> sample(channel: KeyFrameAnimationChannel<T, *>, time: Float): T {
+        val state = TestState(channel.duration).apply { this.time = time }
+        return channel.defaultValue().also { channel.getData(TestContext, state, it) }
+    }
+
+    private fun assertVectorEquals(expected: Vector3f, actual: Vector3f, message: String) =
+        assertTrue(expected.equals(actual, 1e-4f), "$message: expected $expected, got $actual")
+
+    // Baked rotations use normalized lerp between samples instead of slerp, which is close for dense keyframes
+    private fun assertRotationEquals(expected: Quaternionf, actual: Quaternionf, message: String) =
+        assertTrue(abs(expected.dot(actual)) > 1f - 1e-5f, "$message: expected $expected, got $actual")
+
+    private fun frameTimes(frames: Int) = List(frames) { it / sampleRate }
+
+    @Test
+    fun bakedTranslationMatchesKeyFrames() {
+        val frames = 31
+        val channel = translationChannel(frameTimes(frames)) { time ->
+            Vector3f(sin(time * 4f), time * time, -2f * time)
+        }
+        @Suppress("UNCHECKED_CAST")
+        val baked = BakedAnimationTracks.bake(listOf(channel), sampleRate)
+            .single() as KeyFrameAnimationChannel<Vector3f, *>
+        assertNotNull(baked.bakedTrack)
+
+        for (time in sampleTimes(frames)) {
+            assertVectorEquals(sample(channel, time), sample(baked, time), "Translation at $time")
+        }
+    }
+
+    @Test
+    fun bakedRotationMatchesKeyFrames() {
+        val frames = 31
+        val channel = rotationChannel(frameTimes(frames)) { time ->
+            Quaternionf().rotationYXZ(time * 3f, cos(time * 2f), -time)
+        }
+        @Suppress("UNCHECKED_CAST")
+        val baked = BakedAnimationTracks.bake(listOf(channel), sampleRate)
+            .single() as KeyFrameAnimationChannel<Quaternionf, *>
+        assertNotNull(baked.bakedTrack)
+
+        for (time in sampleTimes(frames)) {
+            assertRotationEquals(sample(channel, time), sample(baked, time), "Rotation at $time")
+        }
+    }
+
+    @Test
+    fun sparseChannelsAreBakedOnlyFromQuarterOfSamples() {
+        // Sample at whole seconds, so the longest channel gives exactly 40 samples and the threshold is 10 keyframes
+        val sampleRate = 1f
+        val dense = translationChannel(List(40) { it.toFloat() }) { time -> Vector3f(time, 0f, 0f) }
+        val atThreshold = translationChannel(List(10) { it * 4f }) { time -> Vector3f(0f, time, 0f) }
+        val belowThreshold = rotationChannel(List(9) { it * 4f }) { time -> Quaternionf().rotationY(time * 0.1f) }
+
+        val baked = BakedAnimationTracks.bake(listOf(dense, atThreshold, belowThreshold), sampleRate)
+        assertNotNull(baked[0].bakedTrack)
+        assertNotNull(baked[1].bakedTrack)
+        assertNull(baked[2].bakedTrack)
+
+        // Sparse channels are baked at the common rate, and still give the same values between their keyframes
+        @Suppress("UNCHECKED_CAST")
+        val bakedAtThreshold = baked[1] as KeyFrameAnimationChannel<Vector3f, *>
+        for (step in 0..160) {
+            val time = step / 4f
+            assertVectorEquals(sample(atThreshold, time), sample(bakedAtThreshold, time), "Translation at $time")
+        }
+    }
+}
@@ -13,6 +13,8 @@ import top.fifthlight.blazerod.model.*
 import top.fifthlight.blazerod.model.animation.*
 import top.fifthlight.blazerod.model.bedrock.animation.*
 import top.fifthlight.blazerod.model.bedrock.metadata.ModelMetadata
+import top.fifthlight.blazerod.model.bedrock.molang.compiler.CompiledMolang
+import top.fifthlight.blazerod.model.bedrock.molang.compiler.MolangCompiler
 import top.fifthlight.blazerod.model.bedrock.molang.value.MolangValue
 import top.fifthlight.blazerod.model.bedrock.molang.value.MolangVector3f
 import top.fifthlight.blazerod.model.loader.LoadContext
@@ -858,7 +860,7 @@ internal class BedrockModelJsonLoader(
         JsonToken.NUMBER -> MolangValue.Plain(nextDouble().toFloat())
 
         JsonToken.STRING -> nextMolangString()?.let {
-            MolangValue.Molang(it)
+            MolangValue.Molang(it, MolangCompiler.compile(it))
         } ?: MolangValue.Plain(0f)
 
         else -> throw BedrockModelLoadException("Unexpected token $token for molang value")
@@ -898,7 +900,7 @@ internal class BedrockModelJsonLoader(
 
         JsonToken.STRING -> when (val value = nextMolangValue()) {
             is MolangValue.Plain -> MolangVector3f.Plain(Vector3f(value.value))
-            is MolangValue.Molang -> MolangVector3f.Molang(value.molang)
+            is MolangValue.Molang -> MolangVector3f.Molang(value)
         }
 
         else -> throw BedrockModelLoadException("Unexpect token $token for molang vec3")
@@ -917,7 +919,7 @@ internal class BedrockModelJsonLoader(
     ): ChannelContext {
         val timestamps = FloatArrayList()
         val values = FloatArrayList()
-        var molangs: MutableList<List<Expression>?>? = null
+        var molangs: MutableList<CompiledMolang?>? = null
         var lerpModes: ByteArrayList? = null
         obj { frameTime ->
             when (val token = peek()) {
@@ -926,7 +928,7 @@ internal class BedrockModelJsonLoader(
                     timestamps.add(timestamp)
                     when (val value = nextMolangVec3()) {
                         is MolangVector3f.Molang -> {
-                            val molangs = molangs ?: mutableListOf<List<Expression>?>().also {
+                            val molangs = molangs ?: mutableListOf<CompiledMolang?>().also {
                                 molangs = it
                             }
                             while (molangs.size < (timestamps.size - 1) * 6) {
@@ -937,7 +939,7 @@ internal class BedrockModelJsonLoader(
                                     when (item) {
                                         is MolangValue.Molang -> {
                                             values.add(0f)
-                                            molangs.add(item.molang)
+                                            molangs.add(item.compiled)
                                         }
 
                                         is MolangValue.Plain -> {
@@ -993,7 +995,7 @@ internal class BedrockModelJsonLoader(
 
                     fun add(value: MolangVector3f) = when (value) {
                         is MolangVector3f.Molang -> {
-                            val molangs = molangs ?: mutableListOf<List<Expression>?>().also {
+                            val molangs = molangs ?: mutableListOf<CompiledMolang?>().also {
                                 molangs = it
                             }
                             while (molangs.size < (timestamps.size - 1) * 6) {
@@ -1003,7 +1005,7 @@ internal class BedrockModelJsonLoader(
                                 when (item) {
                                     is MolangValue.Molang -> {
                                         values.add(0f)
-                                        molangs.add(item.molang)
+                                        molangs.add(item.compiled)
                                     }
 
                                     is MolangValue.Plain -> {
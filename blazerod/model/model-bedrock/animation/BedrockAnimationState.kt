@@ -8,6 +8,8 @@ import team.unnamed.mocha.runtime.standard.MochaMath
 import team.unnamed.mocha.runtime.value.MutableObjectBinding
 import top.fifthlight.blazerod.model.animation.AnimationContext
 import top.fifthlight.blazerod.model.animation.AnimationState
+import top.fifthlight.blazerod.model.bedrock.molang.compiler.CompiledMolang
+import top.fifthlight.blazerod.model.bedrock.molang.compiler.MolangInterpreter
 import top.fifthlight.blazerod.model.bedrock.molang.context.QueryContext
 import top.fifthlight.blazerod.model.bedrock.molang.context.YsmContext
 import top.fifthlight.blazerod.model.bedrock.molang.value.MolangValue
@@ -19,7 +21,7 @@ class BedrockAnimationState(
     val loopDelay: MolangValue,
     val loopMode: AnimationLoopMode,
     animTimeUpdate: BedrockAnimation.AnimationTimeUpdate,
-) : AnimationState {
+) : AnimationState, MolangInterpreter {
     companion object {
         @Suppress("UnstableApiUsage")
         private val mathBinding = JavaObjectBinding.of(MochaMath::class.java, null, MochaMath())
@@ -36,7 +38,7 @@ class BedrockAnimationState(
         builder.set("ysm", YsmContext)
     }
 
-    fun evalExpressions(context: AnimationContext, expressions: List<Expression>): Double {
+    override fun evalExpressions(context: AnimationContext, expressions: List<Expression>): Double {
         try {
             engine.setEntity(context)
             return engine.eval(expressions)
@@ -48,8 +50,18 @@ class BedrockAnimationState(
         }
     }
 
+    // Compiled expressions don't go through the engine, so their errors are contained here in the same way
+    fun evalCompiled(context: AnimationContext, compiled: CompiledMolang): Double {
+        try {
+            return compiled.evaluate(context, this)
+        } catch (ex: Throwable) {
+            logger.error("Error evaluating compiled expressions", ex)
+            return 0.0
+        }
+    }
+
     fun evalValue(context: AnimationContext, value: MolangValue) = when (value) {
-        is MolangValue.Molang -> evalExpressions(context, value.molang).toFloat()
+        is MolangValue.Molang -> evalCompiled(context, value.compiled).toFloat()
         is MolangValue.Plain -> value.value
     }
 
@@ -2,14 +2,14 @@ package top.fifthlight.blazerod.model.bedrock.animation
 
 import it.unimi.dsi.fastutil.floats.FloatList
 import org.joml.Vector3f
-import team.unnamed.mocha.parser.ast.Expression
 import top.fifthlight.blazerod.model.animation.AnimationContext
 import top.fifthlight.blazerod.model.animation.AnimationKeyFrameData
 import top.fifthlight.blazerod.model.animation.AnimationState
+import top.fifthlight.blazerod.model.bedrock.molang.compiler.CompiledMolang
 
 class BedrockKeyFrameData(
     private val values: FloatList,
-    private val molangs: List<List<Expression>?>?,
+    private val molangs: List<CompiledMolang?>?,
 ) : AnimationKeyFrameData<Vector3f> {
     override val frames = values.size / 6
 
@@ -27,7 +27,7 @@ class BedrockKeyFrameData(
         val bedrockState = state as BedrockAnimationState
 
         fun eval(offset: Int) = molangs?.getOrNull(baseOffset + offset)
-            ?.let { bedrockState.evalExpressions(context, it).toFloat() }
+            ?.let { bedrockState.evalCompiled(context, it) }?.toFloat()
             ?: values.getFloat(baseOffset + offset)
 
         data[0].set(eval(0), eval(1), eval(2))
@@ -4,7 +4,6 @@ import org.joml.Vector3f
 import org.joml.Vector3fc
 import top.fifthlight.blazerod.model.animation.AnimationChannel
 import top.fifthlight.blazerod.model.animation.SingleFrameAnimationChannel
-import top.fifthlight.blazerod.model.bedrock.molang.value.MolangValue
 import top.fifthlight.blazerod.model.bedrock.molang.value.MolangVector3f
 
 @Suppress("FunctionName")
@@ -19,13 +18,10 @@ fun <T : Any, D> MolangAnimationChannel(
         typeData = typeData,
         setValue = when (molangValue) {
             is MolangVector3f.Molang -> { context, state, result ->
-                fun MolangValue.evaluate() = when (this) {
-                    is MolangValue.Molang -> (state as BedrockAnimationState).evalExpressions(context, molang).toFloat()
-                    is MolangValue.Plain -> value
-                }
-                tempValue.x = molangValue.x.evaluate()
-                tempValue.y = molangValue.y.evaluate()
-                tempValue.z = molangValue.z.evaluate()
+                val bedrockState = state as BedrockAnimationState
+                tempValue.x = bedrockState.evalValue(context, molangValue.x)
+                tempValue.y = bedrockState.evalValue(context, molangValue.y)
+                tempValue.z = bedrockState.evalValue(context, molangValue.z)
                 valueMapper(tempValue, result)
             }
 
@@ -8,6 +8,15 @@ import team.unnamed.mocha.runtime.value.Function
 import top.fifthlight.blazerod.model.animation.AnimationContext
 import top.fifthlight.blazerod.model.util.*
 
+/**
+ * Property which is always a number, so compiled Molang can read it without creating values.
+ */
+internal fun interface NumberProperty<E> : EntityObjectProperty<E> {
+    fun number(entity: E): Double
+
+    override fun value(entity: E): Value = NumberValue.of(number(entity))
+}
+
 internal inline fun <E, T : Value> ObjectValue.property(crossinline getter: (E) -> T) =
     EntityObjectProperty<E> { getter(it) }
 
@@ -27,13 +36,11 @@ internal fun ObjectValue.vector3dProperty(property: AnimationContext.Property<Ve
     override fun constant() = false
 }
 
-internal val ONE_VALUE = NumberValue.of(1.0)
-
 internal inline fun <E> ObjectValue.booleanProperty(crossinline getter: (E) -> Boolean): ObjectProperty =
-    property<E, NumberValue> { entity -> if (getter(entity)) ONE_VALUE else NumberValue.zero() }
+    NumberProperty<E> { entity -> if (getter(entity)) 1.0 else 0.0 }
 
 internal inline fun <E> ObjectValue.numberProperty(crossinline getter: (E) -> Number?): ObjectProperty =
-    property<E, NumberValue> { entity -> getter(entity)?.toDouble()?.let { NumberValue.of(it) } ?: NumberValue.zero() }
+    NumberProperty<E> { entity -> getter(entity)?.toDouble() ?: 0.0 }
 
 internal val EMPTY_STRING = StringValue.of("")
 
@@ -0,0 +1,22 @@
+package top.fifthlight.blazerod.model.bedrock.molang.compiler
+
+import team.unnamed.mocha.parser.ast.Expression
+import top.fifthlight.blazerod.model.animation.AnimationContext
+
+fun interface MolangInterpreter {
+    fun evalExpressions(context: AnimationContext, expressions: List<Expression>): Double
+}
+
+fun interface CompiledMolang {
+    fun evaluate(context: AnimationContext, interpreter: MolangInterpreter): Double
+
+    class Constant(val value: Double) : CompiledMolang {
+        override fun evaluate(context: AnimationContext, interpreter: MolangInterpreter) = value
+    }
+
+    // Expressions which can't be compiled, such as ones using variables, which live in the interpreter's scope
+    class Interpreted(val expressions: List<Expression>) : CompiledMolang {
+        override fun evaluate(context: AnimationContext, interpreter: MolangInterpreter) =
+            interpreter.evalExpressions(context, expressions)
+    }
+}
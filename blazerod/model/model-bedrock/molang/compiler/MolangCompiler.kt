@@ -0,0 +1,169 @@
+package top.fifthlight.blazerod.model.bedrock.molang.compiler
+
+import team.unnamed.mocha.parser.ast.*
+import team.unnamed.mocha.runtime.value.ObjectValue
+import top.fifthlight.blazerod.model.animation.AnimationContext
+import top.fifthlight.blazerod.model.bedrock.molang.binding.NumberProperty
+import top.fifthlight.blazerod.model.bedrock.molang.context.QueryContext
+import top.fifthlight.blazerod.model.bedrock.molang.context.YsmContext
+import kotlin.math.*
+
+/**
+ * Compiles parsed Molang into a tree of [CompiledMolang] at load time, so animations don't interpret the AST every
+ * frame.
+ *
+ * Only side effect free expressions are compiled: numbers, arithmetic, comparisons, logical operators, conditionals,
+ * number properties of `query` and `ysm`, and common `math` functions. Constant sub-expressions are folded. Anything
+ * else falls back to [CompiledMolang.Interpreted] as a whole.
+ */
+object MolangCompiler {
+    private val contexts = mapOf<String, ObjectValue>(
+        "query" to QueryContext,
+        "ysm" to YsmContext,
+    )
+
+    fun compile(expressions: List<Expression>): CompiledMolang =
+        expressions.singleOrNull()?.let { compileExpression(it) } ?: CompiledMolang.Interpreted(expressions)
+
+    private fun Boolean.toDouble() = if (this) 1.0 else 0.0
+
+    private fun Double.toBoolean() = this != 0.0
+
+    private inline fun unary(
+        value: CompiledMolang,
+        crossinline op: (Double) -> Double,
+    ): CompiledMolang = if (value is CompiledMolang.Constant) {
+        CompiledMolang.Constant(op(value.value))
+    } else {
+        CompiledMolang { context, interpreter -> op(value.evaluate(context, interpreter)) }
+    }
+
+    private inline fun binary(
+        left: CompiledMolang,
+        right: CompiledMolang,
+        crossinline op: (Double, Double) -> Double,
+    ): CompiledMolang = if (left is CompiledMolang.Constant && right is CompiledMolang.Constant) {
+        CompiledMolang.Constant(op(left.value, right.value))
+    } else {
+        CompiledMolang { context, interpreter ->
+            op(left.evaluate(context, interpreter), right.evaluate(context, interpreter))
+        }
+    }
+
+    private inline fun ternary(
+        first: CompiledMolang,
+        second: CompiledMolang,
+        third: CompiledMolang,
+        crossinline op: (Double, Double, Double) -> Double,
+    ): CompiledMolang =
+        if (first is CompiledMolang.Constant && second is CompiledMolang.Constant && third is CompiledMolang.Constant) {
+            CompiledMolang.Constant(op(first.value, second.value, third.value))
+        } else {
+            CompiledMolang { context, interpreter ->
+                op(
+                    first.evaluate(context, interpreter),
+                    second.evaluate(context, interpreter),
+                    third.evaluate(context, interpreter),
+                )
+            }
+        }
+
+    private fun compileExpression(expression: Expression): CompiledMolang? = when (expression) {
+        is DoubleExpression -> CompiledMolang.Constant(expression.value())
+        is UnaryExpression -> compileUnary(expression)
+        is BinaryExpression -> compileBinary(expression)
+        is TernaryConditionalExpression -> compileConditional(expression)
+        is AccessExpression -> compileAccess(expression)
+        is CallExpression -> compileCall(expression)
+        else -> null
+    }
+
+    private fun compileUnary(expression: UnaryExpression): CompiledMolang? {
+        val value = compileExpression(expression.expression()) ?: return null
+        return when (expression.op()) {
+            UnaryExpression.Op.ARITHMETICAL_NEGATION -> unary(value) { -it }
+            UnaryExpression.Op.LOGICAL_NEGATION -> unary(value) { (!it.toBoolean()).toDouble() }
+            else -> null
+        }
+    }
+
+    private fun compileBinary(expression: BinaryExpression): CompiledMolang? {
+        val left = compileExpression(expression.left()) ?: return null
+        val right = compileExpression(expression.right()) ?: return null
+        return when (expression.op()) {
+            BinaryExpression.Op.ADD -> binary(left, right) { a, b -> a + b }
+            BinaryExpression.Op.SUB -> binary(left, right) { a, b -> a - b }
+            BinaryExpression.Op.MUL -> binary(left, right) { a, b -> a * b }
+            // Leave division by variable values to the interpreter, which decides what dividing by zero gives
+            BinaryExpression.Op.DIV -> if (right is CompiledMolang.Constant && right.value != 0.0) {
+                binary(left, right) { a, b -> a / b }
+            } else {
+                null
+            }
+
+            BinaryExpression.Op.LT -> binary(left, right) { a, b -> (a < b).toDouble() }
+            BinaryExpression.Op.LTE -> binary(left, right) { a, b -> (a <= b).toDouble() }
+            BinaryExpression.Op.GT -> binary(left, right) { a, b -> (a > b).toDouble() }
+            BinaryExpression.Op.GTE -> binary(left, right) { a, b -> (a >= b).toDouble() }
+            BinaryExpression.Op.EQ -> binary(left, right) { a, b -> (a == b).toDouble() }
+            BinaryExpression.Op.NEQ -> binary(left, right) { a, b -> (a != b).toDouble() }
+            BinaryExpression.Op.AND -> binary(left, right) { a, b -> (a.toBoolean() && b.toBoolean()).toDouble() }
+            BinaryExpression.Op.OR -> binary(left, right) { a, b -> (a.toBoolean() || b.toBoolean()).toDouble() }
+            else -> null
+        }
+    }
+
+    private fun compileConditional(expression: TernaryConditionalExpression): CompiledMolang? {
+        val condition = compileExpression(expression.condition()) ?: return null
+        val trueValue = compileExpression(expression.trueExpression()) ?: return null
+        val falseValue = compileExpression(expression.falseExpression()) ?: return null
+        if (condition is CompiledMolang.Constant) {
+            return if (condition.value.toBoolean()) trueValue else falseValue
+        }
+        return CompiledMolang { context, interpreter ->
+            if (condition.evaluate(context, interpreter).toBoolean()) {
+                trueValue.evaluate(context, interpreter)
+            } else {
+                falseValue.evaluate(context, interpreter)
+            }
+        }
+    }
+
+    private fun compileAccess(expression: AccessExpression): CompiledMolang? {
+        val objectName = (expression.`object`() as? IdentifierExpression)?.name() ?: return null
+        val contextObject = contexts[objectName.lowercase()] ?: return null
+        @Suppress("UNCHECKED_CAST")
+        val property = contextObject.getProperty(expression.property()) as? NumberProperty<AnimationContext>
+            ?: return null
+        return CompiledMolang { context, _ -> property.number(context) }
+    }
+
+    private fun compileCall(expression: CallExpression): CompiledMolang? {
+        val function = expression.function() as? AccessExpression ?: return null
+        val objectName = (function.`object`() as? IdentifierExpression)?.name() ?: return null
+        if (!objectName.equals("math", ignoreCase = true)) {
+            return null
+        }
+        val arguments = expression.arguments().map { compileExpression(it) ?: return null }
+        return when (function.property().lowercase() to arguments.size) {
+            "abs" to 1 -> unary(arguments[0]) { abs(it) }
+            // Molang takes degrees
+            "sin" to 1 -> unary(arguments[0]) { sin(Math.toRadians(it)) }
+            "cos" to 1 -> unary(arguments[0]) { cos(Math.toRadians(it)) }
+            "floor" to 1 -> unary(arguments[0]) { floor(it) }
+            "ceil" to 1 -> unary(arguments[0]) { ceil(it) }
+            "sqrt" to 1 -> unary(arguments[0]) { sqrt(it) }
+            "min" to 2 -> binary(arguments[0], arguments[1]) { a, b -> min(a, b) }
+            "max" to 2 -> binary(arguments[0], arguments[1]) { a, b -> max(a, b) }
+            "clamp" to 3 -> ternary(arguments[0], arguments[1], arguments[2]) { value, low, high ->
+                max(low, min(high, value))
+            }
+
+            "lerp" to 3 -> ternary(arguments[0], arguments[1], arguments[2]) { start, end, delta ->
+                start + (end - start) * delta
+            }
+
+            else -> null
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package top.fifthlight.blazerod.model.bedrock.molang.value
 
 import team.unnamed.mocha.parser.ast.Expression
+import top.fifthlight.blazerod.model.bedrock.molang.compiler.CompiledMolang
 
 sealed interface MolangValue {
     data class Plain(val value: Float) : MolangValue
-    data class Molang(val molang: List<Expression>) : MolangValue
+    data class Molang(val molang: List<Expression>, val compiled: CompiledMolang) : MolangValue
 
     companion object {
         val ZERO = Plain(0f)
@@ -32,6 +32,10 @@ object ModelFileLoaders {
         loaders.filter { ModelFileLoader.Ability.EMBED_THUMBNAIL in it.abilities }
     }
 
+    private val metadataLoaders by lazy {
+        loaders.filter { ModelFileLoader.Ability.METADATA in it.abilities }
+    }
+
     private val markerFileLoaders by lazy {
         buildMap {
             loaders.forEach { loader ->
@@ -115,4 +119,13 @@ object ModelFileLoaders {
         val loader = probeLoader(embedThumbnailLoaders, path)
         return loader?.getThumbnail(path, context)
     }
-}
\ No newline at end of file
+
+    @JvmOverloads
+    fun getMetadata(
+        path: Path,
+        context: LoadContext = LoadContext.File(path.parent ?: error("no base path: $path")),
+    ): MetadataResult? {
+        val loader = probeLoader(metadataLoaders, path)
+        return loader?.getMetadata(path, context)
+    }
+}
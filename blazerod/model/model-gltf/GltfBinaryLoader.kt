@@ -15,11 +15,13 @@ class GltfBinaryLoader : ModelFileLoader {
         "glb" to setOf(
             ModelFileLoader.Ability.MODEL,
             ModelFileLoader.Ability.EMBED_ANIMATION,
+            ModelFileLoader.Ability.METADATA,
         ),
         "vrm" to setOf(
             ModelFileLoader.Ability.MODEL,
             ModelFileLoader.Ability.EMBED_ANIMATION,
             ModelFileLoader.Ability.EMBED_THUMBNAIL,
+            ModelFileLoader.Ability.METADATA,
         ),
     )
 
@@ -48,7 +50,7 @@ class GltfBinaryLoader : ModelFileLoader {
     )
 
     internal data class ParsedGltfBinary(
-        val json: String,
+        val json: ByteBuffer,
         val binaryChunkData: ChunkData? = null,
     )
 
@@ -109,13 +111,11 @@ class GltfBinaryLoader : ModelFileLoader {
 
         val jsonChunk = readChunk(ChunkType.JSON)
             ?: throw GltfLoadException("Missing JSON chunk in binary GLTF")
-        val json = StandardCharsets.UTF_8.decode(
-            channel.readToBuffer(
-                offset = jsonChunk.offset,
-                length = jsonChunk.length,
-                readSizeLimit = 4 * 1024 * 1024,
-            )
-        ).toString()
+        val json = channel.readToBuffer(
+            offset = jsonChunk.offset,
+            length = jsonChunk.length,
+            readSizeLimit = 4 * 1024 * 1024,
+        )
         val binaryChunkData = readChunk(ChunkType.BINARY)
 
         return ParsedGltfBinary(
@@ -129,12 +129,15 @@ class GltfBinaryLoader : ModelFileLoader {
         val binaryBuffer: ByteBuffer?
         FileChannel.open(path, StandardOpenOption.READ).use { channel ->
             val parsedGltf: ParsedGltfBinary = parseGltfBinary(channel)
-            json = parsedGltf.json
+            json = StandardCharsets.UTF_8.decode(parsedGltf.json).toString()
+            // Buffers and buffer views are slices of this mapping, so the binary chunk is never copied, and the
+            // mapping is released when the model referencing it is. The limit only applies when the file can't be
+            // mapped, like inside a zip file.
             binaryBuffer = parsedGltf.binaryChunkData?.let {
                 channel.readToBuffer(
                     offset = it.offset,
                     length = it.length,
-                    readSizeLimit = 256 * 1024 * 1024,
+                    readSizeLimit = Int.MAX_VALUE,
                 )
             }
         }
@@ -149,7 +152,7 @@ class GltfBinaryLoader : ModelFileLoader {
     }
 
     override fun getThumbnail(path: Path, context: LoadContext): ThumbnailResult {
-        val json: String
+        val json: ByteBuffer
         val binaryBuffer: ChunkData
         FileChannel.open(path, StandardOpenOption.READ).use { channel ->
             val parsedGltf: ParsedGltfBinary = parseGltfBinary(channel)
@@ -164,4 +167,17 @@ class GltfBinaryLoader : ModelFileLoader {
         )
         return context.getThumbnail(json, binaryBuffer)
     }
+
+    override fun getMetadata(path: Path, context: LoadContext): MetadataResult {
+        val json = FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+            parseGltfBinary(channel).json
+        }
+        val context = GltfLoader(
+            buffer = null,
+            filePath = path,
+            context = context,
+            param = LoadParam(),
+        )
+        return context.getMetadata(json)
+    }
 }
@@ -0,0 +1,134 @@
+package top.fifthlight.blazerod.model.gltf
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+/**
+ * Reads only some top-level members of a glTF JSON document. Values of other members are skipped by matching
+ * brackets on the UTF-8 bytes, without decoding them, so reading metadata or thumbnail doesn't parse accessors,
+ * meshes, nodes and animations, which are most of the document.
+ */
+internal object GltfHeaderReader {
+    private fun ByteBuffer.skipWhitespace(position: Int): Int {
+        var index = position
+        while (index < limit()) {
+            when (get(index).toInt()) {
+                0x20, 0x09, 0x0A, 0x0D -> index++
+                else -> return index
+            }
+        }
+        return index
+    }
+
+    private fun ByteBuffer.expect(position: Int, char: Char): Int {
+        if (position >= limit() || get(position).toInt() != char.code) {
+            throw GltfLoadException("Bad JSON: want '$char' at $position")
+        }
+        return position + 1
+    }
+
+    // Returns the position after the closing quote
+    private fun ByteBuffer.skipString(position: Int): Int {
+        var index = expect(position, '"')
+        while (index < limit()) {
+            when (get(index).toInt()) {
+                '\\'.code -> index += 2
+                '"'.code -> return index + 1
+                else -> index++
+            }
+        }
+        throw GltfLoadException("Bad JSON: unterminated string at $position")
+    }
+
+    private fun ByteBuffer.skipValue(position: Int): Int {
+        if (position >= limit()) {
+            throw GltfLoadException("Bad JSON: missing value at $position")
+        }
+        when (get(position).toInt()) {
+            '"'.code -> return skipString(position)
+            '{'.code, '['.code -> {
+                var depth = 0
+                var index = position
+                while (index < limit()) {
+                    when (get(index).toInt()) {
+                        '"'.code -> {
+                            index = skipString(index)
+                            continue
+                        }
+
+                        '{'.code, '['.code -> depth++
+                        '}'.code, ']'.code -> if (--depth == 0) {
+                            return index + 1
+                        }
+                    }
+                    index++
+                }
+                throw GltfLoadException("Bad JSON: unterminated value at $position")
+            }
+
+            // Numbers, booleans and null
+            else -> {
+                var index = position
+                while (index < limit()) {
+                    when (get(index).toInt()) {
+                        ','.code, '}'.code, ']'.code, 0x20, 0x09, 0x0A, 0x0D -> break
+                        else -> index++
+                    }
+                }
+                return index
+            }
+        }
+    }
+
+    private fun ByteBuffer.decode(start: Int, end: Int) = StandardCharsets.UTF_8.decode(slice(start, end - start))
+
+    /**
+     * Read [members] of the top-level object in [json], and return a JSON object containing only them. Reading stops
+     * once all members are found.
+     */
+    fun read(json: ByteBuffer, members: Set<String>): String {
+        val result = StringBuilder("{")
+        var found = 0
+        var index = json.skipWhitespace(json.position())
+        // Skip UTF-8 byte order mark
+        if (json.limit() - index >= 3 &&
+            json.get(index) == 0xEF.toByte() &&
+            json.get(index + 1) == 0xBB.toByte() &&
+            json.get(index + 2) == 0xBF.toByte()
+        ) {
+            index = json.skipWhitespace(index + 3)
+        }
+        index = json.skipWhitespace(json.expect(index, '{'))
+        if (index < json.limit() && json.get(index).toInt() == '}'.code) {
+            return "{}"
+        }
+        while (found < members.size) {
+            val keyStart = index
+            val keyEnd = json.skipString(keyStart)
+            index = json.skipWhitespace(json.expect(json.skipWhitespace(keyEnd), ':'))
+            val valueStart = index
+            val valueEnd = json.skipValue(valueStart)
+
+            // glTF member names don't contain escapes, so the raw bytes are the name
+            val key = json.decode(keyStart + 1, keyEnd - 1).toString()
+            if (key in members) {
+                if (found > 0) {
+                    result.append(',')
+                }
+                result.append('"').append(key).append("\":").append(json.decode(valueStart, valueEnd))
+                found++
+            }
+
+            index = json.skipWhitespace(valueEnd)
+            if (index >= json.limit()) {
+                throw GltfLoadException("Bad JSON: unterminated object")
+            }
+            when (json.get(index).toInt()) {
+                ','.code -> index = json.skipWhitespace(index + 1)
+                '}'.code -> break
+                else -> throw GltfLoadException("Bad JSON: want ',' or '}' at $index")
+            }
+        }
+        return result.append('}').toString()
+    }
+}
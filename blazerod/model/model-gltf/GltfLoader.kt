@@ -10,12 +10,14 @@ import top.fifthlight.blazerod.model.gltf.format.*
 import top.fifthlight.blazerod.model.loader.LoadContext
 import top.fifthlight.blazerod.model.loader.LoadParam
 import top.fifthlight.blazerod.model.loader.LoadResult
+import top.fifthlight.blazerod.model.loader.MetadataResult
 import top.fifthlight.blazerod.model.loader.ThumbnailResult
 import top.fifthlight.blazerod.model.util.getSByteNormalized
 import top.fifthlight.blazerod.model.util.getSShortNormalized
 import top.fifthlight.blazerod.model.util.getUByteNormalized
 import top.fifthlight.blazerod.model.util.getUShortNormalized
 import java.net.URI
+import java.nio.BufferOverflowException
 import java.nio.ByteBuffer
 import java.nio.file.Path
 import java.util.*
@@ -32,6 +34,13 @@ internal class GltfLoader(
         private val format = Json {
             ignoreUnknownKeys = true
         }
+
+        // Members read for metadata and thumbnail, other members are skipped without parsing
+        private val METADATA_MEMBERS = setOf("asset", "extensions")
+        private val THUMBNAIL_MEMBERS = METADATA_MEMBERS + setOf("textures", "images", "bufferViews")
+
+        // Multiple of 4, so only the last chunk can have padding
+        private const val BASE64_CHUNK_CHARS = 64 * 1024
     }
 
     private val defaultSampler = Texture.Sampler(
@@ -59,26 +68,69 @@ internal class GltfLoader(
     private lateinit var animations: List<Animation>
     private lateinit var expressions: List<Expression>
 
+    private fun decodeBase64(data: String, startIndex: Int): ByteBuffer {
+        val length = data.length - startIndex
+        val padding = when {
+            data.endsWith("==") -> 2
+            data.endsWith("=") -> 1
+            else -> 0
+        }
+        val decodedLength = (length - padding).toLong() * 3 / 4
+        if (decodedLength > Int.MAX_VALUE) {
+            throw GltfLoadException("Data URI too large: $decodedLength bytes")
+        }
+        val decoder = Base64.getDecoder()
+        val directBuffer = ByteBuffer.allocateDirect(decodedLength.toInt())
+        // Decode in chunks straight into the direct buffer, instead of decoding the whole data into a heap array first
+        val source = ByteArray(minOf(length, BASE64_CHUNK_CHARS))
+        val decoded = ByteArray(source.size / 4 * 3 + 3)
+        var index = startIndex
+        try {
+            while (index < data.length) {
+                val chunkLength = minOf(data.length - index, BASE64_CHUNK_CHARS)
+                for (i in 0 until chunkLength) {
+                    val char = data[index + i]
+                    if (char.code > 0x7F) {
+                        throw GltfLoadException("Bad base64 data URI: non-ASCII character at ${index + i}")
+                    }
+                    source[i] = char.code.toByte()
+                }
+                val chunk = if (chunkLength == source.size) source else source.copyOf(chunkLength)
+                val decodedSize = decoder.decode(chunk, decoded)
+                directBuffer.put(decoded, 0, decodedSize)
+                index += chunkLength
+            }
+        } catch (e: IllegalArgumentException) {
+            throw GltfLoadException("Bad base64 data URI", e)
+        } catch (e: BufferOverflowException) {
+            throw GltfLoadException("Bad base64 data URI", e)
+        }
+        if (directBuffer.hasRemaining()) {
+            throw GltfLoadException("Bad base64 data URI: want $decodedLength bytes, but got ${directBuffer.position()}")
+        }
+        directBuffer.flip()
+        return directBuffer
+    }
+
     private fun parseDataUri(dataUri: URI): ByteBuffer {
         require(dataUri.scheme.equals("data", ignoreCase = true)) { "Bad scheme: ${dataUri.scheme}" }
         val data = dataUri.rawSchemeSpecificPart
         val commaIndex = data.indexOf(',').takeIf { it >= 0 } ?: throw GltfLoadException("No comma in data URI")
 
         val metadataPart = data.substring(0, commaIndex)
-        val byteArray = when (val encoding = metadataPart.substringAfter(";", "").takeIf(String::isNotEmpty)) {
-            null -> data.substring(commaIndex + 1).encodeToByteArray()
-            "base64" -> try {
-                Base64.getDecoder().decode(data.substring(commaIndex + 1))
-            } catch (e: IllegalArgumentException) {
-                throw GltfLoadException("Bad base64 data URI", e)
+        return when (val encoding = metadataPart.substringAfter(";", "").takeIf(String::isNotEmpty)) {
+            null -> {
+                val byteArray = data.substring(commaIndex + 1).encodeToByteArray()
+                val directBuffer = ByteBuffer.allocateDirect(byteArray.size)
+                directBuffer.put(byteArray)
+                directBuffer.flip()
+                directBuffer
             }
 
+            "base64" -> decodeBase64(data, commaIndex + 1)
+
             else -> throw GltfLoadException("Unknown encoding: $encoding")
         }
-        val directBuffer = ByteBuffer.allocateDirect(byteArray.size)
-        directBuffer.put(byteArray)
-        directBuffer.flip()
-        return directBuffer
     }
 
     private fun loadExternalUri(uri: URI): ByteBuffer = if (uri.scheme.equals("data", ignoreCase = true)) {
@@ -438,6 +490,7 @@ internal class GltfLoader(
         animations = gltf.animations?.map { animation ->
             SimpleAnimation(
                 name = animation.name,
+                timeDependentOnly = true,
                 channels = animation.channels.mapNotNull { channel ->
                     val targetNodeId = channel.target.node ?: return@mapNotNull null
                     val targetNode = nodes[targetNodeId]
@@ -644,13 +697,26 @@ internal class GltfLoader(
         )
     }
 
-    fun getThumbnail(json: String, binaryChunkData: GltfBinaryLoader.ChunkData): ThumbnailResult {
+    private fun loadHeader(json: ByteBuffer, members: Set<String>) {
         if (loaded) {
             throw GltfLoadException("Already loaded. Please don't load again.")
         }
         loaded = true
 
-        gltf = format.decodeFromString(json)
+        gltf = format.decodeFromString(GltfHeaderReader.read(json, members))
+    }
+
+    fun getMetadata(json: ByteBuffer): MetadataResult {
+        loadHeader(json, METADATA_MEMBERS)
+
+        // Thumbnail textures are not loaded, use getThumbnail() to read them
+        val metadata = gltf.extensions?.vrmV0?.meta?.toMetadata { null }
+            ?: gltf.extensions?.vrmV1?.meta?.toMetadata { null }
+        return metadata?.let { MetadataResult.Success(it) } ?: MetadataResult.None
+    }
+
+    fun getThumbnail(json: ByteBuffer, binaryChunkData: GltfBinaryLoader.ChunkData): ThumbnailResult {
+        loadHeader(json, THUMBNAIL_MEMBERS)
 
         val textureIndex = run {
             val vrmV0Meta = gltf.extensions?.vrmV0?.meta
@@ -3,9 +3,13 @@ package top.fifthlight.blazerod.model.gltf
 import top.fifthlight.blazerod.model.loader.LoadContext
 import top.fifthlight.blazerod.model.loader.LoadParam
 import top.fifthlight.blazerod.model.loader.LoadResult
+import top.fifthlight.blazerod.model.loader.MetadataResult
 import top.fifthlight.blazerod.model.loader.ModelFileLoader
+import top.fifthlight.blazerod.model.loader.util.readToBuffer
 import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.nio.file.Path
+import java.nio.file.StandardOpenOption
 import kotlin.io.path.readText
 
 class GltfTextLoader : ModelFileLoader {
@@ -13,6 +17,7 @@ class GltfTextLoader : ModelFileLoader {
         "gltf" to setOf(
             ModelFileLoader.Ability.MODEL,
             ModelFileLoader.Ability.EMBED_ANIMATION,
+            ModelFileLoader.Ability.METADATA,
         ),
     )
 
@@ -29,4 +34,16 @@ class GltfTextLoader : ModelFileLoader {
             param = LoadParam(),
         ).load(json)
     }
-}
\ No newline at end of file
+
+    override fun getMetadata(path: Path, context: LoadContext): MetadataResult {
+        val json = FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+            channel.readToBuffer(readSizeLimit = 16 * 1024 * 1024)
+        }
+        return GltfLoader(
+            buffer = null,
+            filePath = path,
+            context = context,
+            param = LoadParam(),
+        ).getMetadata(json)
+    }
+}
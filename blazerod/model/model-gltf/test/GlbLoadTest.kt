@@ -2,6 +2,7 @@ package top.fifthlight.blazerod.model.gltf.test
 
 import top.fifthlight.blazerod.model.gltf.GltfBinaryLoader
 import top.fifthlight.blazerod.model.loader.LoadContext
+import top.fifthlight.blazerod.model.loader.MetadataResult
 import top.fifthlight.blazerod.model.loader.ThumbnailResult
 import java.nio.file.Path
 import kotlin.test.Test
@@ -48,6 +49,20 @@ class GlbLoadTest {
         }
     }
 
+    @Test
+    fun testVrmMetadata() {
+        val file = loadFilePath("alicia_solid")
+        val metadata = GltfBinaryLoader().load(file).metadata
+        measureTime {
+            val result = GltfBinaryLoader().getMetadata(file, LoadContext.Empty)
+            assertIs<MetadataResult.Success>(result)
+            // Thumbnail textures are only loaded with the model
+            assertEquals(metadata?.copy(thumbnail = null), result.metadata)
+        }.let { duration ->
+            println("Alicia metadata time: $duration")
+        }
+    }
+
     @Test
     fun testInterpolation() {
         val file = loadFilePath("interpolation_test")
@@ -42,11 +42,19 @@ interface ModelFileLoader {
         param: LoadParam = LoadParam(),
     ): LoadResult
 
+    /**
+     * Find the embedded thumbnail. Only the parts of the file needed to locate it should be read, as this is called
+     * for every model when scanning.
+     */
     fun getThumbnail(path: Path, context: LoadContext): ThumbnailResult = ThumbnailResult.Unsupported
 
     fun getMarkerFileHashes(marker: Path, directory: Path): Set<Path> =
         setOf(marker)
 
+    /**
+     * Read the metadata without loading the model. Like [getThumbnail], only the header of the file should be read.
+     * Thumbnail textures are not loaded, so [top.fifthlight.blazerod.model.Metadata.thumbnail] is always null.
+     */
     fun getMetadata(path: Path, context: LoadContext): MetadataResult = MetadataResult.Unsupported
 
 }
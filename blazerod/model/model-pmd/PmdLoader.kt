@@ -8,6 +8,7 @@ import top.fifthlight.blazerod.model.*
 import top.fifthlight.blazerod.model.loader.LoadContext
 import top.fifthlight.blazerod.model.loader.LoadParam
 import top.fifthlight.blazerod.model.loader.LoadResult
+import top.fifthlight.blazerod.model.loader.MetadataResult
 import top.fifthlight.blazerod.model.loader.ModelFileLoader
 import top.fifthlight.blazerod.model.loader.util.MMD_SCALE
 import top.fifthlight.blazerod.model.loader.util.readAll
@@ -29,15 +30,15 @@ class PmdLoadException(message: String) : Exception(message)
 // Format from: https://mikumikudance.fandom.com/wiki/MMD:Polygon_Model_Data
 class PmdLoader : ModelFileLoader {
     override val extensions = mapOf(
-        "pmd" to setOf(ModelFileLoader.Ability.MODEL),
+        "pmd" to setOf(ModelFileLoader.Ability.MODEL, ModelFileLoader.Ability.METADATA),
     )
 
     companion object {
         private val PMD_SIGNATURE = byteArrayOf(0x50, 0x6D, 0x64, 0x00, 0x00, 0x80u.toByte(), 0x3F)
         private val SHIFT_JIS = Charset.forName("Shift-JIS")
-        private val decoder = SHIFT_JIS.newDecoder()
-            .onMalformedInput(CodingErrorAction.REPORT)
-            .onUnmappableCharacter(CodingErrorAction.REPORT)
+
+        // Signature, model name and comment
+        private const val HEADER_SIZE = 7 + 20 + 256
 
         //                                             POS NORM UV
         private const val BASE_VERTEX_ATTRIBUTE_SIZE = (3 + 3 + 2) * 4
@@ -46,6 +47,11 @@ class PmdLoader : ModelFileLoader {
         private const val SKIN_VERTEX_ATTRIBUTE_SIZE = (4 + 4) * 4
         private const val VERTEX_ATTRIBUTE_SIZE = BASE_VERTEX_ATTRIBUTE_SIZE + SKIN_VERTEX_ATTRIBUTE_SIZE
         private val logger = LoggerFactory.getLogger(PmdLoader::class.java)
+
+        private fun PmdHeader.toMetadata() = Metadata(
+            title = name,
+            comment = comment,
+        )
     }
 
     override val probeLength = PMD_SIGNATURE.size
@@ -71,6 +77,11 @@ class PmdLoader : ModelFileLoader {
         private val childBoneMap = mutableMapOf<Int, MutableList<Int>>()
         private val rootBones = mutableListOf<Int>()
 
+        // Decoders are not thread safe, and metadata can be read at the same time as loading
+        private val decoder = SHIFT_JIS.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+
         private fun loadString(buffer: ByteBuffer, maxLength: Int): String {
             val bytes = ByteBuffer.allocate(maxLength)
             bytes.put(buffer.slice(buffer.position(), maxLength))
@@ -119,7 +130,7 @@ class PmdLoader : ModelFileLoader {
             }
         }
 
-        private fun loadHeader(buffer: ByteBuffer): PmdHeader {
+        fun loadHeader(buffer: ByteBuffer): PmdHeader {
             loadSignature(buffer)
             return PmdHeader(
                 name = loadString(buffer, 20),
@@ -476,10 +487,7 @@ class PmdLoader : ModelFileLoader {
             val scene = Scene(nodes = rootNodes)
 
             return LoadResult(
-                metadata = Metadata(
-                    title = header.name,
-                    comment = header.comment,
-                ),
+                metadata = header.toMetadata(),
                 model = Model(
                     scenes = listOf(scene),
                     skins = listOf(skin),
@@ -509,4 +517,17 @@ class PmdLoader : ModelFileLoader {
             buffer.order(ByteOrder.LITTLE_ENDIAN)
             context.load(buffer)
         }
+
+    override fun getMetadata(path: Path, context: LoadContext): MetadataResult =
+        FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+            // Model name and comment have fixed size, so only read them instead of the whole file
+            if (channel.size() < HEADER_SIZE) {
+                throw PmdLoadException("Bad file: header is $HEADER_SIZE bytes, but file is ${channel.size()} bytes")
+            }
+            val buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+            channel.readAll(buffer)
+            buffer.flip()
+            val header = Context(context, LoadParam()).loadHeader(buffer)
+            MetadataResult.Success(header.toMetadata())
+        }
 }
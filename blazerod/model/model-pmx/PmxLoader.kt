@@ -9,9 +9,11 @@ import top.fifthlight.blazerod.model.*
 import top.fifthlight.blazerod.model.loader.LoadContext
 import top.fifthlight.blazerod.model.loader.LoadParam
 import top.fifthlight.blazerod.model.loader.LoadResult
+import top.fifthlight.blazerod.model.loader.MetadataResult
 import top.fifthlight.blazerod.model.loader.ModelFileLoader
 import top.fifthlight.blazerod.model.loader.util.MMD_SCALE
 import top.fifthlight.blazerod.model.loader.util.readAll
+import top.fifthlight.blazerod.model.loader.util.readToBuffer
 import top.fifthlight.blazerod.model.pmx.format.*
 import top.fifthlight.blazerod.model.pmx.format.PmxMorphGroup.MorphItem
 import java.nio.ByteBuffer
@@ -29,7 +31,7 @@ class PmxLoadException(message: String) : Exception(message)
 // Format from https://gist.github.com/felixjones/f8a06bd48f9da9a4539f
 class PmxLoader : ModelFileLoader {
     override val extensions = mapOf(
-        "pmx" to setOf(ModelFileLoader.Ability.MODEL),
+        "pmx" to setOf(ModelFileLoader.Ability.MODEL, ModelFileLoader.Ability.METADATA),
     )
 
     companion object {
@@ -43,6 +45,13 @@ class PmxLoader : ModelFileLoader {
         private const val SKIN_VERTEX_ATTRIBUTE_SIZE = (4 + 4) * 4
         private const val VERTEX_ATTRIBUTE_SIZE = BASE_VERTEX_ATTRIBUTE_SIZE + SKIN_VERTEX_ATTRIBUTE_SIZE
         private val logger = LoggerFactory.getLogger(PmxLoader::class.java)
+
+        private fun PmxHeader.toMetadata() = Metadata(
+            title = modelNameLocal,
+            titleUniversal = modelNameUniversal,
+            comment = commentLocal,
+            commentUniversal = commentUniversal,
+        )
     }
 
     override val probeLength = PMX_SIGNATURE.size
@@ -216,7 +225,7 @@ class PmxLoader : ModelFileLoader {
             }
         }
 
-        private fun loadHeader(buffer: ByteBuffer): PmxHeader {
+        fun loadHeader(buffer: ByteBuffer): PmxHeader {
             loadSignature(buffer)
             if (buffer.remaining() < 5) {
                 throw PmxLoadException("Bad PMX signature")
@@ -1146,12 +1155,7 @@ class PmxLoader : ModelFileLoader {
 
             val pmxIndexToExpressions = mutableMapOf<Int, Expression.Target>()
             return LoadResult(
-                metadata = Metadata(
-                    title = header.modelNameLocal,
-                    titleUniversal = header.modelNameUniversal,
-                    comment = header.commentLocal,
-                    commentUniversal = header.commentUniversal,
-                ),
+                metadata = header.toMetadata(),
                 model = Model(
                     scenes = listOf(scene),
                     skins = listOf(skin),
@@ -1215,4 +1219,41 @@ class PmxLoader : ModelFileLoader {
             buffer.order(ByteOrder.LITTLE_ENDIAN)
             context.load(buffer)
         }
-}
\ No newline at end of file
+
+    // Model names and comments are right after the globals, so find where they end and read only up to there
+    private fun FileChannel.readHeader(): ByteBuffer {
+        val fileSize = size()
+        val buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN)
+        fun read(position: Long, length: Int): ByteBuffer {
+            if (position + length > fileSize) {
+                throw PmxLoadException("Bad file: want $length bytes at $position, but file is $fileSize bytes")
+            }
+            buffer.clear().limit(length)
+            position(position)
+            readAll(buffer)
+            return buffer.flip()
+        }
+
+        // Signature and version, followed by globals count
+        val globalsCount = read(PMX_SIGNATURE.size + 4L, 1).get().toUByte().toInt()
+        var headerLength = PMX_SIGNATURE.size + 5L + globalsCount
+        repeat(4) {
+            val stringLength = read(headerLength, 4).getInt()
+            if (stringLength < 0) {
+                throw PmxLoadException("Bad string size, should be at least 0: $stringLength")
+            }
+            headerLength += 4 + stringLength
+        }
+        if (headerLength > fileSize) {
+            throw PmxLoadException("Bad file: header is $headerLength bytes, but file is $fileSize bytes")
+        }
+        return readToBuffer(length = headerLength, readSizeLimit = 1024 * 1024)
+    }
+
+    override fun getMetadata(path: Path, context: LoadContext): MetadataResult =
+        FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+            val buffer = channel.readHeader().order(ByteOrder.LITTLE_ENDIAN)
+            val header = Context(context, LoadParam()).loadHeader(buffer)
+            MetadataResult.Success(header.toMetadata())
+        }
+}
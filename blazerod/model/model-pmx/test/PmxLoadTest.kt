@@ -1,8 +1,12 @@
 package top.fifthlight.blazerod.model.pmx.test
 
+import top.fifthlight.blazerod.model.loader.LoadContext
+import top.fifthlight.blazerod.model.loader.MetadataResult
 import top.fifthlight.blazerod.model.pmx.PmxLoader
 import java.nio.file.Path
 import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertIs
 import kotlin.time.measureTime
 
 class PmxLoadTest {
@@ -30,4 +34,17 @@ class PmxLoadTest {
             println("Alicia blade load time: $duration")
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testMetadata() {
+        val file = loadFilePath("alicia_solid")
+        val metadata = PmxLoader().load(file).metadata
+        measureTime {
+            val result = PmxLoader().getMetadata(file, LoadContext.Empty)
+            assertIs<MetadataResult.Success>(result)
+            assertEquals(metadata, result.metadata)
+        }.let { duration ->
+            println("Alicia solid metadata time: $duration")
+        }
+    }
+}
@@ -449,7 +449,7 @@ class VmdLoader : ModelFileLoader {
         )
     }
 
-    private fun load(buffer: ByteBuffer): LoadResult {
+    private fun load(buffer: ByteBuffer, bakeTracks: Boolean): LoadResult {
         loadHeader(buffer)
         val boneChannels = loadBone(buffer)
         val faceChannels = if (buffer.hasRemaining()) {
@@ -463,10 +463,21 @@ class VmdLoader : ModelFileLoader {
             listOf()
         }
 
+        val channels = boneChannels + faceChannels + cameraChannels
         return LoadResult(
             metadata = null,
             model = null,
-            animations = listOf(SimpleAnimation(channels = boneChannels + faceChannels + cameraChannels)),
+            animations = listOf(
+                SimpleAnimation(
+                    // Sample at VMD frame rate, so baked samples land on keyframes
+                    channels = if (bakeTracks) {
+                        BakedAnimationTracks.bake(channels, 1f / FRAME_TIME_SEC)
+                    } else {
+                        channels
+                    },
+                    timeDependentOnly = true,
+                ),
+            ),
         )
     }
 
@@ -486,6 +497,6 @@ class VmdLoader : ModelFileLoader {
                 buffer
             }
             buffer.order(ByteOrder.LITTLE_ENDIAN)
-            load(buffer)
+            load(buffer, param.loaderParams["bakeTracks"] as? Boolean ?: true)
         }
 }
\ No newline at end of file
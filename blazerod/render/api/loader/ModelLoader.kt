@@ -1,15 +1,30 @@
 package top.fifthlight.blazerod.api.loader
 
+import kotlinx.coroutines.flow.StateFlow
 import top.fifthlight.blazerod.api.resource.RenderScene
 import top.fifthlight.blazerod.model.Model
 import top.fifthlight.mergetools.api.ExpectFactory
+import java.nio.file.Path
 import java.util.concurrent.CompletableFuture
 
 interface ModelLoader {
     suspend fun loadModel(model: Model): RenderScene?
 
+    /**
+     * Load the model, keeping its preprocessed buffers in [cacheFile] so the next load of the same model skips
+     * converting vertices and decoding textures. [cacheKey] must identify the content of the model, like its SHA-256,
+     * as the file is only used when it is written with the same key.
+     */
+    suspend fun loadModel(model: Model, cacheFile: Path, cacheKey: ByteArray): RenderScene?
+
     fun loadModelAsFuture(model: Model): CompletableFuture<out RenderScene?>
 
+    /**
+     * Progress of uploading loaded models to the GPU, which is spread over frames. BlazeRod doesn't display it itself,
+     * it is published for users of this API.
+     */
+    val uploadProgress: StateFlow<UploadProgress>
+
     @ExpectFactory
     interface Factory {
         fun create(): ModelLoader
@@ -0,0 +1,13 @@
+package top.fifthlight.blazerod.api.loader
+
+/**
+ * Progress of GPU uploads of loading models. Uploaded bytes are counted from the last time nothing was waiting, so
+ * both are zero when idle.
+ */
+data class UploadProgress(
+    val pendingBytes: Long,
+    val uploadedBytes: Long,
+) {
+    val fraction: Float
+        get() = if (pendingBytes == 0L) 1f else uploadedBytes.toFloat() / (uploadedBytes + pendingBytes)
+}
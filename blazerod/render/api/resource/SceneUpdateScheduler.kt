@@ -0,0 +1,14 @@
+package top.fifthlight.blazerod.api.resource
+
+import top.fifthlight.mergetools.api.ExpectFactory
+
+interface SceneUpdateScheduler {
+    // Same as calling updateRenderData() on each instance, but spreads the work across worker threads.
+    // Returns after all instances are updated, so render tasks can be created right after it.
+    fun updateRenderData(instances: Collection<ModelInstance>)
+
+    @ExpectFactory
+    interface Factory {
+        fun of(): SceneUpdateScheduler
+    }
+}
@@ -7,6 +7,7 @@ import net.minecraft.client.Minecraft
 import org.slf4j.LoggerFactory
 import top.fifthlight.blazerod.api.event.RenderEvents
 import top.fifthlight.blazerod.debug.*
+import top.fifthlight.blazerod.runtime.load.UploadScheduler
 import top.fifthlight.blazerod.runtime.resource.RenderTexture
 import top.fifthlight.blazerod.runtime.uniform.UniformBuffer
 import top.fifthlight.blazerod.util.dispatchers.BlockableEventLoopDispatcher
@@ -18,6 +19,9 @@ object BlazeRodFabric : ClientModInitializer {
 
     override fun onInitializeClient() {
         BlazeRod.mainDispatcher = BlockableEventLoopDispatcher(Minecraft.getInstance())
+        System.getProperty("blazerod.maxTextureSize")?.toIntOrNull()?.let {
+            BlazeRod.maxTextureSize = it
+        }
 
         if (System.getProperty("blazerod.debug") == "true") {
             BlazeRod.debug = true
@@ -46,6 +50,7 @@ object BlazeRodFabric : ClientModInitializer {
 
         RenderEvents.FLIP_FRAME.register {
             UniformBuffer.clear()
+            UploadScheduler.onFrameFlipped()
         }
 
         ClientLifecycleEvents.CLIENT_STOPPING.register { client ->
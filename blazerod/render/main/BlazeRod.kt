@@ -9,4 +9,7 @@ object BlazeRod {
 
     lateinit var mainDispatcher: CoroutineDispatcher
     var debug = false
+
+    // Textures larger than this are downscaled when loading, 0 for no limit
+    var maxTextureSize = 0
 }
\ No newline at end of file
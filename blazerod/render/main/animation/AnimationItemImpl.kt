@@ -25,6 +25,8 @@ class AnimationItemImpl(
 
     fun createState(context: AnimationContext) = animation.createState(context)
 
+    val poseCache = AnimationPoseCache(this)
+
     companion object {
         @ActualConstructor
         @JvmStatic
@@ -32,7 +34,11 @@ class AnimationItemImpl(
     }
 }
 
-class AnimationItemPendingValuesImpl(animationItem: AnimationItemImpl) : AnimationItemPendingValues {
+class AnimationItemPendingValuesImpl(
+    animationItem: AnimationItemImpl,
+    // Shared values come from the pose cache, they are read by many instances and never recycled
+    val shared: Boolean = false,
+) : AnimationItemPendingValues {
     @Volatile
     var applied: Boolean = false
 
@@ -61,13 +67,21 @@ class AnimationItemInstanceImpl(val animationItem: AnimationItemImpl) : Animatio
         pendingValue: Any,
     ) = apply(instance, pendingValue as P)
 
-    override fun update(context: AnimationContext, state: AnimationState) =
-        (pendingStack.pollLast() ?: AnimationItemPendingValuesImpl(animationItem)).also {
+    private fun evaluate(context: AnimationContext, state: AnimationState, values: AnimationItemPendingValuesImpl) {
+        animationItem.channels.forEachIndexed { index, channel ->
+            channel.updateUnsafe(context, state, values.pendingValues[index])
+        }
+    }
+
+    override fun update(context: AnimationContext, state: AnimationState): AnimationItemPendingValuesImpl {
+        if (AnimationPoseCache.enabled && animationItem.animation.timeDependentOnly) {
+            return animationItem.poseCache.get(context, state, ::evaluate)
+        }
+        return (pendingStack.pollLast() ?: AnimationItemPendingValuesImpl(animationItem)).also {
             it.applied = false
-            animationItem.channels.forEachIndexed { index, channel ->
-                channel.updateUnsafe(context, state, it.pendingValues[index])
-            }
+            evaluate(context, state, it)
         }
+    }
 
     override fun apply(instance: ModelInstance, pendingValues: AnimationItemPendingValues) {
         val instance = instance as ModelInstanceImpl
@@ -76,7 +90,7 @@ class AnimationItemInstanceImpl(val animationItem: AnimationItemImpl) : Animatio
             pendingValues.pendingValues[index].let { pendingValue ->
                 channel.applyUnsafe(instance, pendingValue)
             }
-            if (!pendingValues.applied) {
+            if (!pendingValues.shared && !pendingValues.applied) {
                 pendingValues.applied = true
                 pendingStack.addLast(pendingValues)
             }
@@ -0,0 +1,40 @@
+package top.fifthlight.blazerod.animation
+
+import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap
+import top.fifthlight.blazerod.model.animation.AnimationContext
+import top.fifthlight.blazerod.model.animation.AnimationState
+import kotlin.math.roundToLong
+
+// Channel values of an animation evaluated at quantized times, so instances playing the same animation at the same
+// time share one evaluation. Only entries of the current game tick are kept, as instances are evaluated within a frame.
+// Only used for animations whose channels read nothing but time, see Animation.timeDependentOnly.
+class AnimationPoseCache(private val animationItem: AnimationItemImpl) {
+    companion object {
+        val enabled = System.getProperty("blazerod.pose_cache") != "false"
+
+        // Half a frame at 60 FPS, too small to notice in played animations
+        const val TIME_STEP = 1f / 120f
+    }
+
+    private var gameTick = Long.MIN_VALUE
+    private val entries = Long2ReferenceOpenHashMap<AnimationItemPendingValuesImpl>()
+
+    fun get(
+        context: AnimationContext,
+        state: AnimationState,
+        evaluate: (AnimationContext, AnimationState, AnimationItemPendingValuesImpl) -> Unit,
+    ): AnimationItemPendingValuesImpl = synchronized(this) {
+        val currentTick = context.getGameTick()
+        if (currentTick != gameTick) {
+            // Dropped entries may still wait to be applied, so let them be collected instead of reusing them
+            entries.clear()
+            gameTick = currentTick
+        }
+        val step = (state.getTime() / TIME_STEP).roundToLong()
+        entries.get(step) ?: AnimationItemPendingValuesImpl(animationItem, shared = true).also {
+            // Evaluated with the state of the first instance in this step, which is at most half a step away
+            evaluate(context, state, it)
+            entries.put(step, it)
+        }
+    }
+}
@@ -7,6 +7,8 @@ import org.lwjgl.system.MemoryUtil
 import top.fifthlight.blazerod.model.Texture
 import java.io.IOException
 import java.nio.ByteBuffer
+import kotlin.math.max
+import kotlin.math.min
 
 object NativeImageExt {
     @JvmStatic
@@ -58,4 +60,67 @@ object NativeImageExt {
             )
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Create an image of half the size, averaging each 2x2 block of pixels.
+     */
+    @JvmStatic
+    fun halve(image: NativeImage): NativeImage {
+        val format = image.format()
+        val components = format.components()
+        val srcWidth = image.width
+        val srcHeight = image.height
+        val width = max(1, srcWidth / 2)
+        val height = max(1, srcHeight / 2)
+        val result = NativeImage(format, width, height, false)
+        val src = MemoryUtil.memByteBuffer(image.pointer, srcWidth * srcHeight * components)
+        val dst = MemoryUtil.memByteBuffer(result.pointer, width * height * components)
+        val srcStride = srcWidth * components
+        for (y in 0 until height) {
+            val row0 = min(y * 2, srcHeight - 1) * srcStride
+            val row1 = min(y * 2 + 1, srcHeight - 1) * srcStride
+            for (x in 0 until width) {
+                val column0 = min(x * 2, srcWidth - 1) * components
+                val column1 = min(x * 2 + 1, srcWidth - 1) * components
+                val dstOffset = (y * width + x) * components
+                for (component in 0 until components) {
+                    val sum = (src.get(row0 + column0 + component).toInt() and 0xFF) +
+                            (src.get(row0 + column1 + component).toInt() and 0xFF) +
+                            (src.get(row1 + column0 + component).toInt() and 0xFF) +
+                            (src.get(row1 + column1 + component).toInt() and 0xFF)
+                    dst.put(dstOffset + component, ((sum + 2) shr 2).toByte())
+                }
+            }
+        }
+        return result
+    }
+
+    /**
+     * Halve the image until both sides are not larger than [maxSize], closing the replaced images.
+     */
+    @JvmStatic
+    fun downscale(image: NativeImage, maxSize: Int): NativeImage {
+        if (maxSize <= 0) {
+            return image
+        }
+        var result = image
+        while (result.width > maxSize || result.height > maxSize) {
+            val halved = halve(result)
+            result.close()
+            result = halved
+        }
+        return result
+    }
+
+    /**
+     * Create levels after the image in a mipmap chain, down to 1x1.
+     */
+    @JvmStatic
+    fun generateMipmaps(image: NativeImage): List<NativeImage> = buildList {
+        var level = image
+        while (level.width > 1 || level.height > 1) {
+            level = halve(level)
+            add(level)
+        }
+    }
+}
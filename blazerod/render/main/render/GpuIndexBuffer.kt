@@ -3,11 +3,14 @@ package top.fifthlight.blazerod.render
 import com.mojang.blaze3d.systems.RenderPass
 import com.mojang.blaze3d.vertex.VertexFormat
 import top.fifthlight.blazerod.api.refcount.AbstractRefCount
+import java.nio.ByteBuffer
 
 class GpuIndexBuffer(
     val type: VertexFormat.IndexType,
     val length: Int,
     val buffer: RefCountedGpuBuffer,
+    // Kept for renderers which build index data on CPU, such as batching instances of CPU transform renderer
+    val cpuBuffer: ByteBuffer? = null,
 ) : AbstractRefCount() {
     override val typeId: String
         get() = "index_buffer"
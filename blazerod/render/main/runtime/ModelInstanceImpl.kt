@@ -12,9 +12,8 @@ import top.fifthlight.blazerod.model.TransformId
 import top.fifthlight.blazerod.runtime.data.LocalMatricesBuffer
 import top.fifthlight.blazerod.runtime.data.MorphTargetBuffer
 import top.fifthlight.blazerod.runtime.data.RenderSkinBuffer
-import top.fifthlight.blazerod.runtime.node.RenderNodeImpl
 import top.fifthlight.blazerod.runtime.node.TransformMap
-import top.fifthlight.blazerod.runtime.node.UpdatePhase
+import top.fifthlight.blazerod.runtime.node.component.IkTargetComponent
 import top.fifthlight.blazerod.runtime.node.markNodeTransformDirty
 import top.fifthlight.blazerod.runtime.resource.CameraTransformImpl
 import top.fifthlight.blazerod.util.cowbuffer.CowBuffer
@@ -22,6 +21,7 @@ import top.fifthlight.blazerod.util.cowbuffer.copy
 import top.fifthlight.blazerod.util.iterator.mapToArray
 import top.fifthlight.mergetools.api.ActualConstructor
 import top.fifthlight.mergetools.api.ActualImpl
+import java.util.BitSet
 import java.util.function.Consumer
 
 @ActualImpl(ModelInstance::class)
@@ -41,15 +41,16 @@ class ModelInstanceImpl(
     }
 
     class ModelData(scene: RenderSceneImpl) : AutoCloseable {
-        var undirtyNodeCount = 0
         var undirtyCameraCount = 0
 
         val transformMaps = scene.nodes.mapToArray { node ->
             TransformMap(node.absoluteTransform)
         }
 
-        val transformDirty = Array(scene.nodes.size) { true }
+        // Indexed by position in scene.hierarchy, so a subtree is a contiguous range
+        val transformDirty = BitSet(scene.nodes.size).apply { set(0, scene.nodes.size) }
 
+        // Indexed by position in scene.hierarchy, so parents are visited before children in a linear sweep
         val worldTransforms = Array(scene.nodes.size) { Matrix4f() }
 
         val localMatricesBuffer = run {
@@ -88,6 +89,10 @@ class ModelInstanceImpl(
 
         val ikEnabled = Array(scene.ikTargetData.size) { true }
 
+        val ikChainStates = scene.ikTargetComponents.mapToArray { component ->
+            component.chains.mapToArray { IkTargetComponent.ChainState() }
+        }
+
         override fun close() {
             localMatricesBuffer.decreaseReferenceCount()
             skinBuffers.forEach { it.decreaseReferenceCount() }
@@ -96,12 +101,11 @@ class ModelInstanceImpl(
     }
 
     override fun clearTransform() {
-        modelData.undirtyNodeCount = 0
         modelData.undirtyCameraCount = 0
         for (i in scene.nodes.indices) {
             modelData.transformMaps[i].clearFrom(TransformId.ABSOLUTE.next)
-            modelData.transformDirty[i] = true
         }
+        modelData.transformDirty.set(0, scene.nodes.size)
     }
 
     override fun setTransformMatrix(nodeIndex: Int, transformId: TransformId, matrix: Matrix4f) {
@@ -187,18 +191,19 @@ class ModelInstanceImpl(
     }
 
     internal fun updateNodeTransform(nodeIndex: Int) {
-        val node = scene.nodes[nodeIndex]
-        updateNodeTransform(node)
+        val hierarchy = scene.hierarchy
+        val position = hierarchy.positions[nodeIndex]
+        propagateTransforms(position, hierarchy.subtreeEnds[position])
     }
 
-    internal fun updateNodeTransform(node: RenderNodeImpl) {
-        if (modelData.undirtyNodeCount == scene.nodes.size) {
-            return
-        }
-        node.update(UpdatePhase.GlobalTransformPropagation, node, this)
-        for (child in node.children) {
-            updateNodeTransform(child)
-        }
+    internal fun propagateTransforms(start: Int = 0, end: Int = scene.nodes.size) {
+        scene.hierarchy.propagateTransforms(
+            dirty = modelData.transformDirty,
+            transformMaps = modelData.transformMaps,
+            worldTransforms = modelData.worldTransforms,
+            start = start,
+            end = end,
+        )
     }
 
     override fun createRenderTask(
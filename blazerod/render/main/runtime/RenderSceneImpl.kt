@@ -11,6 +11,7 @@ import top.fifthlight.blazerod.model.Camera
 import top.fifthlight.blazerod.model.HumanoidTag
 import top.fifthlight.blazerod.model.NodeId
 import top.fifthlight.blazerod.model.NodeTransform
+import top.fifthlight.blazerod.runtime.node.NodeHierarchy
 import top.fifthlight.blazerod.runtime.node.RenderNodeImpl
 import top.fifthlight.blazerod.runtime.node.UpdatePhase
 import top.fifthlight.blazerod.runtime.node.component.IkTargetComponent
@@ -40,6 +41,7 @@ class RenderSceneImpl(
     override val nodeIdMap: Map<NodeId, RenderNodeImpl>
     override val nodeNameMap: Map<String, RenderNodeImpl>
     override val humanoidTagMap: Map<HumanoidTag, RenderNodeImpl>
+    val hierarchy: NodeHierarchy
 
     init {
         rootNode.increaseReferenceCount()
@@ -90,6 +92,7 @@ class RenderSceneImpl(
         this.nodeIdMap = nodeIdMap
         this.nodeNameMap = nodeNameMap
         this.humanoidTagMap = humanoidTagMap
+        this.hierarchy = NodeHierarchy(rootNode, this.nodes.size)
     }
 
     private fun executePhase(instance: ModelInstanceImpl, phase: UpdatePhase) {
@@ -102,11 +105,8 @@ class RenderSceneImpl(
         if (debugRenderNodes.isEmpty()) {
             return
         }
-        if (instance.modelData.undirtyNodeCount != nodes.size) {
-            executePhase(instance, UpdatePhase.GlobalTransformPropagation)
-            executePhase(instance, UpdatePhase.IkUpdate)
-            executePhase(instance, UpdatePhase.InfluenceTransformUpdate)
-            executePhase(instance, UpdatePhase.GlobalTransformPropagation)
+        if (isDirty(instance)) {
+            updateTransforms(instance)
             executePhase(instance, UpdatePhase.CameraUpdate)
         }
         UpdatePhase.DebugRender.acquire(viewProjectionMatrix, bufferSource).use {
@@ -114,18 +114,30 @@ class RenderSceneImpl(
         }
     }
 
-    fun updateRenderData(instance: ModelInstanceImpl) {
-        if (instance.modelData.undirtyNodeCount == nodes.size) {
-            return
-        }
-        executePhase(instance, UpdatePhase.GlobalTransformPropagation)
+    fun isDirty(instance: ModelInstanceImpl) = !instance.modelData.transformDirty.isEmpty
+
+    // Only touches data of the instance, so instances sharing this scene can be updated on different threads
+    fun updateTransforms(instance: ModelInstanceImpl) {
+        instance.propagateTransforms()
         executePhase(instance, UpdatePhase.IkUpdate)
         executePhase(instance, UpdatePhase.InfluenceTransformUpdate)
-        executePhase(instance, UpdatePhase.GlobalTransformPropagation)
+        instance.propagateTransforms()
+    }
+
+    // Copy-on-write buffers are single-threaded, so this must run on the render thread after updateTransforms
+    fun updateRenderBuffers(instance: ModelInstanceImpl) {
         executePhase(instance, UpdatePhase.RenderDataUpdate)
         executePhase(instance, UpdatePhase.CameraUpdate)
     }
 
+    fun updateRenderData(instance: ModelInstanceImpl) {
+        if (!isDirty(instance)) {
+            return
+        }
+        updateTransforms(instance)
+        updateRenderBuffers(instance)
+    }
+
     override fun onClosed() {
         rootNode.decreaseReferenceCount()
     }
@@ -0,0 +1,49 @@
+package top.fifthlight.blazerod.runtime
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import top.fifthlight.blazerod.api.resource.ModelInstance
+import top.fifthlight.blazerod.api.resource.SceneUpdateScheduler
+import top.fifthlight.mergetools.api.ActualConstructor
+import top.fifthlight.mergetools.api.ActualImpl
+
+@ActualImpl(SceneUpdateScheduler::class)
+object SceneUpdateSchedulerImpl : SceneUpdateScheduler {
+    @JvmStatic
+    @ActualConstructor
+    fun of(): SceneUpdateScheduler = this
+
+    private val parallelEnabled = System.getProperty("blazerod.parallel_scene_update") != "false"
+
+    override fun updateRenderData(instances: Collection<ModelInstance>) {
+        // distinct() as one instance must never be updated by two workers at once
+        val dirtyInstances = instances.asSequence()
+            .map { it as ModelInstanceImpl }
+            .filter { it.scene.isDirty(it) }
+            .distinct()
+            .toList()
+        if (dirtyInstances.isEmpty()) {
+            return
+        }
+        if (!parallelEnabled || dirtyInstances.size == 1) {
+            for (instance in dirtyInstances) {
+                instance.scene.updateRenderData(instance)
+            }
+            return
+        }
+
+        // Each instance runs its phases in order on one worker, and instances don't share mutable state
+        runBlocking {
+            dirtyInstances.map { instance ->
+                async(Dispatchers.Default) {
+                    instance.scene.updateTransforms(instance)
+                }
+            }.awaitAll()
+        }
+        for (instance in dirtyInstances) {
+            instance.scene.updateRenderBuffers(instance)
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package top.fifthlight.blazerod.runtime.load
+
+import com.mojang.blaze3d.platform.NativeImage
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.launch
+import org.lwjgl.system.MemoryUtil
+import org.slf4j.LoggerFactory
+import top.fifthlight.blazerod.runtime.resource.MorphTargetGroup
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.NoSuchFileException
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.zip.CRC32C
+
+/**
+ * A file holding the expensive part of [PreProcessModelLoadInfo]: vertex buffers in render layout, morph target
+ * buffers and decoded texture pixels. Loading the same model again maps the file, and takes these buffers from it
+ * instead of converting accessors and decoding images.
+ *
+ * The file is only used with the key it was written with, which should identify the content of the model, like its
+ * SHA-256. Entries are matched in the order the preprocessor creates them, and checked against the model and a CRC32C
+ * of their data before being used, so a stale or truncated entry is loaded again instead of rendering garbage.
+ */
+class ModelLoadCache(
+    private val path: Path,
+    private val key: ByteArray,
+) {
+    companion object {
+        private val LOGGER = LoggerFactory.getLogger(ModelLoadCache::class.java)
+
+        // "BRMC" in little endian
+        private const val MAGIC = 0x434D5242
+        private const val VERSION = 3
+        private const val BYTE_ORDER_MARK = 0x01020304
+        private const val DATA_ALIGNMENT = 16L
+
+        // present, source length, source checksum, max size, components, width, height, data checksum, data offset,
+        // data length
+        private const val TEXTURE_RECORD_SIZE = 48
+
+        // data offset, data length, data checksum, padding
+        private const val VERTEX_RECORD_SIZE = 24
+
+        // item stride, targets count, data offset, data length, data checksum, padding
+        private const val TARGET_RECORD_SIZE = 32
+
+        // group count, groups checksum, groups offset, then position, color and texture coordinate targets
+        private const val MORPH_RECORD_SIZE = 16 + 3 * TARGET_RECORD_SIZE
+
+        // position, color, texture coordinate, weight
+        private const val GROUP_SIZE = 16
+
+        fun checksum(buffer: ByteBuffer) = CRC32C().apply { update(buffer.duplicate()) }.value.toInt()
+
+        private fun align(offset: Long) = (offset + DATA_ALIGNMENT - 1) and (DATA_ALIGNMENT - 1).inv()
+
+        private fun copyPixels(image: NativeImage): ByteBuffer {
+            val length = image.width * image.height * image.format().components()
+            val pixels = ByteBuffer.allocateDirect(length)
+            MemoryUtil.memCopy(image.pointer, MemoryUtil.memAddress(pixels), length.toLong())
+            return pixels
+        }
+    }
+
+    // What is written for a texture, taken before the upload closes the image
+    private class TextureEntry(
+        val sourceLength: Int,
+        val sourceChecksum: Int,
+        val maxSize: Int,
+        val components: Int,
+        val width: Int,
+        val height: Int,
+        val pixels: ByteBuffer,
+    )
+
+    /**
+     * Entries of a cache file. Requests not matching the entry in the file return null, and clear [complete].
+     */
+    class Reader internal constructor(
+        private val buffer: ByteBuffer,
+        private val textureCount: Int,
+        private val vertexCount: Int,
+        private val morphCount: Int,
+        private val texturesStart: Int,
+    ) {
+        private val verticesStart = texturesStart + textureCount * TEXTURE_RECORD_SIZE
+        private val morphsStart = verticesStart + vertexCount * VERTEX_RECORD_SIZE
+
+        // Pixels of textures read from the file, so they can be written again without copying the image
+        private val texturePixels = arrayOfNulls<ByteBuffer>(textureCount)
+
+        /** Whether all requested entries were found in the file */
+        @Volatile
+        var complete = true
+            private set
+
+        private fun <T> miss(): T? {
+            complete = false
+            return null
+        }
+
+        private fun data(offset: Long, length: Long, dataChecksum: Int): ByteBuffer? {
+            if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+                return null
+            }
+            val data = buffer.slice(offset.toInt(), length.toInt()).order(ByteOrder.nativeOrder())
+            return data.takeIf { checksum(it) == dataChecksum }
+        }
+
+        fun texture(index: Int, sourceLength: Int, sourceChecksum: Int, maxSize: Int): NativeImage? {
+            if (index >= textureCount) {
+                return miss()
+            }
+            val record = texturesStart + index * TEXTURE_RECORD_SIZE
+            if (buffer.getInt(record) == 0 ||
+                buffer.getInt(record + 4) != sourceLength ||
+                buffer.getInt(record + 8) != sourceChecksum ||
+                buffer.getInt(record + 12) != maxSize
+            ) {
+                return miss()
+            }
+            val format = when (buffer.getInt(record + 16)) {
+                3 -> NativeImage.Format.RGB
+                4 -> NativeImage.Format.RGBA
+                else -> return miss()
+            }
+            val width = buffer.getInt(record + 20)
+            val height = buffer.getInt(record + 24)
+            val length = buffer.getLong(record + 40)
+            if (width <= 0 || height <= 0 || length != width.toLong() * height * format.components()) {
+                return miss()
+            }
+            val pixels = data(buffer.getLong(record + 32), length, buffer.getInt(record + 28)) ?: return miss()
+            val image = NativeImage(format, width, height, false)
+            MemoryUtil.memCopy(MemoryUtil.memAddress(pixels), image.pointer, length)
+            texturePixels[index] = pixels
+            return image
+        }
+
+        /**
+         * Pixels of the texture at [index] in the file, if [texture] returned it.
+         */
+        internal fun texturePixels(index: Int) = texturePixels.getOrNull(index)
+
+        fun vertexBuffer(index: Int, length: Int): ByteBuffer? {
+            if (index >= vertexCount) {
+                return miss()
+            }
+            val record = verticesStart + index * VERTEX_RECORD_SIZE
+            if (buffer.getLong(record + 8) != length.toLong()) {
+                return miss()
+            }
+            return data(buffer.getLong(record), length.toLong(), buffer.getInt(record + 16)) ?: miss()
+        }
+
+        fun morphTargets(
+            index: Int,
+            groupCount: Int,
+            itemCount: Int,
+        ): MorphTargetsLoadData<MorphTargetsLoadData.TargetInfo>? {
+            if (index >= morphCount) {
+                return miss()
+            }
+            val record = morphsStart + index * MORPH_RECORD_SIZE
+            if (buffer.getInt(record) != groupCount) {
+                return miss()
+            }
+            val groups = data(
+                offset = buffer.getLong(record + 8),
+                length = groupCount.toLong() * GROUP_SIZE,
+                dataChecksum = buffer.getInt(record + 4),
+            ) ?: return miss()
+
+            fun target(targetIndex: Int): MorphTargetsLoadData.TargetInfo? {
+                val targetRecord = record + 16 + targetIndex * TARGET_RECORD_SIZE
+                val itemStride = buffer.getInt(targetRecord)
+                val targetsCount = buffer.getInt(targetRecord + 4)
+                val length = buffer.getLong(targetRecord + 16)
+                if (length != itemStride.toLong() * itemCount * targetsCount) {
+                    return null
+                }
+                val data = data(buffer.getLong(targetRecord + 8), length, buffer.getInt(targetRecord + 24))
+                return MorphTargetsLoadData.TargetInfo(
+                    buffer = data ?: return null,
+                    itemStride = itemStride,
+                    targetsCount = targetsCount,
+                )
+            }
+
+            return MorphTargetsLoadData(
+                targetGroups = List(groupCount) {
+                    val offset = it * GROUP_SIZE
+                    MorphTargetGroup(
+                        position = groups.getInt(offset).takeIf { index -> index >= 0 },
+                        color = groups.getInt(offset + 4).takeIf { index -> index >= 0 },
+                        texCoord = groups.getInt(offset + 8).takeIf { index -> index >= 0 },
+                        weight = groups.getFloat(offset + 12),
+                    )
+                },
+                position = target(0) ?: return miss(),
+                color = target(1) ?: return miss(),
+                texCoord = target(2) ?: return miss(),
+            )
+        }
+    }
+
+    /**
+     * Map the cache file, returning null if it doesn't exist or is not written for this key.
+     */
+    fun open(): Reader? {
+        val buffer = try {
+            FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+                val size = channel.size()
+                if (size > Int.MAX_VALUE) {
+                    return null
+                }
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+            }
+        } catch (_: NoSuchFileException) {
+            return null
+        } catch (ex: IOException) {
+            LOGGER.warn("Failed to open model cache {}", path, ex)
+            return null
+        }
+        buffer.order(ByteOrder.nativeOrder())
+        return try {
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != BYTE_ORDER_MARK) {
+                return null
+            }
+            val keyLength = buffer.getInt(12)
+            if (keyLength != key.size || buffer.slice(16, keyLength).mismatch(ByteBuffer.wrap(key)) != -1) {
+                return null
+            }
+            val countsStart = 16 + keyLength
+            val textureCount = buffer.getInt(countsStart)
+            val vertexCount = buffer.getInt(countsStart + 4)
+            val morphCount = buffer.getInt(countsStart + 8)
+            val texturesStart = countsStart + 12
+            val recordsEnd = texturesStart.toLong() + textureCount.toLong() * TEXTURE_RECORD_SIZE +
+                    vertexCount.toLong() * VERTEX_RECORD_SIZE + morphCount.toLong() * MORPH_RECORD_SIZE
+            if (textureCount < 0 || vertexCount < 0 || morphCount < 0 || recordsEnd > buffer.capacity()) {
+                return null
+            }
+            Reader(buffer, textureCount, vertexCount, morphCount, texturesStart)
+        } catch (_: IndexOutOfBoundsException) {
+            null
+        }
+    }
+
+    /**
+     * Write buffers of [info] into the cache file in [scope], unless all of them were read from it by [reader].
+     * Failures are logged, as the model can still be loaded without the cache.
+     *
+     * Returns [info] with textures completing once their pixels are kept for the file, so pass that to the upload,
+     * which closes the images. Each buffer can be uploaded as soon as it is ready, while the file is written in
+     * parallel.
+     * Vertex and morph target buffers are not copied, as the upload keeps them.
+     */
+    fun store(scope: CoroutineScope, info: PreProcessModelLoadInfo, reader: Reader?): PreProcessModelLoadInfo {
+        val textureEntries = arrayOfNulls<TextureEntry>(info.textures.size)
+        val textures = info.textures.mapIndexed { index, deferred ->
+            scope.async(Dispatchers.Default) {
+                deferred.await()?.also { texture ->
+                    val image = texture.nativeImage
+                    textureEntries[index] = TextureEntry(
+                        sourceLength = texture.sourceLength,
+                        sourceChecksum = texture.sourceChecksum,
+                        maxSize = texture.maxSize,
+                        components = image.format().components(),
+                        width = image.width,
+                        height = image.height,
+                        pixels = reader?.texturePixels(index) ?: copyPixels(image),
+                    )
+                }
+            }
+        }
+        scope.launch(Dispatchers.IO) {
+            textures.awaitAll()
+            val vertexBuffers = info.vertexBuffers.awaitAll()
+            val morphTargets = info.morphTargetInfos.awaitAll()
+            if (reader?.complete == true) {
+                return@launch
+            }
+            try {
+                write(textureEntries.asList(), vertexBuffers, morphTargets)
+            } catch (ex: IOException) {
+                LOGGER.warn("Failed to write model cache {}", path, ex)
+            }
+        }
+        return info.copy(textures = textures)
+    }
+
+    private fun write(
+        textures: List<TextureEntry?>,
+        vertexBuffers: List<ByteBuffer>,
+        morphTargets: List<MorphTargetsLoadData<MorphTargetsLoadData.TargetInfo>>,
+    ) {
+        val header = ByteBuffer.allocate(
+            28 + key.size + textures.size * TEXTURE_RECORD_SIZE +
+                    vertexBuffers.size * VERTEX_RECORD_SIZE + morphTargets.size * MORPH_RECORD_SIZE
+        ).order(ByteOrder.nativeOrder())
+        val data = mutableListOf<Pair<Long, ByteBuffer>>()
+        var dataEnd = align(header.capacity().toLong())
+        fun putData(buffer: ByteBuffer): Long {
+            val offset = dataEnd
+            data.add(Pair(offset, buffer))
+            dataEnd = align(offset + buffer.remaining())
+            return offset
+        }
+
+        header.putInt(MAGIC).putInt(VERSION).putInt(BYTE_ORDER_MARK).putInt(key.size).put(key)
+        header.putInt(textures.size).putInt(vertexBuffers.size).putInt(morphTargets.size)
+        for (texture in textures) {
+            if (texture == null) {
+                header.position(header.position() + TEXTURE_RECORD_SIZE)
+                continue
+            }
+            val pixels = texture.pixels
+            header.putInt(1).putInt(texture.sourceLength).putInt(texture.sourceChecksum).putInt(texture.maxSize)
+            header.putInt(texture.components).putInt(texture.width).putInt(texture.height).putInt(checksum(pixels))
+            header.putLong(putData(pixels)).putLong(pixels.remaining().toLong())
+        }
+        for (buffer in vertexBuffers) {
+            val content = buffer.slice(0, buffer.capacity())
+            header.putLong(putData(content)).putLong(content.remaining().toLong())
+            header.putInt(checksum(content)).putInt(0)
+        }
+        for (morphTarget in morphTargets) {
+            val groups = ByteBuffer.allocate(morphTarget.targetGroups.size * GROUP_SIZE).order(ByteOrder.nativeOrder())
+            for (group in morphTarget.targetGroups) {
+                groups.putInt(group.position ?: -1)
+                groups.putInt(group.color ?: -1)
+                groups.putInt(group.texCoord ?: -1)
+                groups.putFloat(group.weight)
+            }
+            groups.flip()
+            header.putInt(morphTarget.targetGroups.size).putInt(checksum(groups)).putLong(putData(groups))
+            for (target in listOf(morphTarget.position, morphTarget.color, morphTarget.texCoord)) {
+                val content = target.buffer.slice(0, target.buffer.capacity())
+                header.putInt(target.itemStride).putInt(target.targetsCount)
+                header.putLong(putData(content)).putLong(content.remaining().toLong())
+                header.putInt(checksum(content)).putInt(0)
+            }
+        }
+        if (dataEnd > Int.MAX_VALUE) {
+            LOGGER.info("Model is too large to be cached, skipping")
+            return
+        }
+        header.flip()
+
+        Files.createDirectories(path.toAbsolutePath().parent)
+        val tempPath = path.resolveSibling("${path.fileName}.tmp")
+        FileChannel.open(
+            tempPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE,
+        ).use { channel ->
+            fun writeFully(buffer: ByteBuffer, offset: Long) {
+                var position = offset
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position)
+                }
+            }
+            writeFully(header, 0)
+            for ((offset, buffer) in data) {
+                writeFully(buffer.duplicate(), offset)
+            }
+        }
+        try {
+            try {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } catch (_: AtomicMoveNotSupportedException) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING)
+            }
+        } catch (ex: IOException) {
+            // The old file can't be replaced while it is mapped on some platforms
+            Files.deleteIfExists(tempPath)
+            throw ex
+        }
+    }
+}
@@ -20,8 +20,20 @@ import top.fifthlight.blazerod.model.IkTarget as ModelIkTarget
 data class TextureLoadData(
     val name: String?,
     val nativeImage: NativeImage,
+    // Levels after the full image, empty if the sampler doesn't use mipmaps
+    val mipmaps: List<NativeImage>,
     val sampler: Texture.Sampler,
-) : AutoCloseable by nativeImage
+    // Size limit the image was downscaled to, 0 for no limit
+    val maxSize: Int,
+    // Length and checksum of the encoded image, to check whether decoded pixels in a cache are still valid
+    val sourceLength: Int,
+    val sourceChecksum: Int,
+) : AutoCloseable {
+    override fun close() {
+        nativeImage.close()
+        mipmaps.forEach { it.close() }
+    }
+}
 
 data class IndexBufferLoadData(
     val type: VertexFormat.IndexType,
@@ -4,12 +4,14 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.future.future
+import kotlinx.coroutines.withContext
 import top.fifthlight.blazerod.api.loader.ModelLoader
 import top.fifthlight.blazerod.model.Model
 import top.fifthlight.blazerod.runtime.RenderSceneImpl
 import top.fifthlight.blazerod.util.dispatchers.BlazeRod
 import top.fifthlight.mergetools.api.ActualConstructor
 import top.fifthlight.mergetools.api.ActualImpl
+import java.nio.file.Path
 
 @ActualImpl(ModelLoader::class)
 object ModelLoaderImpl : ModelLoader {
@@ -17,16 +19,24 @@ object ModelLoaderImpl : ModelLoader {
     @ActualConstructor("create")
     fun create() = this
 
-    override suspend fun loadModel(model: Model): RenderSceneImpl? = coroutineScope {
+    override suspend fun loadModel(model: Model) = loadModel(model, cache = null)
+
+    override suspend fun loadModel(model: Model, cacheFile: Path, cacheKey: ByteArray) =
+        loadModel(model, ModelLoadCache(cacheFile, cacheKey))
+
+    private suspend fun loadModel(model: Model, cache: ModelLoadCache?): RenderSceneImpl? = coroutineScope {
+        val cacheReader = cache?.let { withContext(Dispatchers.IO) { it.open() } }
         val loadInfo = ModelPreprocessor.preprocess(
             scope = this,
             loadDispatcher = Dispatchers.Default,
             model = model,
+            cache = cacheReader,
         ) ?: return@coroutineScope null
+        val uploadInfo = cache?.store(this, loadInfo, cacheReader) ?: loadInfo
         val gpuInfo = ModelResourceLoader.load(
             scope = this,
             gpuDispatcher = Dispatchers.BlazeRod.Main,
-            info = loadInfo,
+            info = uploadInfo,
         )
         SceneReconstructor.reconstruct(info = gpuInfo)
     }
@@ -34,4 +44,7 @@ object ModelLoaderImpl : ModelLoader {
     override fun loadModelAsFuture(model: Model) = CoroutineScope(Dispatchers.Default).future {
         loadModel(model)
     }
+
+    override val uploadProgress
+        get() = UploadScheduler.progress
 }
\ No newline at end of file
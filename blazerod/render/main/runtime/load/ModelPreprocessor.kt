@@ -4,6 +4,7 @@ import com.mojang.blaze3d.textures.TextureFormat
 import com.mojang.blaze3d.vertex.VertexFormat
 import com.mojang.blaze3d.vertex.VertexFormatElement
 import kotlinx.coroutines.*
+import top.fifthlight.blazerod.BlazeRod
 import top.fifthlight.blazerod.api.resource.RenderExpression
 import top.fifthlight.blazerod.api.resource.RenderExpressionGroup
 import top.fifthlight.blazerod.extension.NativeImageExt
@@ -13,6 +14,7 @@ import top.fifthlight.blazerod.render.BlazerodVertexFormatElements
 import top.fifthlight.blazerod.render.BlazerodVertexFormats
 import top.fifthlight.blazerod.runtime.resource.MorphTargetGroup
 import top.fifthlight.blazerod.runtime.resource.RenderSkin
+import top.fifthlight.blazerod.util.blaze3d.useMipmap
 import java.nio.ByteBuffer
 import java.nio.ByteOrder
 
@@ -20,6 +22,7 @@ class ModelPreprocessor private constructor(
     private val coroutineScope: CoroutineScope,
     private val dispatcher: CoroutineDispatcher,
     private val model: Model,
+    private val cache: ModelLoadCache.Reader?,
 ) {
     data class SkinJointData(
         val skinIndex: Int,
@@ -54,26 +57,39 @@ class ModelPreprocessor private constructor(
         this.skinJointsData = skinJointMap
     }
 
+    // Decoded images are large, so only decode a few at a time, leaving other threads to vertex conversion
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private val textureDispatcher = dispatcher.limitedParallelism(TEXTURE_DECODE_PARALLELISM)
     private val textures = mutableListOf<Deferred<TextureLoadData?>>()
     private val textureIndexMap = mutableMapOf<Texture, Int>()
     private fun loadTextureIndex(texture: Texture) = textureIndexMap.getOrPut(texture) {
-        val texture = coroutineScope.async(dispatcher) {
+        val index = textures.size
+        val texture = coroutineScope.async(textureDispatcher) {
             val bufferView = texture.bufferView ?: return@async null
             val byteBuffer = bufferView.buffer.buffer
                 .slice(bufferView.byteOffset, bufferView.byteLength)
                 .order(ByteOrder.nativeOrder())
-            val nativeImage = try {
-                NativeImageExt.read(null, texture.type, byteBuffer)
+            val maxSize = BlazeRod.maxTextureSize
+            val sourceChecksum = ModelLoadCache.checksum(byteBuffer)
+            val nativeImage = cache?.texture(index, byteBuffer.remaining(), sourceChecksum, maxSize) ?: try {
+                NativeImageExt.downscale(NativeImageExt.read(null, texture.type, byteBuffer), maxSize)
             } catch (ex: Exception) {
                 throw Exception("Failed to load texture ${texture.name ?: "unnamed"}", ex)
             }
             TextureLoadData(
                 name = texture.name,
                 nativeImage = nativeImage,
+                mipmaps = if (texture.sampler.minFilter.useMipmap) {
+                    NativeImageExt.generateMipmaps(nativeImage)
+                } else {
+                    listOf()
+                },
                 sampler = texture.sampler,
+                maxSize = maxSize,
+                sourceLength = byteBuffer.remaining(),
+                sourceChecksum = sourceChecksum,
             )
         }
-        val index = textures.size
         textures.add(texture)
         index
     }
@@ -195,9 +211,11 @@ class ModelPreprocessor private constructor(
         attributes: Primitive.Attributes.Primitive,
     ): Int {
         val vertexFormat = material?.getVertexFormat(skinned) ?: BlazerodVertexFormats.POSITION_COLOR_TEXTURE
+        val index = vertexBuffers.size
         val vertexBuffer = coroutineScope.async(dispatcher) {
             val vertices = attributes.position.count
             val stride = vertexFormat.vertexSize
+            cache?.vertexBuffer(index, stride * vertices)?.let { return@async it }
             val buffer = ByteBuffer.allocateDirect(stride * vertices).order(ByteOrder.nativeOrder())
 
             for (element in vertexFormat.elements) {
@@ -294,7 +312,6 @@ class ModelPreprocessor private constructor(
 
             buffer
         }
-        val index = vertexBuffers.size
         vertexBuffers.add(vertexBuffer)
         return index
     }
@@ -336,7 +353,9 @@ class ModelPreprocessor private constructor(
     ): Int {
         val verticesCount = primitive.attributes.position.count
         val targets = primitive.targets
+        val targetIndex = morphTargetInfos.size
         val loadedTargets = coroutineScope.async(dispatcher) {
+            cache?.morphTargets(targetIndex, targets.size, verticesCount)?.let { return@async it }
             val positionTarget = BuildingTarget.of(
                 textureFormat = TextureFormatExt.RGBA32F,
                 itemCount = verticesCount,
@@ -411,7 +430,6 @@ class ModelPreprocessor private constructor(
                 texCoord = texCoordTarget.toLoadData(),
             )
         }
-        val targetIndex = morphTargetInfos.size
         morphTargetInfos.add(loadedTargets)
         return targetIndex
     }
@@ -653,10 +671,13 @@ class ModelPreprocessor private constructor(
     }
 
     companion object {
+        private val TEXTURE_DECODE_PARALLELISM = (Runtime.getRuntime().availableProcessors() / 2).coerceAtLeast(1)
+
         fun preprocess(
             scope: CoroutineScope,
             loadDispatcher: CoroutineDispatcher,
             model: Model,
-        ) = ModelPreprocessor(scope, loadDispatcher, model).loadModel()
+            cache: ModelLoadCache.Reader? = null,
+        ) = ModelPreprocessor(scope, loadDispatcher, model, cache).loadModel()
     }
 }
\ No newline at end of file
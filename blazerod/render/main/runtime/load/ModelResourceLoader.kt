@@ -20,6 +20,7 @@ import top.fifthlight.blazerod.util.blaze3d.blaze3d
 import top.fifthlight.blazerod.util.blaze3d.useMipmap
 import java.nio.ByteBuffer
 import java.nio.ByteOrder
+import java.util.function.Supplier
 import kotlin.coroutines.CoroutineContext
 import kotlin.coroutines.EmptyCoroutineContext
 
@@ -40,6 +41,60 @@ object ModelResourceLoader {
         it.map(scope, context, block)
     }
 
+    // Large images and buffers are written in strips, so they can be spread over frames
+    private const val UPLOAD_STRIP_BYTES = 4 * 1024 * 1024
+
+    // Morph target buffers can't be empty, so primitives without targets share this as their data
+    private val EMPTY_TARGET_DATA = ByteBuffer.allocateDirect(16).order(ByteOrder.nativeOrder())
+
+    private suspend fun writeTextureLevel(texture: GpuTexture, image: NativeImage, level: Int) {
+        val rowBytes = image.width * image.format().components()
+        val stripRows = (UPLOAD_STRIP_BYTES / rowBytes).coerceAtLeast(1)
+        var y = 0
+        while (y < image.height) {
+            val rows = minOf(stripRows, image.height - y)
+            UploadScheduler.upload(UploadScheduler.Priority.TEXTURE, rows.toLong() * rowBytes) {
+                RenderSystem.getDevice().createCommandEncoder()
+                    .writeToTexture(texture, image, level, 0, 0, y, image.width, rows, 0, y)
+            }
+            y += rows
+        }
+    }
+
+    private suspend fun uploadBuffer(
+        priority: UploadScheduler.Priority,
+        labelGetter: Supplier<String>?,
+        usage: Int,
+        extraUsage: Int,
+        data: ByteBuffer,
+    ): GpuBuffer {
+        val device = RenderSystem.getDevice()
+        val size = data.remaining()
+        if (size <= UPLOAD_STRIP_BYTES) {
+            return UploadScheduler.upload(priority, size.toLong()) {
+                device.createBuffer(labelGetter, usage, extraUsage, data)
+            }
+        }
+        val buffer = device.createBuffer(labelGetter, usage or GpuBuffer.USAGE_COPY_DST, extraUsage, size)
+        try {
+            var offset = 0
+            while (offset < size) {
+                val length = minOf(UPLOAD_STRIP_BYTES, size - offset)
+                UploadScheduler.upload(priority, length.toLong()) {
+                    device.createCommandEncoder().writeToBuffer(
+                        buffer.slice(offset, length),
+                        data.slice(data.position() + offset, length),
+                    )
+                }
+                offset += length
+            }
+        } catch (ex: Throwable) {
+            buffer.close()
+            throw ex
+        }
+        return buffer
+    }
+
     fun load(
         scope: CoroutineScope,
         gpuDispatcher: CoroutineDispatcher,
@@ -48,55 +103,62 @@ object ModelResourceLoader {
         val textures = info.textures.mapAll(scope, gpuDispatcher) { info ->
             val info = info ?: return@mapAll null
             info.use { info ->
-                val (name, nativeImage, sampler) = info
+                val nativeImage = info.nativeImage
+                val sampler = info.sampler
                 val device = RenderSystem.getDevice()
-                val commandEncoder = device.createCommandEncoder()
-                val gpuTexture: GpuTexture
-                nativeImage.use {
-                    gpuTexture = device.createTexture(
-                        name,
-                        GpuTexture.USAGE_TEXTURE_BINDING or GpuTexture.USAGE_COPY_DST,
-                        when (it.format()) {
-                            NativeImage.Format.RGBA -> TextureFormat.RGBA8
-                            NativeImage.Format.RGB -> TextureFormatExt.RGB8
-                            else -> throw IllegalArgumentException("Unknown texture format: ${it.format()}")
-                        },
-                        nativeImage.width,
-                        nativeImage.height,
-                        1,
-                        1
-                    )
+                val gpuTexture = device.createTexture(
+                    info.name,
+                    GpuTexture.USAGE_TEXTURE_BINDING or GpuTexture.USAGE_COPY_DST,
+                    when (nativeImage.format()) {
+                        NativeImage.Format.RGBA -> TextureFormat.RGBA8
+                        NativeImage.Format.RGB -> TextureFormatExt.RGB8
+                        else -> throw IllegalArgumentException("Unknown texture format: ${nativeImage.format()}")
+                    },
+                    nativeImage.width,
+                    nativeImage.height,
+                    1,
+                    1 + info.mipmaps.size,
+                )
+                try {
                     gpuTexture.setAddressMode(sampler.wrapS.blaze3d, sampler.wrapT.blaze3d)
                     gpuTexture.setTextureFilter(
                         sampler.minFilter.blaze3d,
                         sampler.magFilter.blaze3d,
                         sampler.minFilter.useMipmap,
                     )
-                    commandEncoder.writeToTexture(gpuTexture, nativeImage)
+                    writeTextureLevel(gpuTexture, nativeImage, 0)
+                    for ((index, mipmap) in info.mipmaps.withIndex()) {
+                        writeTextureLevel(gpuTexture, mipmap, index + 1)
+                    }
+                } catch (ex: Throwable) {
+                    gpuTexture.close()
+                    throw ex
                 }
                 val textureView = device.createTextureView(gpuTexture)
                 RenderTexture(gpuTexture, textureView)
             }
         }
         val indexBuffers = info.indexBuffers.mapAll(scope, gpuDispatcher) { indexData ->
-            val device = RenderSystem.getDevice()
             val buffer = RefCountedGpuBuffer(
-                device.createBuffer(
-                    null,
-                    GpuBuffer.USAGE_INDEX,
-                    indexData.buffer,
+                uploadBuffer(
+                    priority = UploadScheduler.Priority.GEOMETRY,
+                    labelGetter = null,
+                    usage = GpuBuffer.USAGE_INDEX,
+                    extraUsage = 0,
+                    data = indexData.buffer,
                 )
             )
             GpuIndexBuffer(
                 type = indexData.type,
                 length = indexData.length,
                 buffer = buffer,
+                cpuBuffer = indexData.buffer,
             )
         }
         val vertexBuffers = info.vertexBuffers.mapAll(scope, gpuDispatcher) {
-            val device = RenderSystem.getDevice()
             val buffer = RefCountedGpuBuffer(
-                device.createBuffer(
+                uploadBuffer(
+                    priority = UploadScheduler.Priority.GEOMETRY,
                     labelGetter = null,
                     usage = GpuBuffer.USAGE_VERTEX,
                     extraUsage = GpuBufferExt.EXTRA_USAGE_STORAGE_BUFFER,
@@ -109,15 +171,14 @@ object ModelResourceLoader {
             )
         }
         val morphTargetInfos = info.morphTargetInfos.mapAll(scope, gpuDispatcher) {
-            fun loadTarget(target: MorphTargetsLoadData.TargetInfo): RenderPrimitive.Target {
+            suspend fun loadTarget(target: MorphTargetsLoadData.TargetInfo): RenderPrimitive.Target {
                 val targetBuffer = if (target.targetsCount == 0) {
-                    // No targets, but we can't create an empty buffer, so let's create a dummy one
-                    ByteBuffer.allocateDirect(target.itemStride).order(ByteOrder.nativeOrder())
+                    EMPTY_TARGET_DATA.slice(0, target.itemStride).order(ByteOrder.nativeOrder())
                 } else {
                     target.buffer
                 }
-                val device = RenderSystem.getDevice()
-                val gpuBuffer = device.createBuffer(
+                val gpuBuffer = uploadBuffer(
+                    priority = UploadScheduler.Priority.MORPH_TARGET,
                     labelGetter = { "Morph target buffer" },
                     usage = GpuBuffer.USAGE_UNIFORM_TEXEL_BUFFER,
                     extraUsage = GpuBufferExt.EXTRA_USAGE_STORAGE_BUFFER,
@@ -0,0 +1,130 @@
+package top.fifthlight.blazerod.runtime.load
+
+import kotlinx.coroutines.CancellableContinuation
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.suspendCancellableCoroutine
+import top.fifthlight.blazerod.api.loader.UploadProgress
+import kotlin.coroutines.resume
+
+/**
+ * Spreads GPU uploads of loaders over frames. Each frame uploads until a byte or time budget is used, taking waiting
+ * uploads in order of priority, so a model appearing doesn't stall a frame, and its geometry is ready before its
+ * textures and morph targets. Waiting uploads are resumed one at a time, each after the previous one is done, so the
+ * time they take is counted before the next one starts. Only used on the render thread.
+ */
+object UploadScheduler {
+    const val BYTES_PER_FRAME = 16L * 1024 * 1024
+    const val NANOS_PER_FRAME = 4L * 1000 * 1000
+
+    enum class Priority {
+        GEOMETRY,
+        TEXTURE,
+        MORPH_TARGET,
+    }
+
+    private class Waiter(
+        val bytes: Long,
+        val continuation: CancellableContinuation<Unit>,
+    )
+
+    private val waiters = Array(Priority.entries.size) { ArrayDeque<Waiter>() }
+    private var frameBytes = 0L
+    private var frameNanos = 0L
+    private var pendingBytes = 0L
+    private var uploadedBytes = 0L
+
+    // Resumed waiter whose upload has not finished yet
+    private var resumedWaiter: Waiter? = null
+
+    private val _progress = MutableStateFlow(UploadProgress(pendingBytes = 0, uploadedBytes = 0))
+    val progress = _progress.asStateFlow()
+
+    // Each frame allows at least one upload, even one larger than the budget
+    private fun fits(bytes: Long) =
+        frameBytes == 0L || (frameBytes + bytes <= BYTES_PER_FRAME && frameNanos < NANOS_PER_FRAME)
+
+    private fun hasWaiters(priority: Priority): Boolean {
+        for (index in 0..priority.ordinal) {
+            if (waiters[index].isNotEmpty()) {
+                return true
+            }
+        }
+        return false
+    }
+
+    private fun updateProgress() {
+        if (pendingBytes == 0L) {
+            // Count the next batch from zero
+            uploadedBytes = 0
+        }
+        _progress.value = UploadProgress(pendingBytes = pendingBytes, uploadedBytes = uploadedBytes)
+    }
+
+    // Resuming dispatches the waiter instead of running it here, so only resume one, and resume the next one after its
+    // upload is done, when the time it took is known
+    private fun resumeNext() {
+        while (resumedWaiter == null) {
+            val queue = waiters.firstOrNull { it.isNotEmpty() } ?: return
+            val waiter = queue.first()
+            if (waiter.continuation.isActive && !fits(waiter.bytes)) {
+                return
+            }
+            queue.removeFirst()
+            pendingBytes -= waiter.bytes
+            if (waiter.continuation.isActive) {
+                frameBytes += waiter.bytes
+                resumedWaiter = waiter
+                waiter.continuation.resume(Unit)
+            }
+        }
+    }
+
+    fun onFrameFlipped() {
+        frameBytes = 0
+        frameNanos = 0
+        resumeNext()
+        updateProgress()
+    }
+
+    /**
+     * Run [block] uploading [bytes] to the GPU, after uploads of higher priority, in the first frame with enough budget
+     * left.
+     */
+    suspend fun <T> upload(priority: Priority, bytes: Long, block: () -> T): T {
+        var waiter: Waiter? = null
+        if (resumedWaiter != null || hasWaiters(priority) || !fits(bytes)) {
+            pendingBytes += bytes
+            updateProgress()
+            try {
+                suspendCancellableCoroutine { continuation ->
+                    val newWaiter = Waiter(bytes, continuation)
+                    waiters[priority.ordinal].addLast(newWaiter)
+                    waiter = newWaiter
+                }
+            } catch (ex: CancellationException) {
+                // Cancelled after being resumed, let the next one go
+                if (resumedWaiter === waiter) {
+                    resumedWaiter = null
+                    resumeNext()
+                }
+                throw ex
+            }
+        } else {
+            frameBytes += bytes
+        }
+        val startTime = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            frameNanos += System.nanoTime() - startTime
+            uploadedBytes += bytes
+            if (resumedWaiter === waiter) {
+                resumedWaiter = null
+            }
+            resumeNext()
+            updateProgress()
+        }
+    }
+}
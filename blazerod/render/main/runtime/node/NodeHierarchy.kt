@@ -0,0 +1,86 @@
+package top.fifthlight.blazerod.runtime.node
+
+import org.joml.Matrix4f
+import top.fifthlight.blazerod.model.TransformId
+import java.util.BitSet
+
+// Nodes of a scene flattened in depth-first order. Parents always come before their children, so transform propagation
+// is a single linear sweep, and every subtree is a contiguous range of positions.
+class NodeHierarchy(rootNode: RenderNodeImpl, val size: Int) {
+    // Node index at each position
+    val nodeIndices = IntArray(size)
+
+    // Position of the parent at each position, -1 for the root
+    val parentPositions = IntArray(size)
+
+    // Exclusive end of the subtree starting at each position
+    val subtreeEnds = IntArray(size)
+
+    // Position of each node index
+    val positions = IntArray(size)
+
+    init {
+        val nodeStack = ArrayDeque<RenderNodeImpl>()
+        val parentStack = ArrayDeque<Int>()
+        nodeStack.addLast(rootNode)
+        parentStack.addLast(-1)
+        var position = 0
+        while (nodeStack.isNotEmpty()) {
+            val node = nodeStack.removeLast()
+            val parentPosition = parentStack.removeLast()
+            require(position < size) { "Node count exceeds $size" }
+            nodeIndices[position] = node.nodeIndex
+            parentPositions[position] = parentPosition
+            positions[node.nodeIndex] = position
+            // Push in reverse, so children keep their order
+            for (i in node.children.indices.reversed()) {
+                nodeStack.addLast(node.children[i])
+                parentStack.addLast(position)
+            }
+            position++
+        }
+        require(position == size) { "Expected $size nodes, but only $position reachable from root" }
+
+        for (i in 0 until size) {
+            subtreeEnds[i] = i + 1
+        }
+        for (i in size - 1 downTo 1) {
+            val parentPosition = parentPositions[i]
+            if (subtreeEnds[i] > subtreeEnds[parentPosition]) {
+                subtreeEnds[parentPosition] = subtreeEnds[i]
+            }
+        }
+    }
+
+    // Mark the node and its whole subtree dirty in flags indexed by position. Children of a dirty node are always
+    // dirty, so an already dirty node is skipped.
+    fun markDirty(dirty: BitSet, nodeIndex: Int) {
+        val position = positions[nodeIndex]
+        if (!dirty[position]) {
+            dirty.set(position, subtreeEnds[position])
+        }
+    }
+
+    // Recompute world transforms of dirty positions in [start, end) in one sweep, then clear their dirty flags
+    fun propagateTransforms(
+        dirty: BitSet,
+        transformMaps: Array<TransformMap>,
+        worldTransforms: Array<Matrix4f>,
+        start: Int = 0,
+        end: Int = size,
+    ) {
+        var position = dirty.nextSetBit(start)
+        while (position in 0 until end) {
+            val localTransform = transformMaps[nodeIndices[position]].getSum(TransformId.LAST)
+            val worldTransform = worldTransforms[position]
+            val parentPosition = parentPositions[position]
+            if (parentPosition >= 0) {
+                worldTransforms[parentPosition].mul(localTransform, worldTransform)
+            } else {
+                worldTransform.set(localTransform)
+            }
+            position = dirty.nextSetBit(position + 1)
+        }
+        dirty.clear(start, end)
+    }
+}
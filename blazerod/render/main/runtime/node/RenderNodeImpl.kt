@@ -5,7 +5,6 @@ import top.fifthlight.blazerod.api.resource.RenderNode
 import top.fifthlight.blazerod.model.HumanoidTag
 import top.fifthlight.blazerod.model.NodeId
 import top.fifthlight.blazerod.model.NodeTransformView
-import top.fifthlight.blazerod.model.TransformId
 import top.fifthlight.blazerod.runtime.ModelInstanceImpl
 import top.fifthlight.blazerod.runtime.node.component.RenderNodeComponent
 
@@ -68,24 +67,8 @@ class RenderNodeImpl(
     fun hasComponentOfType(type: RenderNodeComponent.Type<*>): Boolean = type in typeComponents.keys
 
     fun update(phase: UpdatePhase, node: RenderNodeImpl, instance: ModelInstanceImpl) {
-        if (phase == UpdatePhase.GlobalTransformPropagation) {
-            if (!instance.isNodeTransformDirty(node)) {
-                return
-            }
-            val parent = parent
-            val transformMap = instance.getTransformMap(this)
-            val worldTransform = instance.getWorldTransform(this)
-            val currentLocalTransform = transformMap.getSum(TransformId.LAST)
-            if (parent != null) {
-                instance.getWorldTransform(parent).mul(currentLocalTransform, worldTransform)
-            } else {
-                worldTransform.set(currentLocalTransform)
-            }
-            instance.cleanNodeTransformDirty(node)
-        } else {
-            phaseComponents[phase.type]?.forEach { component ->
-                component.update(phase, node, instance)
-            }
+        phaseComponents[phase.type]?.forEach { component ->
+            component.update(phase, node, instance)
         }
     }
 }
@@ -102,24 +85,10 @@ fun RenderNodeImpl.forEach(action: (RenderNodeImpl) -> Unit) {
 }
 
 fun ModelInstanceImpl.getTransformMap(node: RenderNodeImpl) = modelData.transformMaps[node.nodeIndex]
-fun ModelInstanceImpl.getWorldTransform(node: RenderNodeImpl) = modelData.worldTransforms[node.nodeIndex]
+fun ModelInstanceImpl.getWorldTransform(node: RenderNodeImpl) = getWorldTransform(node.nodeIndex)
 fun ModelInstanceImpl.getTransformMap(nodeIndex: Int) = modelData.transformMaps[nodeIndex]
-fun ModelInstanceImpl.getWorldTransform(nodeIndex: Int) = modelData.worldTransforms[nodeIndex]
-private fun ModelInstanceImpl.isNodeTransformDirty(node: RenderNodeImpl) = modelData.transformDirty[node.nodeIndex]
-fun ModelInstanceImpl.markNodeTransformDirty(node: RenderNodeImpl) {
-    if (!modelData.transformDirty[node.nodeIndex]) {
-        modelData.transformDirty[node.nodeIndex] = true
-        modelData.undirtyNodeCount--
-        for (children in node.children) {
-            markNodeTransformDirty(children)
-        }
-    }
-}
-
-private fun ModelInstanceImpl.cleanNodeTransformDirty(node: RenderNodeImpl) {
-    if (modelData.transformDirty[node.nodeIndex]) {
-        modelData.transformDirty[node.nodeIndex] = false
-        modelData.undirtyNodeCount++
-    }
-}
+fun ModelInstanceImpl.getWorldTransform(nodeIndex: Int) =
+    modelData.worldTransforms[scene.hierarchy.positions[nodeIndex]]
 
+fun ModelInstanceImpl.markNodeTransformDirty(node: RenderNodeImpl) =
+    scene.hierarchy.markDirty(modelData.transformDirty, node.nodeIndex)
@@ -7,28 +7,43 @@ import org.joml.Vector3f
 import top.fifthlight.blazerod.model.NodeTransform
 import top.fifthlight.blazerod.model.NodeTransformView
 import top.fifthlight.blazerod.model.TransformId
-import java.util.*
 
 class TransformMap(first: NodeTransformView?) {
-    val transforms = EnumMap<TransformId, NodeTransform>(TransformId::class.java).also {
-        it[TransformId.FIRST] = first?.clone() ?: NodeTransform.Decomposed()
+    private companion object {
+        val transformIds = TransformId.entries
+        val transformCount = transformIds.size
     }
 
-    private val dirtyTransforms = EnumSet.noneOf(TransformId::class.java)
+    // 以 TransformId.ordinal 为下标，避免 EnumMap 的装箱与哈希查找
+    private val transforms = arrayOfNulls<NodeTransform>(transformCount).also {
+        it[TransformId.FIRST.ordinal] = first?.clone() ?: NodeTransform.Decomposed()
+    }
+
+    // 第 n 位表示 ordinal 为 n 的 TransformId 是否为脏
+    private var dirtyTransforms = 0
 
-    private val intermediateMatrices = EnumMap<TransformId, Matrix4f>(TransformId::class.java).also {
-        it[TransformId.FIRST] = Matrix4f().also { matrix -> first?.applyOnMatrix(matrix) }
+    // 中间矩阵只在对应变换存在时有效，清除变换时保留矩阵对象以便复用
+    private val intermediateMatrices = arrayOfNulls<Matrix4f>(transformCount).also {
+        it[TransformId.FIRST.ordinal] = Matrix4f().also { matrix -> first?.applyOnMatrix(matrix) }
     }
 
+    private fun isDirty(id: TransformId) = dirtyTransforms and (1 shl id.ordinal) != 0
+
+    private fun clearDirty(id: TransformId) {
+        dirtyTransforms = dirtyTransforms and (1 shl id.ordinal).inv()
+    }
+
+    private fun intermediateMatrix(id: TransformId) = intermediateMatrices[id.ordinal]
+        ?: Matrix4f().also { intermediateMatrices[id.ordinal] = it }
+
     /**
      * 清除从指定 TransformId 开始的所有变换。
      *
      * @param id 起始 TransformId。
      */
     fun clearFrom(id: TransformId = TransformId.FIRST) {
-        transforms.keys.removeIf { it >= id }
-        intermediateMatrices.keys.removeIf { it >= id }
-        dirtyTransforms.removeIf { it >= id }
+        transforms.fill(null, id.ordinal, transformCount)
+        dirtyTransforms = dirtyTransforms and ((1 shl id.ordinal) - 1)
     }
 
     private val tempAccumulatedMatrix = Matrix4f()
@@ -38,22 +53,22 @@ class TransformMap(first: NodeTransformView?) {
         // 如果所有祖先都脏，则从 TransformId.FIRST 开始。
         var startId = targetId
 
-        while (startId in dirtyTransforms || startId !in transforms.keys) {
+        while (isDirty(startId) || transforms[startId.ordinal] == null) {
             if (startId == TransformId.FIRST) {
                 break // 如果 FIRST 都脏，就从 FIRST 自身开始
             }
 
-            startId = TransformId.entries[startId.ordinal - 1]
+            startId = transformIds[startId.ordinal - 1]
         }
 
         // 获取起始点的基础矩阵。
         // 如果 startId 是 FIRST 且它自身被标记为脏（意味着需要重新初始化其矩阵），则从原始 transform 获取。
         // 否则，从 intermediateMatrices 获取。
-        val baseMatrix = if (startId == TransformId.FIRST && dirtyTransforms.contains(TransformId.FIRST)) {
-            transforms[TransformId.FIRST]!!.setOnMatrix(tempAccumulatedMatrix)
+        val baseMatrix = if (startId == TransformId.FIRST && isDirty(TransformId.FIRST)) {
+            transforms[TransformId.FIRST.ordinal]!!.setOnMatrix(tempAccumulatedMatrix)
         } else {
             tempAccumulatedMatrix.set(
-                intermediateMatrices[startId]
+                intermediateMatrices[startId.ordinal]?.takeIf { transforms[startId.ordinal] != null }
                     ?: error("Base matrix for $startId not found and not dirty, this should not happen.")
             )
         }
@@ -63,12 +78,12 @@ class TransformMap(first: NodeTransformView?) {
 
         // 2. 从起始点的下一个 ID 开始，逐步累积到 targetId。
         for (i in (startId.ordinal + 1)..targetId.ordinal) {
-            val currentId = TransformId.entries[i]
+            val currentId = transformIds[i]
 
             // 获取当前 ID 对应的 NodeTransform。
-            val transform = transforms[currentId]
+            val transform = transforms[i]
             if (transform == null) {
-                dirtyTransforms.remove(currentId)
+                clearDirty(currentId)
                 continue // 跳过当前迭代
             }
 
@@ -76,9 +91,9 @@ class TransformMap(first: NodeTransformView?) {
             transform.applyOnMatrix(tempAccumulatedMatrix)
 
             // 存储当前的累积矩阵到缓存中，并标记为不脏。
-            val matrixToUpdate = intermediateMatrices.getOrPut(currentId) { Matrix4f() }
+            val matrixToUpdate = intermediateMatrix(currentId)
             matrixToUpdate.set(tempAccumulatedMatrix)
-            dirtyTransforms.remove(currentId)
+            clearDirty(currentId)
         }
 
         return tempAccumulatedMatrix
@@ -93,7 +108,7 @@ class TransformMap(first: NodeTransformView?) {
      * @param id 要获取的 TransformId。
      * @return 对应的 NodeTransformView，如果不存在则为 null。
      */
-    fun get(id: TransformId): NodeTransformView? = transforms[id]
+    fun get(id: TransformId): NodeTransformView? = transforms[id.ordinal]
 
     /**
      * 获取指定 TransformId 的累积变换矩阵。
@@ -108,12 +123,14 @@ class TransformMap(first: NodeTransformView?) {
     fun getSum(id: TransformId): Matrix4fc {
         // 如果 id 本身是脏的，或者它的任何一个祖先是脏的，我们需要重新计算。
         // calculateIntermediateMatrices 会自动处理从最近非脏点开始计算的逻辑。
-        return if (dirtyTransforms.contains(id)) {
+        return if (isDirty(id)) {
             calculateIntermediateMatrices(id)
         } else {
             // 如果 id 不脏，直接返回上一级存在的缓存矩阵。
-            for (i in (0..id.ordinal).reversed()) {
-                intermediateMatrices[TransformId.entries[i]]?.let { return it }
+            for (i in id.ordinal downTo 0) {
+                if (transforms[i] != null) {
+                    return intermediateMatrices[i]!!
+                }
             }
             throw IllegalStateException("There must be a intermediate matrix for ${TransformId.entries.first()}.")
         }
@@ -121,9 +138,7 @@ class TransformMap(first: NodeTransformView?) {
 
     // 标记当前 ID 及其后续所有 ID 为脏
     private fun markDirty(id: TransformId) {
-        for (i in id.ordinal until TransformId.entries.size) {
-            dirtyTransforms.add(TransformId.entries[i])
-        }
+        dirtyTransforms = dirtyTransforms or ((1 shl transformCount) - (1 shl id.ordinal))
     }
 
     /**
@@ -135,7 +150,7 @@ class TransformMap(first: NodeTransformView?) {
      * @param updater 用于修改 NodeTransform.Decomposed 的 lambda 表达式。
      */
     fun updateDecomposed(id: TransformId, updater: NodeTransform.Decomposed.() -> Unit) {
-        val currentTransform = transforms[id]
+        val currentTransform = transforms[id.ordinal]
         val targetTransform: NodeTransform.Decomposed
 
         if (currentTransform is NodeTransform.Decomposed) {
@@ -148,8 +163,8 @@ class TransformMap(first: NodeTransformView?) {
                 rotation = currentTransform?.getRotation(Quaternionf()) ?: Quaternionf(),
                 scale = currentTransform?.getScale(Vector3f()) ?: Vector3f(1f)
             )
-            transforms[id] = targetTransform // 替换旧的变换
-            intermediateMatrices.getOrPut(id, ::Matrix4f)
+            transforms[id.ordinal] = targetTransform // 替换旧的变换
+            intermediateMatrix(id)
         }
 
         updater(targetTransform) // 应用更新
@@ -165,7 +180,7 @@ class TransformMap(first: NodeTransformView?) {
      * @param updater 用于修改 NodeTransform.Matrix 的 lambda 表达式。
      */
     fun updateMatrix(id: TransformId, updater: NodeTransform.Matrix.() -> Unit) {
-        val currentTransform = transforms[id]
+        val currentTransform = transforms[id.ordinal]
         val targetTransform: NodeTransform.Matrix
 
         if (currentTransform is NodeTransform.Matrix) {
@@ -176,8 +191,8 @@ class TransformMap(first: NodeTransformView?) {
             targetTransform = NodeTransform.Matrix().apply {
                 currentTransform?.setOnMatrix(matrix)
             }
-            transforms[id] = targetTransform // 替换旧的变换
-            intermediateMatrices.getOrPut(id, ::Matrix4f)
+            transforms[id.ordinal] = targetTransform // 替换旧的变换
+            intermediateMatrix(id)
         }
 
         updater(targetTransform) // 应用更新
@@ -193,19 +208,19 @@ class TransformMap(first: NodeTransformView?) {
      * @param updater 用于修改 NodeTransform.Bedrock 的 lambda 表达式。
      */
     fun updateBedrock(id: TransformId, updater: NodeTransform.Bedrock.() -> Unit) {
-        val current = transforms[id]
+        val current = transforms[id.ordinal]
         val bedrock = if (current is NodeTransform.Bedrock) {
             current
         } else {
-            val pivot = (transforms[TransformId.ABSOLUTE] as? NodeTransform.Bedrock)?.pivot
+            val pivot = (transforms[TransformId.ABSOLUTE.ordinal] as? NodeTransform.Bedrock)?.pivot
             val new = NodeTransform.Bedrock(
                 pivot = pivot ?: Vector3f(),
                 rotation = Quaternionf(),
                 translation = Vector3f(),
                 scale = Vector3f(1f),
             )
-            transforms[id] = new
-            intermediateMatrices.getOrPut(id) { Matrix4f() }
+            transforms[id.ordinal] = new
+            intermediateMatrix(id)
             new
         }
         updater(bedrock)
@@ -221,7 +236,7 @@ class TransformMap(first: NodeTransformView?) {
      * @param matrix 要设置的 Matrix4fc 实例。
      */
     fun setMatrix(id: TransformId, matrix: Matrix4fc) {
-        val currentTransform = transforms[id]
+        val currentTransform = transforms[id.ordinal]
         val targetTransform: NodeTransform.Matrix
 
         if (currentTransform is NodeTransform.Matrix) {
@@ -229,8 +244,8 @@ class TransformMap(first: NodeTransformView?) {
         } else {
             // 如果不存在或类型不匹配，则创建新的 Matrix 变换。
             targetTransform = NodeTransform.Matrix()
-            transforms[id] = targetTransform // 替换旧的变换
-            intermediateMatrices.getOrPut(id, ::Matrix4f)
+            transforms[id.ordinal] = targetTransform // 替换旧的变换
+            intermediateMatrix(id)
         }
 
         targetTransform.matrix.set(matrix) // 设置新的矩阵
@@ -246,15 +261,15 @@ class TransformMap(first: NodeTransformView?) {
      * @param decomposed 要设置的 NodeTransform.Decomposed 实例。
      */
     fun setMatrix(id: TransformId, decomposed: NodeTransformView.Decomposed) {
-        val currentTransform = transforms[id]
+        val currentTransform = transforms[id.ordinal]
         val targetTransform: NodeTransform.Decomposed
 
         if (currentTransform is NodeTransform.Decomposed) {
             targetTransform = currentTransform
         } else {
             targetTransform = NodeTransform.Decomposed()
-            transforms[id] = targetTransform // 替换旧的变换
-            intermediateMatrices.getOrPut(id, ::Matrix4f)
+            transforms[id.ordinal] = targetTransform // 替换旧的变换
+            intermediateMatrix(id)
         }
 
         targetTransform.set(decomposed)
@@ -11,7 +11,6 @@ sealed class UpdatePhase(
     enum class Type {
         IK_UPDATE,
         INFLUENCE_TRANSFORM_UPDATE,
-        GLOBAL_TRANSFORM_PROPAGATION,
         RENDER_DATA_UPDATE,
         CAMERA_UPDATE,
         DEBUG_RENDER,
@@ -21,8 +20,6 @@ sealed class UpdatePhase(
 
     data object InfluenceTransformUpdate : UpdatePhase(Type.INFLUENCE_TRANSFORM_UPDATE)
 
-    data object GlobalTransformPropagation : UpdatePhase(Type.GLOBAL_TRANSFORM_PROPAGATION)
-
     data object RenderDataUpdate : UpdatePhase(Type.RENDER_DATA_UPDATE)
 
     data object CameraUpdate : UpdatePhase(Type.CAMERA_UPDATE)
@@ -43,6 +43,9 @@ class IkTargetComponent(
             Vector3f(-FLOAT_PI, -FLOAT_PI, FLOAT_PI), // - - +
             Vector3f(-FLOAT_PI, -FLOAT_PI, -FLOAT_PI) // - - -
         )
+
+        // Scenes are shared by instances updated on different threads, so temporaries can't live in the component
+        private val threadScratch: ThreadLocal<Scratch> = ThreadLocal.withInitial(::Scratch)
     }
 
     override val updatePhases: List<UpdatePhase.Type>
@@ -51,12 +54,34 @@ class IkTargetComponent(
     class Chain(
         val nodeIndex: Int,
         val limit: top.fifthlight.blazerod.model.IkTarget.IkJoint.Limits?,
-    ) {
+    )
+
+    // Solver state of a chain, kept per instance in ModelData
+    class ChainState {
         val prevAngle = Vector3f()
         val saveIKRot = Quaternionf()
         var planeModeAngle: Float = 0f
     }
 
+    private class Scratch {
+        val testVec = Vector3f()
+        val targetPos = Vector3f()
+        val ikPos = Vector3f()
+        val invChain = Matrix4f()
+        val chainIkPos = Vector3f()
+        val chainTargetPos = Vector3f()
+        val prevRotationInv = Quaternionf()
+        val cross = Vector3f()
+        val rot = Quaternionf()
+        val chainRot = Quaternionf()
+        val chainRotM = Matrix3f()
+        val rotXYZ = Vector3f()
+        val rot1 = Quaternionf()
+        val targetVec1 = Vector3f()
+        val rot2 = Quaternionf()
+        val targetVec2 = Vector3f()
+    }
+
     // I took the algorithm from https://github.com/benikabocha/saba/blob/master/src/Saba/Model/MMD/MMDIkSolver.cpp
     private fun normalizeAngle(angle: Float): Float {
         var ret = angle
@@ -78,8 +103,7 @@ class IkTargetComponent(
         }
     }
 
-    private val testVec = Vector3f()
-    private fun decompose(m: Matrix3fc, before: Vector3fc, r: Vector3f): Vector3f {
+    private fun decompose(m: Matrix3fc, before: Vector3fc, r: Vector3f, testVec: Vector3f): Vector3f {
         val sy = -m.m02()
         val e = 1e-6f
         if ((1f - abs(sy)) < e) {
@@ -149,25 +173,16 @@ class IkTargetComponent(
         z.coerceIn(min, max),
     )
 
-    private val targetPos = Vector3f()
-    private val ikPos = Vector3f()
-    private val invChain = Matrix4f()
-    private val chainIkPos = Vector3f()
-    private val chainTargetPos = Vector3f()
-    private val prevRotationInv = Quaternionf()
-
-    private val cross = Vector3f()
-    private val rot = Quaternionf()
-    private val chainRot = Quaternionf()
-    private val chainRotM = Matrix3f()
-    private val rotXYZ = Vector3f()
     private fun solveCore(
         node: RenderNodeImpl,
         instance: ModelInstanceImpl,
         iterateCount: Int,
+        chainStates: Array<ChainState>,
+        scratch: Scratch,
     ) {
-        val ikPos = instance.getWorldTransform(effectorNodeIndex).getTranslation(ikPos)
-        for (chain in chains) {
+        val ikPos = instance.getWorldTransform(effectorNodeIndex).getTranslation(scratch.ikPos)
+        for (chainIndex in chains.indices) {
+            val chain = chains[chainIndex]
             if (chain.nodeIndex == node.nodeIndex) {
                 // Avoid zero result, and NaN
                 continue
@@ -175,15 +190,16 @@ class IkTargetComponent(
             val limit = chain.limit
             val axis = limit?.singleAxis
             if (axis != null) {
-                solvePlane(node, instance, iterateCount, chain, chain.limit, axis)
+                solvePlane(node, instance, iterateCount, chain, chainStates[chainIndex], chain.limit, axis, scratch)
                 continue
             }
+            val chainState = chainStates[chainIndex]
 
-            val targetPos = instance.getWorldTransform(node).getTranslation(targetPos)
-            val invChain = instance.getWorldTransform(chain.nodeIndex).invert(invChain)
+            val targetPos = instance.getWorldTransform(node).getTranslation(scratch.targetPos)
+            val invChain = instance.getWorldTransform(chain.nodeIndex).invert(scratch.invChain)
 
-            val chainIkPos = ikPos.mulPosition(invChain, chainIkPos)
-            val chainTargetPos = targetPos.mulPosition(invChain, chainTargetPos)
+            val chainIkPos = ikPos.mulPosition(invChain, scratch.chainIkPos)
+            val chainTargetPos = targetPos.mulPosition(invChain, scratch.chainTargetPos)
 
             // Unnormalized vector seems never used then, so directly overwrite them
             val chainIkVec = chainIkPos.normalize()
@@ -197,28 +213,28 @@ class IkTargetComponent(
                 continue
             }
             angle = angle.coerceIn(-limitRadian, limitRadian)
-            val cross = chainTargetVec.cross(chainIkVec, cross).normalize()
-            val rot = rot.rotationAxis(angle, cross)
+            val cross = chainTargetVec.cross(chainIkVec, scratch.cross).normalize()
+            val rot = scratch.rot.rotationAxis(angle, cross)
 
             val chainRot = instance.getTransformMap(chain.nodeIndex)
                 .getSum(transformId)
-                .getUnnormalizedRotation(chainRot)
+                .getUnnormalizedRotation(scratch.chainRot)
                 .mul(rot)
             if (limit != null) {
-                val chainRotM = chainRotM.rotation(chainRot)
-                val rotXYZ = decompose(chainRotM, chain.prevAngle, rotXYZ)
+                val chainRotM = scratch.chainRotM.rotation(chainRot)
+                val rotXYZ = decompose(chainRotM, chainState.prevAngle, scratch.rotXYZ, scratch.testVec)
                 val clampXYZ = rotXYZ.coerceIn(limit.min, limit.max)
-                    .sub(chain.prevAngle).coerceIn(-limitRadian, limitRadian).add(chain.prevAngle)
+                    .sub(chainState.prevAngle).coerceIn(-limitRadian, limitRadian).add(chainState.prevAngle)
                 // Don't introduce a temp r
                 chainRotM.rotationXYZ(clampXYZ.x, clampXYZ.y, clampXYZ.z)
-                chain.prevAngle.set(clampXYZ)
+                chainState.prevAngle.set(clampXYZ)
 
                 chainRotM.getUnnormalizedRotation(chainRot)
             }
 
             val prevRotationInv = instance.getTransformMap(chain.nodeIndex)
                 .getSum(transformId.prev)
-                .getUnnormalizedRotation(prevRotationInv).invert()
+                .getUnnormalizedRotation(scratch.prevRotationInv).invert()
             instance.setTransformDecomposed(chain.nodeIndex, transformId) {
                 rotation.set(chainRot).mul(prevRotationInv)
             }
@@ -226,28 +242,26 @@ class IkTargetComponent(
         }
     }
 
-    private val rot1 = Quaternionf()
-    private val targetVec1 = Vector3f()
-    private val rot2 = Quaternionf()
-    private val targetVec2 = Vector3f()
     private fun solvePlane(
         node: RenderNodeImpl,
         instance: ModelInstanceImpl,
         iterateCount: Int,
         chain: Chain,
+        chainState: ChainState,
         limits: top.fifthlight.blazerod.model.IkTarget.IkJoint.Limits,
         axis: top.fifthlight.blazerod.model.IkTarget.IkJoint.Limits.Axis,
+        scratch: Scratch,
     ) {
         val rotateAxis = axis.axis
         // Plane seems unused, so I removed it
 
-        val ikPos = instance.getWorldTransform(effectorNodeIndex).getTranslation(ikPos)
-        val targetPos = instance.getWorldTransform(node).getTranslation(targetPos)
+        val ikPos = instance.getWorldTransform(effectorNodeIndex).getTranslation(scratch.ikPos)
+        val targetPos = instance.getWorldTransform(node).getTranslation(scratch.targetPos)
 
-        val invChain = instance.getWorldTransform(chain.nodeIndex).invert(invChain)
+        val invChain = instance.getWorldTransform(chain.nodeIndex).invert(scratch.invChain)
 
-        val chainIkPos = ikPos.mulPosition(invChain, chainIkPos)
-        val chainTargetPos = targetPos.mulPosition(invChain, chainTargetPos)
+        val chainIkPos = ikPos.mulPosition(invChain, scratch.chainIkPos)
+        val chainTargetPos = targetPos.mulPosition(invChain, scratch.chainTargetPos)
 
         // Unnormalized vector seems never used then, so directly overwrite them
         val chainIkVec = chainIkPos.normalize()
@@ -258,15 +272,15 @@ class IkTargetComponent(
         val angle = acos(dot).coerceIn(-limitRadian, limitRadian)
         // angleDeg is also unused
 
-        val rot1 = rot1.rotationAxis(angle, rotateAxis)
-        val targetVec1 = chainTargetVec.rotate(rot1, targetVec1)
+        val rot1 = scratch.rot1.rotationAxis(angle, rotateAxis)
+        val targetVec1 = chainTargetVec.rotate(rot1, scratch.targetVec1)
         val dot1 = targetVec1.dot(chainIkVec)
 
-        val rot2 = rot2.rotationAxis(-angle, rotateAxis)
-        val targetVec2 = chainTargetVec.rotate(rot2, targetVec2)
+        val rot2 = scratch.rot2.rotationAxis(-angle, rotateAxis)
+        val targetVec2 = chainTargetVec.rotate(rot2, scratch.targetVec2)
         val dot2 = targetVec2.dot(chainIkVec)
 
-        var newAngle = chain.planeModeAngle
+        var newAngle = chainState.planeModeAngle
         if (dot1 > dot2) {
             newAngle += angle
         } else {
@@ -288,11 +302,11 @@ class IkTargetComponent(
         }
 
         newAngle = newAngle.coerceIn(limitRange)
-        chain.planeModeAngle = newAngle
+        chainState.planeModeAngle = newAngle
 
         val prevRotationInv = instance.getTransformMap(chain.nodeIndex)
             .getSum(transformId.prev)
-            .getUnnormalizedRotation(prevRotationInv).invert()
+            .getUnnormalizedRotation(scratch.prevRotationInv).invert()
         instance.setTransformDecomposed(chain.nodeIndex, transformId) {
             rotation.rotationAxis(newAngle, rotateAxis).mul(prevRotationInv)
         }
@@ -313,38 +327,44 @@ class IkTargetComponent(
                 if (chains.isEmpty()) {
                     return
                 }
-                for (chain in chains) {
-                    chain.prevAngle.set(0f)
+                val chainStates = instance.modelData.ikChainStates[ikIndex]
+                val scratch = threadScratch.get()
+                for (chainIndex in chains.indices) {
+                    val chain = chains[chainIndex]
+                    val chainState = chainStates[chainIndex]
+                    chainState.prevAngle.set(0f)
                     instance.setTransformDecomposed(chain.nodeIndex, transformId) {
                         rotation.identity()
                     }
-                    chain.planeModeAngle = 0f
+                    chainState.planeModeAngle = 0f
                 }
                 instance.updateNodeTransform(chains.last().nodeIndex)
 
                 var maxDist = Float.MAX_VALUE
                 for (i in 0 until loopCount) {
-                    solveCore(node, instance, i)
+                    solveCore(node, instance, i, chainStates, scratch)
 
-                    val targetPos = instance.getWorldTransform(node).getTranslation(targetPos)
-                    val ikPos = instance.getWorldTransform(effectorNodeIndex).getTranslation(ikPos)
+                    val targetPos = instance.getWorldTransform(node).getTranslation(scratch.targetPos)
+                    val ikPos = instance.getWorldTransform(effectorNodeIndex).getTranslation(scratch.ikPos)
                     // We use distanceSquared() here, unlike original code
                     val dist = targetPos.distanceSquared(ikPos)
 
                     if (dist < maxDist) {
                         maxDist = dist
-                        for (chain in chains) {
+                        for (chainIndex in chains.indices) {
+                            val chain = chains[chainIndex]
                             val matrix = instance.getTransformMap(chain.nodeIndex).get(transformId)
                             if (matrix != null) {
-                                matrix.getRotation(chain.saveIKRot)
+                                matrix.getRotation(chainStates[chainIndex].saveIKRot)
                             } else {
-                                chain.saveIKRot.identity()
+                                chainStates[chainIndex].saveIKRot.identity()
                             }
                         }
                     } else {
-                        for (chain in chains) {
+                        for (chainIndex in chains.indices) {
+                            val chain = chains[chainIndex]
                             instance.setTransformDecomposed(chain.nodeIndex, transformId) {
-                                rotation.set(chain.saveIKRot)
+                                rotation.set(chainStates[chainIndex].saveIKRot)
                             }
                         }
                         instance.updateNodeTransform(chains.last().nodeIndex)
@@ -25,12 +25,14 @@ class InfluenceSourceComponent(
             listOf(UpdatePhase.Type.INFLUENCE_TRANSFORM_UPDATE)
 
         private val identity: Quaternionfc = Quaternionf()
+
+        // Instances of a shared scene may be updated on different threads
+        private val sourceIkRotation: ThreadLocal<Quaternionf> = ThreadLocal.withInitial(::Quaternionf)
     }
 
     override val updatePhases
         get() = Companion.updatePhases
 
-    private val sourceIkRotation = Quaternionf()
     override fun update(phase: UpdatePhase, node: RenderNodeImpl, instance: ModelInstanceImpl) {
         if (phase is UpdatePhase.InfluenceTransformUpdate) {
             val sourceTransformMap = instance.modelData.transformMaps[node.nodeIndex]
@@ -45,7 +47,7 @@ class InfluenceSourceComponent(
                     }
                     val sourceIk = sourceTransformMap.get(TransformId.IK)
                     if (sourceIk != null) {
-                        sourceIk.getRotation(sourceIkRotation)
+                        val sourceIkRotation = sourceIk.getRotation(sourceIkRotation.get())
                         rotation.mul(sourceIkRotation)
                     }
                     identity.slerp(rotation, influence, rotation)
@@ -25,34 +25,44 @@ import top.fifthlight.blazerod.model.util.getUByteNormalized
 import top.fifthlight.blazerod.model.util.toNormalizedSByte
 import top.fifthlight.blazerod.model.util.toNormalizedUByte
 import top.fifthlight.blazerod.render.BlazerodVertexFormatElements
-import top.fifthlight.blazerod.render.setIndexBuffer
 import top.fifthlight.blazerod.runtime.RenderSceneImpl
 import top.fifthlight.blazerod.runtime.RenderTaskImpl
 import top.fifthlight.blazerod.runtime.data.MorphTargetBuffer
 import top.fifthlight.blazerod.runtime.data.RenderSkinBuffer
+import top.fifthlight.blazerod.runtime.node.component.PrimitiveComponent
 import top.fifthlight.blazerod.runtime.renderer.util.CpuBufferPool
 import top.fifthlight.blazerod.runtime.resource.RenderMaterial
 import top.fifthlight.blazerod.runtime.resource.RenderPrimitive
 import top.fifthlight.blazerod.util.gpushaderpool.GpuShaderDataPool
 import top.fifthlight.blazerod.util.gpushaderpool.upload
+import top.fifthlight.blazerod.util.gpushaderpool.write
 import top.fifthlight.blazerod.util.iterator.forEachInt
+import top.fifthlight.blazerod.util.skinning.SkinningData
+import top.fifthlight.blazerod.util.skinning.SkinningKernel
 import java.lang.Runtime
 import java.nio.ByteBuffer
 import java.nio.ByteOrder
 import java.util.*
 
 class CpuTransformRenderer private constructor() :
-    RendererImpl<CpuTransformRenderer, CpuTransformRenderer.Type>() {
+    TaskMapScheduledRenderer<CpuTransformRenderer, CpuTransformRenderer.Type>() {
     companion object Type : Renderer.Type<CpuTransformRenderer, Type>() {
         override val id: String
             get() = "cpu_transform"
         override val isAvailable: Boolean
             get() = true
         override val supportScheduling: Boolean
-            get() = false
+            get() = true
 
         @JvmStatic
         override fun create() = CpuTransformRenderer()
+
+        // Opt-in structure of arrays skinning, which uses vector lanes when jdk.incubator.vector module is added
+        private val skinningKernel: SkinningKernel? = if (System.getProperty("blazerod.soa_skinning") == "true") {
+            SkinningKernel.create()
+        } else {
+            null
+        }
     }
 
     override val type: Type
@@ -64,8 +74,23 @@ class CpuTransformRenderer private constructor() :
         alignment = 0,
         supportSlicing = false,
     )
+    private val indexPool = GpuShaderDataPool.create(
+        usage = GpuBuffer.USAGE_INDEX,
+        extraUsage = 0,
+        alignment = 0,
+        supportSlicing = false,
+    )
     private val cpuPool = CpuBufferPool()
 
+    private val skinningDataCache = WeakHashMap<RenderPrimitive, SkinningData>()
+    private var jointMatrices = FloatArray(0)
+    private var morphTargets = IntArray(0)
+    private var morphWeights = FloatArray(0)
+    private var morphCount = 0
+    private var skinnedX = FloatArray(0)
+    private var skinnedY = FloatArray(0)
+    private var skinnedZ = FloatArray(0)
+
     private fun VertexFormat.getOffsetOrNull(element: VertexFormatElement) = if (contains(element)) {
         getOffset(element)
     } else {
@@ -82,7 +107,10 @@ class CpuTransformRenderer private constructor() :
         targetBuffer: MorphTargetBuffer?,
         morphTargetData: RenderPrimitive.Targets?,
         modelNormalMatrix: Matrix4fc,
-    ): ByteBuffer {
+        positionMatrix: Matrix4fc?,
+        skinningData: SkinningData?,
+        transformedBuffer: ByteBuffer,
+    ) {
         val targetVertexFormat = RenderPipelines.ENTITY_TRANSLUCENT.vertexFormat
         val targetPositionOffset = targetVertexFormat.getOffset(VertexFormatElement.POSITION)
         val targetColorOffset = targetVertexFormat.getOffset(VertexFormatElement.COLOR)
@@ -102,10 +130,6 @@ class CpuTransformRenderer private constructor() :
         val colorTarget = targetBuffer?.colorChannel
         val texCoordTarget = targetBuffer?.texCoordChannel
 
-        val transformedBuffer = cpuPool
-            .allocate(sourceVertices * targetVertexFormat.vertexSize)
-            .order(ByteOrder.nativeOrder())
-
         val processorCount = Runtime.getRuntime().availableProcessors()
         val taskCount = if (sourceVertices > processorCount && sourceVertices > 1000) {
             processorCount
@@ -113,6 +137,13 @@ class CpuTransformRenderer private constructor() :
             1
         }
         val taskSize = sourceVertices / taskCount
+        val jointMatrices = jointMatrices.takeIf { skinBuffer != null }
+        val morphTargets = morphTargets
+        val morphWeights = morphWeights
+        val morphCount = morphCount
+        val skinnedX = skinnedX
+        val skinnedY = skinnedY
+        val skinnedZ = skinnedZ
         runBlocking {
             val tasks = (0 until taskCount).map { jobIndex ->
                 val transformedBuffer = transformedBuffer.duplicate().order(ByteOrder.nativeOrder())
@@ -130,10 +161,28 @@ class CpuTransformRenderer private constructor() :
                     val skinMatrix = Matrix4f()
                     val colorVector = Vector4f()
                     val texCoordVector = Vector2f()
+                    if (skinningData != null) {
+                        skinningKernel!!.transform(
+                            skinningData,
+                            startVertex,
+                            endVertex,
+                            jointMatrices,
+                            morphTargets,
+                            morphWeights,
+                            morphCount,
+                            skinnedX,
+                            skinnedY,
+                            skinnedZ,
+                        )
+                    }
                     for (vertexIndex in startVertex until endVertex) {
                         val sourceOffset = vertexIndex * sourceVertexFormat.vertexSize
                         val targetOffset = vertexIndex * targetVertexFormat.vertexSize
-                        if (sourcePositionOffset != null) {
+                        if (sourcePositionOffset != null && skinningData != null) {
+                            positionVector.set(skinnedX[vertexIndex], skinnedY[vertexIndex], skinnedZ[vertexIndex])
+                            positionMatrix?.transformPosition(positionVector)
+                            positionVector.get(targetOffset + targetPositionOffset, transformedBuffer)
+                        } else if (sourcePositionOffset != null) {
                             positionVector.set(sourceOffset + sourcePositionOffset, sourceVertexBuffer)
                             if (positionTarget != null && morphTargetData != null) {
                                 positionTarget.keySet().forEachInt { index ->
@@ -168,6 +217,7 @@ class CpuTransformRenderer private constructor() :
                                 }
                                 positionVector.set(skinnedPosition)
                             }
+                            positionMatrix?.transformPosition(positionVector)
                             positionVector.get(targetOffset + targetPositionOffset, transformedBuffer)
                         }
                         if (sourceColorOffset != null) {
@@ -269,8 +319,64 @@ class CpuTransformRenderer private constructor() :
             }
             tasks.joinAll()
         }
+    }
+
+    /**
+     * Decode the primitive for [skinningKernel] if not done yet, and copy joint matrices and morph weights of this
+     * frame into arrays, as kernels can't read them from buffers.
+     */
+    private fun prepareSkinning(
+        primitive: RenderPrimitive,
+        skinBuffer: RenderSkinBuffer?,
+        targetBuffer: MorphTargetBuffer?,
+    ): SkinningData? {
+        val vertexFormat = primitive.material.vertexFormat
+        val positionOffset = vertexFormat.getOffsetOrNull(VertexFormatElement.POSITION) ?: return null
+        val jointSize = skinBuffer?.jointSize ?: 0
+        val positionMorphData = primitive.targets?.position
+        val data = skinningDataCache[primitive]?.takeIf { it.jointCount == jointSize } ?: SkinningData.decode(
+            primitive.cpuVertexBuffer!!,
+            primitive.vertices,
+            vertexFormat.vertexSize,
+            positionOffset,
+            vertexFormat.getOffsetOrNull(BlazerodVertexFormatElements.JOINT) ?: -1,
+            vertexFormat.getOffsetOrNull(BlazerodVertexFormatElements.WEIGHT) ?: -1,
+            jointSize,
+            positionMorphData?.targetsCount ?: 0,
+        ).also { skinningDataCache[primitive] = it }
+
+        if (skinBuffer != null) {
+            val matricesSize = skinBuffer.jointSize * SkinningData.JOINT_MATRIX_STRIDE
+            if (jointMatrices.size < matricesSize) {
+                jointMatrices = FloatArray(matricesSize)
+            }
+            skinBuffer.buffer.duplicate().order(ByteOrder.nativeOrder()).clear().asFloatBuffer()
+                .get(0, jointMatrices, 0, matricesSize)
+        }
 
-        return transformedBuffer
+        var morphCount = 0
+        val positionTarget = targetBuffer?.positionChannel
+        if (positionTarget != null && positionMorphData != null) {
+            val enabledTargets = positionTarget.keySet()
+            if (morphTargets.size < enabledTargets.size) {
+                morphTargets = IntArray(enabledTargets.size)
+                morphWeights = FloatArray(enabledTargets.size)
+            }
+            enabledTargets.forEachInt { index ->
+                data.prepareMorphTarget(index, positionMorphData.cpuBuffer!!)
+                morphTargets[morphCount] = index
+                morphWeights[morphCount] = positionTarget[index]
+                morphCount++
+            }
+        }
+        this.morphCount = morphCount
+
+        if (skinnedX.size < primitive.vertices) {
+            skinnedX = FloatArray(primitive.vertices)
+            skinnedY = FloatArray(primitive.vertices)
+            skinnedZ = FloatArray(primitive.vertices)
+        }
+        return data
     }
 
     private val modelMatrix = Matrix4f()
@@ -296,7 +402,10 @@ class CpuTransformRenderer private constructor() :
         modelMatrix.normal(modelNormalMatrix)
         modelMatrix.mulLocal(RenderSystem.getModelViewStack())
 
-        val convertedBuffer = transformVertex(
+        val convertedBuffer = cpuPool
+            .allocate(primitive.vertices * RenderPipelines.ENTITY_TRANSLUCENT.vertexFormat.vertexSize)
+            .order(ByteOrder.nativeOrder())
+        transformVertex(
             sourceVertexFormat = material.vertexFormat,
             sourceVertices = primitive.vertices,
             sourceVertexBuffer = primitive.cpuVertexBuffer!!,
@@ -306,21 +415,145 @@ class CpuTransformRenderer private constructor() :
             targetBuffer = targetBuffer,
             morphTargetData = primitive.targets,
             modelNormalMatrix = modelNormalMatrix,
+            positionMatrix = null,
+            skinningData = skinningKernel?.let { prepareSkinning(primitive, skinBuffer, targetBuffer) },
+            transformedBuffer = convertedBuffer,
         )
 
+        val indexBuffer = primitive.indexBuffer
+        drawTransformed(
+            colorFrameBuffer = colorFrameBuffer,
+            depthFrameBuffer = depthFrameBuffer,
+            primitive = primitive,
+            transformMatrix = modelMatrix,
+            vertexBuffer = dataPool.upload(convertedBuffer).buffer(),
+            vertices = primitive.vertices,
+            indexBuffer = indexBuffer?.buffer?.inner,
+            indexType = indexBuffer?.type ?: VertexFormat.IndexType.INT,
+            indices = indexBuffer?.length ?: 0,
+        )
+    }
+
+    /**
+     * Transform vertices of all instances into one vertex buffer, with model matrices already applied, so the
+     * primitive is drawn once for all of them. Indices are repeated for each instance with its base vertex added.
+     */
+    override fun renderInstanced(
+        colorFrameBuffer: GpuTextureView,
+        depthFrameBuffer: GpuTextureView?,
+        tasks: List<RenderTaskImpl>,
+        scene: RenderSceneImpl,
+        component: PrimitiveComponent,
+    ) {
+        val primitive = component.primitive
+        if (!primitive.cpuComplete) {
+            return
+        }
+        val indexBuffer = primitive.indexBuffer
+        // Strips and fans of different instances can't be joined together
+        if (primitive.vertexFormatMode.connectedPrimitives || (indexBuffer != null && indexBuffer.cpuBuffer == null)) {
+            for (task in tasks) {
+                render(
+                    colorFrameBuffer = colorFrameBuffer,
+                    depthFrameBuffer = depthFrameBuffer,
+                    scene = scene,
+                    primitive = primitive,
+                    primitiveIndex = component.primitiveIndex,
+                    task = task,
+                    skinBuffer = component.skinIndex?.let { task.skinBuffer[it].content },
+                    targetBuffer = component.morphedPrimitiveIndex?.let { task.morphTargetBuffer[it].content },
+                )
+            }
+            return
+        }
+        val material = primitive.material
+
+        val instanceBufferSize = primitive.vertices * RenderPipelines.ENTITY_TRANSLUCENT.vertexFormat.vertexSize
+        val convertedBuffer = cpuPool
+            .allocate(instanceBufferSize * tasks.size)
+            .order(ByteOrder.nativeOrder())
+        for (instanceIndex in tasks.indices) {
+            val task = tasks[instanceIndex]
+            val skinBuffer = component.skinIndex?.let { task.skinBuffer[it].content }
+            val targetBuffer = component.morphedPrimitiveIndex?.let { task.morphTargetBuffer[it].content }
+
+            task.localMatricesBuffer.content.getPositionMatrix(component.primitiveIndex, modelMatrix)
+            modelMatrix.mulLocal(task.modelMatrix)
+            modelMatrix.normal(modelNormalMatrix)
+
+            transformVertex(
+                sourceVertexFormat = material.vertexFormat,
+                sourceVertices = primitive.vertices,
+                sourceVertexBuffer = primitive.cpuVertexBuffer!!,
+                lightU = (task.light and 0xFFFF).toShort(),
+                lightV = ((task.light shr 16) and 0xFFFF).toShort(),
+                skinBuffer = skinBuffer,
+                targetBuffer = targetBuffer,
+                morphTargetData = primitive.targets,
+                modelNormalMatrix = modelNormalMatrix,
+                positionMatrix = modelMatrix,
+                skinningData = skinningKernel?.let { prepareSkinning(primitive, skinBuffer, targetBuffer) },
+                transformedBuffer = convertedBuffer
+                    .slice(instanceIndex * instanceBufferSize, instanceBufferSize)
+                    .order(ByteOrder.nativeOrder()),
+            )
+        }
+
+        val instancedIndexBuffer = indexBuffer?.let { indices ->
+            val sourceIndices = indices.cpuBuffer!!.duplicate().order(ByteOrder.nativeOrder())
+            indexPool.write(indices.length * tasks.size * VertexFormat.IndexType.INT.bytes) {
+                order(ByteOrder.nativeOrder())
+                for (instanceIndex in tasks.indices) {
+                    val baseVertex = instanceIndex * primitive.vertices
+                    when (indices.type) {
+                        VertexFormat.IndexType.SHORT -> for (i in 0 until indices.length) {
+                            putInt(baseVertex + sourceIndices.getShort(i * 2).toUShort().toInt())
+                        }
+
+                        VertexFormat.IndexType.INT -> for (i in 0 until indices.length) {
+                            putInt(baseVertex + sourceIndices.getInt(i * 4))
+                        }
+                    }
+                }
+            }
+        }
+
+        drawTransformed(
+            colorFrameBuffer = colorFrameBuffer,
+            depthFrameBuffer = depthFrameBuffer,
+            primitive = primitive,
+            transformMatrix = RenderSystem.getModelViewStack(),
+            vertexBuffer = dataPool.upload(convertedBuffer).buffer(),
+            vertices = primitive.vertices * tasks.size,
+            indexBuffer = instancedIndexBuffer?.buffer(),
+            indexType = VertexFormat.IndexType.INT,
+            indices = (indexBuffer?.length ?: 0) * tasks.size,
+        )
+    }
+
+    private fun drawTransformed(
+        colorFrameBuffer: GpuTextureView,
+        depthFrameBuffer: GpuTextureView?,
+        primitive: RenderPrimitive,
+        transformMatrix: Matrix4fc,
+        vertexBuffer: GpuBuffer,
+        vertices: Int,
+        indexBuffer: GpuBuffer?,
+        indexType: VertexFormat.IndexType,
+        indices: Int,
+    ) {
+        val material = primitive.material
         val device = RenderSystem.getDevice()
         val commandEncoder = device.createCommandEncoder()
 
         val dynamicUniforms = RenderSystem.getDynamicUniforms().writeTransform(
-            modelMatrix,
+            transformMatrix,
             material.baseColor.toVector4f(baseColor),
             RenderSystem.getModelOffset(),
             RenderSystem.getTextureMatrix(),
             RenderSystem.getShaderLineWidth()
         )
 
-        val vertexBuffer = dataPool.upload(convertedBuffer)
-
         commandEncoder.createRenderPass(
             { "BlazeRod render pass" },
             colorFrameBuffer,
@@ -346,12 +579,12 @@ class CpuTransformRenderer private constructor() :
                 }
 
                 setVertexFormatMode(primitive.vertexFormatMode)
-                setVertexBuffer(0, vertexBuffer.buffer())
-                primitive.indexBuffer?.let { indices ->
-                    setIndexBuffer(indices)
-                    drawIndexed(0, 0, indices.length, 1)
+                setVertexBuffer(0, vertexBuffer)
+                indexBuffer?.let { buffer ->
+                    setIndexBuffer(buffer, indexType)
+                    drawIndexed(0, 0, indices, 1)
                 } ?: run {
-                    draw(0, primitive.vertices)
+                    draw(0, vertices)
                 }
             }
         }
@@ -359,10 +592,12 @@ class CpuTransformRenderer private constructor() :
 
     override fun rotate() {
         dataPool.rotate()
+        indexPool.rotate()
         cpuPool.rotate()
     }
 
     override fun close() {
         dataPool.close()
+        indexPool.close()
     }
 }
\ No newline at end of file
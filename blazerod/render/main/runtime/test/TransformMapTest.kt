@@ -1,6 +1,7 @@
 package top.fifthlight.blazerod.runtime.test
 
 import org.joml.Matrix4f
+import org.joml.Matrix4fc
 import org.joml.Quaternionf
 import org.joml.Vector3f
 import org.junit.jupiter.api.Assertions.*
@@ -8,7 +9,10 @@ import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import top.fifthlight.blazerod.model.NodeTransform
 import top.fifthlight.blazerod.model.TransformId
+import top.fifthlight.blazerod.runtime.node.NodeHierarchy
+import top.fifthlight.blazerod.runtime.node.RenderNodeImpl
 import top.fifthlight.blazerod.runtime.node.TransformMap
+import java.util.BitSet
 
 class TransformMapTest {
 
@@ -460,4 +464,111 @@ class TransformMapTest {
             Matrix4f().translate(1f, 0f, 0f).translate(0f, 1f, 0f) // Sum of REL_ANIM and INFLUENCE
         assertTrue(expectedInfluenceSum.equals(transformMap.getSum(TransformId.INFLUENCE), 1e-6f))
     }
+
+    // Node indices don't follow depth-first order, so positions and node indices can't be mixed up:
+    // 0 -> (3 -> (5, 2), 1 -> 4)
+    private class Tree {
+        val nodes = Array(6) { RenderNodeImpl(nodeIndex = it, absoluteTransform = null, components = listOf()) }
+        val root = nodes[0]
+
+        init {
+            nodes[0].initializeChildren(listOf(nodes[3], nodes[1]))
+            nodes[3].initializeChildren(listOf(nodes[5], nodes[2]))
+            nodes[1].initializeChildren(listOf(nodes[4]))
+            for (index in listOf(5, 2, 4)) {
+                nodes[index].initializeChildren(listOf())
+            }
+        }
+
+        val hierarchy = NodeHierarchy(root, nodes.size)
+
+        fun dirtyNodes(dirty: BitSet) = nodes.indices.filter { dirty[hierarchy.positions[it]] }.toSet()
+    }
+
+    // Transform propagation before the hierarchy was flattened
+    private fun recursiveWorldTransforms(tree: Tree, transformMaps: Array<TransformMap>): Array<Matrix4f> {
+        val result = Array(tree.nodes.size) { Matrix4f() }
+        fun walk(node: RenderNodeImpl, parent: Matrix4fc) {
+            val world = Matrix4f(parent).mul(transformMaps[node.nodeIndex].getSum(TransformId.LAST))
+            result[node.nodeIndex] = world
+            for (child in node.children) {
+                walk(child, world)
+            }
+        }
+        walk(tree.root, Matrix4f())
+        return result
+    }
+
+    private fun assertWorldTransforms(tree: Tree, expected: Array<Matrix4f>, worldTransforms: Array<Matrix4f>) {
+        for (nodeIndex in tree.nodes.indices) {
+            val actual = worldTransforms[tree.hierarchy.positions[nodeIndex]]
+            assertTrue(expected[nodeIndex].equals(actual, 1e-5f), "World transform of node $nodeIndex")
+        }
+    }
+
+    @Test
+    fun hierarchyKeepsSubtreesContiguous() {
+        val tree = Tree()
+        val hierarchy = tree.hierarchy
+        assertArrayEquals(intArrayOf(0, 3, 5, 2, 1, 4), hierarchy.nodeIndices)
+        assertArrayEquals(intArrayOf(-1, 0, 1, 1, 0, 4), hierarchy.parentPositions)
+        assertArrayEquals(intArrayOf(6, 4, 3, 4, 6, 6), hierarchy.subtreeEnds)
+    }
+
+    @Test
+    fun markingNodeDirtyMarksWholeSubtree() {
+        val tree = Tree()
+        val dirty = BitSet(tree.nodes.size)
+
+        tree.hierarchy.markDirty(dirty, 3)
+        assertEquals(setOf(3, 5, 2), tree.dirtyNodes(dirty))
+
+        tree.hierarchy.markDirty(dirty, 4)
+        assertEquals(setOf(3, 5, 2, 4), tree.dirtyNodes(dirty))
+
+        tree.hierarchy.markDirty(dirty, 0)
+        assertEquals(tree.nodes.indices.toSet(), tree.dirtyNodes(dirty))
+    }
+
+    @Test
+    fun alreadyDirtyNodeIsNotMarkedAgain() {
+        val tree = Tree()
+        val dirty = BitSet(tree.nodes.size)
+        tree.hierarchy.markDirty(dirty, 3)
+
+        // Only possible by clearing the flag directly, so marking the subtree again would be visible
+        dirty.clear(tree.hierarchy.positions[5])
+        tree.hierarchy.markDirty(dirty, 3)
+        assertEquals(setOf(3, 2), tree.dirtyNodes(dirty))
+    }
+
+    @Test
+    fun propagateTransformsMatchesRecursiveWalk() {
+        val tree = Tree()
+        val transformMaps = Array(tree.nodes.size) { TransformMap(null) }
+        for ((index, transformMap) in transformMaps.withIndex()) {
+            transformMap.updateDecomposed(TransformId.RELATIVE_ANIMATION) {
+                translation.set(index.toFloat(), 1f, -0.5f * index)
+                rotation.rotationYXZ(0.3f * index, 0.1f, -0.2f * index)
+                scale.set(1f + 0.1f * index)
+            }
+        }
+        val worldTransforms = Array(tree.nodes.size) { Matrix4f() }
+        val dirty = BitSet(tree.nodes.size).apply { set(0, tree.nodes.size) }
+
+        tree.hierarchy.propagateTransforms(dirty, transformMaps, worldTransforms)
+        assertTrue(dirty.isEmpty)
+        assertWorldTransforms(tree, recursiveWorldTransforms(tree, transformMaps), worldTransforms)
+
+        // Partial update of one subtree, as IK does
+        transformMaps[3].updateDecomposed(TransformId.IK) {
+            rotation.rotationX(1f)
+        }
+        tree.hierarchy.markDirty(dirty, 3)
+        val hierarchy = tree.hierarchy
+        val position = hierarchy.positions[3]
+        hierarchy.propagateTransforms(dirty, transformMaps, worldTransforms, position, hierarchy.subtreeEnds[position])
+        assertTrue(dirty.isEmpty)
+        assertWorldTransforms(tree, recursiveWorldTransforms(tree, transformMaps), worldTransforms)
+    }
 }
@@ -0,0 +1,69 @@
+package top.fifthlight.blazerod.util.skinning;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Skinning kernel running one vertex at a time, for JVMs without the vector module.
+ */
+public final class ScalarSkinningKernel implements SkinningKernel {
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void transform(SkinningData data, int start, int end, float @Nullable [] jointMatrices, int[] morphTargets,
+                          float[] morphWeights, int morphCount, float[] outX, float[] outY, float[] outZ) {
+        System.arraycopy(data.getPositionX(), start, outX, start, end - start);
+        System.arraycopy(data.getPositionY(), start, outY, start, end - start);
+        System.arraycopy(data.getPositionZ(), start, outZ, start, end - start);
+        // Walk morph targets in outer loop, so each delta array is read sequentially
+        for (var i = 0; i < morphCount; i++) {
+            morph(data, start, end, data.getMorphPositions(morphTargets[i]), morphWeights[i], outX, outY, outZ);
+        }
+        if (jointMatrices != null && data.isSkinned()) {
+            skin(data, start, end, jointMatrices, outX, outY, outZ);
+        }
+    }
+
+    /**
+     * Add a morph target to positions of vertices in range [start, end), also used for the tail of vector kernels.
+     */
+    public static void morph(SkinningData data, int start, int end, float[] deltas, float weight, float[] outX,
+                             float[] outY, float[] outZ) {
+        var vertexCount = data.getVertexCount();
+        for (var vertex = start; vertex < end; vertex++) {
+            outX[vertex] += deltas[vertex] * weight;
+            outY[vertex] += deltas[vertexCount + vertex] * weight;
+            outZ[vertex] += deltas[vertexCount * 2 + vertex] * weight;
+        }
+    }
+
+    /**
+     * Skin positions of vertices in range [start, end), also used for the tail of vector kernels.
+     */
+    public static void skin(SkinningData data, int start, int end, float[] matrices, float[] outX, float[] outY,
+                            float[] outZ) {
+        for (var vertex = start; vertex < end; vertex++) {
+            var x = outX[vertex];
+            var y = outY[vertex];
+            var z = outZ[vertex];
+            var skinnedX = 0f;
+            var skinnedY = 0f;
+            var skinnedZ = 0f;
+            for (var influence = 0; influence < SkinningData.INFLUENCES; influence++) {
+                var weight = data.getWeights(influence)[vertex];
+                if (weight == 0) {
+                    continue;
+                }
+                var offset = data.getJointOffsets(influence)[vertex];
+                skinnedX += weight * (matrices[offset] * x + matrices[offset + 4] * y + matrices[offset + 8] * z + matrices[offset + 12]);
+                skinnedY += weight * (matrices[offset + 1] * x + matrices[offset + 5] * y + matrices[offset + 9] * z + matrices[offset + 13]);
+                skinnedZ += weight * (matrices[offset + 2] * x + matrices[offset + 6] * y + matrices[offset + 10] * z + matrices[offset + 14]);
+            }
+            outX[vertex] = skinnedX;
+            outY[vertex] = skinnedY;
+            outZ[vertex] = skinnedZ;
+        }
+    }
+}
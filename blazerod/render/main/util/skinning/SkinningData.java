@@ -0,0 +1,141 @@
+package top.fifthlight.blazerod.util.skinning;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Vertex attributes of a primitive needed for skinning, stored as structure of arrays.
+ * <p>
+ * Joint influences are decoded once: influences with too small weight or with joint out of range get zero weight and
+ * joint 0, so kernels can skin all four influences of every vertex without branching. Joints are stored as offsets
+ * into the joint matrix array, ready to be used as gather indices.
+ */
+public final class SkinningData {
+    public static final int INFLUENCES = 4;
+    // Position and normal matrix of each joint, same as RenderSkinBuffer
+    public static final int JOINT_MATRIX_STRIDE = 32;
+    private static final float MIN_WEIGHT = 1E-6f;
+
+    private final int vertexCount;
+    private final int jointCount;
+    private final float[] positionX;
+    private final float[] positionY;
+    private final float[] positionZ;
+    private final float @Nullable [][] weights;
+    private final int @Nullable [][] jointOffsets;
+    // Position deltas of morph targets as [x..., y..., z...], decoded when first enabled
+    private final float @Nullable [][] morphPositions;
+
+    private SkinningData(int vertexCount, int jointCount, float[] positionX, float[] positionY, float[] positionZ,
+                         float @Nullable [][] weights, int @Nullable [][] jointOffsets, int morphTargetCount) {
+        this.vertexCount = vertexCount;
+        this.jointCount = jointCount;
+        this.positionX = positionX;
+        this.positionY = positionY;
+        this.positionZ = positionZ;
+        this.weights = weights;
+        this.jointOffsets = jointOffsets;
+        this.morphPositions = morphTargetCount > 0 ? new float[morphTargetCount][] : null;
+    }
+
+    /**
+     * Decode attributes from an interleaved vertex buffer.
+     *
+     * @param jointOffset    offset of four unsigned short joints in vertex, or -1 if the primitive is not skinned
+     * @param weightOffset   offset of four float weights in vertex, or -1 if the primitive is not skinned
+     * @param jointCount     joint count of the skin, joints out of range are ignored like the scalar path does
+     */
+    public static SkinningData decode(ByteBuffer vertexBuffer, int vertexCount, int vertexSize, int positionOffset,
+                                      int jointOffset, int weightOffset, int jointCount, int morphTargetCount) {
+        var positionX = new float[vertexCount];
+        var positionY = new float[vertexCount];
+        var positionZ = new float[vertexCount];
+        for (var vertex = 0; vertex < vertexCount; vertex++) {
+            var offset = vertex * vertexSize + positionOffset;
+            positionX[vertex] = vertexBuffer.getFloat(offset);
+            positionY[vertex] = vertexBuffer.getFloat(offset + 4);
+            positionZ[vertex] = vertexBuffer.getFloat(offset + 8);
+        }
+
+        float[][] weights = null;
+        int[][] jointOffsets = null;
+        if (jointOffset >= 0 && weightOffset >= 0) {
+            weights = new float[INFLUENCES][vertexCount];
+            jointOffsets = new int[INFLUENCES][vertexCount];
+            for (var vertex = 0; vertex < vertexCount; vertex++) {
+                var baseOffset = vertex * vertexSize;
+                for (var influence = 0; influence < INFLUENCES; influence++) {
+                    var weight = vertexBuffer.getFloat(baseOffset + weightOffset + influence * 4);
+                    var joint = Short.toUnsignedInt(vertexBuffer.getShort(baseOffset + jointOffset + influence * 2));
+                    if (weight < MIN_WEIGHT || joint >= jointCount) {
+                        continue;
+                    }
+                    weights[influence][vertex] = weight;
+                    jointOffsets[influence][vertex] = joint * JOINT_MATRIX_STRIDE;
+                }
+            }
+        }
+        return new SkinningData(vertexCount, jointCount, positionX, positionY, positionZ, weights, jointOffsets,
+                morphTargetCount);
+    }
+
+    /**
+     * Decode position deltas of a morph target, if not decoded yet. Must be called before kernels run, as kernels read
+     * the decoded arrays from several threads.
+     *
+     * @param morphBuffer position morph buffer of the primitive, with a 16 byte vec4 per vertex of each target
+     */
+    public void prepareMorphTarget(int target, ByteBuffer morphBuffer) {
+        if (morphPositions == null || morphPositions[target] != null) {
+            return;
+        }
+        var deltas = new float[vertexCount * 3];
+        for (var vertex = 0; vertex < vertexCount; vertex++) {
+            var offset = (vertexCount * target + vertex) * 16;
+            deltas[vertex] = morphBuffer.getFloat(offset);
+            deltas[vertexCount + vertex] = morphBuffer.getFloat(offset + 4);
+            deltas[vertexCount * 2 + vertex] = morphBuffer.getFloat(offset + 8);
+        }
+        morphPositions[target] = deltas;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getJointCount() {
+        return jointCount;
+    }
+
+    public float[] getPositionX() {
+        return positionX;
+    }
+
+    public float[] getPositionY() {
+        return positionY;
+    }
+
+    public float[] getPositionZ() {
+        return positionZ;
+    }
+
+    public boolean isSkinned() {
+        return weights != null;
+    }
+
+    public float @Nullable [] getWeights(int influence) {
+        return weights != null ? weights[influence] : null;
+    }
+
+    public int @Nullable [] getJointOffsets(int influence) {
+        return jointOffsets != null ? jointOffsets[influence] : null;
+    }
+
+    public float[] getMorphPositions(int target) {
+        if (morphPositions == null || morphPositions[target] == null) {
+            throw new IllegalStateException("Morph target " + target + " is not prepared");
+        }
+        return morphPositions[target];
+    }
+}
@@ -0,0 +1,46 @@
+package top.fifthlight.blazerod.util.skinning;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Applies position morph targets and four joint skinning to a range of vertices of {@link SkinningData}.
+ * <p>
+ * Kernels keep no state, so one kernel can be used by several threads working on different vertex ranges.
+ */
+public interface SkinningKernel {
+    String VECTOR_MODULE = "jdk.incubator.vector";
+    String VECTOR_KERNEL_CLASS = "top.fifthlight.blazerod.util.skinning.vector.VectorSkinningKernel";
+
+    String getName();
+
+    /**
+     * Transform positions of vertices in range [start, end) into the output arrays.
+     *
+     * @param jointMatrices position and normal matrix of each joint in column major order, laid out as in
+     *                      RenderSkinBuffer, or null to skip skinning
+     * @param morphTargets  indices of enabled morph targets, each must be prepared in data. Only first morphCount
+     *                      entries are used
+     * @param morphWeights  weights of enabled morph targets, in the same order of morphTargets
+     */
+    void transform(SkinningData data, int start, int end, float @Nullable [] jointMatrices, int[] morphTargets,
+                   float[] morphWeights, int morphCount, float[] outX, float[] outY, float[] outZ);
+
+    /**
+     * Get the fastest kernel available in this JVM. The vector kernel needs {@value #VECTOR_MODULE} module, which
+     * is only resolved when the game is started with {@code --add-modules jdk.incubator.vector}. It lives in its own
+     * target and is loaded by name, as compiling against an incubator module always warns.
+     */
+    static SkinningKernel create() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                return Class.forName(VECTOR_KERNEL_CLASS)
+                        .asSubclass(SkinningKernel.class)
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError ignored) {
+                // Fall back to scalar kernel
+            }
+        }
+        return new ScalarSkinningKernel();
+    }
+}
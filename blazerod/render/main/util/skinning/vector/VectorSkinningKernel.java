@@ -0,0 +1,86 @@
+package top.fifthlight.blazerod.util.skinning.vector;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+import org.jetbrains.annotations.Nullable;
+import top.fifthlight.blazerod.util.skinning.ScalarSkinningKernel;
+import top.fifthlight.blazerod.util.skinning.SkinningData;
+import top.fifthlight.blazerod.util.skinning.SkinningKernel;
+
+/**
+ * Skinning kernel processing as many vertices as the preferred vector species has lanes at once. Joint matrices are
+ * gathered per lane by the joint offsets of {@link SkinningData}. Remaining vertices are done by scalar code.
+ * <p>
+ * Only load this class when {@value SkinningKernel#VECTOR_MODULE} module is present. {@link SkinningKernel#create()}
+ * loads it by name, so the rest of the skinning code is compiled without the incubator module.
+ */
+public final class VectorSkinningKernel implements SkinningKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    @Override
+    public void transform(SkinningData data, int start, int end, float @Nullable [] jointMatrices, int[] morphTargets,
+                          float[] morphWeights, int morphCount, float[] outX, float[] outY, float[] outZ) {
+        System.arraycopy(data.getPositionX(), start, outX, start, end - start);
+        System.arraycopy(data.getPositionY(), start, outY, start, end - start);
+        System.arraycopy(data.getPositionZ(), start, outZ, start, end - start);
+
+        var vectorEnd = start + SPECIES.loopBound(end - start);
+        var vertexCount = data.getVertexCount();
+        for (var i = 0; i < morphCount; i++) {
+            var deltas = data.getMorphPositions(morphTargets[i]);
+            var weight = morphWeights[i];
+            for (var vertex = start; vertex < vectorEnd; vertex += SPECIES.length()) {
+                FloatVector.fromArray(SPECIES, deltas, vertex).mul(weight)
+                        .add(FloatVector.fromArray(SPECIES, outX, vertex))
+                        .intoArray(outX, vertex);
+                FloatVector.fromArray(SPECIES, deltas, vertexCount + vertex).mul(weight)
+                        .add(FloatVector.fromArray(SPECIES, outY, vertex))
+                        .intoArray(outY, vertex);
+                FloatVector.fromArray(SPECIES, deltas, vertexCount * 2 + vertex).mul(weight)
+                        .add(FloatVector.fromArray(SPECIES, outZ, vertex))
+                        .intoArray(outZ, vertex);
+            }
+            ScalarSkinningKernel.morph(data, vectorEnd, end, deltas, weight, outX, outY, outZ);
+        }
+
+        if (jointMatrices == null || !data.isSkinned()) {
+            return;
+        }
+        for (var vertex = start; vertex < vectorEnd; vertex += SPECIES.length()) {
+            var x = FloatVector.fromArray(SPECIES, outX, vertex);
+            var y = FloatVector.fromArray(SPECIES, outY, vertex);
+            var z = FloatVector.fromArray(SPECIES, outZ, vertex);
+            var skinnedX = FloatVector.zero(SPECIES);
+            var skinnedY = FloatVector.zero(SPECIES);
+            var skinnedZ = FloatVector.zero(SPECIES);
+            for (var influence = 0; influence < SkinningData.INFLUENCES; influence++) {
+                var weight = FloatVector.fromArray(SPECIES, data.getWeights(influence), vertex);
+                var joints = data.getJointOffsets(influence);
+                // Same operation order as the scalar kernel, so both give the same result
+                skinnedX = skinnedX.add(weight.mul(transform(jointMatrices, joints, vertex, 0, x, y, z)));
+                skinnedY = skinnedY.add(weight.mul(transform(jointMatrices, joints, vertex, 1, x, y, z)));
+                skinnedZ = skinnedZ.add(weight.mul(transform(jointMatrices, joints, vertex, 2, x, y, z)));
+            }
+            skinnedX.intoArray(outX, vertex);
+            skinnedY.intoArray(outY, vertex);
+            skinnedZ.intoArray(outZ, vertex);
+        }
+        ScalarSkinningKernel.skin(data, vectorEnd, end, jointMatrices, outX, outY, outZ);
+    }
+
+    /**
+     * Compute one component of the joint matrix multiplied with positions, gathering the matrix row of each lane.
+     */
+    private static FloatVector transform(float[] matrices, int[] joints, int vertex, int row, FloatVector x,
+                                         FloatVector y, FloatVector z) {
+        return FloatVector.fromArray(SPECIES, matrices, row, joints, vertex).mul(x)
+                .add(FloatVector.fromArray(SPECIES, matrices, row + 4, joints, vertex).mul(y))
+                .add(FloatVector.fromArray(SPECIES, matrices, row + 8, joints, vertex).mul(z))
+                .add(FloatVector.fromArray(SPECIES, matrices, row + 12, joints, vertex));
+    }
+}
@@ -13,6 +13,7 @@ import net.neoforged.neoforge.common.NeoForge
 import org.slf4j.LoggerFactory
 import top.fifthlight.blazerod.api.event.RenderEvents
 import top.fifthlight.blazerod.debug.*
+import top.fifthlight.blazerod.runtime.load.UploadScheduler
 import top.fifthlight.blazerod.runtime.resource.RenderTexture
 import top.fifthlight.blazerod.runtime.uniform.UniformBuffer
 import top.fifthlight.blazerod.util.dispatchers.BlockableEventLoopDispatcher
@@ -29,6 +30,9 @@ class BlazeRodNeoForge(private val container: ModContainer) {
         @JvmStatic
         fun onClientSetup(event: FMLClientSetupEvent) {
             BlazeRod.mainDispatcher = BlockableEventLoopDispatcher(Minecraft.getInstance())
+            System.getProperty("blazerod.maxTextureSize")?.toIntOrNull()?.let {
+                BlazeRod.maxTextureSize = it
+            }
 
             // NeoForge initialize device before us, so no RenderEvents.INITIALIZE_DEVICE here
             event.enqueueWork {
@@ -58,6 +62,7 @@ class BlazeRodNeoForge(private val container: ModContainer) {
 
             RenderEvents.FLIP_FRAME.register {
                 UniformBuffer.clear()
+                UploadScheduler.onFrameFlipped()
             }
 
             NeoForge.EVENT_BUS.register(object {
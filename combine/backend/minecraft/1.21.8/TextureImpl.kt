@@ -122,8 +122,8 @@ data class TextureImpl(
         dstRect: Rect,
         tint: Color,
         srcRect: Rect,
-    ) {
-        val guiGraphics = (canvas as CanvasImpl).guiGraphics
+    ) = canvas.drawNative { nativeCanvas ->
+        val guiGraphics = (nativeCanvas as CanvasImpl).guiGraphics
         val client = Minecraft.getInstance()
         val sprite = guiGraphics.getSprite(resourceLocation)
         val atlasLocation = sprite.atlasLocation()
@@ -152,8 +152,8 @@ data class TextureImpl(
         canvas: Canvas,
         dstRect: IntRect,
         tint: Color,
-    ) {
-        val guiGraphics = (canvas as CanvasImpl).guiGraphics
+    ) = canvas.drawNative { nativeCanvas ->
+        val guiGraphics = (nativeCanvas as CanvasImpl).guiGraphics
         guiGraphics.blitSprite(
             RenderPipelines.GUI_TEXTURED,
             resourceLocation,
@@ -190,9 +190,9 @@ data class BackgroundTextureImpl(
         dstRect: Rect,
         tint: Color,
         scale: Float,
-    ) {
-        val guiGraphics = (canvas as CanvasImpl).guiGraphics
-        val gpuTextureView = canvas.client.textureManager.getTexture(resourceLocation).getTextureView()
+    ) = canvas.drawNative { nativeCanvas ->
+        val guiGraphics = (nativeCanvas as CanvasImpl).guiGraphics
+        val gpuTextureView = nativeCanvas.client.textureManager.getTexture(resourceLocation).getTextureView()
 
         guiGraphics.submitElement(
             BlitRenderState(
@@ -22,6 +22,21 @@ class Constraints(
         minHeight.coerceAtMost(maxHeight),
         maxHeight.coerceAtLeast(minHeight)
     )
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is Constraints) return false
+        return minWidth == other.minWidth && maxWidth == other.maxWidth &&
+                minHeight == other.minHeight && maxHeight == other.maxHeight
+    }
+
+    override fun hashCode(): Int {
+        var result = minWidth
+        result = 31 * result + maxWidth
+        result = 31 * result + minHeight
+        result = 31 * result + maxHeight
+        return result
+    }
 }
 
 @Stable
@@ -2,7 +2,11 @@ package top.fifthlight.combine.modifier.scroll
 
 import androidx.compose.runtime.Composable
 import androidx.compose.runtime.DisposableEffect
+import androidx.compose.runtime.MutableIntState
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableIntStateOf
 import androidx.compose.runtime.remember
+import androidx.compose.runtime.setValue
 import aurelienribon.tweenengine.Tween
 import aurelienribon.tweenengine.TweenAccessor
 import aurelienribon.tweenengine.TweenManager
@@ -18,11 +22,16 @@ class ScrollState(private val tweenManager: TweenManager) {
     val actualProgress = _actualProgress.asStateFlow()
     private val _overscroll = MutableStateFlow(0)
     val overscroll = _overscroll.asStateFlow()
-    private val _renderProgress = TweenFlow(MutableStateFlow(0))
+    private val layoutProgressState = mutableIntStateOf(0)
+    private val _renderProgress = TweenFlow(MutableStateFlow(0), layoutProgressState)
     val progress = _renderProgress.asStateFlow()
-    var contentHeight = 0
+
+    // Same as progress, but read from snapshot state, so layout and drawing reading it are updated when scrolled
+    internal val layoutProgress: Int
+        get() = layoutProgressState.intValue
+    var contentHeight by mutableIntStateOf(0)
         internal set
-    var viewportHeight = 0
+    var viewportHeight by mutableIntStateOf(0)
         internal set
     internal var initialPointerPosition: Offset? = null
     internal var startProgress = 0
@@ -34,11 +43,19 @@ class ScrollState(private val tweenManager: TweenManager) {
     @OptIn(ExperimentalForInheritanceCoroutinesApi::class)
     private class TweenFlow(
         private val stateFlow: MutableStateFlow<Int>,
+        private val snapshotState: MutableIntState,
     ): MutableStateFlow<Int> by stateFlow {
         init {
             Tween.registerAccessor(TweenFlow::class.java, Accessor)
         }
 
+        override var value: Int
+            get() = stateFlow.value
+            set(value) {
+                stateFlow.value = value
+                snapshotState.intValue = value
+            }
+
         companion object Accessor: TweenAccessor<TweenFlow> {
             override fun getValues(
                 target: TweenFlow,
@@ -54,7 +71,7 @@ class ScrollState(private val tweenManager: TweenManager) {
                 tweenType: Int,
                 newValues: FloatArray,
             ) {
-                target.stateFlow.value = newValues[0].toInt()
+                target.value = newValues[0].toInt()
             }
         }
     }
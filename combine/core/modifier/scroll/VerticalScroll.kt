@@ -147,9 +147,9 @@ private data class VerticalScrollNode(
 
         return layout(placeable.width, viewportHeight) {
             val yOffset = if (reverse) {
-                -(maxScrollOffset - scrollState.progress.value)
+                -(maxScrollOffset - scrollState.layoutProgress)
             } else {
-                -scrollState.progress.value
+                -scrollState.layoutProgress
             }
             placeable.placeAt(0, yOffset)
         }
@@ -177,7 +177,7 @@ private data class VerticalScrollNode(
                 return@let
             }
             val tileHeight = height * backgroundScale
-            val tileOffset = scrollState.progress.value.toFloat() % tileHeight
+            val tileOffset = scrollState.layoutProgress.toFloat() % tileHeight
             background.draw(
                 canvas = canvas,
                 scale = backgroundScale,
@@ -203,7 +203,7 @@ private data class VerticalScrollNode(
     ) {
         if (scrollState.viewportHeight < scrollState.contentHeight) {
             val progress =
-                scrollState.progress.value.toFloat() / (scrollState.contentHeight - scrollState.viewportHeight).toFloat()
+                scrollState.layoutProgress.toFloat() / (scrollState.contentHeight - scrollState.viewportHeight).toFloat()
             val barHeight =
                 (wrapperNode.height * scrollState.viewportHeight / scrollState.contentHeight).coerceAtLeast(12)
             val barY = ((wrapperNode.height - barHeight) * if (reverse) {
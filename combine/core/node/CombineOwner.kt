@@ -2,6 +2,7 @@ package top.fifthlight.combine.node
 
 import androidx.compose.runtime.*
 import androidx.compose.runtime.snapshots.Snapshot
+import androidx.compose.runtime.snapshots.SnapshotStateObserver
 import aurelienribon.tweenengine.TweenManager
 import kotlinx.coroutines.*
 import top.fifthlight.combine.animation.LocalTweenManager
@@ -42,7 +43,11 @@ class CombineOwner(
 
     private var running = false
     private val recomposer = Recomposer(coroutineContext)
+
+    // Invalidation only marks nodes dirty, so run it on the thread sending apply notifications
+    private val snapshotObserver = SnapshotStateObserver { it() }.also { it.start() }
     private val layers = mutableListOf(LayoutNode().let { rootNode ->
+        rootNode.snapshotObserver = snapshotObserver
         Layer(
             owner = this,
             rootNode = rootNode,
@@ -68,6 +73,7 @@ class CombineOwner(
         override fun dispose() {
             owner.layers.remove(this)
             composition.dispose()
+            rootNode.clearStateObservations()
         }
 
         fun setContent(content: @Composable () -> Unit) {
@@ -113,6 +119,7 @@ class CombineOwner(
         content: @Composable () -> Unit,
     ): DisposableLayer {
         val rootNode = LayoutNode()
+        rootNode.snapshotObserver = snapshotObserver
         val layer = Layer(
             owner = this,
             rootNode = rootNode,
@@ -169,6 +176,8 @@ class CombineOwner(
         lastFrameTime = nowFrameTime
 
         clock.sendFrame(System.nanoTime())
+        // Deliver state changes made since last frame now, so nodes reading them are measured again in this frame
+        Snapshot.sendApplyNotifications()
         for (layer in layers) {
             layer.rootNode.measure(
                 Constraints(
@@ -183,6 +192,8 @@ class CombineOwner(
     fun close() {
         recomposer.close()
         snapshotHandle.dispose()
+        snapshotObserver.stop()
+        snapshotObserver.clear()
         for (layer in layers) {
             layer.composition.dispose()
         }
@@ -1,6 +1,7 @@
 package top.fifthlight.combine.node
 
 import androidx.compose.runtime.CompositionLocalMap
+import androidx.compose.runtime.snapshots.SnapshotStateObserver
 import top.fifthlight.combine.input.focus.FocusNode
 import top.fifthlight.combine.input.focus.FocusStateListener
 import top.fifthlight.combine.input.key.KeyEvent
@@ -14,6 +15,8 @@ import top.fifthlight.combine.layout.measure.*
 import top.fifthlight.combine.modifier.Modifier
 import top.fifthlight.combine.modifier.ParentDataModifierNode
 import top.fifthlight.combine.paint.Canvas
+import top.fifthlight.combine.paint.DisplayList
+import top.fifthlight.combine.paint.RecordingCanvas
 import top.fifthlight.combine.paint.withState
 import top.fifthlight.data.Offset
 
@@ -179,12 +182,20 @@ abstract class WrapperLayoutNode(
     }
 }
 
-class LayoutNode : Measurable, Placeable, Renderable, PointerEventReceiver,
+class LayoutNode : Measurable, Placeable, Renderable, DisplayList.Reference, PointerEventReceiver,
     FocusStateListener, TextInputReceiver, KeyEventReceiver, FocusNode {
     var parent: LayoutNode? = null
     val children = mutableListOf<LayoutNode>()
     var measurePolicy: MeasurePolicy = DefaultMeasurePolicy
+        set(value) {
+            field = value
+            invalidateMeasure()
+        }
     var renderer: NodeRenderer = NodeRenderer.EmptyRenderer
+        set(value) {
+            field = value
+            drawDirty = true
+        }
     override var focusable: Boolean = false
     var compositionLocalMap: CompositionLocalMap = CompositionLocalMap.Empty
     override var parentData: Any? = null
@@ -196,7 +207,48 @@ class LayoutNode : Measurable, Placeable, Renderable, PointerEventReceiver,
             parentData = null
             focusable = false
             wrappedNode = buildWrapperLayoutNode(value)
+            invalidateMeasure()
+            drawDirty = true
+        }
+
+    // Observes snapshot states read while measuring and drawing, set by the owner on root node and by UiApplier on
+    // inserted nodes
+    internal var snapshotObserver: SnapshotStateObserver? = null
+    private var measureDirty = true
+    private var lastConstraints: Constraints? = null
+    private var lastPlaceable: Placeable? = null
+
+    // Drawing of this node without its children, which are drawn by their own lists
+    private var displayList: DisplayList? = null
+    private var displayListReplays = 0
+    private var drawDirty = true
+    private var drawX = 0
+    private var drawY = 0
+    private var drawWidth = 0
+    private var drawHeight = 0
+    private var drawAbsoluteX = 0
+    private var drawAbsoluteY = 0
+    private var drawCursorPos = Offset.ZERO
+    private var drawCursorInside = false
+
+    /**
+     * Mark this node and all its ancestors to be measured again, as size of a node can change the layout of its
+     * ancestors. Ancestors are always walked to the root, as a parent may skip measuring some of its dirty children.
+     */
+    fun invalidateMeasure() {
+        var node: LayoutNode? = this
+        while (node != null) {
+            node.measureDirty = true
+            node = node.parent
+        }
+    }
+
+    internal fun clearStateObservations() {
+        snapshotObserver?.clear(this)
+        for (child in children) {
+            child.clearStateObservations()
         }
+    }
 
     private fun buildWrapperLayoutNode(modifier: Modifier): WrapperLayoutNode =
         modifier.foldIn<WrapperLayoutNode>(initialWrapper) { wrapper, node ->
@@ -215,7 +267,29 @@ class LayoutNode : Measurable, Placeable, Renderable, PointerEventReceiver,
             currentWrapper
         }
 
-    override fun measure(constraints: Constraints) = wrappedNode.measure(constraints)
+    override fun measure(constraints: Constraints): Placeable {
+        val lastPlaceable = lastPlaceable
+        if (!measureDirty && lastPlaceable != null && constraints == lastConstraints) {
+            // Children keep the positions placed in last measurement, so nothing to do
+            return lastPlaceable
+        }
+        measureDirty = false
+        val observer = snapshotObserver
+        val placeable = if (observer != null) {
+            var placeable: Placeable? = null
+            observer.observeReads(this, onMeasureStateChanged) {
+                placeable = wrappedNode.measure(constraints)
+            }
+            placeable!!
+        } else {
+            wrappedNode.measure(constraints)
+        }
+        this.lastConstraints = constraints
+        this.lastPlaceable = placeable
+        drawDirty = true
+        return placeable
+    }
+
     override fun minIntrinsicWidth(height: Int): Int = wrappedNode.minIntrinsicWidth(height)
     override fun minIntrinsicHeight(width: Int): Int = wrappedNode.minIntrinsicHeight(width)
     override fun maxIntrinsicWidth(height: Int): Int = wrappedNode.maxIntrinsicWidth(height)
@@ -237,7 +311,85 @@ class LayoutNode : Measurable, Placeable, Renderable, PointerEventReceiver,
 
     override fun placeAt(x: Int, y: Int) = wrappedNode.placeAt(x, y)
 
-    override fun render(canvas: Canvas, cursorPos: Offset) = wrappedNode.render(canvas, cursorPos)
+    /**
+     * Whether drawing of this node is the same as when last drawn. Renderers of this node only check whether cursor
+     * is inside the node, so moving cursor outside the node doesn't change the drawing.
+     */
+    private fun isDrawValid(cursorPos: Offset, checkAbsolutePosition: Boolean): Boolean {
+        if (drawDirty || x != drawX || y != drawY || width != drawWidth || height != drawHeight) {
+            return false
+        }
+        if (checkAbsolutePosition && (absoluteX != drawAbsoluteX || absoluteY != drawAbsoluteY)) {
+            return false
+        }
+        return cursorPos == drawCursorPos || (!drawCursorInside && cursorPos !in this)
+    }
+
+    private fun saveDrawState(cursorPos: Offset) {
+        drawDirty = false
+        drawX = x
+        drawY = y
+        drawWidth = width
+        drawHeight = height
+        drawAbsoluteX = absoluteX
+        drawAbsoluteY = absoluteY
+        drawCursorPos = cursorPos
+        drawCursorInside = cursorPos in this
+    }
+
+    private inline fun observeDrawReads(crossinline block: () -> Unit) {
+        val observer = snapshotObserver
+        if (observer != null) {
+            observer.observeReads(this, onDrawStateChanged) { block() }
+        } else {
+            block()
+        }
+    }
+
+    /**
+     * Draw this node, replaying its display list if the drawing didn't change. Nodes changing in every frame are
+     * drawn directly, as recording them costs more than it saves; they are recorded again after a frame without
+     * change.
+     */
+    override fun render(canvas: Canvas, cursorPos: Offset) {
+        if (canvas is RecordingCanvas) {
+            // Parent is recording its list, draw children with their own lists when replaying
+            canvas.drawReference(this)
+            return
+        }
+
+        val displayList = displayList
+        if (displayList != null) {
+            if (isDrawValid(cursorPos, displayList.usesAbsolutePosition)) {
+                displayListReplays++
+                displayList.replay(canvas, cursorPos)
+                return
+            }
+            if (displayListReplays == 0) {
+                this.displayList = null
+                saveDrawState(cursorPos)
+                observeDrawReads { wrappedNode.render(canvas, cursorPos) }
+                return
+            }
+        } else if (!isDrawValid(cursorPos, true) || recordingCanvas.recording) {
+            saveDrawState(cursorPos)
+            observeDrawReads { wrappedNode.render(canvas, cursorPos) }
+            return
+        }
+
+        saveDrawState(cursorPos)
+        recordingCanvas.beginRecording()
+        val newList = try {
+            observeDrawReads { wrappedNode.render(recordingCanvas, cursorPos) }
+            recordingCanvas.endRecording()
+        } catch (ex: Throwable) {
+            recordingCanvas.endRecording()
+            throw ex
+        }
+        this.displayList = newList
+        displayListReplays = 0
+        newList.replay(canvas, cursorPos)
+    }
 
     override fun onPointerEvent(event: PointerEvent) = wrappedNode.onPointerEvent(event)
 
@@ -248,6 +400,12 @@ class LayoutNode : Measurable, Placeable, Renderable, PointerEventReceiver,
     override fun onKeyEvent(event: KeyEvent) = wrappedNode.onKeyEvent(event)
 
     internal companion object {
+        private val onMeasureStateChanged: (LayoutNode) -> Unit = LayoutNode::invalidateMeasure
+        private val onDrawStateChanged: (LayoutNode) -> Unit = { it.drawDirty = true }
+
+        // Nodes are drawn on one thread, and children are only referenced when recording, so recordings never nest
+        private val recordingCanvas = RecordingCanvas()
+
         val DefaultMeasurePolicy = MeasurePolicy { measurables, constraints ->
             val placeables = measurables.map { it.measure(constraints) }
             MeasureResult(placeables.maxOfOrNull { it.width } ?: 0, placeables.maxOfOrNull { it.height } ?: 0) {
@@ -11,17 +11,26 @@ class UiApplier(rootNode: LayoutNode) : AbstractApplier<LayoutNode>(rootNode) {
             "$instance must not have a parent when being inserted."
         }
         instance.parent = current
+        instance.snapshotObserver = root.snapshotObserver
+        current.invalidateMeasure()
     }
 
     override fun remove(index: Int, count: Int) {
+        for (i in index until index + count) {
+            current.children[i].clearStateObservations()
+        }
         current.children.remove(index, count)
+        current.invalidateMeasure()
     }
 
     override fun move(from: Int, to: Int, count: Int) {
         current.children.move(from, to, count)
+        current.invalidateMeasure()
     }
 
     override fun onClear() {
+        current.clearStateObservations()
         current.children.clear()
+        current.invalidateMeasure()
     }
 }
\ No newline at end of file
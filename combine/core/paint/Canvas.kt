@@ -33,6 +33,12 @@ interface Canvas {
     fun popClip()
 
     fun requestPointerIcon(pointer: PointerIcon) = Unit
+
+    /**
+     * Draw with the platform canvas, for drawing not expressed by this interface like textures and items.
+     * [RecordingCanvas] keeps [block] and calls it with the platform canvas when replayed.
+     */
+    fun drawNative(block: (canvas: Canvas) -> Unit) = block(this)
 }
 
 class ClipStack {
@@ -0,0 +1,347 @@
+package top.fifthlight.combine.paint
+
+import top.fifthlight.combine.data.Text
+import top.fifthlight.combine.input.pointer.PointerIcon
+import top.fifthlight.data.*
+
+/**
+ * Draw commands recorded by [RecordingCanvas], packed into primitive arrays, so drawing a subtree which didn't change
+ * is a loop over arrays instead of walking renderers and modifiers again.
+ */
+class DisplayList internal constructor(
+    private val ops: IntArray,
+    private val ints: IntArray,
+    private val floats: FloatArray,
+    private val objects: Array<Any?>,
+    /** Whether commands depend on absolute position of the recorded subtree, like clip areas */
+    val usesAbsolutePosition: Boolean,
+) {
+    /**
+     * Draws recorded by a part of the tree which is not recorded into this list, like child nodes with their own lists.
+     */
+    fun interface Reference {
+        fun render(canvas: Canvas, cursorPos: Offset)
+    }
+
+    fun replay(canvas: Canvas, cursorPos: Offset) =
+        replay(canvas, cursorPos, ops, ops.size, ints, floats, objects)
+
+    internal companion object {
+        const val OP_PUSH_STATE = 0
+        const val OP_POP_STATE = 1
+        const val OP_TRANSLATE = 2
+        const val OP_TRANSLATE_FLOAT = 3
+        const val OP_ROTATE = 4
+        const val OP_SCALE = 5
+        const val OP_FILL_RECT = 6
+        const val OP_FILL_GRADIENT_RECT = 7
+        const val OP_DRAW_RECT = 8
+        const val OP_DRAW_TEXT = 9
+        const val OP_DRAW_WRAPPED_TEXT = 10
+        const val OP_PUSH_CLIP = 11
+        const val OP_POP_CLIP = 12
+        const val OP_POINTER_ICON = 13
+        const val OP_NATIVE = 14
+        const val OP_REFERENCE = 15
+
+        @Suppress("UNCHECKED_CAST")
+        fun replay(
+            canvas: Canvas,
+            cursorPos: Offset,
+            ops: IntArray,
+            opCount: Int,
+            ints: IntArray,
+            floats: FloatArray,
+            objects: Array<Any?>,
+        ) {
+            var intIndex = 0
+            var floatIndex = 0
+            var objectIndex = 0
+            for (opIndex in 0 until opCount) {
+                when (ops[opIndex]) {
+                    OP_PUSH_STATE -> canvas.pushState()
+                    OP_POP_STATE -> canvas.popState()
+                    OP_TRANSLATE -> {
+                        canvas.translate(ints[intIndex], ints[intIndex + 1])
+                        intIndex += 2
+                    }
+
+                    OP_TRANSLATE_FLOAT -> {
+                        canvas.translate(floats[floatIndex], floats[floatIndex + 1])
+                        floatIndex += 2
+                    }
+
+                    OP_ROTATE -> canvas.rotate(floats[floatIndex++])
+                    OP_SCALE -> {
+                        canvas.scale(floats[floatIndex], floats[floatIndex + 1])
+                        floatIndex += 2
+                    }
+
+                    OP_FILL_RECT -> {
+                        canvas.fillRect(
+                            offset = IntOffset(ints[intIndex], ints[intIndex + 1]),
+                            size = IntSize(ints[intIndex + 2], ints[intIndex + 3]),
+                            color = Color(ints[intIndex + 4]),
+                        )
+                        intIndex += 5
+                    }
+
+                    OP_FILL_GRADIENT_RECT -> {
+                        canvas.fillGradientRect(
+                            offset = Offset(floats[floatIndex], floats[floatIndex + 1]),
+                            size = Size(floats[floatIndex + 2], floats[floatIndex + 3]),
+                            leftTopColor = Color(ints[intIndex]),
+                            leftBottomColor = Color(ints[intIndex + 1]),
+                            rightTopColor = Color(ints[intIndex + 2]),
+                            rightBottomColor = Color(ints[intIndex + 3]),
+                        )
+                        floatIndex += 4
+                        intIndex += 4
+                    }
+
+                    OP_DRAW_RECT -> {
+                        canvas.drawRect(
+                            offset = IntOffset(ints[intIndex], ints[intIndex + 1]),
+                            size = IntSize(ints[intIndex + 2], ints[intIndex + 3]),
+                            color = Color(ints[intIndex + 4]),
+                        )
+                        intIndex += 5
+                    }
+
+                    OP_DRAW_TEXT -> {
+                        val offset = IntOffset(ints[intIndex], ints[intIndex + 1])
+                        val color = Color(ints[intIndex + 2])
+                        when (val text = objects[objectIndex++]) {
+                            is String -> canvas.drawText(offset, text, color)
+                            else -> canvas.drawText(offset, text as Text, color)
+                        }
+                        intIndex += 3
+                    }
+
+                    OP_DRAW_WRAPPED_TEXT -> {
+                        val offset = IntOffset(ints[intIndex], ints[intIndex + 1])
+                        val width = ints[intIndex + 2]
+                        val color = Color(ints[intIndex + 3])
+                        when (val text = objects[objectIndex++]) {
+                            is String -> canvas.drawText(offset, width, text, color)
+                            else -> canvas.drawText(offset, width, text as Text, color)
+                        }
+                        intIndex += 4
+                    }
+
+                    OP_PUSH_CLIP -> {
+                        canvas.pushClip(objects[objectIndex] as IntRect, objects[objectIndex + 1] as IntRect)
+                        objectIndex += 2
+                    }
+
+                    OP_POP_CLIP -> canvas.popClip()
+                    OP_POINTER_ICON -> canvas.requestPointerIcon(objects[objectIndex++] as PointerIcon)
+                    OP_NATIVE -> (objects[objectIndex++] as (Canvas) -> Unit)(canvas)
+                    OP_REFERENCE -> (objects[objectIndex++] as Reference).render(canvas, cursorPos)
+                }
+            }
+        }
+    }
+}
+
+/**
+ * A [Canvas] recording draw commands instead of drawing them. The buffers are kept between recordings, so one canvas
+ * can be reused to record many lists, or replay its own buffer directly when the commands are drawn only once.
+ */
+class RecordingCanvas : Canvas {
+    private var ops = IntArray(64)
+    private var opCount = 0
+    private var ints = IntArray(256)
+    private var intCount = 0
+    private var floats = FloatArray(64)
+    private var floatCount = 0
+    private var objects = arrayOfNulls<Any>(32)
+    private var objectCount = 0
+    private var usesAbsolutePosition = false
+
+    var recording = false
+        private set
+
+    /** Drop recorded commands, keeping the buffers */
+    fun reset() {
+        opCount = 0
+        intCount = 0
+        floatCount = 0
+        objects.fill(null, 0, objectCount)
+        objectCount = 0
+        usesAbsolutePosition = false
+    }
+
+    fun beginRecording() {
+        check(!recording) { "Already recording" }
+        recording = true
+        reset()
+    }
+
+    fun endRecording(): DisplayList {
+        check(recording) { "Not recording" }
+        recording = false
+        val list = DisplayList(
+            ops = ops.copyOf(opCount),
+            ints = ints.copyOf(intCount),
+            floats = floats.copyOf(floatCount),
+            objects = objects.copyOf(objectCount),
+            usesAbsolutePosition = usesAbsolutePosition,
+        )
+        reset()
+        return list
+    }
+
+    /** Draw recorded commands without copying them into a [DisplayList] */
+    fun replay(canvas: Canvas, cursorPos: Offset = Offset.ZERO) =
+        DisplayList.replay(canvas, cursorPos, ops, opCount, ints, floats, objects)
+
+    private fun op(op: Int) {
+        if (opCount == ops.size) {
+            ops = ops.copyOf(ops.size * 2)
+        }
+        ops[opCount++] = op
+    }
+
+    private fun int(value: Int) {
+        if (intCount == ints.size) {
+            ints = ints.copyOf(ints.size * 2)
+        }
+        ints[intCount++] = value
+    }
+
+    private fun float(value: Float) {
+        if (floatCount == floats.size) {
+            floats = floats.copyOf(floats.size * 2)
+        }
+        floats[floatCount++] = value
+    }
+
+    private fun obj(value: Any) {
+        if (objectCount == objects.size) {
+            objects = objects.copyOf(objects.size * 2)
+        }
+        objects[objectCount++] = value
+    }
+
+    override fun pushState() = op(DisplayList.OP_PUSH_STATE)
+
+    override fun popState() = op(DisplayList.OP_POP_STATE)
+
+    override fun translate(x: Int, y: Int) {
+        // Nested wrappers translate one after another, merge them into one command
+        if (opCount > 0 && ops[opCount - 1] == DisplayList.OP_TRANSLATE) {
+            ints[intCount - 2] += x
+            ints[intCount - 1] += y
+            return
+        }
+        op(DisplayList.OP_TRANSLATE)
+        int(x)
+        int(y)
+    }
+
+    override fun translate(x: Float, y: Float) {
+        op(DisplayList.OP_TRANSLATE_FLOAT)
+        float(x)
+        float(y)
+    }
+
+    override fun rotate(degrees: Float) {
+        op(DisplayList.OP_ROTATE)
+        float(degrees)
+    }
+
+    override fun scale(x: Float, y: Float) {
+        op(DisplayList.OP_SCALE)
+        float(x)
+        float(y)
+    }
+
+    override fun fillRect(offset: IntOffset, size: IntSize, color: Color) {
+        op(DisplayList.OP_FILL_RECT)
+        int(offset.x)
+        int(offset.y)
+        int(size.width)
+        int(size.height)
+        int(color.value)
+    }
+
+    override fun fillGradientRect(
+        offset: Offset,
+        size: Size,
+        leftTopColor: Color,
+        leftBottomColor: Color,
+        rightTopColor: Color,
+        rightBottomColor: Color,
+    ) {
+        op(DisplayList.OP_FILL_GRADIENT_RECT)
+        float(offset.x)
+        float(offset.y)
+        float(size.width)
+        float(size.height)
+        int(leftTopColor.value)
+        int(leftBottomColor.value)
+        int(rightTopColor.value)
+        int(rightBottomColor.value)
+    }
+
+    override fun drawRect(offset: IntOffset, size: IntSize, color: Color) {
+        op(DisplayList.OP_DRAW_RECT)
+        int(offset.x)
+        int(offset.y)
+        int(size.width)
+        int(size.height)
+        int(color.value)
+    }
+
+    private fun text(offset: IntOffset, text: Any, color: Color) {
+        op(DisplayList.OP_DRAW_TEXT)
+        int(offset.x)
+        int(offset.y)
+        int(color.value)
+        obj(text)
+    }
+
+    private fun wrappedText(offset: IntOffset, width: Int, text: Any, color: Color) {
+        op(DisplayList.OP_DRAW_WRAPPED_TEXT)
+        int(offset.x)
+        int(offset.y)
+        int(width)
+        int(color.value)
+        obj(text)
+    }
+
+    override fun drawText(offset: IntOffset, text: String, color: Color) = text(offset, text, color)
+
+    override fun drawText(offset: IntOffset, width: Int, text: String, color: Color) =
+        wrappedText(offset, width, text, color)
+
+    override fun drawText(offset: IntOffset, text: Text, color: Color) = text(offset, text, color)
+
+    override fun drawText(offset: IntOffset, width: Int, text: Text, color: Color) =
+        wrappedText(offset, width, text, color)
+
+    override fun pushClip(absoluteArea: IntRect, relativeArea: IntRect) {
+        op(DisplayList.OP_PUSH_CLIP)
+        obj(absoluteArea)
+        obj(relativeArea)
+        usesAbsolutePosition = true
+    }
+
+    override fun popClip() = op(DisplayList.OP_POP_CLIP)
+
+    override fun requestPointerIcon(pointer: PointerIcon) {
+        op(DisplayList.OP_POINTER_ICON)
+        obj(pointer)
+    }
+
+    override fun drawNative(block: (canvas: Canvas) -> Unit) {
+        op(DisplayList.OP_NATIVE)
+        obj(block)
+    }
+
+    fun drawReference(reference: DisplayList.Reference) {
+        op(DisplayList.OP_REFERENCE)
+        obj(reference)
+    }
+}
@@ -5,34 +5,43 @@ public class BindepsConstants {
     }
 
     /**
-     * File magic. 'BINDEPS' + 0x03
+     * File magic. 'BINDEPS' + 0x05
      */
-    public static final byte[] MAGIC = new byte[]{'B', 'I', 'N', 'D', 'E', 'P', 'S', 0x03};
+    public static final byte[] MAGIC = new byte[]{'B', 'I', 'N', 'D', 'E', 'P', 'S', 0x05};
 
     /**
-     * File version. Current version is 3.
+     * File version. Current version is 5, with 64-bit offsets and optional hash index. Dependencies also include class
+     * names in generic signatures and string constants since version 5.
      */
-    public static final int VERSION = 3;
+    public static final int VERSION = 5;
 
     /**
      * Size of file header.
      */
-    public static final int HEADER_SIZE = 48; // 8(magic) + 4(version) + 4(string pool size) + 4(resource info size) + 4(class info size) + 4(heap size) + 20(padding)
+    public static final int HEADER_SIZE = 48; // 8(magic) + 4(version) + 4(string pool size) + 4(resource info size) + 4(class info size) + 4(hash index size) + 8(heap size) + 12(padding)
 
     /**
      * Size of a string pool record.
      */
-    public static final int STRING_RECORD_SIZE = 24; // 8(hash) + 4(parent) + 4(offset) + 2(name len) + 2(full name len) + 4(padding)
+    public static final int STRING_RECORD_SIZE = 24; // 8(hash) + 4(parent) + 8(offset) + 2(name len) + 2(full name len)
 
     /**
      * Size of a resource info record.
      */
-    public static final int RESOURCE_RECORD_SIZE = 32; // 4(flag) + 4(name) + 4(crc32) + 4(data offset) + 4(compressed size) + 4(uncompressed size) + 2(compress method) + 6(padding)
+    public static final int RESOURCE_RECORD_SIZE = 32; // 4(flag) + 4(name) + 4(crc32) + 8(data offset) + 4(compressed size) + 4(uncompressed size) + 2(compress method) + 2(padding)
 
     /**
      * Size of a class info record.
      */
-    public static final int CLASS_RECORD_SIZE = 48;  // 11 ints: name, super, access, resource index, release + 3 x (offset, count) + 8(padding)
+    public static final int CLASS_RECORD_SIZE = 56;  // 5 ints: name, super, access, resource index, release + 3 x (8(offset), 4(count))
+
+    /**
+     * Size of a hash index bucket. Each bucket holds a string pool index, or -1 if empty.
+     * <p>
+     * The hash index is an open-addressed table with linear probing, placed after class info records. The bucket of a
+     * string starts at its hash modulo bucket count, which is always a power of two.
+     */
+    public static final int HASH_BUCKET_SIZE = 4;
 
     /**
      * This resource is stored in heap.
@@ -0,0 +1,21 @@
+package top.fifthlight.fastmerger.bindeps;
+
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * Hash of string pool entries, shared by writers and readers of the hash index.
+ */
+public class BindepsHash {
+    private static final XXHash64 HASHER = XXHashFactory.fastestInstance().hash64();
+
+    private BindepsHash() {
+    }
+
+    /**
+     * Hash UTF-8 bytes of the full name, with XXH64 and seed 0.
+     */
+    public static long hash(byte[] fullNameBytes) {
+        return HASHER.hash(fullNameBytes, 0, fullNameBytes.length, 0);
+    }
+}
@@ -19,8 +19,18 @@ public class BindepsReader {
     private final int classInfoSize;
     private final int resourceInfoOffset;
     private final int classInfoOffset;
+    private final int hashIndexSize;
+    private final int hashIndexOffset;
 
     public BindepsReader(Path inputPath) throws IOException {
+        this(inputPath, true);
+    }
+
+    /**
+     * @param mmap whether to map the file. Without mapping, the file is read into memory, so it can be overwritten
+     *             while this reader is in use
+     */
+    public BindepsReader(Path inputPath, boolean mmap) throws IOException {
         var buffer = ByteBuffer.allocateDirect(BindepsConstants.HEADER_SIZE);
         try (var channel = FileChannel.open(inputPath, StandardOpenOption.READ)) {
             while (buffer.hasRemaining()) {
@@ -55,22 +65,36 @@ public class BindepsReader {
                 throw new IOException("Invalid class info size: %d".formatted(classInfoSize));
             }
 
-            var heapSize = buffer.getInt();
+            hashIndexSize = buffer.getInt();
+            if (hashIndexSize < 0 || Integer.bitCount(hashIndexSize) > 1) {
+                throw new IOException("Invalid hash index size: %d".formatted(hashIndexSize));
+            }
+            var heapSize = buffer.getLong();
             if (heapSize < 0) {
                 throw new IOException("Invalid heap size: %d".formatted(heapSize));
             }
 
             resourceInfoOffset = BindepsConstants.STRING_RECORD_SIZE * stringPoolSize;
             classInfoOffset = resourceInfoOffset + BindepsConstants.RESOURCE_RECORD_SIZE * resourceInfoSize;
+            hashIndexOffset = classInfoOffset + BindepsConstants.CLASS_RECORD_SIZE * classInfoSize;
 
-            buffer.position(buffer.position() + 20); // Skip padding
-            var dataSize = BindepsConstants.STRING_RECORD_SIZE * stringPoolSize + BindepsConstants.RESOURCE_RECORD_SIZE * resourceInfoSize + BindepsConstants.CLASS_RECORD_SIZE * classInfoSize + heapSize;
-
-            ByteBuffer dataBuffer;
-            try {
-                dataBuffer = channel.map(FileChannel.MapMode.READ_ONLY, BindepsConstants.HEADER_SIZE, dataSize);
-            } catch (IllegalArgumentException | UnsupportedOperationException | IOException e) {
-                // Fallback to reading buffer into memory
+            buffer.position(buffer.position() + 12); // Skip padding
+            var dataSizeLong = (long) BindepsConstants.STRING_RECORD_SIZE * stringPoolSize + (long) BindepsConstants.RESOURCE_RECORD_SIZE * resourceInfoSize + (long) BindepsConstants.CLASS_RECORD_SIZE * classInfoSize + (long) BindepsConstants.HASH_BUCKET_SIZE * hashIndexSize + heapSize;
+            // Offsets in file are 64-bit, but a single buffer can only hold 2 GiB
+            if (dataSizeLong > Integer.MAX_VALUE) {
+                throw new IOException("Data too large to be mapped: %d bytes".formatted(dataSizeLong));
+            }
+            var dataSize = (int) dataSizeLong;
+
+            ByteBuffer dataBuffer = null;
+            if (mmap) {
+                try {
+                    dataBuffer = channel.map(FileChannel.MapMode.READ_ONLY, BindepsConstants.HEADER_SIZE, dataSize);
+                } catch (IllegalArgumentException | UnsupportedOperationException | IOException e) {
+                    // Fallback to reading buffer into memory
+                }
+            }
+            if (dataBuffer == null) {
                 dataBuffer = ByteBuffer.allocateDirect(dataSize);
                 channel.position(BindepsConstants.HEADER_SIZE);
                 while (dataBuffer.hasRemaining()) {
@@ -84,6 +108,10 @@ public class BindepsReader {
         }
     }
 
+    private static int toBufferOffset(long fileOffset) {
+        return (int) (fileOffset - BindepsConstants.HEADER_SIZE);
+    }
+
     private static String decodeCharBuffer(ByteBuffer buffer, int offset, int length) {
         return StandardCharsets.UTF_8.decode(buffer.slice(offset, length)).toString();
     }
@@ -116,15 +144,15 @@ public class BindepsReader {
         }
 
         public int getHeapOffset(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 12) - BindepsConstants.HEADER_SIZE;
+            return toBufferOffset(BindepsReader.this.dataBuffer.getLong(offset + 12));
         }
 
         public int getNameLength(int offset) {
-            return Short.toUnsignedInt(BindepsReader.this.dataBuffer.getShort(offset + 16));
+            return Short.toUnsignedInt(BindepsReader.this.dataBuffer.getShort(offset + 20));
         }
 
         public int getFullNameLength(int offset) {
-            return Short.toUnsignedInt(BindepsReader.this.dataBuffer.getShort(offset + 18));
+            return Short.toUnsignedInt(BindepsReader.this.dataBuffer.getShort(offset + 22));
         }
     }
 
@@ -192,6 +220,13 @@ public class BindepsReader {
         }
     }
 
+    /**
+     * Get the size of data mapped or loaded into memory, excluding the header.
+     */
+    public long getMappedSize() {
+        return dataBuffer.capacity();
+    }
+
     public int getStringPoolSize() {
         return stringPoolSize;
     }
@@ -200,6 +235,82 @@ public class BindepsReader {
         return new StringPoolEntry(index);
     }
 
+    /**
+     * Get the end index (exclusive) of the subtree rooted at a string pool entry.
+     * <p>
+     * String pool entries are written in depth-first order, so all descendants of an entry follow it directly, and
+     * the subtree ends at the first entry whose parent comes before it.
+     */
+    public int getStringPoolSubtreeEnd(int index) {
+        for (var i = index + 1; i < stringPoolSize; i++) {
+            if (stringPoolReader.getParentIndex(getStringPoolOffset(i)) < index) {
+                return i;
+            }
+        }
+        return stringPoolSize;
+    }
+
+    /**
+     * Find a string pool entry by full name. The hash index is used if present, otherwise walk down the path tree
+     * segment by segment, only decoding names of entries sharing the parent of each segment.
+     *
+     * @return index of the entry, or -1 if not found
+     */
+    public int findStringPoolIndex(String fullName) {
+        if (hashIndexSize != 0) {
+            return findStringPoolIndexByHash(fullName);
+        }
+        var parentIndex = -1;
+        for (var segment : fullName.split("/")) {
+            var segmentLength = segment.getBytes(StandardCharsets.UTF_8).length;
+            var end = parentIndex == -1 ? stringPoolSize : getStringPoolSubtreeEnd(parentIndex);
+            var foundIndex = -1;
+            for (var i = parentIndex + 1; i < end; i++) {
+                var offset = getStringPoolOffset(i);
+                if (stringPoolReader.getParentIndex(offset) != parentIndex) {
+                    continue;
+                }
+                if (stringPoolReader.getNameLength(offset) != segmentLength) {
+                    continue;
+                }
+                if (readHeapString(stringPoolReader.getHeapOffset(offset), segmentLength).equals(segment)) {
+                    foundIndex = i;
+                    break;
+                }
+            }
+            if (foundIndex == -1) {
+                return -1;
+            }
+            parentIndex = foundIndex;
+        }
+        return parentIndex;
+    }
+
+    public boolean hasHashIndex() {
+        return hashIndexSize != 0;
+    }
+
+    private int findStringPoolIndexByHash(String fullName) {
+        var fullNameBytes = fullName.getBytes(StandardCharsets.UTF_8);
+        var fullNameBuffer = ByteBuffer.wrap(fullNameBytes);
+        var hash = BindepsHash.hash(fullNameBytes);
+        var mask = hashIndexSize - 1;
+        for (var bucket = (int) hash & mask; ; bucket = (bucket + 1) & mask) {
+            var index = dataBuffer.getInt(hashIndexOffset + BindepsConstants.HASH_BUCKET_SIZE * bucket);
+            if (index == -1) {
+                return -1;
+            }
+            var offset = getStringPoolOffset(index);
+            if (stringPoolReader.getHash(offset) != hash || stringPoolReader.getFullNameLength(offset) != fullNameBytes.length) {
+                continue;
+            }
+            var fullNameOffset = stringPoolReader.getHeapOffset(offset) + stringPoolReader.getNameLength(offset);
+            if (dataBuffer.slice(fullNameOffset, fullNameBytes.length).equals(fullNameBuffer)) {
+                return index;
+            }
+        }
+    }
+
     public class ResourceInfoReader {
         public int getFlag(int offset) {
             return BindepsReader.this.dataBuffer.getInt(offset);
@@ -213,20 +324,20 @@ public class BindepsReader {
             return BindepsReader.this.dataBuffer.getInt(offset + 8);
         }
 
-        public int getDataOffset(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 12);
+        public long getDataOffset(int offset) {
+            return BindepsReader.this.dataBuffer.getLong(offset + 12);
         }
 
         public int getCompressedSize(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 16);
+            return BindepsReader.this.dataBuffer.getInt(offset + 20);
         }
 
         public int getUncompressedSize(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 20);
+            return BindepsReader.this.dataBuffer.getInt(offset + 24);
         }
 
         public short getCompressMethod(int offset) {
-            return BindepsReader.this.dataBuffer.getShort(offset + 24);
+            return BindepsReader.this.dataBuffer.getShort(offset + 28);
         }
     }
 
@@ -246,7 +357,7 @@ public class BindepsReader {
         private final int flag;
         private final int nameIndex;
         private final int crc32;
-        private final int dataOffset;
+        private final long dataOffset;
         private final int compressedSize;
         private final int uncompressedSize;
         private final short compressMethod;
@@ -286,7 +397,7 @@ public class BindepsReader {
             return crc32;
         }
 
-        public int getDataOffset() {
+        public long getDataOffset() {
             return dataOffset;
         }
 
@@ -307,8 +418,7 @@ public class BindepsReader {
                 if ((flag & BindepsConstants.RESOURCE_FLAG_INLINE) == 0) {
                     return null;
                 }
-                var heapOffset = dataOffset - BindepsConstants.HEADER_SIZE;
-                data = readHeapBytes(heapOffset, uncompressedSize);
+                data = readHeapBytes(toBufferOffset(dataOffset), uncompressedSize);
             }
             return data;
         }
@@ -339,28 +449,28 @@ public class BindepsReader {
             return BindepsReader.this.dataBuffer.getInt(offset + 16);
         }
 
-        public int getInterfaceOffset(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 20);
+        public long getInterfaceOffset(int offset) {
+            return BindepsReader.this.dataBuffer.getLong(offset + 20);
         }
 
         public int getInterfaceCount(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 24);
+            return BindepsReader.this.dataBuffer.getInt(offset + 28);
         }
 
-        public int getAnnotationOffset(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 28);
+        public long getAnnotationOffset(int offset) {
+            return BindepsReader.this.dataBuffer.getLong(offset + 32);
         }
 
         public int getAnnotationCount(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 32);
+            return BindepsReader.this.dataBuffer.getInt(offset + 40);
         }
 
-        public int getDependenciesOffset(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 36);
+        public long getDependenciesOffset(int offset) {
+            return BindepsReader.this.dataBuffer.getLong(offset + 44);
         }
 
         public int getDependenciesCount(int offset) {
-            return BindepsReader.this.dataBuffer.getInt(offset + 40);
+            return BindepsReader.this.dataBuffer.getInt(offset + 52);
         }
     }
 
@@ -380,11 +490,11 @@ public class BindepsReader {
         private final int access;
         private final int resourceIndex;
         private final int release;
-        private final int interfaceOffset;
+        private final long interfaceOffset;
         private final int interfaceCount;
-        private final int annotationOffset;
+        private final long annotationOffset;
         private final int annotationCount;
-        private final int dependenciesOffset;
+        private final long dependenciesOffset;
         private final int dependenciesCount;
 
         private StringPoolEntry name = null;
@@ -470,7 +580,7 @@ public class BindepsReader {
                 if (interfaceCount == 0) {
                     interfaceIndices = EMPTY_INT_BUFFER;
                 } else {
-                    interfaceIndices = readHeapIntBuffer(interfaceOffset - BindepsConstants.HEADER_SIZE, interfaceCount);
+                    interfaceIndices = readHeapIntBuffer(toBufferOffset(interfaceOffset), interfaceCount);
                 }
             }
             return interfaceIndices;
@@ -492,7 +602,7 @@ public class BindepsReader {
                 if (annotationCount == 0) {
                     annotationIndices = EMPTY_INT_BUFFER;
                 } else {
-                    annotationIndices = readHeapIntBuffer(annotationOffset - BindepsConstants.HEADER_SIZE, annotationCount);
+                    annotationIndices = readHeapIntBuffer(toBufferOffset(annotationOffset), annotationCount);
                 }
             }
             return annotationIndices;
@@ -514,7 +624,7 @@ public class BindepsReader {
                 if (dependenciesCount == 0) {
                     dependenciesIndices = EMPTY_INT_BUFFER;
                 } else {
-                    dependenciesIndices = readHeapIntBuffer(dependenciesOffset - BindepsConstants.HEADER_SIZE, dependenciesCount);
+                    dependenciesIndices = readHeapIntBuffer(toBufferOffset(dependenciesOffset), dependenciesCount);
                 }
             }
             return dependenciesIndices;
@@ -539,4 +649,37 @@ public class BindepsReader {
     public ClassInfoEntry getClassInfoEntry(int index) {
         return new ClassInfoEntry(index);
     }
+
+    /**
+     * Find the class info of a class by internal name. Class info records are sorted by name index, with latest
+     * release first, so the record of latest release is returned for Multi-Release JARs.
+     *
+     * @return index of the class info, or -1 if not found
+     */
+    public int findClassInfoIndex(String internalName) {
+        var nameIndex = findStringPoolIndex(internalName);
+        if (nameIndex == -1) {
+            return -1;
+        }
+        var low = 0;
+        var high = classInfoSize;
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (classInfoReader.getNameIndex(getClassInfoOffset(middle)) < nameIndex) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low < classInfoSize && classInfoReader.getNameIndex(getClassInfoOffset(low)) == nameIndex) {
+            return low;
+        }
+        return -1;
+    }
+
+    @Nullable
+    public ClassInfoEntry findClassInfo(String internalName) {
+        var index = findClassInfoIndex(internalName);
+        return index != -1 ? new ClassInfoEntry(index) : null;
+    }
 }
@@ -0,0 +1,74 @@
+package top.fifthlight.fastmerger.bindeps;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps opened {@link BindepsReader}s across requests of a persistent worker.
+ * <p>
+ * Readers are keyed by the content digest of .bdeps files, so the same file in different sandboxes shares one reader.
+ * When the total mapped size exceeds the limit, least recently used readers are dropped, and their mappings are
+ * released when they get garbage collected.
+ */
+public class BindepsReaderCache {
+    private final long maxMappedSize;
+    private final LinkedHashMap<String, BindepsReader> readers = new LinkedHashMap<>(16, 0.75f, true);
+    private long mappedSize = 0;
+
+    public BindepsReaderCache(long maxMappedSize) {
+        if (maxMappedSize < 0) {
+            throw new IllegalArgumentException("maxMappedSize must not be negative");
+        }
+        this.maxMappedSize = maxMappedSize;
+    }
+
+    /**
+     * Get a reader of the file, opening it if not cached.
+     *
+     * @param digest content digest of the file, or null if unknown. Files without digest are never cached.
+     */
+    public synchronized BindepsReader get(Path path, @Nullable String digest) throws IOException {
+        if (digest == null || digest.isEmpty()) {
+            return new BindepsReader(path);
+        }
+        var reader = readers.get(digest);
+        if (reader != null) {
+            return reader;
+        }
+
+        reader = new BindepsReader(path);
+        var size = reader.getMappedSize();
+        if (size > maxMappedSize) {
+            return reader;
+        }
+        readers.put(digest, reader);
+        mappedSize += size;
+
+        var iterator = readers.values().iterator();
+        while (mappedSize > maxMappedSize && iterator.hasNext()) {
+            var evicted = iterator.next();
+            if (evicted == reader) {
+                continue;
+            }
+            iterator.remove();
+            mappedSize -= evicted.getMappedSize();
+        }
+        return reader;
+    }
+
+    public synchronized int size() {
+        return readers.size();
+    }
+
+    public synchronized long getMappedSize() {
+        return mappedSize;
+    }
+
+    public synchronized void clear() {
+        readers.clear();
+        mappedSize = 0;
+    }
+}
@@ -6,6 +6,7 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 public class BindepsWriter implements AutoCloseable {
     private boolean closed = false;
@@ -15,12 +16,28 @@ public class BindepsWriter implements AutoCloseable {
 
     private final FileChannel outputChannel;
 
-    private int currentHeapOffset;
+    private long currentHeapOffset;
+
+    // Hashes of written string pool entries, to build hash index when closing
+    private final long[] stringHashes;
+    private int stringPoolCount = 0;
+    private final int hashIndexSize;
 
     public BindepsWriter(Path outputPath, int stringPoolSize, int resourceInfoSize, int classInfoSize) throws IOException {
+        this(outputPath, stringPoolSize, resourceInfoSize, classInfoSize, true);
+    }
+
+    /**
+     * @param hashIndex whether to write a hash index of string pool, for constant time lookup of names
+     */
+    public BindepsWriter(Path outputPath, int stringPoolSize, int resourceInfoSize, int classInfoSize, boolean hashIndex) throws IOException {
         this.outputChannel = FileChannel.open(outputPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
 
-        var indexBufferSize = BindepsConstants.HEADER_SIZE + BindepsConstants.STRING_RECORD_SIZE * stringPoolSize + BindepsConstants.RESOURCE_RECORD_SIZE * resourceInfoSize + BindepsConstants.CLASS_RECORD_SIZE * classInfoSize;
+        // Keep load factor under 0.5, so probe sequences stay short
+        this.hashIndexSize = hashIndex && stringPoolSize > 0 ? Integer.highestOneBit(stringPoolSize) << 2 : 0;
+        this.stringHashes = new long[stringPoolSize];
+
+        var indexBufferSize = BindepsConstants.HEADER_SIZE + BindepsConstants.STRING_RECORD_SIZE * stringPoolSize + BindepsConstants.RESOURCE_RECORD_SIZE * resourceInfoSize + BindepsConstants.CLASS_RECORD_SIZE * classInfoSize + BindepsConstants.HASH_BUCKET_SIZE * hashIndexSize;
 
         indexBuffer = ByteBuffer.allocateDirect(indexBufferSize).order(ByteOrder.BIG_ENDIAN);
         heapBuffer.order(ByteOrder.BIG_ENDIAN);
@@ -30,8 +47,9 @@ public class BindepsWriter implements AutoCloseable {
         indexBuffer.putInt(stringPoolSize);
         indexBuffer.putInt(resourceInfoSize);
         indexBuffer.putInt(classInfoSize);
-        indexBuffer.putInt(-1); // Heap size
-        indexBuffer.put(new byte[20]); // Pad to 48 bytes
+        indexBuffer.putInt(hashIndexSize);
+        indexBuffer.putLong(-1); // Heap size
+        indexBuffer.put(new byte[12]); // Pad to 48 bytes
 
         currentHeapOffset = indexBufferSize;
     }
@@ -57,14 +75,14 @@ public class BindepsWriter implements AutoCloseable {
         }
         var nameLength = nameBytes.length;
         var fullNameLength = fullNameBytes.length;
+        stringHashes[stringPoolCount++] = hash;
 
         // Write index
         indexBuffer.putLong(hash);
         indexBuffer.putInt(parentIndex);
-        indexBuffer.putInt(currentHeapOffset);
+        indexBuffer.putLong(currentHeapOffset);
         indexBuffer.putShort((short) nameLength);
         indexBuffer.putShort((short) fullNameLength);
-        indexBuffer.put(new byte[4]); // Pad to 24 bytes
 
         // Write heap
         ensureHeapBufferSize(nameLength + fullNameLength);
@@ -73,13 +91,13 @@ public class BindepsWriter implements AutoCloseable {
         currentHeapOffset += nameLength + fullNameLength;
     }
 
-    public void writeResourceEntry(int flag, int nameIndex, int crc32, int dataOffset, int compressedSize,
+    public void writeResourceEntry(int flag, int nameIndex, int crc32, long dataOffset, int compressedSize,
                                    int uncompressedSize, short compressionMethod, byte[] data) {
         if (closed) {
             throw new IllegalStateException("Writer is closed");
         }
 
-        int realDataOffset;
+        long realDataOffset;
         if (data != null) {
             realDataOffset = currentHeapOffset;
         } else {
@@ -93,11 +111,11 @@ public class BindepsWriter implements AutoCloseable {
         indexBuffer.putInt(flag);
         indexBuffer.putInt(nameIndex);
         indexBuffer.putInt(crc32);
-        indexBuffer.putInt(realDataOffset);
+        indexBuffer.putLong(realDataOffset);
         indexBuffer.putInt(compressedSize);
         indexBuffer.putInt(uncompressedSize);
         indexBuffer.putShort(compressionMethod);
-        indexBuffer.put(new byte[6]); // Pad to 32 bytes
+        indexBuffer.put(new byte[2]); // Pad to 32 bytes
 
         // Write heap
         if (data != null) {
@@ -125,19 +143,17 @@ public class BindepsWriter implements AutoCloseable {
         indexBuffer.putInt(resourceIndex);
         indexBuffer.putInt(release);
 
-        indexBuffer.putInt(interfaceOffset);
+        indexBuffer.putLong(interfaceOffset);
         indexBuffer.putInt(interfaces.length);
 
-        indexBuffer.putInt(annotationOffset);
+        indexBuffer.putLong(annotationOffset);
         indexBuffer.putInt(annotations.length);
 
-        indexBuffer.putInt(dependenciesOffset);
+        indexBuffer.putLong(dependenciesOffset);
         indexBuffer.putInt(dependencies.length);
-
-        indexBuffer.put(new byte[4]); // Pad to 48 bytes
     }
 
-    private int writeIntArrayToHeap(int[] array) {
+    private long writeIntArrayToHeap(int[] array) {
         if (array.length == 0) {
             return -1;
         }
@@ -154,6 +170,28 @@ public class BindepsWriter implements AutoCloseable {
         return startOffset;
     }
 
+    private void writeHashIndex() {
+        if (hashIndexSize == 0) {
+            return;
+        }
+        if (stringPoolCount != stringHashes.length) {
+            throw new IllegalStateException("Expected %d string pool entries, but %d written".formatted(stringHashes.length, stringPoolCount));
+        }
+        var buckets = new int[hashIndexSize];
+        Arrays.fill(buckets, -1);
+        var mask = hashIndexSize - 1;
+        for (var i = 0; i < stringPoolCount; i++) {
+            var bucket = (int) stringHashes[i] & mask;
+            while (buckets[bucket] != -1) {
+                bucket = (bucket + 1) & mask;
+            }
+            buckets[bucket] = i;
+        }
+        for (var bucket : buckets) {
+            indexBuffer.putInt(bucket);
+        }
+    }
+
     private void writeBuffer(ByteBuffer buffer) throws IOException {
         buffer.flip();
         while (buffer.hasRemaining()) {
@@ -168,7 +206,8 @@ public class BindepsWriter implements AutoCloseable {
             return;
         }
         try {
-            indexBuffer.putInt(24, heapBuffer.position());
+            writeHashIndex();
+            indexBuffer.putLong(28, heapBuffer.position());
             if (indexBuffer.hasRemaining()) {
                 throw new IllegalStateException("Index buffer has remaining " + indexBuffer.remaining() + " bytes");
             }
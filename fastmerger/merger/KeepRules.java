@@ -0,0 +1,265 @@
+package top.fifthlight.fastmerger.merger;
+
+import org.antlr.v4.runtime.*;
+import org.jetbrains.annotations.Nullable;
+import top.fifthlight.fastmerger.proguard.proguardLexer;
+import top.fifthlight.fastmerger.proguard.proguardParser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Class keeping rules parsed from ProGuard configurations, used as entry points of tree shaking.
+ * <p>
+ * Only class level specifications are evaluated. Member specifications are ignored, so classes matched by
+ * {@code -keepclasseswithmembers} are always kept. Options which only keep members or names never prevent a class
+ * from being removed, so they are skipped.
+ */
+public class KeepRules {
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+    private static final int ACC_ANNOTATION = 0x2000;
+    private static final int ACC_ENUM = 0x4000;
+
+    public static class NameFilter {
+        private record Item(boolean negated, Pattern pattern) {
+        }
+
+        private final List<Item> items;
+
+        private NameFilter(List<Item> items) {
+            this.items = items;
+        }
+
+        private static Pattern compile(String pattern) {
+            // A single '*' matches any class, irrespective of its package
+            if (pattern.equals("*")) {
+                return Pattern.compile(".*");
+            }
+            var regex = new StringBuilder();
+            for (var i = 0; i < pattern.length(); i++) {
+                var ch = pattern.charAt(i);
+                switch (ch) {
+                    case '*' -> {
+                        if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                            regex.append(".*");
+                            i++;
+                        } else {
+                            regex.append("[^/]*");
+                        }
+                    }
+                    case '?' -> regex.append("[^/]");
+                    case '.' -> regex.append('/');
+                    case '<' -> {
+                        // Back references of -if rules can't be resolved without member matching, so match anything
+                        var end = pattern.indexOf('>', i);
+                        if (end == -1) {
+                            regex.append(Pattern.quote("<"));
+                        } else {
+                            regex.append(".*");
+                            i = end;
+                        }
+                    }
+                    default -> regex.append(Pattern.quote(String.valueOf(ch)));
+                }
+            }
+            return Pattern.compile(regex.toString());
+        }
+
+        private static NameFilter parse(proguardParser.ClassNameContext context) {
+            var items = new ArrayList<Item>();
+            for (var item : context.classNameItem()) {
+                var text = item.getText();
+                var negated = text.startsWith("!");
+                items.add(new Item(negated, compile(negated ? text.substring(1) : text)));
+            }
+            return new NameFilter(items);
+        }
+
+        /**
+         * Match an internal class name. The first matching pattern decides the result.
+         */
+        public boolean matches(String internalName) {
+            for (var item : items) {
+                if (item.pattern().matcher(internalName).matches()) {
+                    return !item.negated();
+                }
+            }
+            return false;
+        }
+
+        public boolean matchesAny(String[] internalNames) {
+            for (var name : internalNames) {
+                if (matches(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public record ClassSpec(
+            @Nullable NameFilter annotation,
+            int requiredAccess,
+            int forbiddenAccess,
+            NameFilter name,
+            @Nullable NameFilter extensionAnnotation,
+            @Nullable NameFilter extension
+    ) {
+        public boolean matches(TreeShaker.ClassNode node, TreeShaker treeShaker) {
+            if ((node.access() & requiredAccess) != requiredAccess || (node.access() & forbiddenAccess) != 0) {
+                return false;
+            }
+            if (!name.matches(node.name())) {
+                return false;
+            }
+            if (annotation != null && !annotation.matchesAny(node.annotations())) {
+                return false;
+            }
+            return extension == null || treeShaker.hasSuperType(node, extension, extensionAnnotation);
+        }
+    }
+
+    /**
+     * A rule keeping all classes matching {@code spec}, only applied when any present class matches
+     * {@code condition}.
+     */
+    public record Rule(@Nullable ClassSpec condition, ClassSpec spec) {
+    }
+
+    private final ArrayList<Rule> rules = new ArrayList<>();
+    private final ArrayList<String> warnings = new ArrayList<>();
+    private boolean dontShrink = false;
+
+    private static int getAccessFlag(String keyword) {
+        return switch (keyword) {
+            case "public" -> ACC_PUBLIC;
+            case "final" -> ACC_FINAL;
+            case "abstract" -> ACC_ABSTRACT;
+            case "@" -> ACC_ANNOTATION;
+            case "interface" -> ACC_INTERFACE;
+            case "enum" -> ACC_ENUM;
+            default -> 0;
+        };
+    }
+
+    @Nullable
+    private static ClassSpec parseClassSpec(@Nullable proguardParser.ClassSpecificationContext context) {
+        if (context == null || context.className() == null) {
+            return null;
+        }
+
+        var requiredAccess = 0;
+        var forbiddenAccess = 0;
+        var modifiers = new ArrayList<String>();
+        for (var modifier : context.typeModifier()) {
+            modifiers.add(modifier.getText());
+        }
+        if (context.classType() != null) {
+            modifiers.add(context.classType().getText());
+        }
+        for (var modifier : modifiers) {
+            if (modifier.startsWith("!")) {
+                forbiddenAccess |= getAccessFlag(modifier.substring(1));
+            } else {
+                requiredAccess |= getAccessFlag(modifier);
+            }
+        }
+
+        var annotation = context.annotation() != null && context.annotation().className() != null
+                ? NameFilter.parse(context.annotation().className())
+                : null;
+
+        NameFilter extension = null;
+        NameFilter extensionAnnotation = null;
+        var extensionContext = context.extension();
+        if (extensionContext != null && extensionContext.className() != null) {
+            extension = NameFilter.parse(extensionContext.className());
+            if (extensionContext.annotation() != null && extensionContext.annotation().className() != null) {
+                extensionAnnotation = NameFilter.parse(extensionContext.annotation().className());
+            }
+        }
+
+        return new ClassSpec(annotation, requiredAccess, forbiddenAccess,
+                NameFilter.parse(context.className()), extensionAnnotation, extension);
+    }
+
+    private void addKeep(List<proguardParser.ModifierContext> modifiers,
+                         proguardParser.ClassSpecificationContext specification,
+                         @Nullable ClassSpec condition) {
+        for (var modifier : modifiers) {
+            if (modifier.getText().endsWith("allowshrinking")) {
+                return;
+            }
+        }
+        var spec = parseClassSpec(specification);
+        if (spec != null) {
+            rules.add(new Rule(condition, spec));
+        }
+    }
+
+    private void addKeepOptions(proguardParser.KeepOptionsContext context, @Nullable ClassSpec condition) {
+        if (context.keep() != null) {
+            addKeep(context.keep().modifier(), context.keep().classSpecification(), condition);
+        } else if (context.keepclasseswithmembers() != null) {
+            var keep = context.keepclasseswithmembers();
+            addKeep(keep.modifier(), keep.classSpecification(), condition);
+        } else if (context.if_() != null && context.if_().keepOptions() != null) {
+            var ifCondition = parseClassSpec(context.if_().classSpecification());
+            if (ifCondition != null) {
+                addKeepOptions(context.if_().keepOptions(), ifCondition);
+            }
+        }
+    }
+
+    /**
+     * Parse a ProGuard configuration. Syntax errors are recorded as warnings, and the recovered rules are used.
+     */
+    public void parse(String content, String sourceName) {
+        var errorListener = new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                warnings.add("%s:%d:%d: %s".formatted(sourceName, line, charPositionInLine, msg));
+            }
+        };
+
+        var lexer = new proguardLexer(CharStreams.fromString(content, sourceName));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+        var parser = new proguardParser(new CommonTokenStream(lexer));
+        parser.removeErrorListeners();
+        parser.addErrorListener(errorListener);
+
+        for (var option : parser.config().option()) {
+            if (option.keepOptions() != null) {
+                addKeepOptions(option.keepOptions(), null);
+            } else if (option.shrinkOptions() != null && option.shrinkOptions().dontshrink() != null) {
+                dontShrink = true;
+            }
+        }
+    }
+
+    /**
+     * Add a class specification to be kept, in the same syntax as the argument of {@code -keep}.
+     */
+    public void addKeepSpecification(String specification) {
+        parse("-keep " + specification, "<command line>");
+    }
+
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    public List<String> getWarnings() {
+        return Collections.unmodifiableList(warnings);
+    }
+
+    public boolean isDontShrink() {
+        return dontShrink;
+    }
+}
@@ -1,4 +1,154 @@
 package top.fifthlight.fastmerger.merger;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Collects the entries of the output JAR, resolving conflicts between input JARs.
+ * <p>
+ * The first input which provides an entry wins. Duplicated entries with the same CRC32 and size are silently
+ * dropped, other duplicated entries are recorded as conflicts. SPI config files are merged instead.
+ */
 public class MergeMap {
+    public sealed interface Source permits RawSource, InlineSource, RelocatedSource {
+        int crc32();
+
+        int uncompressedSize();
+    }
+
+    /**
+     * Entry data stored in an input JAR, starting at {@code dataOffset}.
+     */
+    public record RawSource(int inputIndex, int crc32, long dataOffset, int compressedSize, int uncompressedSize,
+                            short compressMethod) implements Source {
+    }
+
+    /**
+     * Entry data held in memory, always written uncompressed.
+     */
+    public record InlineSource(byte[] data, int crc32) implements Source {
+        @Override
+        public int uncompressedSize() {
+            return data.length;
+        }
+    }
+
+    /**
+     * Class data stored in an input JAR, which mentions relocated classes and must be rewritten.
+     */
+    public record RelocatedSource(RawSource source) implements Source {
+        @Override
+        public int crc32() {
+            return source.crc32();
+        }
+
+        @Override
+        public int uncompressedSize() {
+            return source.uncompressedSize();
+        }
+    }
+
+    private record Item(Source source, String inputName) {
+    }
+
+    private final HashMap<String, Item> entries = new HashMap<>();
+    private final HashMap<String, LinkedHashSet<String>> services = new HashMap<>();
+    private final ArrayList<String> conflicts = new ArrayList<>();
+    private RawSource manifest = null;
+
+    private static boolean isSameContent(Source a, Source b) {
+        return a.crc32() == b.crc32() && a.uncompressedSize() == b.uncompressedSize();
+    }
+
+    /**
+     * Put an entry into the map.
+     *
+     * @return true if the entry was accepted, false if an entry with the same path already exists
+     */
+    public boolean put(String path, Source source, String inputName) {
+        var existing = entries.putIfAbsent(path, new Item(source, inputName));
+        if (existing == null) {
+            return true;
+        }
+        if (!isSameContent(existing.source(), source)) {
+            conflicts.add("Conflicting entry " + path + " in " + existing.inputName() + " and " + inputName + ", using the former");
+        }
+        return false;
+    }
+
+    public void remove(String path) {
+        entries.remove(path);
+    }
+
+    public void putManifest(RawSource source) {
+        if (manifest == null) {
+            manifest = source;
+        }
+    }
+
+    public RawSource getManifest() {
+        return manifest;
+    }
+
+    public void addServices(String path, byte[] data) {
+        var providers = services.computeIfAbsent(path, k -> new LinkedHashSet<>());
+        var content = new String(data, StandardCharsets.UTF_8);
+        for (var line : content.split("\n")) {
+            var commentIndex = line.indexOf('#');
+            if (commentIndex != -1) {
+                line = line.substring(0, commentIndex);
+            }
+            line = line.trim();
+            if (!line.isEmpty()) {
+                providers.add(line);
+            }
+        }
+    }
+
+    public Map<String, LinkedHashSet<String>> getServices() {
+        return Collections.unmodifiableMap(services);
+    }
+
+    public List<String> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    private static byte[] encodeServices(Collection<String> providers) {
+        var outputStream = new ByteArrayOutputStream();
+        for (var provider : providers) {
+            outputStream.writeBytes(provider.getBytes(StandardCharsets.UTF_8));
+            outputStream.write('\n');
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Get all entries sorted by output path, with SPI config files merged.
+     *
+     * @param relocator relocator to map paths and SPI providers, or null if nothing is relocated
+     */
+    public List<Map.Entry<String, Source>> sortedEntries(@Nullable Relocator relocator) {
+        var result = new ArrayList<Map.Entry<String, Source>>(entries.size() + services.size());
+        for (var entry : entries.entrySet()) {
+            var path = relocator != null ? relocator.mapPath(entry.getKey()) : entry.getKey();
+            result.add(Map.entry(path, entry.getValue().source()));
+        }
+        for (var entry : services.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            var path = entry.getKey();
+            Collection<String> providers = entry.getValue();
+            if (relocator != null) {
+                path = relocator.mapPath(path);
+                providers = providers.stream().map(relocator::mapBinaryName).toList();
+            }
+            result.add(Map.entry(path, new InlineSource(encodeServices(providers), 0)));
+        }
+        result.sort(Map.Entry.comparingByKey());
+        return result;
+    }
 }
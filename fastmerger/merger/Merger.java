@@ -1,24 +1,76 @@
 package top.fifthlight.fastmerger.merger;
 
+import org.jetbrains.annotations.Nullable;
+import top.fifthlight.fastmerger.bindeps.BindepsConstants;
+import top.fifthlight.fastmerger.bindeps.BindepsReader;
+import top.fifthlight.fastmerger.bindeps.BindepsReaderCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 public class Merger {
+    private static final String MULTI_RELEASE_PREFIX = "META-INF/versions/";
+    private static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
+    private static final String MODULE_INFO_NAME = "module-info";
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+    private static final List<Attributes.Name> ENTRY_CLASS_ATTRIBUTES = List.of(
+            Attributes.Name.MAIN_CLASS,
+            new Attributes.Name("Launcher-Agent-Class"),
+            new Attributes.Name("Premain-Class"),
+            new Attributes.Name("Agent-Class")
+    );
+    private static final short METHOD_STORED = 0;
+    private static final short METHOD_DEFLATED = 8;
+
     private final List<PathEntry> classPath;
     private final List<PathEntry> input;
     private final Path output;
     private final int release;
+    private final boolean shrink;
+    private final List<String> keepSpecifications;
+    private final List<Path> proguardConfigs;
+    private final Relocator relocator;
+    private final BindepsReaderCache readerCache;
+
+    private final List<BindepsReader> classPathReaders = new ArrayList<>();
+    private final MergeMap mergeMap = new MergeMap();
+    private final KeepRules keepRules = new KeepRules();
+    private final TreeShaker treeShaker;
+    private final List<String> warnings = new ArrayList<>();
 
-    public record PathEntry(Path jar, Path bdeps) {}
+    /**
+     * @param bdepsDigest content digest of the .bdeps file, used as key of reader cache
+     */
+    public record PathEntry(Path jar, Path bdeps, @Nullable String bdepsDigest) {}
 
-    private Merger(List<PathEntry> classPath, List<PathEntry> input, Path output, int release) {
+    private Merger(List<PathEntry> classPath, List<PathEntry> input, Path output, int release, boolean shrink,
+                   List<String> keepSpecifications, List<Path> proguardConfigs,
+                   List<Relocator.Relocation> relocations, @Nullable BindepsReaderCache readerCache) {
         this.classPath = classPath;
         this.input = input;
         this.output = output;
         this.release = release;
+        this.shrink = shrink;
+        this.keepSpecifications = keepSpecifications;
+        this.proguardConfigs = proguardConfigs;
+        this.treeShaker = shrink ? new TreeShaker(classPathReaders) : null;
+        this.relocator = relocations.isEmpty() ? null : new Relocator(relocations);
+        this.readerCache = readerCache;
     }
 
     public static class Builder {
@@ -26,13 +78,26 @@ public class Merger {
         private final List<PathEntry> input = new ArrayList<>();
         private Path output = null;
         private int release = -1;
+        private boolean shrink = false;
+        private final List<String> keepSpecifications = new ArrayList<>();
+        private final List<Path> proguardConfigs = new ArrayList<>();
+        private final List<Relocator.Relocation> relocations = new ArrayList<>();
+        private BindepsReaderCache readerCache = null;
 
-        public void addClassPath(Path jar,  Path bdeps) {
-            classPath.add(new PathEntry(jar, bdeps));
+        public void addClassPath(Path jar, Path bdeps) {
+            addClassPath(jar, bdeps, null);
+        }
+
+        public void addClassPath(Path jar, Path bdeps, @Nullable String bdepsDigest) {
+            classPath.add(new PathEntry(jar, bdeps, bdepsDigest));
         }
 
         public void addInput(Path jar, Path bdeps) {
-            input.add(new PathEntry(jar, bdeps));
+            addInput(jar, bdeps, null);
+        }
+
+        public void addInput(Path jar, Path bdeps, @Nullable String bdepsDigest) {
+            input.add(new PathEntry(jar, bdeps, bdepsDigest));
         }
 
         public void setOutput(Path output) {
@@ -46,21 +111,296 @@ public class Merger {
             this.release = release;
         }
 
+        /**
+         * Remove classes unreachable from entry points. Entry points are manifest entry classes, SPI services and
+         * providers, and classes kept by ProGuard rules.
+         */
+        public void setShrink(boolean shrink) {
+            this.shrink = shrink;
+        }
+
+        /**
+         * Add a class specification to be kept when shrinking, in the same syntax as ProGuard's {@code -keep}.
+         */
+        public void addKeepSpecification(String specification) {
+            keepSpecifications.add(Objects.requireNonNull(specification));
+        }
+
+        /**
+         * Add a ProGuard configuration file, whose keep rules are used when shrinking.
+         */
+        public void addProguardConfig(Path config) {
+            proguardConfigs.add(Objects.requireNonNull(config));
+        }
+
+        /**
+         * Relocate classes and resources under a package prefix to another prefix. Prefixes can be in either
+         * binary or internal form, like {@code kotlin.coroutines} or {@code kotlin/coroutines}.
+         */
+        public void addRelocation(String from, String to) {
+            relocations.add(new Relocator.Relocation(Relocator.normalizePrefix(from), Relocator.normalizePrefix(to)));
+        }
+
+        /**
+         * Open .bdeps files with digests from the cache, to share readers across merges in a persistent worker.
+         */
+        public void setReaderCache(@Nullable BindepsReaderCache readerCache) {
+            this.readerCache = readerCache;
+        }
+
         public Merger build() {
-            return new Merger(classPath, input, output, release);
+            if (output == null) {
+                throw new IllegalStateException("output is not set");
+            }
+            return new Merger(classPath, input, output, release, shrink, keepSpecifications, proguardConfigs,
+                    relocations, readerCache);
         }
     }
 
-    private void scanEntry(PathEntry entry, boolean merge) {
+    private static String stripReleasePrefix(String path) {
+        if (!path.startsWith(MULTI_RELEASE_PREFIX)) {
+            return path;
+        }
+        var index = path.indexOf('/', MULTI_RELEASE_PREFIX.length());
+        return index == -1 ? path : path.substring(index + 1);
+    }
 
+    private static MergeMap.RawSource toRawSource(int inputIndex, BindepsReader.ResourceInfoEntry resource) {
+        return new MergeMap.RawSource(inputIndex, resource.getCrc32(), resource.getDataOffset(),
+                resource.getCompressedSize(), resource.getUncompressedSize(), resource.getCompressMethod());
+    }
+
+    private void scanClasses(BindepsReader reader, int inputIndex, String inputName) {
+        var relocationFilter = relocator != null ? relocator.createFilter(reader) : null;
+        // Class entries are sorted by name, then by release in descending order, so the first entry not newer than
+        // target release is the one to be used. Multi-Release classes are flattened into the base directory.
+        var lastNameIndex = -1;
+        for (var i = 0; i < reader.getClassInfoSize(); i++) {
+            var classInfo = reader.getClassInfoEntry(i);
+            if (classInfo.getRelease() > release) {
+                continue;
+            }
+            var nameIndex = classInfo.getNameIndex();
+            if (nameIndex == lastNameIndex) {
+                continue;
+            }
+            lastNameIndex = nameIndex;
+
+            if (classInfo.getName().getFullName().equals(MODULE_INFO_NAME)) {
+                continue;
+            }
+
+            var resource = classInfo.getResourceInfo();
+            var path = stripReleasePrefix(resource.getName().getFullName());
+            MergeMap.Source source = toRawSource(inputIndex, resource);
+            if (relocationFilter != null && relocationFilter.needsRelocation(classInfo)) {
+                source = new MergeMap.RelocatedSource((MergeMap.RawSource) source);
+            }
+            if (mergeMap.put(path, source, inputName) && treeShaker != null) {
+                treeShaker.addInputClass(path, classInfo);
+            }
+        }
+    }
+
+    private void scanResources(BindepsReader reader, int inputIndex, String inputName) {
+        for (var i = 0; i < reader.getResourceInfoSize(); i++) {
+            var resource = reader.getResourceInfoEntry(i);
+            var flag = resource.getFlag();
+            if ((flag & BindepsConstants.RESOURCE_FLAG_CLASS) != 0) {
+                continue;
+            }
+            if ((flag & BindepsConstants.RESOURCE_FLAG_SIGNATURE) != 0) {
+                // Signatures are invalid after merging
+                continue;
+            }
+            if ((flag & BindepsConstants.RESOURCE_FLAG_MANIFEST) != 0) {
+                mergeMap.putManifest(toRawSource(inputIndex, resource));
+                continue;
+            }
+
+            var path = resource.getName().getFullName();
+            if (shrink && (flag & BindepsConstants.RESOURCE_FLAG_PROGUARD) != 0) {
+                keepRules.parse(new String(resource.getData(), StandardCharsets.UTF_8), inputName + "!/" + path);
+            }
+            if ((flag & BindepsConstants.RESOURCE_FLAG_SPI) != 0) {
+                mergeMap.addServices(path, resource.getData());
+            } else if ((flag & BindepsConstants.RESOURCE_FLAG_INLINE) != 0) {
+                mergeMap.put(path, new MergeMap.InlineSource(resource.getData(), resource.getCrc32()), inputName);
+            } else {
+                mergeMap.put(path, toRawSource(inputIndex, resource), inputName);
+            }
+        }
+    }
+
+    private BindepsReader openReader(PathEntry entry) throws IOException {
+        if (readerCache != null) {
+            return readerCache.get(entry.bdeps(), entry.bdepsDigest());
+        }
+        return new BindepsReader(entry.bdeps());
+    }
+
+    private void scanClassPath(PathEntry entry) throws IOException {
+        classPathReaders.add(openReader(entry));
+    }
+
+    private void scanInput(PathEntry entry, int inputIndex) throws IOException {
+        var reader = openReader(entry);
+        var inputName = entry.jar().toString();
+        scanClasses(reader, inputIndex, inputName);
+        scanResources(reader, inputIndex, inputName);
+    }
+
+    private static byte[] readEntry(FileChannel channel, MergeMap.RawSource source) throws IOException {
+        var compressed = ByteBuffer.allocate(source.compressedSize());
+        while (compressed.hasRemaining()) {
+            if (channel.read(compressed, source.dataOffset() + compressed.position()) == -1) {
+                throw new IOException("Unexpected EOF when reading entry");
+            }
+        }
+        return switch (source.compressMethod()) {
+            case METHOD_STORED -> compressed.array();
+            case METHOD_DEFLATED -> {
+                var inflater = new Inflater(true);
+                try {
+                    inflater.setInput(compressed.array());
+                    var data = new byte[source.uncompressedSize()];
+                    var length = 0;
+                    while (length < data.length && !inflater.finished()) {
+                        var count = inflater.inflate(data, length, data.length - length);
+                        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new IOException("Truncated deflate data");
+                        }
+                        length += count;
+                    }
+                    yield data;
+                } catch (DataFormatException e) {
+                    throw new IOException("Invalid deflate data", e);
+                } finally {
+                    inflater.end();
+                }
+            }
+            default -> throw new IOException("Unsupported compress method " + source.compressMethod());
+        };
+    }
+
+    private Manifest readManifest(List<FileChannel> inputChannels) throws IOException {
+        Manifest manifest;
+        var source = mergeMap.getManifest();
+        if (source != null) {
+            var data = readEntry(inputChannels.get(source.inputIndex()), source);
+            manifest = new Manifest(new ByteArrayInputStream(data));
+            // Classes are flattened, and per-entry digests are invalid after merging
+            manifest.getMainAttributes().remove(new Attributes.Name("Multi-Release"));
+            manifest.getEntries().clear();
+        } else {
+            manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        }
+        return manifest;
+    }
+
+    private static String toInternalName(String binaryName) {
+        return binaryName.trim().replace('.', '/');
+    }
+
+    private void shrink(Manifest manifest) throws IOException {
+        for (var config : proguardConfigs) {
+            keepRules.parse(Files.readString(config), config.toString());
+        }
+        for (var specification : keepSpecifications) {
+            keepRules.addKeepSpecification(specification);
+        }
+        warnings.addAll(keepRules.getWarnings());
+        if (keepRules.isDontShrink()) {
+            warnings.add("Shrinking is disabled by -dontshrink");
+            return;
+        }
+
+        var rootClasses = new HashSet<String>();
+        for (var attribute : ENTRY_CLASS_ATTRIBUTES) {
+            var value = manifest.getMainAttributes().getValue(attribute);
+            if (value != null) {
+                rootClasses.add(toInternalName(value));
+            }
+        }
+        for (var service : mergeMap.getServices().entrySet()) {
+            var path = service.getKey();
+            if (path.startsWith(SERVICES_PREFIX)) {
+                rootClasses.add(toInternalName(path.substring(SERVICES_PREFIX.length())));
+            }
+            for (var provider : service.getValue()) {
+                rootClasses.add(toInternalName(provider));
+            }
+        }
+
+        for (var path : treeShaker.shake(keepRules, rootClasses)) {
+            mergeMap.remove(path);
+        }
+    }
+
+    private void relocateManifest(Manifest manifest) {
+        var attributes = manifest.getMainAttributes();
+        for (var attribute : ENTRY_CLASS_ATTRIBUTES) {
+            var value = attributes.getValue(attribute);
+            if (value != null) {
+                attributes.put(attribute, relocator.mapBinaryName(value.trim()));
+            }
+        }
+    }
+
+    private void writeOutput(List<FileChannel> inputChannels, Manifest manifest) throws IOException {
+        try (var writer = new RawZipWriter(output)) {
+            var manifestStream = new ByteArrayOutputStream();
+            manifest.write(manifestStream);
+            writer.writeStoredEntry(MANIFEST_PATH, manifestStream.toByteArray());
+            for (var entry : mergeMap.sortedEntries(relocator)) {
+                var path = entry.getKey();
+                switch (entry.getValue()) {
+                    case MergeMap.RawSource source -> writer.writeRawEntry(path, source.compressMethod(),
+                            source.crc32(), source.compressedSize(), source.uncompressedSize(),
+                            inputChannels.get(source.inputIndex()), source.dataOffset());
+                    case MergeMap.InlineSource source -> writer.writeStoredEntry(path, source.data());
+                    case MergeMap.RelocatedSource source -> {
+                        var rawSource = source.source();
+                        var classBytes = readEntry(inputChannels.get(rawSource.inputIndex()), rawSource);
+                        writer.writeDeflatedEntry(path, relocator.relocateClass(classBytes));
+                    }
+                }
+            }
+        }
+    }
+
+    public List<String> getWarnings() {
+        var result = new ArrayList<>(mergeMap.getConflicts());
+        result.addAll(warnings);
+        return result;
     }
 
     public void run() throws IOException {
         for (var classPathEntry : classPath) {
-            scanEntry(classPathEntry, false);
+            scanClassPath(classPathEntry);
+        }
+        for (var i = 0; i < input.size(); i++) {
+            scanInput(input.get(i), i);
         }
-        for (var inputEntry : input) {
-            scanEntry(inputEntry, true);
+
+        var inputChannels = new ArrayList<FileChannel>(input.size());
+        try {
+            for (var inputEntry : input) {
+                inputChannels.add(FileChannel.open(inputEntry.jar(), StandardOpenOption.READ));
+            }
+            var manifest = readManifest(inputChannels);
+            if (shrink) {
+                shrink(manifest);
+            }
+            if (relocator != null) {
+                relocateManifest(manifest);
+            }
+            writeOutput(inputChannels, manifest);
+        } finally {
+            for (var channel : inputChannels) {
+                channel.close();
+            }
         }
     }
 }
@@ -1,10 +1,13 @@
 package top.fifthlight.fastmerger.merger;
 
+import org.jetbrains.annotations.Nullable;
 import picocli.CommandLine;
+import top.fifthlight.fastmerger.bindeps.BindepsReaderCache;
 
 import java.io.PrintWriter;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import static picocli.CommandLine.*;
@@ -17,32 +20,101 @@ public class MergerCommand implements Callable<Integer> {
     @Option(names = {"-i", "--input"}, description = "Add an input JAR entry with .bdeps file", arity = "2")
     List<Path[]> input;
 
-    @Option(names = {"-o", "--output"}, description = "Specify output JAR file")
+    @Option(names = {"-o", "--output"}, description = "Specify output JAR file", required = true)
     Path output;
 
     @Option(names = {"-r", "--release"}, description = "Specify target Java version, used by Multi-Release JAR", required = true)
     Integer release;
 
+    @Option(names = {"-s", "--shrink"}, description = "Remove classes unreachable from entry points")
+    boolean shrink;
+
+    @Option(names = {"-k", "--keep"}, description = "Add a ProGuard class specification to be kept when shrinking, such as mod entrypoints")
+    List<String> keepSpecifications;
+
+    @Option(names = {"-p", "--proguard"}, description = "Add a ProGuard configuration file whose keep rules are used when shrinking")
+    List<Path> proguardConfigs;
+
+    @Option(names = {"-R", "--relocate"}, description = "Relocate a package prefix to another prefix, such as kotlin top.fifthlight.shaded.kotlin", arity = "2")
+    List<String[]> relocations;
+
+    private final PrintWriter out;
+    private final Path sandboxDir;
+    private final Map<String, String> inputDigests;
+    private final BindepsReaderCache readerCache;
+
+    public MergerCommand(PrintWriter out, Path sandboxDir) {
+        this(out, sandboxDir, Map.of(), null);
+    }
+
+    public MergerCommand(PrintWriter out, Path sandboxDir, Map<String, String> inputDigests,
+                         @Nullable BindepsReaderCache readerCache) {
+        this.out = out;
+        this.sandboxDir = sandboxDir;
+        this.inputDigests = inputDigests;
+        this.readerCache = readerCache;
+    }
+
     @Override
     public Integer call() throws Exception {
         var builder = new Merger.Builder();
-        for (var classPathEntry : classPath) {
-            builder.addClassPath(classPathEntry[0], classPathEntry[1]);
+        if (classPath != null) {
+            for (var classPathEntry : classPath) {
+                builder.addClassPath(sandboxDir.resolve(classPathEntry[0]), sandboxDir.resolve(classPathEntry[1]),
+                        inputDigests.get(classPathEntry[1].toString()));
+            }
         }
-        for (var inputEntry : input) {
-            builder.addInput(inputEntry[0], inputEntry[1]);
+        if (input != null) {
+            for (var inputEntry : input) {
+                builder.addInput(sandboxDir.resolve(inputEntry[0]), sandboxDir.resolve(inputEntry[1]),
+                        inputDigests.get(inputEntry[1].toString()));
+            }
+        }
+        builder.setReaderCache(readerCache);
+        builder.setOutput(sandboxDir.resolve(output));
+        builder.setRelease(release);
+        builder.setShrink(shrink);
+        if (keepSpecifications != null) {
+            for (var specification : keepSpecifications) {
+                builder.addKeepSpecification(specification);
+            }
+        }
+        if (proguardConfigs != null) {
+            for (var config : proguardConfigs) {
+                builder.addProguardConfig(sandboxDir.resolve(config));
+            }
+        }
+        if (relocations != null) {
+            for (var relocation : relocations) {
+                builder.addRelocation(relocation[0], relocation[1]);
+            }
         }
-        builder.setOutput(output);
         var merger = builder.build();
         merger.run();
+        for (var warning : merger.getWarnings()) {
+            out.println("Warning: " + warning);
+        }
         return 0;
     }
 
-    public static int invoke(PrintWriter out, String... args) {
-        return new CommandLine(new MergerCommand()).execute(args);
+    public static int invoke(PrintWriter out, Path sandboxDir, String... args) {
+        return invoke(new MergerCommand(out, sandboxDir), out, args);
+    }
+
+    public static int invoke(PrintWriter out, Path sandboxDir, Map<String, String> inputDigests,
+                             @Nullable BindepsReaderCache readerCache, String... args) {
+        return invoke(new MergerCommand(out, sandboxDir, inputDigests, readerCache), out, args);
+    }
+
+    private static int invoke(MergerCommand command, PrintWriter out, String... args) {
+        var commandLine = new CommandLine(command);
+        commandLine.setOut(out);
+        commandLine.setErr(out);
+        return commandLine.execute(args);
     }
 
     public static void main(String... args) {
-        System.exit(invoke(new PrintWriter(System.out), args));
+        var out = new PrintWriter(System.out, true);
+        System.exit(invoke(out, Path.of("."), args));
     }
 }
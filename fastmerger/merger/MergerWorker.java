@@ -1,13 +1,29 @@
 package top.fifthlight.fastmerger.merger;
 
 import top.fifthlight.bazel.worker.api.Worker;
+import top.fifthlight.fastmerger.bindeps.BindepsReaderCache;
 
 import java.io.PrintWriter;
 import java.nio.file.Path;
+import java.util.Map;
 
 public class MergerWorker extends Worker {
+    // Library .bdeps files are the same across most builds, so keep them mapped between requests
+    private static final long MAX_CACHED_MAPPED_SIZE = 512L * 1024 * 1024;
+
+    private final BindepsReaderCache readerCache = new BindepsReaderCache(MAX_CACHED_MAPPED_SIZE);
+
     @Override
     protected int handleRequest(PrintWriter out, Path sandboxDir, String... args) throws Exception {
-        return MergerCommand.invoke(out, args);
+        return MergerCommand.invoke(out, sandboxDir, args);
+    }
+
+    @Override
+    protected int handleRequest(PrintWriter out, Path sandboxDir, Map<String, String> inputDigests, String... args) throws Exception {
+        return MergerCommand.invoke(out, sandboxDir, inputDigests, readerCache, args);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new MergerWorker().run(args);
     }
 }
@@ -0,0 +1,253 @@
+package top.fifthlight.fastmerger.merger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A minimal ZIP writer which accepts already compressed entry data.
+ * <p>
+ * Entry data is transferred from the input channel as-is, so STORED and DEFLATED entries never get inflated and
+ * re-deflated. All entries are written with a fixed DOS epoch timestamp to keep output reproducible.
+ */
+public class RawZipWriter implements AutoCloseable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EXTRA_SIZE = 12; // 2(id) + 2(size) + 8(local header offset)
+
+    private static final short VERSION_DEFAULT = 20;
+    private static final short VERSION_ZIP64 = 45;
+    private static final short FLAG_UTF8 = 0x0800;
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+
+    // 1980-01-01 00:00:00 in DOS format
+    private static final short DOS_TIME = 0;
+    private static final short DOS_DATE = (1 << 5) | 1;
+
+    private static final long UINT32_MAX = 0xFFFFFFFFL;
+    private static final int UINT16_MAX = 0xFFFF;
+
+    private static final short METHOD_STORED = 0;
+    private static final short METHOD_DEFLATED = 8;
+
+    private boolean closed = false;
+    private final FileChannel outputChannel;
+    private final ByteBuffer headerBuffer = ByteBuffer.allocate(LOCAL_HEADER_SIZE + UINT16_MAX).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer centralDirectoryBuffer = ByteBuffer.allocate(256 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private long position = 0;
+    private long entryCount = 0;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private byte[] deflateBuffer = new byte[64 * 1024];
+
+    public RawZipWriter(Path outputPath) throws IOException {
+        this.outputChannel = FileChannel.open(outputPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private void ensureCentralDirectorySize(int size) {
+        if (centralDirectoryBuffer.remaining() < size) {
+            var capacity = centralDirectoryBuffer.capacity();
+            var newBuffer = ByteBuffer.allocate(Math.max(capacity * 2, capacity + size)).order(ByteOrder.LITTLE_ENDIAN);
+            centralDirectoryBuffer.flip();
+            newBuffer.put(centralDirectoryBuffer);
+            centralDirectoryBuffer = newBuffer;
+        }
+    }
+
+    private void writeBuffer(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += outputChannel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] encodeName(String name) {
+        var nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > UINT16_MAX) {
+            throw new IllegalArgumentException("Entry name too long: " + name);
+        }
+        return nameBytes;
+    }
+
+    private long writeLocalHeader(byte[] nameBytes, short method, int crc32, int compressedSize, int uncompressedSize) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        var localHeaderOffset = position;
+        headerBuffer.putInt(LOCAL_HEADER_SIGNATURE);
+        headerBuffer.putShort(VERSION_DEFAULT);
+        headerBuffer.putShort(FLAG_UTF8);
+        headerBuffer.putShort(method);
+        headerBuffer.putShort(DOS_TIME);
+        headerBuffer.putShort(DOS_DATE);
+        headerBuffer.putInt(crc32);
+        headerBuffer.putInt(compressedSize);
+        headerBuffer.putInt(uncompressedSize);
+        headerBuffer.putShort((short) nameBytes.length);
+        headerBuffer.putShort((short) 0); // Extra length
+        headerBuffer.put(nameBytes);
+        writeBuffer(headerBuffer);
+        return localHeaderOffset;
+    }
+
+    private void writeCentralHeader(byte[] nameBytes, short method, int crc32, int compressedSize, int uncompressedSize, long localHeaderOffset) {
+        var zip64 = localHeaderOffset >= UINT32_MAX;
+        ensureCentralDirectorySize(CENTRAL_HEADER_SIZE + nameBytes.length + ZIP64_EXTRA_SIZE);
+        centralDirectoryBuffer.putInt(CENTRAL_HEADER_SIGNATURE);
+        centralDirectoryBuffer.putShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT); // Version made by
+        centralDirectoryBuffer.putShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT); // Version needed
+        centralDirectoryBuffer.putShort(FLAG_UTF8);
+        centralDirectoryBuffer.putShort(method);
+        centralDirectoryBuffer.putShort(DOS_TIME);
+        centralDirectoryBuffer.putShort(DOS_DATE);
+        centralDirectoryBuffer.putInt(crc32);
+        centralDirectoryBuffer.putInt(compressedSize);
+        centralDirectoryBuffer.putInt(uncompressedSize);
+        centralDirectoryBuffer.putShort((short) nameBytes.length);
+        centralDirectoryBuffer.putShort((short) (zip64 ? ZIP64_EXTRA_SIZE : 0)); // Extra length
+        centralDirectoryBuffer.putShort((short) 0); // Comment length
+        centralDirectoryBuffer.putShort((short) 0); // Disk number start
+        centralDirectoryBuffer.putShort((short) 0); // Internal attributes
+        centralDirectoryBuffer.putInt(0); // External attributes
+        centralDirectoryBuffer.putInt(zip64 ? (int) UINT32_MAX : (int) localHeaderOffset);
+        centralDirectoryBuffer.put(nameBytes);
+        if (zip64) {
+            centralDirectoryBuffer.putShort(ZIP64_EXTRA_ID);
+            centralDirectoryBuffer.putShort((short) 8);
+            centralDirectoryBuffer.putLong(localHeaderOffset);
+        }
+        entryCount++;
+    }
+
+    /**
+     * Write an entry whose compressed data is copied from another file without decompressing.
+     */
+    public void writeRawEntry(String name, short method, int crc32, int compressedSize, int uncompressedSize,
+                              FileChannel sourceChannel, long sourceOffset) throws IOException {
+        var nameBytes = encodeName(name);
+        var localHeaderOffset = writeLocalHeader(nameBytes, method, crc32, compressedSize, uncompressedSize);
+
+        long transferred = 0;
+        while (transferred < compressedSize) {
+            var count = sourceChannel.transferTo(sourceOffset + transferred, compressedSize - transferred, outputChannel);
+            if (count <= 0) {
+                throw new IOException("Unexpected EOF when copying entry: " + name);
+            }
+            transferred += count;
+        }
+        position += transferred;
+
+        writeCentralHeader(nameBytes, method, crc32, compressedSize, uncompressedSize, localHeaderOffset);
+    }
+
+    /**
+     * Write an uncompressed entry from memory.
+     */
+    public void writeStoredEntry(String name, byte[] data) throws IOException {
+        var crc = new CRC32();
+        crc.update(data);
+        var crc32 = (int) crc.getValue();
+
+        var nameBytes = encodeName(name);
+        var localHeaderOffset = writeLocalHeader(nameBytes, METHOD_STORED, crc32, data.length, data.length);
+        var dataBuffer = ByteBuffer.wrap(data);
+        while (dataBuffer.hasRemaining()) {
+            position += outputChannel.write(dataBuffer);
+        }
+        writeCentralHeader(nameBytes, METHOD_STORED, crc32, data.length, data.length, localHeaderOffset);
+    }
+
+    /**
+     * Compress an entry from memory and write it.
+     */
+    public void writeDeflatedEntry(String name, byte[] data) throws IOException {
+        var crc = new CRC32();
+        crc.update(data);
+        var crc32 = (int) crc.getValue();
+
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        var compressedSize = 0;
+        while (!deflater.finished()) {
+            if (compressedSize == deflateBuffer.length) {
+                deflateBuffer = Arrays.copyOf(deflateBuffer, deflateBuffer.length * 2);
+            }
+            compressedSize += deflater.deflate(deflateBuffer, compressedSize, deflateBuffer.length - compressedSize);
+        }
+
+        var nameBytes = encodeName(name);
+        var localHeaderOffset = writeLocalHeader(nameBytes, METHOD_DEFLATED, crc32, compressedSize, data.length);
+        var dataBuffer = ByteBuffer.wrap(deflateBuffer, 0, compressedSize);
+        while (dataBuffer.hasRemaining()) {
+            position += outputChannel.write(dataBuffer);
+        }
+        writeCentralHeader(nameBytes, METHOD_DEFLATED, crc32, compressedSize, data.length, localHeaderOffset);
+    }
+
+    private void writeEndOfCentralDirectory(long centralDirectoryOffset, long centralDirectorySize) throws IOException {
+        var zip64 = entryCount >= UINT16_MAX || centralDirectoryOffset >= UINT32_MAX || centralDirectorySize >= UINT32_MAX;
+        var buffer = ByteBuffer.allocate(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE + ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE + END_OF_CENTRAL_DIRECTORY_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (zip64) {
+            var zip64RecordOffset = position;
+            buffer.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            buffer.putLong(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE - 12); // Size of remaining record
+            buffer.putShort(VERSION_ZIP64); // Version made by
+            buffer.putShort(VERSION_ZIP64); // Version needed
+            buffer.putInt(0); // Number of this disk
+            buffer.putInt(0); // Disk with central directory
+            buffer.putLong(entryCount); // Entries on this disk
+            buffer.putLong(entryCount); // Total entries
+            buffer.putLong(centralDirectorySize);
+            buffer.putLong(centralDirectoryOffset);
+
+            buffer.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+            buffer.putInt(0); // Disk with zip64 end of central directory
+            buffer.putLong(zip64RecordOffset);
+            buffer.putInt(1); // Total disks
+        }
+        buffer.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        buffer.putShort((short) 0); // Number of this disk
+        buffer.putShort((short) 0); // Disk with central directory
+        buffer.putShort((short) Math.min(entryCount, UINT16_MAX));
+        buffer.putShort((short) Math.min(entryCount, UINT16_MAX));
+        buffer.putInt((int) Math.min(centralDirectorySize, UINT32_MAX));
+        buffer.putInt((int) Math.min(centralDirectoryOffset, UINT32_MAX));
+        buffer.putShort((short) 0); // Comment length
+        writeBuffer(buffer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            var centralDirectoryOffset = position;
+            var centralDirectorySize = centralDirectoryBuffer.position();
+            writeBuffer(centralDirectoryBuffer);
+            writeEndOfCentralDirectory(centralDirectoryOffset, centralDirectorySize);
+        } finally {
+            deflater.end();
+            outputChannel.close();
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package top.fifthlight.fastmerger.merger;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+import top.fifthlight.fastmerger.bindeps.BindepsReader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves classes and resources under package prefixes to other prefixes.
+ * <p>
+ * The string pool of .bdeps is the path tree of all names mentioned by a JAR, so the names under a relocated prefix
+ * form a continuous index range. Dependencies include class names in generic signatures and in string constants, which
+ * are renamed too, so a class whose name and dependency indices all fall outside those ranges doesn't mention any
+ * relocated class, and is copied without running ASM on it.
+ */
+public class Relocator {
+    private static final String META_INF_PREFIX = "META-INF/";
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+
+    /**
+     * A relocation rule, with both prefixes in internal name form, like {@code kotlin/coroutines}.
+     */
+    public record Relocation(String from, String to) {
+        private boolean matches(String name, char separator) {
+            return name.startsWith(from) && (name.length() == from.length() || name.charAt(from.length()) == separator);
+        }
+
+        private String apply(String name) {
+            return to + name.substring(from.length());
+        }
+    }
+
+    private final List<Relocation> relocations;
+    private final List<Relocation> binaryRelocations;
+    private final Remapper remapper = new RelocatingRemapper();
+
+    public Relocator(List<Relocation> relocations) {
+        this.relocations = List.copyOf(relocations);
+        this.binaryRelocations = relocations.stream()
+                .map(relocation -> new Relocation(relocation.from().replace('/', '.'), relocation.to().replace('/', '.')))
+                .toList();
+    }
+
+    public static String normalizePrefix(String prefix) {
+        var result = prefix.replace('.', '/');
+        while (result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("Relocation prefix is empty");
+        }
+        return result;
+    }
+
+    @Nullable
+    private static Relocation find(List<Relocation> relocations, String name, char separator) {
+        for (var relocation : relocations) {
+            if (relocation.matches(name, separator)) {
+                return relocation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Map an internal class name, or a path of class file.
+     */
+    public String mapClassName(String internalName) {
+        var relocation = find(relocations, internalName, '/');
+        return relocation != null ? relocation.apply(internalName) : internalName;
+    }
+
+    /**
+     * Map a binary class name, like the ones in manifests and SPI config files.
+     */
+    public String mapBinaryName(String binaryName) {
+        var relocation = find(binaryRelocations, binaryName, '.');
+        return relocation != null ? relocation.apply(binaryName) : binaryName;
+    }
+
+    /**
+     * Map a path in output JAR. Resources under relocated packages are moved along with classes.
+     */
+    public String mapPath(String path) {
+        if (path.startsWith(SERVICES_PREFIX)) {
+            return SERVICES_PREFIX + mapBinaryName(path.substring(SERVICES_PREFIX.length()));
+        }
+        if (path.startsWith(META_INF_PREFIX)) {
+            return path;
+        }
+        return mapClassName(path);
+    }
+
+    private class RelocatingRemapper extends Remapper {
+        @Override
+        public String map(String internalName) {
+            return mapClassName(internalName);
+        }
+
+        @Override
+        public String mapPackageName(String name) {
+            return mapClassName(name);
+        }
+
+        @Override
+        public Object mapValue(Object value) {
+            // Class names in string constants are usually used for reflection
+            if (value instanceof String string) {
+                if (string.indexOf('/') != -1) {
+                    return mapClassName(string);
+                } else if (string.indexOf('.') != -1) {
+                    return mapBinaryName(string);
+                }
+                return string;
+            }
+            return super.mapValue(value);
+        }
+    }
+
+    public byte[] relocateClass(byte[] classBytes) {
+        var classReader = new ClassReader(classBytes);
+        // Don't share the constant pool with the reader, or stale names before relocation will be kept in output
+        var classWriter = new ClassWriter(0);
+        classReader.accept(new ClassRemapper(classWriter, remapper), 0);
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Ranges of string pool indices under relocated prefixes in a .bdeps file.
+     */
+    public class Filter {
+        private final int[] rangeStarts;
+        private final int[] rangeEnds;
+
+        private Filter(BindepsReader reader) {
+            var starts = new ArrayList<Integer>();
+            var ends = new ArrayList<Integer>();
+            for (var relocation : relocations) {
+                var index = reader.findStringPoolIndex(relocation.from());
+                if (index != -1) {
+                    starts.add(index);
+                    ends.add(reader.getStringPoolSubtreeEnd(index));
+                }
+            }
+            rangeStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+            rangeEnds = ends.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private boolean isRelocated(int index) {
+            for (var i = 0; i < rangeStarts.length; i++) {
+                if (index >= rangeStarts[i] && index < rangeEnds[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Check whether the class mentions any relocated name, and has to be rewritten.
+         */
+        public boolean needsRelocation(BindepsReader.ClassInfoEntry entry) {
+            if (rangeStarts.length == 0) {
+                return false;
+            }
+            if (isRelocated(entry.getNameIndex())) {
+                return true;
+            }
+            var dependencies = entry.getDependenciesIndices();
+            for (var i = 0; i < dependencies.limit(); i++) {
+                if (isRelocated(dependencies.get(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public Filter createFilter(BindepsReader reader) {
+        return new Filter(reader);
+    }
+}
@@ -0,0 +1,226 @@
+package top.fifthlight.fastmerger.merger;
+
+import org.jetbrains.annotations.Nullable;
+import top.fifthlight.fastmerger.bindeps.BindepsReader;
+
+import java.util.*;
+
+/**
+ * Removes input classes which can never be reached from entry points.
+ * <p>
+ * Starting from root classes and classes matched by keep rules, the super class, interfaces, annotations and
+ * dependencies recorded in .bdeps are walked. Classes not in inputs are treated as provided by environment, and are
+ * only used to resolve class hierarchy for {@code extends} and {@code implements} specifications.
+ */
+public class TreeShaker {
+    public record ClassNode(String name, int access, @Nullable String superName, String[] interfaces,
+                            String[] annotations, BindepsReader.ClassInfoEntry entry, @Nullable String path) {
+        private static String[] getFullNames(BindepsReader.StringPoolEntry[] entries) {
+            var names = new String[entries.length];
+            for (var i = 0; i < entries.length; i++) {
+                names[i] = entries[i].getFullName();
+            }
+            return names;
+        }
+
+        public static ClassNode of(BindepsReader.ClassInfoEntry entry, @Nullable String path) {
+            var superClass = entry.getSuperClass();
+            return new ClassNode(
+                    entry.getName().getFullName(),
+                    entry.getAccess(),
+                    superClass != null ? superClass.getFullName() : null,
+                    getFullNames(entry.getInterfaces()),
+                    getFullNames(entry.getAnnotations()),
+                    entry,
+                    path
+            );
+        }
+
+        public String[] dependencies() {
+            return getFullNames(entry.getDependencies());
+        }
+    }
+
+    private final HashMap<String, ClassNode> inputClasses = new HashMap<>();
+    private final List<BindepsReader> classPathReaders;
+    private HashMap<String, ClassNode> classPathClasses = null;
+
+    public TreeShaker(List<BindepsReader> classPathReaders) {
+        this.classPathReaders = classPathReaders;
+    }
+
+    /**
+     * Add a class which will be written into output.
+     *
+     * @param path path of the class file in output JAR
+     */
+    public void addInputClass(String path, BindepsReader.ClassInfoEntry entry) {
+        var node = ClassNode.of(entry, path);
+        inputClasses.putIfAbsent(node.name(), node);
+    }
+
+    private HashMap<String, ClassNode> getClassPathClasses() {
+        if (classPathClasses == null) {
+            classPathClasses = new HashMap<>();
+            for (var reader : classPathReaders) {
+                for (var i = 0; i < reader.getClassInfoSize(); i++) {
+                    var entry = reader.getClassInfoEntry(i);
+                    var name = entry.getName().getFullName();
+                    if (!classPathClasses.containsKey(name)) {
+                        classPathClasses.put(name, ClassNode.of(entry, null));
+                    }
+                }
+            }
+        }
+        return classPathClasses;
+    }
+
+    @Nullable
+    private ClassNode findClass(String name) {
+        var node = inputClasses.get(name);
+        if (node != null) {
+            return node;
+        }
+        if (classPathClasses != null) {
+            return classPathClasses.get(name);
+        }
+        // Look up in .bdeps files directly, so resolving hierarchy doesn't need to index the whole class path
+        for (var reader : classPathReaders) {
+            var entry = reader.findClassInfo(name);
+            if (entry != null) {
+                return ClassNode.of(entry, null);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether any super class or interface of the node, directly or indirectly, matches the filters.
+     */
+    public boolean hasSuperType(ClassNode node, KeepRules.NameFilter name, @Nullable KeepRules.NameFilter annotation) {
+        var visited = new HashSet<String>();
+        var queue = new ArrayDeque<String>();
+        if (node.superName() != null) {
+            queue.add(node.superName());
+        }
+        Collections.addAll(queue, node.interfaces());
+        while (!queue.isEmpty()) {
+            var superName = queue.poll();
+            if (!visited.add(superName)) {
+                continue;
+            }
+            var superNode = findClass(superName);
+            if (name.matches(superName)) {
+                if (annotation == null) {
+                    return true;
+                }
+                if (superNode != null && annotation.matchesAny(superNode.annotations())) {
+                    return true;
+                }
+            }
+            if (superNode != null) {
+                if (superNode.superName() != null) {
+                    queue.add(superNode.superName());
+                }
+                Collections.addAll(queue, superNode.interfaces());
+            }
+        }
+        return false;
+    }
+
+    private final HashSet<String> reachableClasses = new HashSet<>();
+    private final ArrayDeque<ClassNode> pendingClasses = new ArrayDeque<>();
+
+    private void markReachable(String name) {
+        var node = inputClasses.get(name);
+        if (node != null && reachableClasses.add(name)) {
+            pendingClasses.add(node);
+        }
+    }
+
+    private void markMatching(KeepRules.ClassSpec spec) {
+        for (var node : inputClasses.values()) {
+            if (spec.matches(node, this)) {
+                markReachable(node.name());
+            }
+        }
+    }
+
+    private boolean isConditionMet(KeepRules.ClassSpec condition) {
+        for (var name : reachableClasses) {
+            if (condition.matches(inputClasses.get(name), this)) {
+                return true;
+            }
+        }
+        for (var node : getClassPathClasses().values()) {
+            if (condition.matches(node, this)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void walk() {
+        while (!pendingClasses.isEmpty()) {
+            var node = pendingClasses.poll();
+            if (node.superName() != null) {
+                markReachable(node.superName());
+            }
+            for (var name : node.interfaces()) {
+                markReachable(name);
+            }
+            for (var name : node.annotations()) {
+                markReachable(name);
+            }
+            for (var name : node.dependencies()) {
+                markReachable(name);
+            }
+        }
+    }
+
+    /**
+     * Walk from the entry points, and find out classes which can be removed.
+     *
+     * @param rules       keep rules
+     * @param rootClasses internal names of classes to be kept
+     * @return output paths of unreachable classes
+     */
+    public List<String> shake(KeepRules rules, Collection<String> rootClasses) {
+        var conditionalRules = new ArrayList<KeepRules.Rule>();
+        for (var rule : rules.getRules()) {
+            if (rule.condition() == null) {
+                markMatching(rule.spec());
+            } else {
+                conditionalRules.add(rule);
+            }
+        }
+        for (var name : rootClasses) {
+            markReachable(name);
+        }
+        walk();
+
+        // Conditional rules can make more classes reachable, so repeat until nothing changes
+        var changed = true;
+        while (changed) {
+            changed = false;
+            var iterator = conditionalRules.iterator();
+            while (iterator.hasNext()) {
+                var rule = iterator.next();
+                if (isConditionMet(rule.condition())) {
+                    iterator.remove();
+                    markMatching(rule.spec());
+                    changed = true;
+                }
+            }
+            walk();
+        }
+
+        var removedPaths = new ArrayList<String>();
+        for (var node : inputClasses.values()) {
+            if (!reachableClasses.contains(node.name())) {
+                removedPaths.add(node.path());
+            }
+        }
+        return removedPaths;
+    }
+}
@@ -4,9 +4,11 @@ import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.jetbrains.annotations.Nullable;
 import picocli.CommandLine;
 import top.fifthlight.bazel.worker.api.Worker;
 import top.fifthlight.fastmerger.bindeps.BindepsConstants;
+import top.fifthlight.fastmerger.bindeps.BindepsReader;
 import top.fifthlight.fastmerger.bindeps.BindepsWriter;
 import top.fifthlight.fastmerger.scanner.classdeps.ClassDepsScanner;
 import top.fifthlight.fastmerger.scanner.classdeps.ClassInfo;
@@ -14,22 +16,41 @@ import top.fifthlight.fastmerger.scanner.pathmap.PathMap;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
 
 import static picocli.CommandLine.*;
 
 public class ScannerWorker extends Worker {
     private static class Environment {
+        // Split class entries into more chunks than threads, so threads finishing early can take more work
+        private static final int CHUNKS_PER_THREAD = 4;
+
         private final Path inputPath;
         private final Path outputPath;
+        private final boolean mmap;
+        @Nullable
+        private final BindepsReader previousReader;
         private boolean scanned = false;
+        private int reusedClassCount = 0;
 
-        private Environment(Path inputPath, Path outputPath) {
+        /**
+         * @param previousReader .bdeps file from previous scan of the same JAR, to reuse records of unchanged classes
+         */
+        private Environment(Path inputPath, Path outputPath, boolean mmap, @Nullable BindepsReader previousReader) {
             this.inputPath = inputPath;
             this.outputPath = outputPath;
+            this.mmap = mmap;
+            this.previousReader = previousReader;
         }
 
         private record ClassInfoKey(PathMap.Entry nameKey, int release) {
@@ -95,16 +116,12 @@ public class ScannerWorker extends Worker {
                         entryMethod + " for entry: " + entry.getName());
             };
 
-            int dataOffset;
+            long dataOffset;
             int compressedSize;
             int uncompressedSize;
             byte[] data = null;
             if ((flag & BindepsConstants.RESOURCE_FLAG_INLINE) == 0) {
-                var dataOffsetLong = entry.getDataOffset();
-                if (dataOffsetLong > Integer.MAX_VALUE) {
-                    throw new IllegalStateException("Data offset too large for entry: " + entry.getName());
-                }
-                dataOffset = (int) dataOffsetLong;
+                dataOffset = entry.getDataOffset();
 
                 var compressedSizeLong = entry.getCompressedSize();
                 if (compressedSizeLong > Integer.MAX_VALUE) {
@@ -137,8 +154,12 @@ public class ScannerWorker extends Worker {
 
         private static final String multiReleasePrefix = "META-INF/versions/";
 
-        private ClassInfoEntry scanClassInfo(ResourceInfo resourceInfo, byte[] entry) {
-            var classInfo = ClassDepsScanner.scan(pathMap, entry);
+        private ClassInfoEntry scanClassInfo(ResourceInfo resourceInfo, byte[] content, int length) {
+            var classInfo = ClassDepsScanner.scan(pathMap, content, 0, length);
+            return new ClassInfoEntry(classInfo, getRelease(resourceInfo), resourceInfo);
+        }
+
+        private static int getRelease(ResourceInfo resourceInfo) {
             var release = -1;
             var resourcePath = resourceInfo.name().fullName();
             if (resourcePath.startsWith(multiReleasePrefix)) {
@@ -152,10 +173,70 @@ public class ScannerWorker extends Worker {
                 }
                 release = Integer.parseInt(builder.toString());
             }
-            return new ClassInfoEntry(classInfo, release, resourceInfo);
+            return release;
         }
 
-        private void scanJar() throws Exception {
+        private PathMap.Entry[] copyEntries(BindepsReader.StringPoolEntry[] entries) {
+            var result = new PathMap.Entry[entries.length];
+            for (var i = 0; i < entries.length; i++) {
+                result[i] = pathMap.getOrCreate(entries[i].getFullName());
+            }
+            return result;
+        }
+
+        /**
+         * Rebuild class info from a record of previous scan, without reading the class file.
+         */
+        private ClassInfoEntry copyClassInfo(ResourceInfo resourceInfo, BindepsReader.ClassInfoEntry previous) {
+            var superClass = previous.getSuperClass();
+            var classInfo = new ClassInfo(
+                    pathMap,
+                    pathMap.getOrCreate(previous.getName().getFullName()),
+                    previous.getAccess(),
+                    superClass != null ? pathMap.getOrCreate(superClass.getFullName()) : null,
+                    copyEntries(previous.getInterfaces()),
+                    copyEntries(previous.getAnnotations()),
+                    copyEntries(previous.getDependencies())
+            );
+            return new ClassInfoEntry(classInfo, getRelease(resourceInfo), resourceInfo);
+        }
+
+        /**
+         * Index class records of previous scan by class file path.
+         */
+        private HashMap<String, BindepsReader.ClassInfoEntry> loadPreviousClasses() {
+            var result = new HashMap<String, BindepsReader.ClassInfoEntry>();
+            if (previousReader == null) {
+                return result;
+            }
+            for (var i = 0; i < previousReader.getClassInfoSize(); i++) {
+                var entry = previousReader.getClassInfoEntry(i);
+                result.put(entry.getResourceInfo().getName().getFullName(), entry);
+            }
+            return result;
+        }
+
+        @Nullable
+        private BindepsReader.ClassInfoEntry findPreviousClass(Map<String, BindepsReader.ClassInfoEntry> previousClasses,
+                                                               ResourceInfo resourceInfo) {
+            var previous = previousClasses.get(resourceInfo.name().fullName());
+            if (previous == null) {
+                return null;
+            }
+            var previousResource = previous.getResourceInfo();
+            if (previousResource.getCrc32() != resourceInfo.crc32() || previousResource.getUncompressedSize() != resourceInfo.uncompressedSize()) {
+                return null;
+            }
+            return previous;
+        }
+
+        private record ClassEntry(ZipArchiveEntry entry, ResourceInfo resourceInfo) {
+        }
+
+        /**
+         * Read class entries through streams of the ZIP file on this thread, and scan them in a thread pool.
+         */
+        private List<ClassInfoEntry> scanClassesStreamed(ZipFile zipFile, List<ClassEntry> classEntries) throws Exception {
             var maxConcurrency = Runtime.getRuntime().availableProcessors();
             try (var executor = new ThreadPoolExecutor(
                     maxConcurrency,
@@ -165,49 +246,170 @@ public class ScannerWorker extends Worker {
                     new ArrayBlockingQueue<>(maxConcurrency),
                     new ThreadPoolExecutor.CallerRunsPolicy()
             )) {
-                try (var zipFile = ZipFile.builder().setPath(inputPath).get()) {
-                    var futures = new ArrayList<CompletableFuture<ClassInfoEntry>>();
-                    Manifest manifest = null;
-                    var entries = zipFile.getEntriesInPhysicalOrder();
-                    while (entries.hasMoreElements()) {
-                        var entry = entries.nextElement();
-                        if (entry.isDirectory()) {
-                            continue;
+                try {
+                    var futures = new ArrayList<CompletableFuture<ClassInfoEntry>>(classEntries.size());
+                    for (var classEntry : classEntries) {
+                        byte[] content;
+                        try (var stream = zipFile.getInputStream(classEntry.entry())) {
+                            content = stream.readAllBytes();
                         }
+                        futures.add(CompletableFuture.supplyAsync(() -> scanClassInfo(classEntry.resourceInfo(), content, content.length), executor));
+                    }
 
-                        var resourceEntry = scanResource(zipFile, entry);
-                        resourceInfoNameMap.put(resourceEntry.name().fullName(), resourceEntry);
+                    var result = new ArrayList<ClassInfoEntry>(futures.size());
+                    for (var future : futures) {
+                        result.add(future.get());
+                    }
+                    return result;
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        }
 
-                        var name = entry.getName();
-                        if (name.equals("META-INF/MANIFEST.MF")) {
-                            manifest = new Manifest(zipFile.getInputStream(entry));
-                        } else if (name.endsWith(".class")) {
-                            byte[] content;
-                            try (var stream = zipFile.getInputStream(entry)) {
-                                content = stream.readAllBytes();
+        /**
+         * Inflate and scan a continuous range of class entries from the mapped JAR. One inflater and buffer are reused
+         * for all entries in the range.
+         */
+        private List<ClassInfoEntry> scanClassChunk(ByteBuffer mappedJar, List<ClassEntry> classEntries) throws IOException, DataFormatException {
+            var result = new ArrayList<ClassInfoEntry>(classEntries.size());
+            var inflater = new Inflater(true);
+            var buffer = new byte[64 * 1024];
+            try {
+                for (var classEntry : classEntries) {
+                    var resourceInfo = classEntry.resourceInfo();
+                    var size = resourceInfo.uncompressedSize();
+                    if (buffer.length < size) {
+                        buffer = new byte[Math.max(size, buffer.length * 2)];
+                    }
+                    // Only JARs under 2 GiB are mapped, so the offset always fits
+                    var data = mappedJar.slice((int) resourceInfo.dataOffset(), resourceInfo.compressedSize());
+                    switch (resourceInfo.compressMethod()) {
+                        case ZipArchiveEntry.STORED -> {
+                            if (resourceInfo.compressedSize() != size) {
+                                throw new IllegalStateException("Size mismatch for stored entry: " + classEntry.entry().getName());
                             }
-                            futures.add(CompletableFuture.supplyAsync(() -> scanClassInfo(resourceEntry, content), executor));
+                            data.get(buffer, 0, size);
                         }
+                        case ZipArchiveEntry.DEFLATED -> {
+                            inflater.reset();
+                            inflater.setInput(data);
+                            var length = 0;
+                            while (length < size) {
+                                var count = inflater.inflate(buffer, length, size - length);
+                                if (count == 0 && inflater.needsDictionary()) {
+                                    throw new ZipException("Deflated entry needs a preset dictionary: " + classEntry.entry().getName());
+                                }
+                                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                                    break;
+                                }
+                                length += count;
+                            }
+                            if (length != size) {
+                                throw new IllegalStateException("Size mismatch for deflated entry: " + classEntry.entry().getName());
+                            }
+                        }
+                        default -> throw new IllegalStateException("Unsupported compress method " +
+                                resourceInfo.compressMethod() + " for entry: " + classEntry.entry().getName());
                     }
+                    result.add(scanClassInfo(resourceInfo, buffer, size));
+                }
+            } finally {
+                inflater.end();
+            }
+            return result;
+        }
 
-                    var isMultiReleaseJar = manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
+        /**
+         * Map the JAR into memory, and split class entries in central directory order across threads. Each thread
+         * reads and scans its own entries, so no single thread is bottlenecked on decompression.
+         */
+        private List<ClassInfoEntry> scanClassesMapped(List<ClassEntry> classEntries) throws Exception {
+            ByteBuffer mappedJar;
+            try (var channel = FileChannel.open(inputPath, StandardOpenOption.READ)) {
+                mappedJar = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            var maxConcurrency = Runtime.getRuntime().availableProcessors();
+            var chunkCount = Math.max(1, Math.min(classEntries.size(), maxConcurrency * CHUNKS_PER_THREAD));
+            try (var executor = Executors.newFixedThreadPool(maxConcurrency)) {
+                try {
+                    var futures = new ArrayList<Future<List<ClassInfoEntry>>>(chunkCount);
+                    for (var i = 0; i < chunkCount; i++) {
+                        var chunk = classEntries.subList(classEntries.size() * i / chunkCount, classEntries.size() * (i + 1) / chunkCount);
+                        futures.add(executor.submit(() -> scanClassChunk(mappedJar, chunk)));
+                    }
 
+                    var result = new ArrayList<ClassInfoEntry>(classEntries.size());
                     for (var future : futures) {
-                        var entry = future.get();
-                        var release = isMultiReleaseJar ? entry.release() : -1;
-                        var key = new ClassInfoKey(entry.classInfo.entry(), release);
-                        if (classInfoNameMap.containsKey(key)) {
-                            throw new IllegalStateException("Duplicate class entry: " + key);
-                        } else {
-                            classInfoNameMap.put(key, entry);
-                        }
+                        result.addAll(future.get());
                     }
+                    return result;
                 } finally {
                     executor.shutdownNow();
                 }
             }
         }
 
+        private void scanJar() throws Exception {
+            try (var zipFile = ZipFile.builder().setPath(inputPath).get()) {
+                var classEntries = new ArrayList<ClassEntry>();
+                Manifest manifest = null;
+                var entries = zipFile.getEntriesInPhysicalOrder();
+                while (entries.hasMoreElements()) {
+                    var entry = entries.nextElement();
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+
+                    var resourceEntry = scanResource(zipFile, entry);
+                    resourceInfoNameMap.put(resourceEntry.name().fullName(), resourceEntry);
+
+                    var name = entry.getName();
+                    if (name.equals("META-INF/MANIFEST.MF")) {
+                        manifest = new Manifest(zipFile.getInputStream(entry));
+                    } else if (name.endsWith(".class")) {
+                        classEntries.add(new ClassEntry(entry, resourceEntry));
+                    }
+                }
+
+                // Classes with same path, CRC and size as in previous scan are copied, only changed ones are scanned
+                var classInfoEntries = new ArrayList<ClassInfoEntry>(classEntries.size());
+                var changedClassEntries = new ArrayList<ClassEntry>();
+                var previousClasses = loadPreviousClasses();
+                for (var classEntry : classEntries) {
+                    var previous = findPreviousClass(previousClasses, classEntry.resourceInfo());
+                    if (previous != null) {
+                        classInfoEntries.add(copyClassInfo(classEntry.resourceInfo(), previous));
+                    } else {
+                        changedClassEntries.add(classEntry);
+                    }
+                }
+                reusedClassCount = classInfoEntries.size();
+
+                // A single mapping is limited to 2 GiB
+                if (changedClassEntries.isEmpty()) {
+                    // Nothing to scan
+                } else if (mmap && Files.size(inputPath) <= Integer.MAX_VALUE) {
+                    classInfoEntries.addAll(scanClassesMapped(changedClassEntries));
+                } else {
+                    classInfoEntries.addAll(scanClassesStreamed(zipFile, changedClassEntries));
+                }
+
+                var isMultiReleaseJar = manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
+
+                for (var entry : classInfoEntries) {
+                    var release = isMultiReleaseJar ? entry.release() : -1;
+                    var key = new ClassInfoKey(entry.classInfo.entry(), release);
+                    if (classInfoNameMap.containsKey(key)) {
+                        throw new IllegalStateException("Duplicate class entry: " + key);
+                    } else {
+                        classInfoNameMap.put(key, entry);
+                    }
+                }
+            }
+        }
+
         private ArrayList<PathMap.Entry> pathMapEntries;
         private Object2IntOpenHashMap<PathMap.Entry> pathMapEntriesIndexMap;
 
@@ -234,7 +436,7 @@ public class ScannerWorker extends Worker {
         private void writeStringMap(BindepsWriter writer) {
             for (var entry : pathMapEntries) {
                 var parent = entry.parentEntry();
-                var parentIndex = parent != null ? pathMapEntriesIndexMap.getInt(parent.fullName()) : -1;
+                var parentIndex = parent != null ? pathMapEntriesIndexMap.getInt(parent) : -1;
                 writer.writeStringPoolEntry(entry.hash(), parentIndex, entry.nameBytes(), entry.fullNameBytes());
             }
         }
@@ -347,9 +549,17 @@ public class ScannerWorker extends Worker {
         @Parameters(index = "1", description = "Output binary dependencies file")
         Path outputFile;
 
+        @Option(names = "--no-mmap", description = "Read class entries through streams on a single thread, instead of mapping the JAR")
+        boolean noMmap;
+
+        @Option(names = "--previous", description = "Previous .bdeps file of the same JAR. Classes with unchanged path and CRC are copied from it instead of being scanned again")
+        Path previousFile;
+
+        private final PrintWriter out;
         private final Path sandboxDir;
 
-        public Handler(Path sandboxDir) {
+        public Handler(PrintWriter out, Path sandboxDir) {
+            this.out = out;
             this.sandboxDir = sandboxDir;
         }
 
@@ -357,15 +567,31 @@ public class ScannerWorker extends Worker {
         public Integer call() throws Exception {
             var inputPath = sandboxDir.resolve(inputFile);
             var outputPath = sandboxDir.resolve(outputFile);
-            var environment = new Environment(inputPath, outputPath);
+            BindepsReader previousReader = null;
+            if (previousFile != null) {
+                // The previous file is only a cache, so do a full scan if it can't be used
+                try {
+                    var previousPath = sandboxDir.resolve(previousFile);
+                    // The output is truncated and rewritten while the previous file is read, so a previous file which
+                    // is also the output must be read into memory instead of being mapped
+                    var sameAsOutput = Files.exists(outputPath) && Files.isSameFile(previousPath, outputPath);
+                    previousReader = new BindepsReader(previousPath, !sameAsOutput);
+                } catch (IOException e) {
+                    out.println("Warning: ignoring previous .bdeps file " + previousFile + ": " + e.getMessage());
+                }
+            }
+            var environment = new Environment(inputPath, outputPath, !noMmap, previousReader);
             environment.scan();
+            if (previousReader != null) {
+                out.println("Reused %d of %d classes from previous scan".formatted(environment.reusedClassCount, environment.classInfoNameMap.size()));
+            }
             return 0;
         }
     }
 
     @Override
     protected int handleRequest(PrintWriter out, Path sandboxDir, String... args) {
-        var wrapper = new Handler(sandboxDir);
+        var wrapper = new Handler(out, sandboxDir);
         var commandLine = new CommandLine(wrapper);
         commandLine.setOut(out);
         commandLine.setErr(out);
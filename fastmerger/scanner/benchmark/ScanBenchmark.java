@@ -0,0 +1,306 @@
+package top.fifthlight.fastmerger.scanner.benchmark;
+
+import top.fifthlight.fastmerger.bindeps.BindepsReader;
+import top.fifthlight.fastmerger.bindeps.BindepsWriter;
+import top.fifthlight.fastmerger.scanner.ScannerWorker;
+import top.fifthlight.fastmerger.scanner.classdeps.ClassDepsScanner;
+import top.fifthlight.fastmerger.scanner.pathmap.PathMap;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipFile;
+
+import static top.fifthlight.fastmerger.scanner.benchmark.common.BenchmarkSupport.*;
+
+/**
+ * Measures throughput and allocation of each scanning stage, on a synthetic JAR and on the given JARs.
+ * <p>
+ * Every benchmark reports entries per second, from the median time of measured iterations, and heap bytes allocated
+ * per entry, by all threads. Off-heap buffers of {@link BindepsWriter} are not counted. Results can be saved, and
+ * compared with saved results of an earlier build, which makes the run fail if any benchmark got slower or allocates
+ * more than the tolerance allows.
+ * <p>
+ * Usage: {@code benchmark [--iterations N] [--synthetic N] [--save FILE] [--baseline FILE] [--tolerance F] [<jar>...]}
+ */
+public class ScanBenchmark {
+    private static final int RANDOM_LOOKUPS = 100_000;
+
+    private record Input(String name, Path jar, List<byte[]> classes, List<String> names) {
+    }
+
+    private record Result(double entriesPerSecond, double bytesPerEntry) {
+    }
+
+    private static class ScannerRunner extends ScannerWorker {
+        private final PrintWriter out = new PrintWriter(Writer.nullWriter());
+
+        private void scan(Path input, Path output, String... options) throws Exception {
+            var args = new ArrayList<String>(List.of(options));
+            args.add(input.toString());
+            args.add(output.toString());
+            var status = handleRequest(out, Path.of("."), args.toArray(new String[0]));
+            if (status != 0) {
+                throw new IllegalStateException("Scanner failed with status " + status + " for " + input);
+            }
+        }
+    }
+
+    private static Input loadInput(String name, Path jar) throws IOException {
+        var classes = new ArrayList<byte[]>();
+        var names = new ArrayList<String>();
+        try (var zipFile = new ZipFile(jar.toFile())) {
+            var entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                var entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                names.add(entry.getName());
+                if (entry.getName().endsWith(".class")) {
+                    try (var stream = zipFile.getInputStream(entry)) {
+                        var bytes = stream.readAllBytes();
+                        classes.add(bytes);
+                        collectClassNames(bytes, names);
+                    }
+                }
+            }
+        }
+        return new Input(name, jar, classes, names);
+    }
+
+    private static Result measure(int iterations, long entries, Operation operation) throws Exception {
+        warmUp(iterations, operation);
+        var times = new long[iterations];
+        // The scanner runs on worker threads, so count allocation of all threads
+        var startBytes = getTotalAllocatedBytes();
+        for (var i = 0; i < iterations; i++) {
+            var startTime = System.nanoTime();
+            operation.run();
+            times[i] = System.nanoTime() - startTime;
+        }
+        var allocated = getTotalAllocatedBytes() - startBytes;
+        Arrays.sort(times);
+        var median = times[iterations / 2];
+        return new Result(entries * 1e9 / median, (double) allocated / ((double) iterations * entries));
+    }
+
+    /**
+     * Rewrite all records of a .bdeps file with a new writer, so the writer gets the same data as in a real scan.
+     */
+    private static void copyBindeps(BindepsReader reader, Path output) throws IOException {
+        try (var writer = new BindepsWriter(output, reader.getStringPoolSize(), reader.getResourceInfoSize(), reader.getClassInfoSize())) {
+            for (var i = 0; i < reader.getStringPoolSize(); i++) {
+                var entry = reader.getStringPoolEntry(i);
+                writer.writeStringPoolEntry(entry.getHash(), entry.getParentIndex(),
+                        entry.getName().getBytes(StandardCharsets.UTF_8), entry.getFullName().getBytes(StandardCharsets.UTF_8));
+            }
+            for (var i = 0; i < reader.getResourceInfoSize(); i++) {
+                var entry = reader.getResourceInfoEntry(i);
+                writer.writeResourceEntry(entry.getFlag(), entry.getName().getIndex(), entry.getCrc32(),
+                        entry.getDataOffset(), entry.getCompressedSize(), entry.getUncompressedSize(),
+                        entry.getCompressMethod(), entry.getData());
+            }
+            for (var i = 0; i < reader.getClassInfoSize(); i++) {
+                var entry = reader.getClassInfoEntry(i);
+                writer.writeClassInfoEntry(entry.getNameIndex(), entry.getSuperIndex(), entry.getAccess(),
+                        entry.getResourceIndex(), entry.getRelease(), toArray(entry.getInterfaceIndices()),
+                        toArray(entry.getAnnotationIndices()), toArray(entry.getDependenciesIndices()));
+            }
+        }
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        var array = new int[buffer.remaining()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+    private static Map<String, Result> runInput(Input input, int iterations, Path workDir) throws Exception {
+        var results = new LinkedHashMap<String, Result>();
+        var prefix = input.name() + "/";
+        System.out.printf("%s: %d classes, %d names%n", input.name(), input.classes().size(), input.names().size());
+
+        results.put(prefix + "classdeps.scan", measure(iterations, input.classes().size(), () -> {
+            var pathMap = new PathMap();
+            for (var bytes : input.classes()) {
+                ClassDepsScanner.scan(pathMap, bytes);
+            }
+        }));
+
+        results.put(prefix + "pathmap.insert", measure(iterations, input.names().size(), () -> {
+            var pathMap = new PathMap();
+            for (var name : input.names()) {
+                pathMap.getOrCreate(name);
+            }
+        }));
+
+        var filledPathMap = new PathMap();
+        input.names().forEach(filledPathMap::getOrCreate);
+        results.put(prefix + "pathmap.lookup", measure(iterations, input.names().size(), () -> {
+            for (var name : input.names()) {
+                filledPathMap.getOrCreate(name);
+            }
+        }));
+
+        var scanner = new ScannerRunner();
+        var scanOutput = workDir.resolve(input.name() + ".bdeps");
+        results.put(prefix + "scanner.mmap", measure(iterations, input.classes().size(),
+                () -> scanner.scan(input.jar(), scanOutput)));
+        results.put(prefix + "scanner.stream", measure(iterations, input.classes().size(),
+                () -> scanner.scan(input.jar(), scanOutput, "--no-mmap")));
+        var incrementalOutput = workDir.resolve(input.name() + ".incremental.bdeps");
+        results.put(prefix + "scanner.incremental", measure(iterations, input.classes().size(),
+                () -> scanner.scan(input.jar(), incrementalOutput, "--previous", scanOutput.toString())));
+
+        var reader = new BindepsReader(scanOutput);
+        var recordCount = (long) reader.getStringPoolSize() + reader.getResourceInfoSize() + reader.getClassInfoSize();
+        var copyOutput = workDir.resolve(input.name() + ".copy.bdeps");
+        results.put(prefix + "bindeps.write", measure(iterations, recordCount, () -> copyBindeps(reader, copyOutput)));
+
+        // Look up classes in random order, like resolving dependencies while shrinking
+        var classNames = new ArrayList<String>(reader.getClassInfoSize());
+        for (var i = 0; i < reader.getClassInfoSize(); i++) {
+            classNames.add(reader.getClassInfoEntry(i).getName().getFullName());
+        }
+        var random = new Random(0);
+        var lookups = new String[RANDOM_LOOKUPS];
+        var indices = new int[RANDOM_LOOKUPS];
+        for (var i = 0; i < RANDOM_LOOKUPS; i++) {
+            lookups[i] = classNames.get(random.nextInt(classNames.size()));
+            indices[i] = random.nextInt(reader.getClassInfoSize());
+        }
+        results.put(prefix + "bindeps.read.index", measure(iterations, RANDOM_LOOKUPS, () -> {
+            var sum = 0;
+            for (var index : indices) {
+                var entry = reader.getClassInfoEntry(index);
+                sum += entry.getDependenciesIndices().remaining() + entry.getResourceInfo().getCrc32();
+            }
+            consume(sum);
+        }));
+        results.put(prefix + "bindeps.read.name", measure(iterations, RANDOM_LOOKUPS, () -> {
+            var sum = 0;
+            for (var name : lookups) {
+                var entry = reader.findClassInfo(name);
+                if (entry == null) {
+                    throw new IllegalStateException("Class not found: " + name);
+                }
+                sum += entry.getDependenciesIndices().remaining();
+            }
+            consume(sum);
+        }));
+        return results;
+    }
+
+    private static volatile int sink;
+
+    private static void consume(int value) {
+        sink = value;
+    }
+
+    private static Map<String, Result> readResults(Path path) throws IOException {
+        var results = new LinkedHashMap<String, Result>();
+        for (var line : Files.readAllLines(path)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            var parts = line.split("\t");
+            results.put(parts[0], new Result(Double.parseDouble(parts[1]), Double.parseDouble(parts[2])));
+        }
+        return results;
+    }
+
+    private static void writeResults(Path path, Map<String, Result> results) throws IOException {
+        var lines = new ArrayList<String>();
+        lines.add("# name\tentries/s\tB/entry");
+        results.forEach((name, result) -> lines.add(name + "\t" + result.entriesPerSecond() + "\t" + result.bytesPerEntry()));
+        Files.write(path, lines);
+    }
+
+    /**
+     * @return count of regressed benchmarks
+     */
+    private static int compareResults(Map<String, Result> baseline, Map<String, Result> results, double tolerance) {
+        var regressions = 0;
+        for (var entry : results.entrySet()) {
+            var base = baseline.get(entry.getKey());
+            if (base == null) {
+                continue;
+            }
+            var result = entry.getValue();
+            var speed = result.entriesPerSecond() / base.entriesPerSecond();
+            // Allow a few bytes per entry, so benchmarks allocating nearly nothing don't fail on noise
+            var allocationLimit = base.bytesPerEntry() * (1 + tolerance) + 1;
+            var slower = speed < 1 - tolerance;
+            var allocates = result.bytesPerEntry() > allocationLimit;
+            if (slower || allocates) {
+                regressions++;
+            }
+            System.out.printf("%-40s %6.1f%% speed %10.1f -> %10.1f B/entry%s%n", entry.getKey(), speed * 100,
+                    base.bytesPerEntry(), result.bytesPerEntry(), slower || allocates ? "  REGRESSION" : "");
+        }
+        return regressions;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var iterations = 10;
+        var syntheticClasses = 5000;
+        var tolerance = 0.2;
+        Path savePath = null;
+        Path baselinePath = null;
+        var jars = new ArrayList<Path>();
+        for (var i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--synthetic" -> syntheticClasses = Integer.parseInt(args[++i]);
+                case "--tolerance" -> tolerance = Double.parseDouble(args[++i]);
+                case "--save" -> savePath = Path.of(args[++i]);
+                case "--baseline" -> baselinePath = Path.of(args[++i]);
+                default -> jars.add(Path.of(args[i]));
+            }
+        }
+        if (iterations <= 0) {
+            System.err.println("Usage: benchmark [--iterations N] [--synthetic N] [--save FILE] [--baseline FILE] [--tolerance F] [<jar>...]");
+            System.exit(1);
+        }
+
+        var workDir = Files.createTempDirectory("fastmerger-benchmark");
+        var inputs = new ArrayList<Input>();
+        if (syntheticClasses > 0) {
+            var syntheticJar = workDir.resolve("synthetic.jar");
+            SyntheticJar.generate(syntheticJar, syntheticClasses);
+            inputs.add(loadInput("synthetic", syntheticJar));
+        }
+        for (var jar : jars) {
+            inputs.add(loadInput(jar.getFileName().toString(), jar));
+        }
+
+        var results = new LinkedHashMap<String, Result>();
+        for (var input : inputs) {
+            results.putAll(runInput(input, iterations, workDir));
+        }
+        System.out.printf("%-40s %14s %12s%n", "benchmark", "entries/s", "B/entry");
+        results.forEach((name, result) -> System.out.printf("%-40s %14.0f %12.1f%n", name, result.entriesPerSecond(), result.bytesPerEntry()));
+
+        if (savePath != null) {
+            writeResults(savePath, results);
+        }
+        if (baselinePath != null) {
+            var regressions = compareResults(readResults(baselinePath), results, tolerance);
+            if (regressions > 0) {
+                System.out.printf("%d benchmarks regressed by more than %.0f%%%n", regressions, tolerance * 100);
+                System.exit(1);
+            }
+        }
+    }
+}
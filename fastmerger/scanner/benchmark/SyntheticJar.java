@@ -0,0 +1,126 @@
+package top.fifthlight.fastmerger.scanner.benchmark;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Generates a JAR of classes referencing each other, so benchmarks have an input of known size without depending on
+ * downloaded libraries.
+ * <p>
+ * Classes are spread over nested packages, and each class extends, implements, annotates with and calls other
+ * generated classes, so every part of class info gets filled. A fixed seed keeps the output the same across runs.
+ */
+public class SyntheticJar {
+    private static final int PACKAGE_COUNT = 32;
+    private static final int INTERFACE_RATIO = 8;
+    private static final int REFERENCES_PER_CLASS = 6;
+    private static final String ANNOTATION_NAME = "synthetic/Marker";
+
+    private static String className(int index) {
+        var packageIndex = index % PACKAGE_COUNT;
+        return "synthetic/group%d/package%d/Class%d".formatted(packageIndex / 8, packageIndex, index);
+    }
+
+    private static boolean isInterface(int index) {
+        return index % INTERFACE_RATIO == 0;
+    }
+
+    private static byte[] generateAnnotation() {
+        var writer = new ClassWriter(0);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE | Opcodes.ACC_ANNOTATION,
+                ANNOTATION_NAME, null, "java/lang/Object", new String[]{"java/lang/annotation/Annotation"});
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static byte[] generateClass(int index, Random random) {
+        var name = className(index);
+        var writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        if (isInterface(index)) {
+            writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE, name, null,
+                    "java/lang/Object", null);
+            writer.visitEnd();
+            return writer.toByteArray();
+        }
+
+        // Only refer to earlier classes, so the hierarchy has no cycles
+        var superName = index > INTERFACE_RATIO && random.nextBoolean() ? className(pickClass(index, random)) : "java/lang/Object";
+        var interfaces = index > 0 ? new String[]{className(index / INTERFACE_RATIO * INTERFACE_RATIO)} : null;
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, name, null, superName, interfaces);
+        writer.visitAnnotation(Type.getObjectType(ANNOTATION_NAME).getDescriptor(), false).visitEnd();
+
+        for (var i = 0; i < REFERENCES_PER_CLASS && index > 0; i++) {
+            var reference = className(random.nextInt(index));
+            writer.visitField(Opcodes.ACC_PRIVATE, "field" + i, Type.getObjectType(reference).getDescriptor(), null, null).visitEnd();
+        }
+
+        var constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        var method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+        method.visitCode();
+        for (var i = 0; i < REFERENCES_PER_CLASS && index > INTERFACE_RATIO; i++) {
+            var reference = className(pickClass(index, random));
+            method.visitTypeInsn(Opcodes.NEW, reference);
+            method.visitInsn(Opcodes.DUP);
+            method.visitMethodInsn(Opcodes.INVOKESPECIAL, reference, "<init>", "()V", false);
+            method.visitInsn(Opcodes.POP);
+        }
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Pick a class before the index which is not an interface. There must be one, so index must be larger than
+     * {@link #INTERFACE_RATIO}.
+     */
+    private static int pickClass(int index, Random random) {
+        while (true) {
+            var candidate = random.nextInt(index);
+            if (!isInterface(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    public static void generate(Path output, int classCount) throws IOException {
+        var random = new Random(classCount);
+        var manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        try (var stream = new JarOutputStream(Files.newOutputStream(output), manifest)) {
+            stream.putNextEntry(new JarEntry(ANNOTATION_NAME + ".class"));
+            stream.write(generateAnnotation());
+            stream.closeEntry();
+
+            for (var i = 0; i < classCount; i++) {
+                stream.putNextEntry(new JarEntry(className(i) + ".class"));
+                stream.write(generateClass(i, random));
+                stream.closeEntry();
+            }
+
+            stream.putNextEntry(new JarEntry("META-INF/services/" + className(0).replace('/', '.')));
+            stream.write((className(1).replace('/', '.') + "\n").getBytes(StandardCharsets.UTF_8));
+            stream.closeEntry();
+        }
+    }
+}
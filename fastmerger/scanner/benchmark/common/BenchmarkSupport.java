@@ -0,0 +1,64 @@
+package top.fifthlight.fastmerger.scanner.benchmark.common;
+
+import org.objectweb.asm.ClassReader;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Input collection and measurement helpers shared by scanner benchmarks.
+ */
+public class BenchmarkSupport {
+    private static final int CONSTANT_CLASS_TAG = 7;
+
+    private BenchmarkSupport() {
+    }
+
+    @FunctionalInterface
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Add names of classes referenced by the constant pool, as a scanner meets them. Array descriptors are skipped.
+     */
+    public static void collectClassNames(byte[] classBytes, List<String> names) {
+        var reader = new ClassReader(classBytes);
+        var buffer = new char[reader.getMaxStringLength()];
+        for (var i = 1; i < reader.getItemCount(); i++) {
+            var offset = reader.getItem(i);
+            if (offset == 0 || reader.readByte(offset - 1) != CONSTANT_CLASS_TAG) {
+                continue;
+            }
+            var name = reader.readUTF8(offset, buffer);
+            if (!name.startsWith("[")) {
+                names.add(name);
+            }
+        }
+    }
+
+    /**
+     * Heap bytes allocated by the current thread.
+     */
+    public static long getAllocatedBytes() {
+        var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+
+    /**
+     * Heap bytes allocated by all live threads, for operations running on worker threads.
+     */
+    public static long getTotalAllocatedBytes() {
+        var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getTotalThreadAllocatedBytes();
+    }
+
+    /**
+     * Run the operation as many times as it will be measured, so the JIT compiles it before timing.
+     */
+    public static void warmUp(int iterations, Operation operation) throws Exception {
+        for (var i = 0; i < iterations; i++) {
+            operation.run();
+        }
+    }
+}
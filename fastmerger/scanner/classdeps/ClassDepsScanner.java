@@ -7,7 +7,14 @@ import java.util.concurrent.*;
 
 public class ClassDepsScanner {
     public static ClassInfo scan(PathMap pathMap, byte[] content) {
-        var classReader = new ClassReader(content);
+        return scan(pathMap, content, 0, content.length);
+    }
+
+    /**
+     * Scan a class stored in part of a buffer. The buffer is not referenced after scanning, so it can be reused.
+     */
+    public static ClassInfo scan(PathMap pathMap, byte[] content, int offset, int length) {
+        var classReader = new ClassReader(content, offset, length);
         var collector = new ClassInfoCollector(pathMap);
         classReader.accept(new ClassInfoVisitor(collector), ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
         return collector.getClassInfo();
@@ -4,6 +4,8 @@ import java.util.Objects;
 
 import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.*;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
 
 public class ClassInfoVisitor extends ClassVisitor {
     private final Consumer consumer;
@@ -41,6 +43,9 @@ public class ClassInfoVisitor extends ClassVisitor {
     }
 
     private void visitDesc(Type type) {
+        if (type.getSort() == Type.ARRAY) {
+            type = type.getElementType();
+        }
         if (type.getSort() != Type.OBJECT) {
             return;
         }
@@ -55,6 +60,93 @@ public class ClassInfoVisitor extends ClassVisitor {
         visitDesc(type);
     }
 
+    private final SignatureVisitor signatureVisitor = new SignatureVisitor(Opcodes.ASM9) {
+        @Override
+        public void visitClassType(String name) {
+            visitType(name);
+        }
+    };
+
+    // Types only in generic signatures are not in descriptors, but are still renamed when relocating
+    private void visitSignature(String signature) {
+        if (signature == null) {
+            return;
+        }
+        new SignatureReader(signature).accept(signatureVisitor);
+    }
+
+    private static boolean isNameSegment(String string, int start, int end, boolean identifier) {
+        if (start == end) {
+            return false;
+        }
+        if (identifier && !Character.isJavaIdentifierStart(string.charAt(start))) {
+            return false;
+        }
+        for (var i = start; i < end; i++) {
+            var c = string.charAt(i);
+            if (identifier ? !Character.isJavaIdentifierPart(c) : Character.isWhitespace(c) || Character.isISOControl(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isName(String string, char separator, boolean identifier) {
+        var start = 0;
+        while (true) {
+            var end = string.indexOf(separator, start);
+            if (end == -1) {
+                return isNameSegment(string, start, string.length(), identifier);
+            }
+            if (!isNameSegment(string, start, end, identifier)) {
+                return false;
+            }
+            start = end + 1;
+        }
+    }
+
+    // Class names and paths in string constants are renamed when relocating, as they are usually used for
+    // reflection, so record strings looking like them
+    private void visitString(String string) {
+        if (string.indexOf('/') != -1) {
+            if (isName(string, '/', false)) {
+                visitType(string);
+            }
+        } else if (string.indexOf('.') != -1) {
+            if (isName(string, '.', true)) {
+                visitType(string.replace('.', '/'));
+            }
+        }
+    }
+
+    private void visitHandle(Handle handle) {
+        visitType(handle.getOwner());
+        visitMethodDesc(handle.getDesc());
+    }
+
+    private void visitConstant(Object value) {
+        switch (value) {
+            case Type type -> {
+                if (type.getSort() == Type.METHOD) {
+                    visitMethodDesc(type.getDescriptor());
+                } else {
+                    visitDesc(type);
+                }
+            }
+            case Handle handle -> visitHandle(handle);
+            case String string -> visitString(string);
+            case ConstantDynamic constantDynamic -> {
+                visitDesc(constantDynamic.getDescriptor());
+                visitHandle(constantDynamic.getBootstrapMethod());
+                for (var i = 0; i < constantDynamic.getBootstrapMethodArgumentCount(); i++) {
+                    visitConstant(constantDynamic.getBootstrapMethodArgument(i));
+                }
+            }
+            case null, default -> {
+            }
+        }
+    }
+
     private void visitMethodDesc(String descriptor) {
         if (descriptor == null) {
             return;
@@ -72,6 +164,7 @@ public class ClassInfoVisitor extends ClassVisitor {
                       String[] interfaces) {
         selfName = name;
         consumer.acceptClassInfo(name, access, superName);
+        visitSignature(signature);
         if (superName != null) {
             visitType(superName);
         }
@@ -102,6 +195,14 @@ public class ClassInfoVisitor extends ClassVisitor {
             super(Opcodes.ASM9, annotationVisitor);
         }
 
+        @Override
+        public void visit(String name, Object value) {
+            if (value instanceof Type || value instanceof String) {
+                ClassInfoVisitor.this.visitConstant(value);
+            }
+            super.visit(name, value);
+        }
+
         @Override
         public void visitEnum(String name, String descriptor, String value) {
             ClassInfoVisitor.this.visitDesc(descriptor);
@@ -162,6 +263,7 @@ public class ClassInfoVisitor extends ClassVisitor {
     public RecordComponentVisitor visitRecordComponent(
             String name, String descriptor, String signature) {
         visitDesc(descriptor);
+        visitSignature(signature);
         return super.visitRecordComponent(name, descriptor, signature);
     }
 
@@ -169,6 +271,8 @@ public class ClassInfoVisitor extends ClassVisitor {
     public FieldVisitor visitField(
             int access, String name, String descriptor, String signature, Object value) {
         visitDesc(descriptor);
+        visitSignature(signature);
+        visitConstant(value);
         return super.visitField(access, name, descriptor, signature, value);
     }
 
@@ -215,11 +319,7 @@ public class ClassInfoVisitor extends ClassVisitor {
         public void visitMethodInsn(
                 int opcode, String owner, String name, String descriptor, boolean isInterface) {
             if (owner.startsWith("[")) {
-                var type = Type.getType(owner);
-                var elementType = type.getElementType();
-                if (elementType.getSort() == Type.OBJECT) {
-                    ClassInfoVisitor.this.visitDesc(elementType);
-                }
+                ClassInfoVisitor.this.visitDesc(Type.getType(owner));
             } else {
                 ClassInfoVisitor.this.visitType(owner);
             }
@@ -227,6 +327,22 @@ public class ClassInfoVisitor extends ClassVisitor {
             super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
         }
 
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            if (type.startsWith("[")) {
+                ClassInfoVisitor.this.visitDesc(Type.getType(type));
+            } else {
+                ClassInfoVisitor.this.visitType(type);
+            }
+            super.visitTypeInsn(opcode, type);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            ClassInfoVisitor.this.visitConstant(value);
+            super.visitLdcInsn(value);
+        }
+
         @Override
         public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
             ClassInfoVisitor.this.visitDesc(descriptor);
@@ -237,6 +353,10 @@ public class ClassInfoVisitor extends ClassVisitor {
         public void visitInvokeDynamicInsn(String name, String descriptor,
                                            Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
             ClassInfoVisitor.this.visitMethodDesc(descriptor);
+            ClassInfoVisitor.this.visitHandle(bootstrapMethodHandle);
+            for (var argument : bootstrapMethodArguments) {
+                ClassInfoVisitor.this.visitConstant(argument);
+            }
             super.visitInvokeDynamicInsn(
                     name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
         }
@@ -273,7 +393,8 @@ public class ClassInfoVisitor extends ClassVisitor {
     @Override
     public MethodVisitor visitMethod(
             int access, String name, String descriptor, String signature, String[] exceptions) {
-        visitDesc(descriptor);
+        visitMethodDesc(descriptor);
+        visitSignature(signature);
         if (exceptions != null) {
             for (var exception : exceptions) {
                 visitType(exception);
@@ -1,21 +1,30 @@
 package top.fifthlight.fastmerger.scanner.pathmap;
 
-import net.jpountz.xxhash.XXHash64;
-import net.jpountz.xxhash.XXHashFactory;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import top.fifthlight.fastmerger.bindeps.BindepsHash;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Supplier;
 
+/**
+ * A trie of slash separated names, shared by all scanner threads.
+ * <p>
+ * Lookups walk the name by char ranges and probe open-addressed child tables by range hash, so finding an existing
+ * entry allocates nothing and takes no lock. Only creating an entry locks its parent node. Segment names are interned,
+ * so common segments like {@code internal} or {@code Companion} are stored once.
+ */
 public class PathMap {
-    private final ConcurrentHashMap<String, EntryImpl> rootEntries = new ConcurrentHashMap<>();
+    private static final int INITIAL_CHILDREN_CAPACITY = 4;
+
+    private final Node root = new Node(null, null, null, 0);
+    private final ConcurrentHashMap<String, Segment> segments = new ConcurrentHashMap<>();
     private final AtomicInteger size = new AtomicInteger(0);
 
     public interface Entry {
@@ -36,22 +45,148 @@ public class PathMap {
         Map<String, ? extends Entry> entries();
     }
 
-    private record EntryImpl(
-            long hash,
-            String name,
-            String fullName,
-            byte[] nameBytes,
-            byte[] fullNameBytes,
-            @Nullable PathMap.EntryImpl parentEntry,
-            ConcurrentHashMap<String, EntryImpl> entries
-    ) implements Entry {
-        private static final XXHash64 HASHER = XXHashFactory.fastestInstance().hash64();
+    private record Segment(String name, byte[] nameBytes) {
+    }
+
+    private static final class Node implements Entry {
+        private final String name;
+        private final byte[] nameBytes;
+        private final String fullName;
+        private final byte[] fullNameBytes;
+        private final long hash;
+        private final int nameHash;
+        @Nullable
+        private final Node parentEntry;
+
+        // Open-addressed by nameHash, slots are only filled while holding the lock of this node
+        private volatile Node[] children;
+        private int childrenSize;
+
+        private Node(@Nullable Segment segment, @Nullable String fullName, @Nullable Node parentEntry, int nameHash) {
+            this.name = segment != null ? segment.name() : null;
+            this.nameBytes = segment != null ? segment.nameBytes() : null;
+            this.fullName = fullName;
+            this.fullNameBytes = fullName != null ? fullName.getBytes(StandardCharsets.UTF_8) : null;
+            this.hash = fullNameBytes != null ? BindepsHash.hash(fullNameBytes) : 0;
+            this.nameHash = nameHash;
+            this.parentEntry = parentEntry;
+        }
+
+        private static boolean nameEquals(Node node, int nameHash, String source, int start, int end) {
+            return node.nameHash == nameHash
+                    && node.name.length() == end - start
+                    && node.name.regionMatches(0, source, start, end - start);
+        }
+
+        @Nullable
+        private static Node probe(Node[] table, int nameHash, String source, int start, int end) {
+            var mask = table.length - 1;
+            for (var i = nameHash & mask; ; i = (i + 1) & mask) {
+                var node = table[i];
+                if (node == null) {
+                    return null;
+                }
+                if (nameEquals(node, nameHash, source, start, end)) {
+                    return node;
+                }
+            }
+        }
+
+        @Nullable
+        private Node find(int nameHash, String source, int start, int end) {
+            var table = children;
+            return table != null ? probe(table, nameHash, source, start, end) : null;
+        }
+
+        private static void insert(Node[] table, Node node) {
+            var mask = table.length - 1;
+            var i = node.nameHash & mask;
+            while (table[i] != null) {
+                i = (i + 1) & mask;
+            }
+            table[i] = node;
+        }
+
+        private synchronized Node findOrInsert(PathMap pathMap, int nameHash, String source, int start, int end,
+                                               boolean last) {
+            var table = children;
+            if (table != null) {
+                var node = probe(table, nameHash, source, start, end);
+                if (node != null) {
+                    return node;
+                }
+            }
 
-        public static EntryImpl of(String name, String fullName, @Nullable PathMap.EntryImpl parentEntry) {
-            var nameBytes = name.getBytes(StandardCharsets.UTF_8);
-            var fullNameBytes = fullName.getBytes(StandardCharsets.UTF_8);
-            var hash = HASHER.hash(fullNameBytes, 0, nameBytes.length, 0);
-            return new EntryImpl(hash, name, fullName, nameBytes, fullNameBytes, parentEntry, new ConcurrentHashMap<>());
+            var segment = pathMap.internSegment(source.substring(start, end));
+            var fullName = last ? source : source.substring(0, end);
+            // Only the root node has no full name, and entries under it have no parent
+            var node = new Node(segment, fullName, this.fullName != null ? this : null, nameHash);
+
+            if (table == null) {
+                table = new Node[INITIAL_CHILDREN_CAPACITY];
+            } else if ((childrenSize + 1) * 4 > table.length * 3) {
+                var newTable = new Node[table.length * 2];
+                for (var child : table) {
+                    if (child != null) {
+                        insert(newTable, child);
+                    }
+                }
+                table = newTable;
+            }
+            // Fields of node are final, so readers seeing it in the table also see it fully constructed
+            insert(table, node);
+            childrenSize++;
+            children = table;
+            pathMap.size.incrementAndGet();
+            return node;
+        }
+
+        @Override
+        public long hash() {
+            return hash;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public byte[] nameBytes() {
+            return nameBytes;
+        }
+
+        @Override
+        public byte[] fullNameBytes() {
+            return fullNameBytes;
+        }
+
+        @Override
+        public String fullName() {
+            return fullName;
+        }
+
+        @Override
+        public @Nullable PathMap.Entry parentEntry() {
+            return parentEntry;
+        }
+
+        /**
+         * Get a snapshot of child entries keyed by segment name.
+         */
+        @Override
+        public @NotNull Map<String, ? extends Entry> entries() {
+            var table = children;
+            if (table == null) {
+                return Map.of();
+            }
+            var result = new HashMap<String, Node>(table.length);
+            for (var child : table) {
+                if (child != null) {
+                    result.put(child.name, child);
+                }
+            }
+            return Collections.unmodifiableMap(result);
         }
 
         @Override
@@ -61,7 +196,7 @@ public class PathMap {
 
         @Override
         public boolean equals(Object obj) {
-            if (obj instanceof EntryImpl entry) {
+            if (obj instanceof Node entry) {
                 return entry.fullName.equals(fullName);
             } else {
                 return false;
@@ -70,7 +205,7 @@ public class PathMap {
 
         @Override
         public String toString() {
-            return "EntryImpl{" +
+            return "Node{" +
                     "nameBytes=" + Arrays.toString(nameBytes) +
                     ", fullName='" + fullName + '\'' +
                     ", name='" + name + '\'' +
@@ -80,37 +215,55 @@ public class PathMap {
         }
     }
 
-    private EntryImpl insertEntry(@Nullable PathMap.EntryImpl parentEntry, String name, Supplier<String> fullName) {
-        if (parentEntry == null) {
-            return rootEntries.computeIfAbsent(name, k -> {
-                size.incrementAndGet();
-                return EntryImpl.of(k, fullName.get(), null);
-            });
-        } else {
-            return parentEntry.entries.computeIfAbsent(name, k -> {
-                size.incrementAndGet();
-                return EntryImpl.of(k, fullName.get(), parentEntry);
-            });
+    private Segment internSegment(String name) {
+        var segment = segments.get(name);
+        if (segment != null) {
+            return segment;
+        }
+        return segments.computeIfAbsent(name, k -> new Segment(k, k.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static int rangeHash(String source, int start, int end) {
+        var hash = 0;
+        for (var i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
         }
+        // Spread higher bits, as low bits are used to index the tables
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int trimmedLength(String name) {
+        // Same as String.split("/"), trailing empty segments are ignored
+        var end = name.length();
+        while (end > 0 && name.charAt(end - 1) == '/') {
+            end--;
+        }
+        return end;
     }
 
     public Entry getOrCreate(String name) {
         if (Objects.requireNonNull(name).isEmpty()) {
             throw new IllegalArgumentException("Input name is empty");
         }
-        EntryImpl currentEntry = null;
-        // split() will run in fast path
-        var segments = name.split("/");
-        for (var i = 0; i < segments.length; i++) {
-            var segment = segments[i];
-            var segmentIndex = i;
-            currentEntry = insertEntry(currentEntry, segment, () -> {
-                if (segmentIndex == segments.length - 1) {
-                    return name;
-                } else {
-                    return String.join("/", Arrays.copyOf(segments, segmentIndex + 1));
-                }
-            });
+        var end = trimmedLength(name);
+        if (end == 0) {
+            throw new IllegalArgumentException("Input name has no segment: " + name);
+        }
+
+        var currentEntry = root;
+        var start = 0;
+        while (start <= end) {
+            var segmentEnd = name.indexOf('/', start);
+            if (segmentEnd == -1 || segmentEnd > end) {
+                segmentEnd = end;
+            }
+            var nameHash = rangeHash(name, start, segmentEnd);
+            var nextEntry = currentEntry.find(nameHash, name, start, segmentEnd);
+            if (nextEntry == null) {
+                nextEntry = currentEntry.findOrInsert(this, nameHash, name, start, segmentEnd, segmentEnd == end);
+            }
+            currentEntry = nextEntry;
+            start = segmentEnd + 1;
         }
         return currentEntry;
     }
@@ -135,6 +288,6 @@ public class PathMap {
     }
 
     public Result finish() {
-        return new Result(Collections.unmodifiableMap(rootEntries), size.get());
+        return new Result(root.entries(), size.get());
     }
 }
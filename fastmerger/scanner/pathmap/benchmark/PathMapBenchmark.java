@@ -0,0 +1,172 @@
+package top.fifthlight.fastmerger.scanner.pathmap.benchmark;
+
+import top.fifthlight.fastmerger.scanner.pathmap.PathMap;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.ZipFile;
+
+import static top.fifthlight.fastmerger.scanner.benchmark.common.BenchmarkSupport.*;
+
+/**
+ * Compares {@link PathMap} with {@link LegacyPathMap}, by inserting every entry name and class reference of the
+ * given JARs in the order a scanner meets them.
+ * <p>
+ * Usage: {@code benchmark [--iterations N] [--threads N] <jar>...}, such as kotlin-stdlib and Guava.
+ */
+public class PathMapBenchmark {
+    private static List<String> collectNames(List<Path> jars) throws IOException {
+        var names = new ArrayList<String>();
+        for (var jar : jars) {
+            try (var zipFile = new ZipFile(jar.toFile())) {
+                var entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    var entry = entries.nextElement();
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    names.add(entry.getName());
+                    if (entry.getName().endsWith(".class")) {
+                        try (var stream = zipFile.getInputStream(entry)) {
+                            collectClassNames(stream.readAllBytes(), names);
+                        }
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    private record Measurement(double nanosPerOp, double bytesPerOp) {
+    }
+
+    private static <T> Measurement measure(List<String> names, int iterations, Supplier<T> factory,
+                                           Consumer<T> insertAll) throws Exception {
+        warmUp(iterations, () -> insertAll.accept(factory.get()));
+        var startBytes = getAllocatedBytes();
+        var startTime = System.nanoTime();
+        for (var i = 0; i < iterations; i++) {
+            insertAll.accept(factory.get());
+        }
+        var elapsed = System.nanoTime() - startTime;
+        var allocated = getAllocatedBytes() - startBytes;
+        var operations = (double) iterations * names.size();
+        return new Measurement(elapsed / operations, allocated / operations);
+    }
+
+    private static <T> double measureParallel(List<String> names, int iterations, int threads, ExecutorService executor,
+                                              Supplier<T> factory, Consumer<T> insertAll,
+                                              InsertRange<T> insertRange) throws Exception {
+        warmUp(iterations, () -> insertAll.accept(factory.get()));
+        var startTime = System.nanoTime();
+        for (var i = 0; i < iterations; i++) {
+            var map = factory.get();
+            var futures = new ArrayList<Future<?>>(threads);
+            for (var thread = 0; thread < threads; thread++) {
+                var start = names.size() * thread / threads;
+                var end = names.size() * (thread + 1) / threads;
+                futures.add(executor.submit(() -> insertRange.insert(map, start, end)));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        }
+        var elapsed = System.nanoTime() - startTime;
+        return elapsed / ((double) iterations * names.size());
+    }
+
+    @FunctionalInterface
+    private interface InsertRange<T> {
+        void insert(T map, int start, int end);
+    }
+
+    private static void verify(List<String> names) {
+        var pathMap = new PathMap();
+        var legacyPathMap = new LegacyPathMap();
+        for (var name : names) {
+            var entry = pathMap.getOrCreate(name);
+            var legacyEntry = legacyPathMap.getOrCreate(name);
+            if (!entry.fullName().equals(legacyEntry.fullName())) {
+                throw new IllegalStateException("Entry mismatch for %s: %s != %s".formatted(name, entry, legacyEntry));
+            }
+        }
+        var size = pathMap.finish().size();
+        var legacySize = legacyPathMap.finish().size();
+        if (size != legacySize) {
+            throw new IllegalStateException("Size mismatch: %d != %d".formatted(size, legacySize));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        var iterations = 20;
+        var threads = Runtime.getRuntime().availableProcessors();
+        var jars = new ArrayList<Path>();
+        for (var i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                default -> jars.add(Path.of(args[i]));
+            }
+        }
+        if (jars.isEmpty()) {
+            System.err.println("Usage: benchmark [--iterations N] [--threads N] <jar>...");
+            System.exit(1);
+        }
+
+        var names = collectNames(jars);
+        verify(names);
+        var entryCount = new PathMap();
+        names.forEach(entryCount::getOrCreate);
+        System.out.printf("%d names, %d entries%n", names.size(), entryCount.finish().size());
+
+        Consumer<PathMap> insertAll = map -> {
+            for (var name : names) {
+                map.getOrCreate(name);
+            }
+        };
+        Consumer<LegacyPathMap> legacyInsertAll = map -> {
+            for (var name : names) {
+                map.getOrCreate(name);
+            }
+        };
+
+        var legacy = measure(names, iterations, LegacyPathMap::new, legacyInsertAll);
+        var current = measure(names, iterations, PathMap::new, insertAll);
+        System.out.printf("single thread  legacy: %8.1f ns/op %8.1f B/op%n", legacy.nanosPerOp(), legacy.bytesPerOp());
+        System.out.printf("single thread current: %8.1f ns/op %8.1f B/op%n", current.nanosPerOp(), current.bytesPerOp());
+
+        // Most lookups of a scan hit existing entries, so also measure with filled maps
+        var filledLegacy = new LegacyPathMap();
+        legacyInsertAll.accept(filledLegacy);
+        var filled = new PathMap();
+        insertAll.accept(filled);
+        var legacyLookup = measure(names, iterations, () -> filledLegacy, legacyInsertAll);
+        var currentLookup = measure(names, iterations, () -> filled, insertAll);
+        System.out.printf("lookup         legacy: %8.1f ns/op %8.1f B/op%n", legacyLookup.nanosPerOp(), legacyLookup.bytesPerOp());
+        System.out.printf("lookup        current: %8.1f ns/op %8.1f B/op%n", currentLookup.nanosPerOp(), currentLookup.bytesPerOp());
+
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            var legacyParallel = measureParallel(names, iterations, threads, executor, LegacyPathMap::new,
+                    legacyInsertAll, (map, start, end) -> {
+                        for (var i = start; i < end; i++) {
+                            map.getOrCreate(names.get(i));
+                        }
+                    });
+            var currentParallel = measureParallel(names, iterations, threads, executor, PathMap::new,
+                    insertAll, (map, start, end) -> {
+                        for (var i = start; i < end; i++) {
+                            map.getOrCreate(names.get(i));
+                        }
+                    });
+            System.out.printf("%2d threads     legacy: %8.1f ns/op%n", threads, legacyParallel);
+            System.out.printf("%2d threads    current: %8.1f ns/op%n", threads, currentParallel);
+        }
+    }
+}
@@ -8,17 +8,26 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
 
 public abstract class Worker {
     private static class WorkRequestCallbackWrapper extends WorkRequestHandler.WorkRequestCallback {
         public WorkRequestCallbackWrapper(Worker worker) {
             super((request, out) -> {
                 try {
+                    var inputDigests = new HashMap<String, String>();
+                    for (var input : request.getInputsList()) {
+                        if (!input.getDigest().isEmpty()) {
+                            inputDigests.put(input.getPath(), HexFormat.of().formatHex(input.getDigest().toByteArray()));
+                        }
+                    }
                     var sandboxDir = request.getSandboxDir();
                     if (!sandboxDir.isEmpty()) {
-                        return worker.handleRequest(out, Path.of(request.getSandboxDir()), request.getArgumentsList().toArray(new String[0]));
+                        return worker.handleRequest(out, Path.of(request.getSandboxDir()), inputDigests, request.getArgumentsList().toArray(new String[0]));
                     } else {
-                        return worker.handleRequest(out, Path.of("."), request.getArgumentsList().toArray(new String[0]));
+                        return worker.handleRequest(out, Path.of("."), inputDigests, request.getArgumentsList().toArray(new String[0]));
                     }
                 } catch (Exception e) {
                     e.printStackTrace(out);
@@ -33,7 +42,7 @@ public abstract class Worker {
         var index = argsList.indexOf("--persistent_worker");
         if (index == -1) {
             var out = new PrintWriter(System.out);
-            var status = handleRequest(out, Path.of("."), args);
+            var status = handleRequest(out, Path.of("."), Map.of(), args);
             out.flush();
             System.exit(status);
         }
@@ -46,4 +55,14 @@ public abstract class Worker {
     }
 
     protected abstract int handleRequest(PrintWriter out, Path sandboxDir, String... args) throws Exception;
+
+    /**
+     * Handle a request, with digests of inputs supplied by Bazel. Workers keeping data of inputs across requests can
+     * override this to use digests as cache keys.
+     *
+     * @param inputDigests hex encoded digests keyed by input paths, empty if not running as a persistent worker
+     */
+    protected int handleRequest(PrintWriter out, Path sandboxDir, Map<String, String> inputDigests, String... args) throws Exception {
+        return handleRequest(out, sandboxDir, args);
+    }
 }
@@ -583,8 +583,8 @@ data class DPad private constructor(
             height = buttonSize.height
         ) {
             var hasPointer = false
-            for (pointer in getPointersInRect(size)) {
-                val state = (pointer.state as? PointerState.Button) ?: continue
+            forEachPointerInRect(size) { pointer ->
+                val state = (pointer.state as? PointerState.Button) ?: return@forEachPointerInRect
                 if (state.id == config.idForward || state.id == config.idBackward || state.id == config.idLeft || state.id == config.idRight) {
                     hasPointer = true
                 }
@@ -115,10 +115,7 @@ data class Joystick(
             it.state is PointerState.Joystick
         }
         currentPointer?.let {
-            for (pointer in pointers.values) {
-                if (!pointer.inRect(size)) {
-                    continue
-                }
+            forEachPointerInRect(size) { pointer ->
                 when (pointer.state) {
                     PointerState.New -> pointer.state = PointerState.Invalid
                     else -> {}
@@ -25,6 +25,7 @@ import top.fifthlight.touchcontroller.common.gal.window.WindowHandleFactory
 import top.fifthlight.touchcontroller.common.offset.fixAspectRadio
 import top.fifthlight.touchcontroller.common.input.InputManager
 import top.fifthlight.touchcontroller.common.layout.Context
+import top.fifthlight.touchcontroller.common.layout.PointerIndex
 import top.fifthlight.touchcontroller.common.layout.config.GlobalContextConfig
 import top.fifthlight.touchcontroller.common.layout.data.ContextInput
 import top.fifthlight.touchcontroller.common.layout.queue.DrawQueue
@@ -42,6 +43,9 @@ object RenderEvents {
     private val keyBindingHandler: KeyBindingHandler = KeyBindingHandlerFactory.of()
     private val viewActionProvider: ViewActionProvider = ViewActionProviderFactory.of()
     private val touchStateModel: TouchStateModel = TouchStateModel()
+    // Reused by every render tick, as the previous queue is drawn before the next tick starts
+    private val drawQueue = DrawQueue()
+    private val pointerIndex = PointerIndex()
     private var prevWidth = 0
     private var prevHeight = 0
 
@@ -185,7 +189,8 @@ object RenderEvents {
             put(BuiltinLayerCondition.BLOCK_SELECTED, crosshairTarget == CrosshairTarget.Block)
         }.toPersistentSet()
 
-        val drawQueue = DrawQueue()
+        drawQueue.clear()
+        pointerIndex.rebuild(touchStateModel.pointers, window.scaledSize)
         val result = Context(
             windowSize = window.size,
             windowScaledSize = window.scaledSize,
@@ -193,6 +198,7 @@ object RenderEvents {
             size = window.scaledSize,
             screenOffset = IntOffset.ZERO,
             pointers = touchStateModel.pointers,
+            pointerIndex = pointerIndex,
             input = ContextInput(
                 inGui = GameState.inGui,
                 builtinCondition = condition,
@@ -1,7 +1,5 @@
 package top.fifthlight.touchcontroller.common.layout
 
-import top.fifthlight.combine.paint.Canvas
-import top.fifthlight.combine.paint.withTranslate
 import top.fifthlight.data.IntOffset
 import top.fifthlight.data.IntRect
 import top.fifthlight.data.IntSize
@@ -16,14 +14,19 @@ import top.fifthlight.touchcontroller.common.layout.data.ContextTimer
 import top.fifthlight.touchcontroller.common.layout.queue.DrawQueue
 import top.fifthlight.touchcontroller.common.state.Pointer
 
+/**
+ * State of a HUD layout pass. Nested layouts change size, offset and opacity in place and restore them afterward,
+ * so read them while laying out, not in something kept after the layout.
+ */
 data class Context(
     val windowSize: IntSize,
     val windowScaledSize: IntSize,
     val drawQueue: DrawQueue = DrawQueue(),
-    val size: IntSize,
-    val screenOffset: IntOffset,
-    val opacity: Float = 1f,
+    var size: IntSize,
+    var screenOffset: IntOffset,
+    var opacity: Float = 1f,
     val pointers: MutableMap<Int, Pointer> = mutableMapOf(),
+    val pointerIndex: PointerIndex = PointerIndex().apply { rebuild(pointers, windowScaledSize) },
     val input: ContextInput = ContextInput(),
     val result: ContextResult = ContextResult(),
     val status: ContextStatus = ContextStatus(),
@@ -32,79 +35,51 @@ data class Context(
     val config: ContextConfig = ContextConfig.Empty,
     val presetControlInfo: PresetControlInfo = PresetControlInfo(),
 ) {
-    inline fun <reified T> transformDrawQueue(
-        crossinline drawTransform: Canvas.(block: () -> Unit) -> Unit = { it() },
-        crossinline contextTransform: Context.(DrawQueue) -> Context = { copy(drawQueue = it) },
-        crossinline block: Context.() -> T,
+    @PublishedApi
+    internal inline fun <T> transform(
+        x: Int,
+        y: Int,
+        size: IntSize,
+        opacity: Float,
+        block: Context.() -> T,
     ): T {
-        val newQueue = DrawQueue()
-        val newContext = contextTransform(this, newQueue)
-        val result = newContext.block()
-        drawQueue.enqueue { canvas ->
-            canvas.drawTransform {
-                newQueue.execute(canvas)
-            }
+        val previousSize = this.size
+        val previousScreenOffset = screenOffset
+        val previousOpacity = this.opacity
+        this.size = size
+        this.screenOffset = previousScreenOffset + IntOffset(x, y)
+        this.opacity = opacity
+        drawQueue.translate(x, y)
+        try {
+            return block()
+        } finally {
+            drawQueue.translate(-x, -y)
+            this.size = previousSize
+            this.screenOffset = previousScreenOffset
+            this.opacity = previousOpacity
         }
-        return result
     }
 
     inline fun <reified T> withOffset(offset: IntOffset, crossinline block: Context.() -> T): T =
-        transformDrawQueue(
-            drawTransform = { withTranslate(offset.x, offset.y) { it() } },
-            contextTransform = { newQueue ->
-                copy(
-                    screenOffset = screenOffset + offset,
-                    size = size - offset,
-                    drawQueue = newQueue
-                )
-            },
-            block
-        )
+        transform(offset.x, offset.y, size - offset, opacity) { block() }
 
     inline fun <reified T> withOffset(x: Int, y: Int, crossinline block: Context.() -> T): T =
         withOffset(IntOffset(x, y), block)
 
-    inline fun <reified T> withSize(size: IntSize, crossinline block: Context.() -> T): T = copy(size = size).block()
+    inline fun <reified T> withSize(size: IntSize, crossinline block: Context.() -> T): T =
+        transform(0, 0, size, opacity) { block() }
 
     inline fun <reified T> withRect(x: Int, y: Int, width: Int, height: Int, crossinline block: Context.() -> T): T =
-        transformDrawQueue(
-            drawTransform = { withTranslate(x, y) { it() } },
-            contextTransform = { newQueue ->
-                copy(
-                    screenOffset = screenOffset + IntOffset(x, y),
-                    size = IntSize(width, height),
-                    drawQueue = newQueue
-                )
-            },
-            block
-        )
+        transform(x, y, IntSize(width, height), opacity) { block() }
 
     inline fun <reified T> withRect(offset: IntOffset, size: IntSize, crossinline block: Context.() -> T): T =
-        transformDrawQueue(
-            drawTransform = { withTranslate(offset.x, offset.y) { it() } },
-            contextTransform = { newQueue ->
-                copy(
-                    screenOffset = screenOffset + offset,
-                    size = size,
-                    drawQueue = newQueue
-                )
-            },
-            block
-        )
+        transform(offset.x, offset.y, size, opacity) { block() }
 
     inline fun <reified T> withRect(rect: IntRect, crossinline block: Context.() -> T): T =
         withRect(rect.offset, rect.size, block)
 
     inline fun <reified T> withOpacity(opacity: Float, crossinline block: Context.() -> T): T =
-        transformDrawQueue(
-            contextTransform = { newQueue ->
-                copy(
-                    drawQueue = newQueue,
-                    opacity = (this.opacity * opacity).coerceAtMost(1f)
-                )
-            },
-            block = block
-        )
+        transform(0, 0, size, (this.opacity * opacity).coerceAtMost(1f)) { block() }
 
     val Pointer.rawOffset: Offset
         get() = position * windowSize
@@ -114,7 +89,13 @@ data class Context(
 
     fun Pointer.inRect(size: IntSize): Boolean = scaledOffset in size
 
-    fun getPointersInRect(size: IntSize): List<Pointer> = pointers.values.filter { it.inRect(size) }
+    inline fun forEachPointerInRect(size: IntSize, block: (Pointer) -> Unit) {
+        val left = screenOffset.x.toFloat()
+        val top = screenOffset.y.toFloat()
+        pointerIndex.forEachInRect(left, top, left + size.width, top + size.height, block)
+    }
+
+    fun getPointersInRect(size: IntSize): List<Pointer> = buildList { forEachPointerInRect(size) { add(it) } }
 }
 
 inline fun <reified T> Context.withAlign(
@@ -0,0 +1,80 @@
+package top.fifthlight.touchcontroller.common.layout
+
+import top.fifthlight.data.IntSize
+import top.fifthlight.touchcontroller.common.state.Pointer
+
+/**
+ * Pointers of a layout pass sorted by their scaled screen position, so widgets find pointers in their area with a
+ * binary search instead of testing every pointer.
+ *
+ * Positions are taken when built, so build it again before each layout pass.
+ */
+class PointerIndex {
+    @PublishedApi
+    internal var pointers = arrayOfNulls<Pointer>(16)
+
+    @PublishedApi
+    internal var xs = FloatArray(16)
+
+    @PublishedApi
+    internal var ys = FloatArray(16)
+
+    @PublishedApi
+    internal var count = 0
+
+    fun rebuild(pointers: Map<Int, Pointer>, windowScaledSize: IntSize) {
+        if (this.pointers.size < pointers.size) {
+            val capacity = pointers.size.takeHighestOneBit() shl 1
+            this.pointers = arrayOfNulls(capacity)
+            xs = FloatArray(capacity)
+            ys = FloatArray(capacity)
+        } else {
+            this.pointers.fill(null, 0, count)
+        }
+        count = 0
+        // There are only a few pointers, so insertion sort is enough
+        for (pointer in pointers.values) {
+            val position = pointer.position * windowScaledSize
+            var index = count
+            while (index > 0 && xs[index - 1] > position.x) {
+                this.pointers[index] = this.pointers[index - 1]
+                xs[index] = xs[index - 1]
+                ys[index] = ys[index - 1]
+                index--
+            }
+            this.pointers[index] = pointer
+            xs[index] = position.x
+            ys[index] = position.y
+            count++
+        }
+    }
+
+    @PublishedApi
+    internal fun lowerBound(x: Float): Int {
+        var low = 0
+        var high = count
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (xs[middle] < x) {
+                low = middle + 1
+            } else {
+                high = middle
+            }
+        }
+        return low
+    }
+
+    /**
+     * Visit pointers with left <= x < right and top <= y < bottom, in scaled screen coordinates.
+     */
+    inline fun forEachInRect(left: Float, top: Float, right: Float, bottom: Float, block: (Pointer) -> Unit) {
+        var index = lowerBound(left)
+        while (index < count && xs[index] < right) {
+            val y = ys[index]
+            if (top <= y && y < bottom) {
+                block(pointers[index]!!)
+            }
+            index++
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package top.fifthlight.touchcontroller.common.layout.benchmark
+
+import top.fifthlight.combine.data.Text
+import top.fifthlight.combine.paint.Canvas
+import top.fifthlight.combine.paint.Color
+import top.fifthlight.data.IntOffset
+import top.fifthlight.data.IntRect
+import top.fifthlight.data.IntSize
+import top.fifthlight.data.Offset
+import top.fifthlight.data.Size
+import top.fifthlight.touchcontroller.assets.TextureSet
+import top.fifthlight.touchcontroller.common.config.layout.LayoutLayer
+import top.fifthlight.touchcontroller.common.config.preset.builtin.key.BuiltinPresetKey
+import top.fifthlight.touchcontroller.common.layout.Context
+import top.fifthlight.touchcontroller.common.layout.data.ContextStatus
+import top.fifthlight.touchcontroller.common.layout.data.ContextTimer
+import top.fifthlight.touchcontroller.common.layout.queue.DrawQueue
+import top.fifthlight.touchcontroller.common.layout.withAlign
+import java.lang.management.ManagementFactory
+
+/**
+ * Measures laying out and drawing the HUD over every layer of the built-in presets, with platform factories replaced
+ * by the stubs in this package and draw commands replayed into a canvas counting them.
+ *
+ * Layers are laid out regardless of their conditions, so one pass covers all of them. Passes with a new queue only use
+ * API that [Context] and [DrawQueue] had before layout contexts became mutable, so they can be run on older trees to
+ * compare.
+ *
+ * Usage: `benchmark [--iterations N]`
+ */
+object HudBenchmark {
+    private val windowSize = IntSize(1920, 1080)
+    private val windowScaledSize = IntSize(480, 270)
+
+    private class CountingCanvas : Canvas {
+        var commands = 0L
+
+        override fun pushState() {
+            commands++
+        }
+
+        override fun popState() {
+            commands++
+        }
+
+        override fun translate(x: Int, y: Int) {
+            commands++
+        }
+
+        override fun translate(x: Float, y: Float) {
+            commands++
+        }
+
+        override fun rotate(degrees: Float) {
+            commands++
+        }
+
+        override fun scale(x: Float, y: Float) {
+            commands++
+        }
+
+        override fun fillRect(offset: IntOffset, size: IntSize, color: Color) {
+            commands++
+        }
+
+        override fun fillGradientRect(
+            offset: Offset,
+            size: Size,
+            leftTopColor: Color,
+            leftBottomColor: Color,
+            rightTopColor: Color,
+            rightBottomColor: Color,
+        ) {
+            commands++
+        }
+
+        override fun drawRect(offset: IntOffset, size: IntSize, color: Color) {
+            commands++
+        }
+
+        override fun drawText(offset: IntOffset, text: String, color: Color) {
+            commands++
+        }
+
+        override fun drawText(offset: IntOffset, width: Int, text: String, color: Color) {
+            commands++
+        }
+
+        override fun drawText(offset: IntOffset, text: Text, color: Color) {
+            commands++
+        }
+
+        override fun drawText(offset: IntOffset, width: Int, text: Text, color: Color) {
+            commands++
+        }
+
+        override fun pushClip(absoluteArea: IntRect, relativeArea: IntRect) {
+            commands++
+        }
+
+        override fun popClip() {
+            commands++
+        }
+
+        override fun drawNative(block: (canvas: Canvas) -> Unit) {
+            commands++
+            block(this)
+        }
+    }
+
+    private fun presets() = TextureSet.TextureSetKey.entries.flatMap { textureSet ->
+        listOf(
+            BuiltinPresetKey(textureSet = textureSet),
+            BuiltinPresetKey(
+                textureSet = textureSet,
+                moveMethod = BuiltinPresetKey.MoveMethod.Dpad(swapJumpAndSneak = true),
+                sprintButtonLocation = BuiltinPresetKey.SprintButtonLocation.RIGHT_TOP,
+                useVanillaChat = true,
+            ),
+            BuiltinPresetKey(
+                textureSet = textureSet,
+                controlStyle = BuiltinPresetKey.ControlStyle.SplitControls(),
+                sprintButtonLocation = BuiltinPresetKey.SprintButtonLocation.RIGHT,
+            ),
+            BuiltinPresetKey(
+                textureSet = textureSet,
+                controlStyle = BuiltinPresetKey.ControlStyle.SplitControls(buttonInteraction = false),
+                moveMethod = BuiltinPresetKey.MoveMethod.Joystick(triggerSprint = true),
+            ),
+        )
+    }.map { it.preset.layout }
+
+    // Status and timer live across frames in the game, while other parts of the context are created every frame
+    private val status = ContextStatus()
+    private val timer = ContextTimer()
+
+    private fun layout(drawQueue: DrawQueue, layers: List<LayoutLayer>) {
+        timer.renderTick()
+        val context = Context(
+            windowSize = windowSize,
+            windowScaledSize = windowScaledSize,
+            drawQueue = drawQueue,
+            size = windowScaledSize,
+            screenOffset = IntOffset.ZERO,
+            status = status,
+            timer = timer,
+        )
+        for (layer in layers) {
+            for (widget in layer.widgets) {
+                context.withOpacity(widget.opacity) {
+                    withAlign(
+                        align = widget.align,
+                        offset = widget.offset,
+                        size = widget.size(),
+                    ) {
+                        widget.layout(this)
+                    }
+                }
+            }
+        }
+    }
+
+    private fun allocatedBytes(): Long {
+        val bean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        return bean.getThreadAllocatedBytes(Thread.currentThread().threadId())
+    }
+
+    private data class Measurement(val nanosPerPass: Double, val bytesPerPass: Double, val commandsPerPass: Double)
+
+    private fun measure(presets: List<List<LayoutLayer>>, iterations: Int, pass: (List<LayoutLayer>) -> DrawQueue) =
+        CountingCanvas().let { canvas ->
+            fun run() {
+                for (i in 0 until iterations) {
+                    for (layers in presets) {
+                        pass(layers).execute(canvas)
+                    }
+                }
+            }
+
+            // Let the JIT compile the layout code before timing it
+            run()
+            canvas.commands = 0
+            val startBytes = allocatedBytes()
+            val startTime = System.nanoTime()
+            run()
+            val elapsed = System.nanoTime() - startTime
+            val allocated = allocatedBytes() - startBytes
+            val passes = iterations.toDouble() * presets.size
+            Measurement(elapsed / passes, allocated / passes, canvas.commands / passes)
+        }
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        var iterations = 2000
+        var index = 0
+        while (index < args.size) {
+            when (args[index]) {
+                "--iterations" -> iterations = args[++index].toInt()
+                else -> {
+                    System.err.println("Usage: benchmark [--iterations N]")
+                    System.exit(1)
+                }
+            }
+            index++
+        }
+
+        val presets = presets()
+        val widgets = presets.sumOf { layers -> layers.sumOf { it.widgets.size } }
+        println("${presets.size} presets, ${widgets / presets.size} widgets per pass")
+
+        // A new queue every pass, as every render tick did before the queue was reused
+        val newQueue = measure(presets, iterations) { layers ->
+            DrawQueue().also { layout(it, layers) }
+        }
+        val reusedQueue = DrawQueue()
+        val reused = measure(presets, iterations) { layers ->
+            reusedQueue.clear()
+            reusedQueue.also { layout(it, layers) }
+        }
+        println(
+            "new queue:    %8.1f ns/pass %8.1f B/pass %6.1f commands/pass"
+                .format(newQueue.nanosPerPass, newQueue.bytesPerPass, newQueue.commandsPerPass)
+        )
+        println(
+            "reused queue: %8.1f ns/pass %8.1f B/pass %6.1f commands/pass"
+                .format(reused.nanosPerPass, reused.bytesPerPass, reused.commandsPerPass)
+        )
+    }
+}
@@ -0,0 +1,188 @@
+package top.fifthlight.touchcontroller.common.layout.benchmark
+
+import kotlinx.collections.immutable.PersistentList
+import kotlinx.collections.immutable.persistentListOf
+import kotlinx.collections.immutable.plus
+import top.fifthlight.combine.data.Identifier
+import top.fifthlight.combine.data.Text
+import top.fifthlight.combine.data.TextBuilder
+import top.fifthlight.combine.data.TextFactory
+import top.fifthlight.combine.paint.BackgroundTexture
+import top.fifthlight.combine.paint.Canvas
+import top.fifthlight.combine.paint.Color
+import top.fifthlight.combine.paint.TextMeasurer
+import top.fifthlight.combine.paint.Texture
+import top.fifthlight.data.IntPadding
+import top.fifthlight.data.IntRect
+import top.fifthlight.data.IntSize
+import top.fifthlight.data.Rect
+import top.fifthlight.mergetools.api.ActualConstructor
+import top.fifthlight.mergetools.api.ActualImpl
+import top.fifthlight.touchcontroller.common.control.action.provider.ChatScreenProvider
+import top.fifthlight.touchcontroller.common.gal.action.GameAction
+import top.fifthlight.touchcontroller.common.gal.entity.EntityType
+import top.fifthlight.touchcontroller.common.gal.entity.EntityTypeProvider
+import top.fifthlight.touchcontroller.common.gal.key.KeyBindingEventsHandler
+import top.fifthlight.touchcontroller.common.gal.key.KeyBindingHandler
+import top.fifthlight.touchcontroller.common.gal.key.KeyBindingState
+
+// Platform implementations reached by laying out HUD widgets, drawing nothing and doing nothing
+
+@ActualImpl(Texture::class)
+data class TextureStub(
+    override val size: IntSize,
+    override val padding: IntPadding = IntPadding.ZERO,
+) : Texture {
+    companion object : Texture.Factory {
+        @ActualConstructor
+        @JvmStatic
+        override fun create(
+            namespace: String,
+            id: String,
+            width: Int,
+            height: Int,
+            padding: IntPadding,
+        ): Texture = TextureStub(
+            size = IntSize(width, height),
+            padding = padding,
+        )
+    }
+
+    override fun draw(canvas: Canvas, dstRect: Rect, tint: Color, srcRect: Rect) = canvas.drawNative {}
+
+    override fun draw(canvas: Canvas, dstRect: IntRect, tint: Color) = canvas.drawNative {}
+}
+
+@ActualImpl(BackgroundTexture::class)
+data class BackgroundTextureStub(
+    override val size: IntSize,
+) : BackgroundTexture {
+    companion object : BackgroundTexture.Factory {
+        @ActualConstructor
+        @JvmStatic
+        override fun create(
+            namespace: String,
+            id: String,
+            width: Int,
+            height: Int,
+        ): BackgroundTexture = BackgroundTextureStub(IntSize(width, height))
+    }
+
+    override fun draw(canvas: Canvas, dstRect: Rect, tint: Color, scale: Float) = canvas.drawNative {}
+}
+
+class TextStub(override val string: String) : Text {
+    override fun bold() = this
+    override fun underline() = this
+    override fun italic() = this
+    override fun copy() = this
+    override fun plus(other: Text) = TextStub(string + other.string)
+}
+
+@ActualImpl(TextFactory::class)
+object TextFactoryStub : TextFactory {
+    @ActualConstructor
+    @JvmStatic
+    fun of() = this
+
+    private val EMPTY = TextStub("")
+
+    private class Builder : TextBuilder {
+        val string = StringBuilder()
+
+        override fun bold(bold: Boolean, block: TextBuilder.() -> Unit) = block()
+        override fun underline(underline: Boolean, block: TextBuilder.() -> Unit) = block()
+        override fun italic(italic: Boolean, block: TextBuilder.() -> Unit) = block()
+
+        override fun append(string: String) {
+            this.string.append(string)
+        }
+
+        override fun appendWithoutStyle(text: Text) {
+            string.append(text.string)
+        }
+    }
+
+    override fun build(block: TextBuilder.() -> Unit) = TextStub(Builder().apply(block).string.toString())
+    override fun literal(string: String) = TextStub(string)
+    override fun of(identifier: Identifier) = TextStub(identifier.toString())
+    override fun empty() = EMPTY
+    override fun format(identifier: Identifier, vararg arguments: Any?) = TextStub(identifier.toString())
+    override fun toNative(text: Text): Any = text
+}
+
+@ActualImpl(TextMeasurer::class)
+object TextMeasurerStub : TextMeasurer {
+    @JvmStatic
+    @ActualConstructor
+    fun of(): TextMeasurer = TextMeasurerStub
+
+    // Width of most characters in the vanilla font
+    override fun measure(text: String) = IntSize(text.length * 6, 9)
+    override fun measure(text: String, maxWidth: Int) = IntSize((text.length * 6).coerceAtMost(maxWidth), 9)
+    override fun measure(text: Text) = measure(text.string)
+    override fun measure(text: Text, maxWidth: Int) = measure(text.string, maxWidth)
+}
+
+@ActualImpl(KeyBindingHandler::class)
+object KeyBindingHandlerStub : KeyBindingHandler by KeyBindingHandler.Empty {
+    @JvmStatic
+    @ActualConstructor
+    fun of(): KeyBindingHandler = KeyBindingHandlerStub
+}
+
+@ActualImpl(KeyBindingEventsHandler::class)
+object KeyBindingEventsHandlerStub : KeyBindingEventsHandler {
+    @JvmStatic
+    @ActualConstructor
+    fun of(): KeyBindingEventsHandler = KeyBindingEventsHandlerStub
+
+    override fun onKeyDown(state: KeyBindingState) = Unit
+}
+
+@ActualImpl(GameAction::class)
+object GameActionStub : GameAction {
+    @JvmStatic
+    @ActualConstructor
+    fun of(): GameAction = GameActionStub
+
+    override fun openChatScreen() = Unit
+    override fun openGameMenu() = Unit
+    override fun sendMessage(text: Text) = Unit
+    override fun nextPerspective() = Unit
+    override fun takeScreenshot() = Unit
+    override var hudHidden = false
+}
+
+@ActualImpl(ChatScreenProvider::class)
+object ChatScreenProviderStub : ChatScreenProvider {
+    @JvmStatic
+    @ActualConstructor
+    fun of(): ChatScreenProvider = ChatScreenProviderStub
+
+    override fun openChatScreen() = Unit
+}
+
+class EntityTypeStub(id: String) : EntityType() {
+    override val identifier = Identifier.ofVanilla(id)
+    override val name: Text = TextStub(id)
+}
+
+// Every entity the built-in layers refer to exists, so the boat and minecart layers are built too
+@ActualImpl(EntityTypeProvider::class)
+object EntityTypeProviderStub : EntityTypeProvider {
+    @JvmStatic
+    @ActualConstructor
+    fun of(): EntityTypeProvider = EntityTypeProviderStub
+
+    override val player = EntityTypeStub("player")
+    override val minecart = EntityTypeStub("minecart")
+    override val pig = EntityTypeStub("pig")
+    override val llama = EntityTypeStub("llama")
+    override val strider = EntityTypeStub("strider")
+    override val boats: PersistentList<EntityType> = persistentListOf(EntityTypeStub("oak_boat"))
+    override val horses: PersistentList<EntityType> = persistentListOf(EntityTypeStub("horse"))
+    override val camel: PersistentList<EntityType> = persistentListOf(EntityTypeStub("camel"))
+    override val allTypes: PersistentList<EntityType> =
+        persistentListOf<EntityType>(player, minecart, pig, llama, strider) + boats + horses + camel
+}
@@ -1,17 +1,39 @@
 package top.fifthlight.touchcontroller.common.layout.queue
 
 import top.fifthlight.combine.paint.Canvas
+import top.fifthlight.combine.paint.RecordingCanvas
 
 typealias DrawCall = (Canvas) -> Unit
 
+/**
+ * Draw commands of a layout pass. Calls are recorded into a flat command buffer when enqueued, so values they read
+ * are the ones when enqueued, and the buffer can be reused by [clear] for the next pass.
+ *
+ * [enqueue] runs the call at once against the recording canvas, instead of keeping it until [execute]. Deferred calls
+ * ran after the whole layout, when nested layouts had already restored the size, offset and opacity that
+ * `Context.withRect` and similar helpers change in place. A call now sees the values of the layout it is enqueued in,
+ * and its commands land between the translations of that layout, in the order calls are enqueued. Only the recorded
+ * commands are drawn, so a call must not keep the canvas to draw into later.
+ */
 class DrawQueue {
-    private val items = mutableListOf<DrawCall>()
+    @PublishedApi
+    internal val canvas = RecordingCanvas()
 
-    fun enqueue(block: DrawCall) {
-        items.add(block)
+    inline fun enqueue(block: DrawCall) {
+        block(canvas)
+    }
+
+    fun translate(x: Int, y: Int) {
+        if (x != 0 || y != 0) {
+            canvas.translate(x, y)
+        }
+    }
+
+    fun clear() {
+        canvas.reset()
     }
 
     fun execute(canvas: Canvas) {
-        items.forEach { it.invoke(canvas) }
+        this.canvas.replay(canvas)
     }
-}
\ No newline at end of file
+}
@@ -16,9 +16,8 @@ private fun Context.InventorySlot(index: Int) {
     val gameFeatures: GameFeatures = GameFeaturesProviderFactory.of().gameFeatures
     val player = PlayerHandleFactory.current()
 
-    val pointers = getPointersInRect(size)
     val slot = result.inventory.slots[index]
-    for (pointer in pointers) {
+    forEachPointerInRect(size) { pointer ->
         when (val state = pointer.state) {
             PointerState.New -> {
                 pointer.state = PointerState.InventorySlot(index, timer.clientTick)
@@ -144,8 +144,8 @@ object CrosshairRendererImpl : CrosshairRenderer {
     private fun GuiGraphics.submitElement(guiElementRenderState: GuiElementRenderState) =
         (this as SubmittableGuiGraphics).`combine$submitElement`(guiElementRenderState)
 
-    override fun renderOuter(canvas: Canvas, radius: Int, outerRadius: Int) {
-        val drawContext = (canvas as CanvasImpl).guiGraphics
+    override fun renderOuter(canvas: Canvas, radius: Int, outerRadius: Int) = canvas.drawNative { nativeCanvas ->
+        val drawContext = (nativeCanvas as CanvasImpl).guiGraphics
         drawContext.submitElement(
             CrosshairOuterGuiElementRenderState(
                 pose = Matrix3x2f(drawContext.pose()),
@@ -155,8 +155,14 @@ object CrosshairRendererImpl : CrosshairRenderer {
         )
     }
 
-    override fun renderInner(canvas: Canvas, radius: Int, outerRadius: Int, initialProgress: Float, progress: Float) {
-        val drawContext = (canvas as CanvasImpl).guiGraphics
+    override fun renderInner(
+        canvas: Canvas,
+        radius: Int,
+        outerRadius: Int,
+        initialProgress: Float,
+        progress: Float,
+    ) = canvas.drawNative { nativeCanvas ->
+        val drawContext = (nativeCanvas as CanvasImpl).guiGraphics
         drawContext.submitElement(CrosshairInnerGuiElementRenderState(Matrix3x2f(drawContext.pose()), radius, progress))
     }
 }
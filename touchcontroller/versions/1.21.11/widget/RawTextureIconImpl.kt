@@ -28,7 +28,11 @@ object RawTextureIconImpl : RawTextureIcon {
         modifier = modifier,
         measurePolicy = MeasurePolicy.fixed(size),
     ) { canvas, node ->
-        val guiGraphics = (canvas as CanvasImpl).guiGraphics
-        guiGraphics.blit(identifier.toMinecraft(), 0, 0, node.width, node.height, 0f, 1f, 0f, 1f)
+        val width = node.width
+        val height = node.height
+        canvas.drawNative { nativeCanvas ->
+            val guiGraphics = (nativeCanvas as CanvasImpl).guiGraphics
+            guiGraphics.blit(identifier.toMinecraft(), 0, 0, width, height, 0f, 1f, 0f, 1f)
+        }
     }
 }